@@ -0,0 +1,108 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.DCTypes;
+import org.apache.jena.vocabulary.ORG;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state holding a synthetic M0 dataset and the static conversion context initialized on it.
+ * The dataset is created by <code>M0DatasetGenerator</code>, the <code>sizeFactor</code> parameter being the ratio to the size of the production dataset.
+ *
+ * @author Franck
+ */
+@State(Scope.Benchmark)
+public class M0BenchmarkState {
+
+	/** SIMSFr attributes of the synthetic scheme: notation, M0 code and range of the metadata attribute property */
+	static Object[][] SIMS_ATTRIBUTES = {
+		{"S.1.1", "CONTACT_ORGANISATION", ORG.Organization},
+		{"S.1.2", "CONTACT_NAME", XSD.xstring},
+		{"S.2.1", "META_UPDATE", XSD.date},
+		{"S.3.1", "SUMMARY", DCTypes.Text},
+		{"S.3.2", "FREQ_COLL", ResourceFactory.createResource(Configuration.INSEE_CODE_CONCEPTS_BASE_URI + "Frequence")},
+		{"S.3.7", "REF_AREA", Configuration.TERRITORY_MAP_RANGE},
+		{"S.4", "UNIT_MEASURE", XSD.xstring}
+	};
+
+	@Param({"1", "10"})
+	public double sizeFactor;
+
+	/** The synthetic M0 dataset */
+	public Dataset m0Dataset;
+	/** The M0 'documentations' model */
+	public Model m0DocumentationModel;
+	/** The M0 models of each documentation, in the order of the documentation identifiers */
+	public List<Model> documentationModels;
+	/** The URIs of the documentations */
+	public List<String> documentationURIs;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		m0Dataset = new M0DatasetGenerator(42, sizeFactor).createDataset();
+		m0DocumentationModel = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "documentations");
+		documentationModels = new ArrayList<>();
+		documentationURIs = new ArrayList<>();
+		for (Integer documentationId : M0Extractor.getM0DocumentationIds(m0DocumentationModel)) {
+			String documentationURI = Configuration.M0_SIMS_BASE_URI + documentationId;
+			documentationURIs.add(documentationURI);
+			documentationModels.add(M0Extractor.extractM0ResourceModel(m0DocumentationModel, documentationURI));
+		}
+		initializeConversionContext(m0Dataset);
+	}
+
+	/**
+	 * Initializes the static state of the converters as the conversion would do with the real M0 dataset and SIMSFr specification files.
+	 */
+	static void initializeConversionContext(Dataset m0Dataset) {
+
+		M0Converter.m0Dataset = m0Dataset;
+		// The identifier mapping files are not available: no fixed mappings
+		if (Configuration.m0ToWeb4GIdMappings == null) Configuration.m0ToWeb4GIdMappings = new HashMap<>();
+		if (Configuration.ddsToWeb4GIdMappings == null) Configuration.ddsToWeb4GIdMappings = new HashMap<>();
+
+		SIMSFrScheme simsFrScheme = new SIMSFrScheme();
+		OntModel simsFrMSD = ModelFactory.createOntologyModel();
+		for (Object[] attribute : SIMS_ATTRIBUTES) {
+			SIMSFrEntry entry = new SIMSFrEntry((String) attribute[0]);
+			entry.setCode((String) attribute[1]);
+			simsFrScheme.addEntry(entry);
+			simsFrMSD.createOntProperty(Configuration.simsAttributePropertyURI(entry, false)).addProperty(RDFS.range, (Resource) attribute[2]);
+		}
+		M0SIMSConverter.simsFRScheme = simsFrScheme;
+		M0SIMSConverter.simsFrMSD = simsFrMSD;
+
+		M0SIMSConverter.attributeReferencesFr = new TreeMap<>();
+		M0SIMSConverter.attributeReferencesEn = new TreeMap<>();
+		M0SIMSConverter.organizationValues = new TreeMap<>();
+		for (Integer documentationId : M0Extractor.getM0DocumentationIds(m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "documentations"))) {
+			SortedMap<String, SortedSet<String>> organizations = new TreeMap<>();
+			organizations.put("CONTACT_ORGANISATION", new TreeSet<>());
+			organizations.get("CONTACT_ORGANISATION").add("http://id.insee.fr/organisations/insee");
+			M0SIMSConverter.organizationValues.put(documentationId, organizations);
+		}
+		M0SIMSConverter.umMappings = M0Extractor.extractUnitMeasureMappings(m0Dataset, false);
+		M0SIMSConverter.geoMappings = GeoMapper.createM0CodeToURIMappings();
+		M0SIMSConverter.simsAttachments = null;
+	}
+}
@@ -0,0 +1,59 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the URI mappings creation and code list conversion of class <code>M0Converter</code>.
+ *
+ * @author Franck
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class M0ConverterBenchmark {
+
+	/**
+	 * The target identifiers of series, operations and indicators are taken in range 1001-1999, which is exhausted around size factor 2:
+	 * the URI mappings are therefore measured on smaller datasets.
+	 */
+	@State(Scope.Benchmark)
+	public static class MappingState {
+
+		@Param({"0.5", "1"})
+		public double sizeFactor;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			M0BenchmarkState.initializeConversionContext(new M0DatasetGenerator(42, sizeFactor).createDataset());
+		}
+	}
+
+	@Benchmark
+	public SortedMap<String, String> createURIMappings(MappingState state) {
+
+		return M0Converter.createURIMappings();
+	}
+
+	@Benchmark
+	public Model convertCodeLists(M0BenchmarkState state) {
+
+		return M0Converter.convertCodeLists();
+	}
+}
@@ -0,0 +1,54 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the extraction methods of class <code>M0Extractor</code> on the synthetic 'documentations' model.
+ *
+ * @author Franck
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class M0ExtractorBenchmark {
+
+	/** Index of the next documentation to extract, so that successive invocations do not always hit the same resource */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index = 0;
+	}
+
+	@Benchmark
+	public Model extractM0ResourceModel(M0BenchmarkState state, Cursor cursor) {
+
+		List<String> documentationURIs = state.documentationURIs;
+		return M0Extractor.extractM0ResourceModel(state.m0DocumentationModel, documentationURIs.get(cursor.index++ % documentationURIs.size()));
+	}
+
+	@Benchmark
+	public Model extractAttributeStatements(M0BenchmarkState state) {
+
+		return M0Extractor.extractAttributeStatements(state.m0DocumentationModel, "SUMMARY");
+	}
+
+	@Benchmark
+	public SortedMap<String, List<String>> extractAttributeValues(M0BenchmarkState state) {
+
+		return M0Extractor.extractAttributeValues(state.m0DocumentationModel, "SUMMARY", false);
+	}
+}
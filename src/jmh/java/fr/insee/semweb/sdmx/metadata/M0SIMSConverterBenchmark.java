@@ -0,0 +1,39 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the conversion of one M0 documentation to a SIMSFr metadata report.
+ *
+ * @author Franck
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class M0SIMSConverterBenchmark {
+
+	/** Index of the next documentation to convert */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index = 0;
+	}
+
+	@Benchmark
+	public Model convertM0ModelToSIMS(M0BenchmarkState state, Cursor cursor) {
+
+		return M0SIMSConverter.convertM0ModelToSIMS(state.documentationModels.get(cursor.index++ % state.documentationModels.size()), false);
+	}
+}
@@ -0,0 +1,63 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the lookups in a <code>SIMSFrScheme</code> of the size of the SIMSFr (about 150 entries).
+ *
+ * @author Franck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class SIMSFrSchemeBenchmark {
+
+	private SIMSFrScheme simsFrScheme;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		simsFrScheme = new SIMSFrScheme();
+		for (int section = 1; section <= 20; section++) {
+			addEntry("S." + section);
+			for (int subSection = 1; subSection <= 6; subSection++) addEntry("S." + section + "." + subSection);
+		}
+	}
+
+	private void addEntry(String notation) {
+
+		SIMSFrEntry entry = new SIMSFrEntry(notation);
+		entry.setCode(notation.replace('.', '_'));
+		simsFrScheme.addEntry(entry);
+	}
+
+	/** Looks up the parent of every entry of the scheme, as the MSD creation does */
+	@Benchmark
+	public void getParent(Blackhole blackhole) {
+
+		for (SIMSFrEntry entry : simsFrScheme.getEntries()) blackhole.consume(simsFrScheme.getParent(entry));
+	}
+
+	/** Checks the hierarchy of the scheme (one index lookup per entry) */
+	@Benchmark
+	public String checkHierarchy() {
+
+		return simsFrScheme.checkHierarchy();
+	}
+}
@@ -0,0 +1,62 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.insee.semweb.utils.URIComparator;
+
+/**
+ * Benchmark of the sort of M0 URIs with the <code>URIComparator</code>.
+ *
+ * @author Franck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class URIComparatorBenchmark {
+
+	@Param({"1000", "10000"})
+	public int size;
+
+	private List<String> uris;
+	private URIComparator comparator = new URIComparator();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		Random random = new Random(42);
+		String[] types = {"famille", "serie", "operation", "indicateur"};
+		uris = new ArrayList<>();
+		for (int index = 0; index < size; index++) {
+			String type = types[random.nextInt(types.length)];
+			uris.add("http://baseUri/" + type + "s/" + type + "/" + random.nextInt(size));
+		}
+	}
+
+	@Benchmark
+	public List<String> sort() {
+
+		List<String> sorted = new ArrayList<>(uris);
+		Collections.sort(sorted, comparator);
+		return sorted;
+	}
+}
@@ -7,6 +7,9 @@ public class CASDConfiguration {
 	/** Excel file containing the information on operations */
 	public static String OPERATIONS_XLSX_FILE_NAME = "src/main/resources/data/Liste sources_20170612_CASD.xlsx";
 
+	/** Directory where the models of the operations split from the DDS export are written */
+	public static String OPERATION_MODELS_DIRECTORY_NAME = "src/main/resources/data/models/";
+
 	/** Base URI for CASD products */
 	public static String CASD_PRODUCTS_BASE_URI = "http://id.casd.eu/produits/";
 
@@ -1,11 +1,11 @@
 package eu.casd.semweb.psp;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -24,6 +24,7 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 
 import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.utils.RDFOutput;
 
 /**
  * Creates a Jena model corresponding to the list of operations, series and families.
@@ -66,7 +67,31 @@ public class OperationModelMaker {
 			System.exit(1);
 		}
 
-		Iterator<Row> rows = sheet.rowIterator();
+		createModels(sheet.rowIterator(), opeModel, productModel);
+
+		try { opeWorkbook.close(); } catch (IOException ignored) { }
+
+		try {
+			// The file extensions depend on the configured output language and compression
+			RDFOutput.write(opeModel, RDFOutput.outputFile(new File("src/main/resources/data"), "operations", false));
+			RDFOutput.write(productModel, RDFOutput.outputFile(new File("src/main/resources/data"), "products", false));
+		} catch (IOException e) {
+			logger.error("Error writing models to files");
+		}
+	}
+
+	/**
+	 * Reads the rows of the operation sheet and fills the operation and product models.
+	 * Rows are read in sequence and grouped in family chunks: as soon as a chunk is complete, its models are computed in parallel with the reading of the next rows.
+	 * The partial models are then merged in the order of the families.
+	 * 
+	 * @param rows An iterator on the rows of the operation sheet, positioned on the title line.
+	 * @param opeModel The model where the families, series and operations are added.
+	 * @param productModel The model where the CASD products are added.
+	 */
+	public static void createModels(Iterator<Row> rows, Model opeModel, Model productModel) {
+
+		List<CompletableFuture<Model[]>> familyModels = new ArrayList<CompletableFuture<Model[]>>();
 		rows.next(); // Skip the title line
 		String currentFamily = "Init value";
 		List<OperationEntry> familyBlock = null;
@@ -79,7 +104,7 @@ public class OperationModelMaker {
 			// If family name is not empty and differs from current value, start new family bloc
 			if ((familyName != null) && (!familyName.equalsIgnoreCase(currentFamily))) {
 				if (familyBlock != null) {
-					opeModel.add(getFamilyModel(familyBlock));
+					familyModels.add(submitFamilyModels(familyBlock));
 					logger.debug("Closing family " + currentFamily);
 				}
 				familyBlock = new ArrayList<OperationEntry>(); // Start new block
@@ -89,24 +114,49 @@ public class OperationModelMaker {
 			familyBlock.add(entry);
 		}
 		// Process last family block
-		opeModel.add(getFamilyModel(familyBlock));
-		logger.debug("Closing family " + currentFamily);
-
-		try { opeWorkbook.close(); } catch (IOException ignored) { }
+		if (familyBlock != null) {
+			familyModels.add(submitFamilyModels(familyBlock));
+			logger.debug("Closing family " + currentFamily);
+		}
 
-		try {
-			opeModel.write(new FileWriter("src/main/resources/data/operations.ttl"), "TTL");
-			productModel.write(new FileWriter("src/main/resources/data/products.ttl"), "TTL");
-		} catch (IOException e) {
-			logger.error("Error writing models to files");
+		// Merge the partial models in the order of the families
+		for (CompletableFuture<Model[]> familyModel : familyModels) {
+			Model[] models = familyModel.join();
+			opeModel.add(models[0]);
+			productModel.add(models[1]);
 		}
+		logger.debug(familyModels.size() + " families processed");
+	}
+
+	/**
+	 * Submits the computation of the operation and product models of a family chunk to the common pool.
+	 */
+	private static CompletableFuture<Model[]> submitFamilyModels(List<OperationEntry> familyChunk) {
+
+		return CompletableFuture.supplyAsync(() -> {
+			Model familyProductModel = ModelFactory.createDefaultModel();
+			return new Model[] {getFamilyModel(familyChunk, familyProductModel), familyProductModel};
+		});
 	}
 
 	/**
 	 * Produces a Jena model corresponding to a family, based on a corresponding bloc of entries.
+	 * The CASD products are added to the static product model.
 	 */
 	public static Model getFamilyModel(List<OperationEntry> familyChunk) {
 
+		return getFamilyModel(familyChunk, productModel);
+	}
+
+	/**
+	 * Produces a Jena model corresponding to a family, based on a corresponding bloc of entries.
+	 * 
+	 * @param familyChunk The entries of the family.
+	 * @param productModel The model where the CASD products of the family are added.
+	 * @return The model of the family, its series and operations.
+	 */
+	public static Model getFamilyModel(List<OperationEntry> familyChunk, Model productModel) {
+
 		Model familyModel = ModelFactory.createDefaultModel();
 
 		String familyName = familyChunk.get(0).getFamilyName(); // Can't be empty
@@ -131,7 +181,7 @@ public class OperationModelMaker {
 			if ((seriesName != null) && (!seriesName.equalsIgnoreCase(currentSeries))) {
 				// New series: close current series block and attach series to family
 				if (seriesBlock != null) {
-					familyModel.add(getSeriesModel(seriesBlock));
+					familyModel.add(getSeriesModel(seriesBlock, productModel));
 					Resource series = familyModel.createResource(Configuration.statisticalOperationSeriesURI(seriesName)); // Should exist already
 					family.addProperty(DCTerms.hasPart, series);
 					series.addProperty(DCTerms.isPartOf, family);
@@ -147,7 +197,7 @@ public class OperationModelMaker {
 			}
 		}
 		// Process last series block
-		familyModel.add(getSeriesModel(seriesBlock));
+		familyModel.add(getSeriesModel(seriesBlock, productModel));
 		Resource series = familyModel.createResource(fr.insee.semweb.sdmx.metadata.Configuration.statisticalOperationSeriesURI(currentSeries)); // Should exist already
 		family.addProperty(DCTerms.hasPart, series);
 		series.addProperty(DCTerms.isPartOf, family);
@@ -158,9 +208,22 @@ public class OperationModelMaker {
 
 	/**
 	 * Produces a Jena model corresponding to a series, based on a corresponding bloc of entries.
+	 * The CASD products are added to the static product model.
 	 */
 	public static Model getSeriesModel(List<OperationEntry> seriesChunk) {
 
+		return getSeriesModel(seriesChunk, productModel);
+	}
+
+	/**
+	 * Produces a Jena model corresponding to a series, based on a corresponding bloc of entries.
+	 * 
+	 * @param seriesChunk The entries of the series.
+	 * @param productModel The model where the CASD products of the series are added.
+	 * @return The model of the series and its operations.
+	 */
+	public static Model getSeriesModel(List<OperationEntry> seriesChunk, Model productModel) {
+
 		Model seriesModel = ModelFactory.createDefaultModel();
 
 		OperationEntry seriesEntry = seriesChunk.get(0);
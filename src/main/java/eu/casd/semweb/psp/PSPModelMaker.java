@@ -1,13 +1,15 @@
 package eu.casd.semweb.psp;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.Year;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -29,6 +31,7 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 
 import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.utils.RDFOutput;
 
 public class PSPModelMaker {
 
@@ -75,12 +78,60 @@ public class PSPModelMaker {
 
 		Iterator<Row> rows = simsSheet.rowIterator();
 		rows.next(); rows.next(); rows.next(); // Skip 3 title lines
-		
+		createModels(rows, pspModel, dcatModel, pspCatalog);
+		try { pdpWorkbook.close(); } catch (Exception ignored) { }
+
+		try {
+			// The file extensions depend on the configured output language and compression
+			RDFOutput.write(pspModel, RDFOutput.outputFile(new File(PSPModelMaker.OUTPUT_DIRECTORY), PSPModelMaker.PSP_BASE_NAME, false));
+			RDFOutput.write(dcatModel, RDFOutput.outputFile(new File(PSPModelMaker.OUTPUT_DIRECTORY), PSPModelMaker.DCAT_BASE_NAME, false));
+		} catch (IOException e) {
+			logger.fatal("Error writing models to files - " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the product rows and fills the program/source/product model and the DCAT model.
+	 * Rows are read in sequence and their relevant cells grouped by family, then the models of the families are computed in parallel and merged.
+	 * 
+	 * @param rows An iterator on the rows of the product sheet, positioned after the title lines.
+	 * @param pspModel The model where the families, series and datasets are added.
+	 * @param dcatModel The model where the datasets are added.
+	 * @param pspCatalog The catalog to which the datasets are attached (in the DCAT model).
+	 */
+	public static void createModels(Iterator<Row> rows, Model pspModel, Model dcatModel, Resource pspCatalog) {
+
+		// Read the cells of each row, grouped by family in the order of first appearance
+		Map<String, List<String[]>> familyRows = new LinkedHashMap<String, List<String[]>>();
 		while (rows.hasNext()) {
 			Row row = rows.next();
+			String[] cells = new String[8];
+			for (int index = 0; index < cells.length; index++) cells[index] = row.getCell(index, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
+			familyRows.computeIfAbsent(cells[0], key -> new ArrayList<String[]>()).add(cells);
+		}
+		logger.debug(familyRows.size() + " families read");
+
+		List<Model[]> familyModels = familyRows.values().parallelStream().map(rowsOfFamily -> {
+			Model familyPSPModel = ModelFactory.createDefaultModel();
+			Model familyDCATModel = ModelFactory.createDefaultModel();
+			addFamily(rowsOfFamily, familyPSPModel, familyDCATModel, familyDCATModel.createResource(pspCatalog.getURI()));
+			return new Model[] {familyPSPModel, familyDCATModel};
+		}).collect(Collectors.toList());
+		for (Model[] models : familyModels) {
+			pspModel.add(models[0]);
+			dcatModel.add(models[1]);
+		}
+	}
+
+	/**
+	 * Adds to the models the family, series and datasets described in the rows of a family.
+	 */
+	private static void addFamily(List<String[]> rowsOfFamily, Model pspModel, Model dcatModel, Resource pspCatalog) {
+
+		for (String[] cells : rowsOfFamily) {
 
 			// First cell is the name of the StatisticalOperationFamily
-			String sofName = row.getCell(0, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
+			String sofName = cells[0];
 			// Create the resource without type to be able to test existence test later
 			Resource sofResource = pspModel.createResource(fr.insee.semweb.sdmx.metadata.Configuration.statisticalOperationFamilyURI(sofName));
 
@@ -92,25 +143,27 @@ public class PSPModelMaker {
 				sofResource.addProperty(SKOS.prefLabel, pspModel.createLiteral(sofName, "fr"));
 				// Thematic coverage is described in column B. For now we create a unique literal value of dcterms:subject
 				// TODO Separate the different themes into several dcterms:subject values, or even use a controlled vocabulary ?
-				String cellValue = row.getCell(1, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
-				sofResource.addProperty(DCTerms.subject, pspModel.createLiteral(cellValue, "fr"));
+				sofResource.addProperty(DCTerms.subject, pspModel.createLiteral(cells[1], "fr"));
 				// Methodological documentation is in column C, always empty for now
-				cellValue = row.getCell(2, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
-				if (cellValue.length() > 0) sofResource.addProperty(methodologicalNote, pspModel.createLiteral(cellValue, "en"));
+				if (cells[2].length() > 0) sofResource.addProperty(methodologicalNote, pspModel.createLiteral(cells[2], "en"));
 			}
 			// Create the statistical operation series; prefLabel in column E, altLabel in column D
-			String sosShortName = row.getCell(3, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
+			String sosShortName = cells[3];
 			Resource sosResource = pspModel.createResource(fr.insee.semweb.sdmx.metadata.Configuration.statisticalOperationSeriesURI(sosShortName), Configuration.STATISTICAL_OPERATION_SERIES);
 			sosResource.addProperty(SKOS.altLabel, pspModel.createLiteral(sosShortName, "fr"));
-			sosResource.addProperty(SKOS.prefLabel, pspModel.createLiteral(row.getCell(4, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim(), "fr"));
+			sosResource.addProperty(SKOS.prefLabel, pspModel.createLiteral(cells[4], "fr"));
 			sosResource.addProperty(DCTerms.isPartOf, sofResource);
 
 			// Gets the value that specifies the different dcat:Dataset instances (column H)
 			// TODO Add also as dc:temporal value? What to do when value is empty?
-			String temporal = row.getCell(7, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
+			String temporal = cells[7];
 			List<String> datasetYears = null;
 			if (temporal.length() > 0) {
 				datasetYears = getYears(temporal);
+				if (datasetYears == null) {
+					logger.warn("Invalid dataset years specification for series " + sosShortName + ": " + temporal);
+					continue;
+				}
 				// Create a dcat:Dataset for each year or span
 				for (String datasetYear : datasetYears) {
 					String datasetURI = eu.casd.semweb.psp.CASDConfiguration.datasetURI(datasetYear, sosShortName);
@@ -125,14 +178,6 @@ public class PSPModelMaker {
 					pspCatalog.addProperty(DCAT.dataset, dcatModel.getResource(datasetURI));
 				}
 			}
-
-			try {
-				pspModel.write(new FileWriter(PSPModelMaker.PSP_TURTLE_FILE), "TTL");
-				dcatModel.write(new FileWriter(PSPModelMaker.DCAT_TURTLE_FILE), "TTL");
-			} catch (IOException e) {
-				logger.fatal("");
-			}
-			try { pdpWorkbook.close(); } catch (Exception ignored) { }
 		}
 	}
 
@@ -187,9 +232,11 @@ public class PSPModelMaker {
 
 	public static String EXCEL_FILE = "src/main/resources/liste_produits_par_producteurs_RDF.xlsx";
 
-	public static String PSP_TURTLE_FILE = "src/main/resources/casd-psp.ttl";
+	public static String OUTPUT_DIRECTORY = "src/main/resources";
+
+	public static String PSP_BASE_NAME = "casd-psp";
 
-	public static String DCAT_TURTLE_FILE = "src/main/resources/casd-dcat.ttl";
+	public static String DCAT_BASE_NAME = "casd-dcat";
 
 	public static String INSEE_ONTO_BASE_URI = "http://rdf.insee.fr/def/base#";
 }
@@ -2,29 +2,36 @@ package eu.casd.semweb.psp;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.rdf.model.Selector;
-import org.apache.jena.rdf.model.SimpleSelector;
 import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.poi.ss.usermodel.Row;
@@ -35,6 +42,7 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 
 import eu.casd.semweb.psp.PSPOperationEntry.OperationType;
 import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.utils.RDFOutput;
 
 public class SourceConverter {
 
@@ -184,24 +192,112 @@ public class SourceConverter {
 	}
 
 	/**
-	 * Splits the base model into smaller models related to each operation of a list passed as parameter and saves the smaller models to disk.
+	 * Splits the base model into smaller models related to each operation of a list passed as parameter and saves the smaller models
+	 * in the directory <code>CASDConfiguration.OPERATION_MODELS_DIRECTORY_NAME</code>.
 	 * 
 	 * @param operationNames A <code>List</code> of operation URI.
 	 * @throws IOException In case of problem while writing the model to disk.
 	 */
 	public static void splitModel(List<String> operationNames) throws IOException {
 
+		splitModel(operationNames, new File(CASDConfiguration.OPERATION_MODELS_DIRECTORY_NAME));
+	}
+
+	/**
+	 * Splits the base model into smaller models related to each operation of a list passed as parameter and saves the smaller models to disk.
+	 * The base model is read only once: each statement is routed to the model of its operation, then the models are written concurrently.
+	 * 
+	 * @param operationNames A <code>List</code> of operation URI.
+	 * @param outputDirectory The directory where the models of the operations are written (in Turtle).
+	 * @throws IOException In case of problem while writing the model to disk.
+	 */
+	public static void splitModel(List<String> operationNames, File outputDirectory) throws IOException {
+
+		if (m0Model == null) {
+			logger.error("Base model not initialized, no operation model will be written");
+			return;
+		}
 		logger.debug("Splitting M0 model into " + operationNames.size() + " models");
-		for (String operationName : operationNames) {
-			// Create model for the current source
-			Model sourceModel = extractModel(operationName);
-			sourceModel.write(new FileOutputStream(workingDir + "models/"+ operationName.toLowerCase() + ".ttl"), "TTL");
-			sourceModel.close();
+		writeModels(partitionModel(m0Model, operationNames), outputDirectory);
+	}
+
+	/**
+	 * Splits a RDF file into smaller models related to each operation of a list and saves the smaller models to disk.
+	 * The file is parsed in streaming mode, so that the whole base model is never loaded in memory.
+	 * 
+	 * @param rdfFileName The name of the RDF file (for example the DDS export).
+	 * @param operationNames The identifiers of the operations to extract.
+	 * @param outputDirectory The directory where the models of the operations are written (in Turtle).
+	 * @return The number of statements written for each operation.
+	 * @throws IOException In case of problem while writing the models to disk.
+	 */
+	public static Map<String, Long> splitFile(String rdfFileName, Collection<String> operationNames, File outputDirectory) throws IOException {
+
+		logger.debug("Splitting file " + rdfFileName + " into " + operationNames.size() + " models");
+		OperationPartitioner partitioner = new OperationPartitioner(operationNames);
+		RDFDataMgr.parse(partitioner, rdfFileName);
+		logger.debug(partitioner.getIgnoredCount() + " triples not related to the requested operations were ignored");
+
+		return writeModels(partitioner.getModels(), outputDirectory);
+	}
+
+	/**
+	 * Partitions a model into models related to each operation of a list, in one pass on the statements of the model.
+	 * 
+	 * @param model The model to partition.
+	 * @param operationNames The identifiers of the operations to extract.
+	 * @return A map whose keys are the operation identifiers and values are the models of the operations (possibly empty).
+	 */
+	public static Map<String, Model> partitionModel(Model model, Collection<String> operationNames) {
+
+		StmtIterator iterator = model.listStatements();
+		try {
+			return partitionStatements(iterator, operationNames);
+		} finally {
+			iterator.close();
+		}
+	}
+
+	private static Map<String, Model> partitionStatements(Iterator<Statement> statements, Collection<String> operationNames) {
+
+		OperationPartitioner partitioner = new OperationPartitioner(operationNames);
+		while (statements.hasNext()) partitioner.triple(statements.next().asTriple());
+		logger.debug(partitioner.getIgnoredCount() + " statements not related to the requested operations were ignored");
+
+		return partitioner.getModels();
+	}
+
+	/**
+	 * Writes concurrently the models of the operations in Turtle files named after the operations.
+	 * 
+	 * @return The number of statements written for each operation.
+	 */
+	private static Map<String, Long> writeModels(Map<String, Model> operationModels, File outputDirectory) throws IOException {
+
+		Files.createDirectories(outputDirectory.toPath());
+		Map<String, Long> sizes = new ConcurrentHashMap<>();
+		try {
+			operationModels.entrySet().parallelStream().forEach(entry -> {
+				File modelFile = RDFOutput.outputFile(outputDirectory, entry.getKey().toLowerCase(), false);
+				try {
+					RDFOutput.write(entry.getValue(), modelFile);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				sizes.put(entry.getKey(), entry.getValue().size());
+				entry.getValue().close();
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
+		logger.debug(sizes.size() + " operation models written in " + outputDirectory.getAbsolutePath());
+
+		return sizes;
 	}
 
 	/**
 	 * Extracts from the base model all the statements related to a given operation.
+	 * Prefer <code>partitionModel</code> to extract several operations, since each call scans the whole base model.
 	 * 
 	 * @param operationURI URI of the operation.
 	 * @return A Jena <code>Model</code> containing the statements related to the operation.
@@ -209,15 +305,46 @@ public class SourceConverter {
 	public static Model extractModel(String operationURI) {
 
 		logger.debug("Extracting model for operation: " + operationURI);
-		Model operationModel = ModelFactory.createDefaultModel();
-		Selector selector = new SimpleSelector(null, null, (RDFNode) null) {
-						        public boolean selects(Statement statement)
-					            {return getOperationId(statement.getSubject().getURI()).equals(operationURI);}
-						    };
-		// Copy the relevant statements to the extract model
-		if (m0Model != null) operationModel.add(m0Model.listStatements(selector));
-
-		return operationModel;
+		if (m0Model == null) return ModelFactory.createDefaultModel();
+
+		return partitionModel(m0Model, Collections.singleton(operationURI)).get(operationURI);
+	}
+
+	/**
+	 * A RDF stream which routes each triple to the model of the operation of its subject, or ignores it if the operation was not requested.
+	 */
+	static class OperationPartitioner extends StreamRDFBase {
+
+		private final Map<String, Model> models = new HashMap<String, Model>();
+		private long ignoredCount = 0;
+
+		OperationPartitioner(Collection<String> operationNames) {
+			for (String operationName : operationNames) models.put(operationName, ModelFactory.createDefaultModel());
+		}
+
+		@Override
+		public void triple(Triple triple) {
+
+			Model model = null;
+			Node subject = triple.getSubject();
+			// Only subjects of the type 'http://baseUri/FR-ACCES-FINANCEMENT-PME-10-PERSONNES/SOURCE_CODE' can be related to an operation
+			if (subject.isURI() && (subject.getURI().length() > 18)) model = models.get(getOperationId(subject.getURI()));
+			if (model == null) ignoredCount++;
+			else model.getGraph().add(triple);
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+
+		Map<String, Model> getModels() {
+			return models;
+		}
+
+		long getIgnoredCount() {
+			return ignoredCount;
+		}
 	}
 
 	@SuppressWarnings("unused")
@@ -0,0 +1,141 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.SKOS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-memory index of the French and English labels of codes, used to complete SIMS models without querying the triple store.
+ *
+ * @author Franck
+ */
+public class CodeLabelIndex {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(CodeLabelIndex.class);
+
+	/** Labels indexed by code URI: French label first, English label second */
+	private final Map<String, String[]> labels = new HashMap<>();
+
+	/**
+	 * Creates an index from the code list dataset read from the dedicated Excel file.
+	 *
+	 * @param xlsxFile The Excel file containing the code lists (<code>File</code> object).
+	 * @return The code label index, or <code>null</code> if the file cannot be read.
+	 */
+	public static CodeLabelIndex fromCodelistFile(File xlsxFile) {
+
+		Dataset codelistDataset = CodelistModelMaker.readCodelistDataset(xlsxFile, Configuration.INSEE_BASE_GRAPH_URI + "concepts", Configuration.INSEE_BASE_GRAPH_URI + "codes", null);
+		if (codelistDataset == null) return null;
+		CodeLabelIndex index = fromDataset(codelistDataset);
+		codelistDataset.close();
+
+		return index;
+	}
+
+	/**
+	 * Creates an index from a dataset containing code lists in its default graph or named graphs, as returned by <code>CodelistModelMaker.readCodelistDataset</code>.
+	 *
+	 * @param codelistDataset The dataset containing the code lists.
+	 * @return The code label index.
+	 */
+	public static CodeLabelIndex fromDataset(Dataset codelistDataset) {
+
+		CodeLabelIndex index = new CodeLabelIndex();
+		index.addModel(codelistDataset.getDefaultModel());
+		for (Iterator<String> nameIterator = codelistDataset.listNames(); nameIterator.hasNext(); ) {
+			index.addModel(codelistDataset.getNamedModel(nameIterator.next()));
+		}
+		logger.info("Code label index created with " + index.size() + " codes");
+
+		return index;
+	}
+
+	/**
+	 * Creates an index from a model containing code lists.
+	 *
+	 * @param codelistModel The model containing the code lists.
+	 * @return The code label index.
+	 */
+	public static CodeLabelIndex fromModel(Model codelistModel) {
+
+		CodeLabelIndex index = new CodeLabelIndex();
+		index.addModel(codelistModel);
+
+		return index;
+	}
+
+	/**
+	 * Adds to the index the labels of the codes (SKOS concepts) of a model.
+	 *
+	 * @param codelistModel The model containing the code lists.
+	 */
+	public void addModel(Model codelistModel) {
+
+		StmtIterator labelIterator = codelistModel.listStatements(null, SKOS.prefLabel, (RDFNode) null);
+		while (labelIterator.hasNext()) {
+			Statement labelStatement = labelIterator.next();
+			Resource code = labelStatement.getSubject();
+			if (!code.isURIResource() || !labelStatement.getObject().isLiteral() || !codelistModel.contains(code, RDF.type, SKOS.Concept)) continue;
+			Literal label = labelStatement.getLiteral();
+			int languageIndex = "fr".equals(label.getLanguage()) ? 0 : ("en".equals(label.getLanguage()) ? 1 : -1);
+			if (languageIndex >= 0) labels.computeIfAbsent(code.getURI(), uri -> new String[2])[languageIndex] = label.getLexicalForm();
+		}
+		labelIterator.close();
+	}
+
+	/**
+	 * Adds the labels of the codes used as values in a SIMS model, for codes which have no label in the model.
+	 *
+	 * @param simsModel The SIMS model to complete.
+	 * @return The number of labels added.
+	 */
+	public int addCodeLabels(Model simsModel) {
+
+		List<Statement> labelStatements = new ArrayList<>();
+		for (RDFNode value : simsModel.listObjects().toList()) {
+			if (!value.isURIResource()) continue;
+			String[] codeLabels = labels.get(value.asResource().getURI());
+			if ((codeLabels == null) || simsModel.contains(value.asResource(), SKOS.prefLabel)) continue;
+			if (codeLabels[0] != null) labelStatements.add(simsModel.createStatement(value.asResource(), SKOS.prefLabel, simsModel.createLiteral(codeLabels[0], "fr")));
+			if (codeLabels[1] != null) labelStatements.add(simsModel.createStatement(value.asResource(), SKOS.prefLabel, simsModel.createLiteral(codeLabels[1], "en")));
+		}
+		simsModel.add(labelStatements);
+
+		return labelStatements.size();
+	}
+
+	/**
+	 * Returns the labels of a code.
+	 *
+	 * @param codeURI The URI of the code.
+	 * @return An array containing the French and English labels (or <code>null</code>), or <code>null</code> if the code is unknown.
+	 */
+	public String[] getLabels(String codeURI) {
+		return labels.get(codeURI);
+	}
+
+	/**
+	 * Returns the number of codes in the index.
+	 *
+	 * @return The number of codes in the index.
+	 */
+	public int size() {
+		return labels.size();
+	}
+}
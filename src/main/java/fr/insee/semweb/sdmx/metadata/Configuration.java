@@ -46,6 +46,10 @@ public class Configuration {
 	public static String DDS_ID_TO_WEB4G_ID_FILE_NAME = "src/main/resources/data/idSources.csv";
 	/** Correspondence between M0 identifiers and Web4G identifiers for operations */
 	public static String M0_ID_TO_WEB4G_ID_FILE_NAME = "src/main/resources/data/idOperations.csv";
+	/** Turtle file containing the target organization model of the SSM (used for consistency checks and organization URIs) */
+	public static String SSM_ORGANIZATIONS_FILE_NAME = "src/main/resources/ssm.ttl";
+	/** Snapshot of the geographic reference (territory URIs, types, codes and names) */
+	public static String GEO_REFERENCE_FILE_NAME = "src/main/resources/data/geo-reference.csv";
 
 	// Output files
 
@@ -61,6 +65,8 @@ public class Configuration {
 	public static String SIMS_CL_TURTLE_FILE_NAME = "src/main/resources/data/sims-cl.ttl";
 	/** Concepts and concept schemes for the categorization of the operations and products */
 	public static String THEMES_TURTLE_FILE_NAME = "src/main/resources/data/themes.ttl";
+	/** JSON export of the conversion metrics at the end of a run (no export if null) */
+	public static String METRICS_JSON_FILE_NAME = null;
 
 	// Constants for naming
 
@@ -174,7 +180,21 @@ public class Configuration {
 
 	/** Correspondence between DDS identifiers and Web4G identifiers (for series) */
 	public static Map<String, String> ddsToWeb4GIdMappings = null;
+
+	/** Correspondence between M0 identifiers and Web4G (target) identifiers (for operations) */
+	public static Map<Integer, String> m0ToWeb4GIdMappings = null;
+
 	static {
+		readIdMappings();
+	}
+
+	/**
+	 * Reads the correspondences between DDS or M0 identifiers and Web4G identifiers from the CSV files, for example after a modification of the files.
+	 * If a file cannot be read, the corresponding mappings are set to <code>null</code>.
+	 */
+	public static void readIdMappings() {
+
+		ddsToWeb4GIdMappings = null;
 		try (Stream<String> stream = Files.lines(Paths.get(DDS_ID_TO_WEB4G_ID_FILE_NAME))) {
 			ddsToWeb4GIdMappings = stream.filter(line -> line.startsWith("FR-")).map(line -> line.substring(3)).collect(Collectors.toMap(line -> line.split(",")[0], line -> line.split(",")[1]));
 			// HACK Delete three lines to correct errors
@@ -184,11 +204,7 @@ public class Configuration {
 		} catch (IOException ignored) {
 			// Do nothing, we will have an exception when trying to use the mapping
 		}
-	}
-
-	/** Correspondence between M0 identifiers and Web4G (target) identifiers (for operations) */
-	public static Map<Integer, String> m0ToWeb4GIdMappings = null;
-	static {
+		m0ToWeb4GIdMappings = null;
 		try (Stream<String> stream = Files.lines(Paths.get(M0_ID_TO_WEB4G_ID_FILE_NAME))) {
 			m0ToWeb4GIdMappings = stream.collect(Collectors.toMap(line -> Integer.parseInt(line.split(",")[0]), line -> line.split(",")[1]));
 		} catch (IOException ignored) {
@@ -0,0 +1,321 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A durable journal of the reports produced by a long conversion, allowing an interrupted conversion to be resumed.
+ * Converted reports are written by batches of <code>BATCH_SIZE</code> in TriG files, which are synchronized to disk and then atomically renamed, the directory being synchronized after the rename.
+ * Once a batch file is in place, a line listing its identifiers is appended to the journal: a report is considered completed only when this line is complete.
+ * The checkpoint is tied to a fingerprint of the conversion inputs: if the fingerprint changes, the previous batches are discarded.
+ *
+ * @author Franck
+ */
+public class ConversionCheckpoint {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(ConversionCheckpoint.class);
+
+	/** Number of reports per batch file */
+	public static int BATCH_SIZE = 100;
+	/** Name of the file containing the fingerprint of the inputs, in the checkpoint directory */
+	public static String FINGERPRINT_FILE_NAME = "fingerprint.txt";
+	/** Name of the journal file, in the checkpoint directory */
+	public static String JOURNAL_FILE_NAME = "journal.txt";
+
+	/** Content hashes of the input files, keyed by path, modification time and length */
+	private static final Map<String, String> fileHashes = new ConcurrentHashMap<>();
+
+	private final File directory;
+	private final File journalFile;
+	/** Names of the batch files listed in the journal, in order */
+	private final List<String> batchFiles = new ArrayList<>();
+	private final Set<Integer> completed = new HashSet<>();
+	private int nextBatchNumber = 1;
+
+	private final Dataset pendingReports = DatasetFactory.create();
+	private final List<Integer> pendingIds = new ArrayList<>();
+
+	/**
+	 * Opens a checkpoint directory, creating it if necessary.
+	 * If the directory contains a checkpoint made for other inputs, it is discarded; batch files that are not listed in the journal (interrupted writes) are deleted.
+	 *
+	 * @param directory The checkpoint directory.
+	 * @param fingerprint The fingerprint of the inputs of the conversion.
+	 * @throws IOException In case of problem reading or writing in the directory.
+	 */
+	public ConversionCheckpoint(File directory, String fingerprint) throws IOException {
+
+		this.directory = directory;
+		this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+		if (!directory.exists()) directory.mkdirs();
+
+		File fingerprintFile = new File(directory, FINGERPRINT_FILE_NAME);
+		if (fingerprintFile.exists() && fingerprint.equals(new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8))) readJournal();
+		else {
+			if (fingerprintFile.exists()) logger.info("Inputs changed since the checkpoint in " + directory + " was made, previous reports discarded");
+			Files.deleteIfExists(journalFile.toPath());
+			writeAtomically(fingerprintFile, fingerprint.getBytes(StandardCharsets.UTF_8));
+		}
+
+		// Remove the files of interrupted batches
+		for (File file : directory.listFiles()) {
+			String name = file.getName();
+			if (name.startsWith("batch-") && !batchFiles.contains(name)) Files.delete(file.toPath());
+		}
+		logger.info("Checkpoint opened in " + directory + ": " + completed.size() + " reports already completed in " + batchFiles.size() + " batches");
+	}
+
+	/**
+	 * Computes the fingerprint of conversion inputs from the content of files and from the conversion options.
+	 * The content hash of each file is kept as long as its size and modification time do not change, so that large inputs are not read again on each run.
+	 *
+	 * @param files The input files (missing files are taken into account as such).
+	 * @param options A description of the conversion options.
+	 * @return The fingerprint.
+	 * @throws IOException In case of problem reading the files.
+	 */
+	public static String fingerprint(List<File> files, String options) throws IOException {
+
+		MessageDigest digest = newDigest();
+		digest.update(options.getBytes(StandardCharsets.UTF_8));
+		for (File file : files) {
+			digest.update(("\n" + file.getPath() + "\t" + (file.exists() ? contentHash(file) : "absent")).getBytes(StandardCharsets.UTF_8));
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the content of a file, which is computed only once as long as the file is not modified.
+	 */
+	private static String contentHash(File file) throws IOException {
+
+		String key = file.getAbsolutePath() + "|" + PipelineOrchestrator.fileStamp(file);
+		String hash = fileHashes.get(key);
+		if (hash == null) {
+			MessageDigest digest = newDigest();
+			byte[] buffer = new byte[65536];
+			try (InputStream input = new FileInputStream(file)) {
+				int read;
+				while ((read = input.read(buffer)) > 0) digest.update(buffer, 0, read);
+			}
+			hash = toHex(digest.digest());
+			fileHashes.put(key, hash);
+		}
+		return hash;
+	}
+
+	private static MessageDigest newDigest() {
+
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // SHA-256 is available on all Java platforms
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder builder = new StringBuilder();
+		for (byte value : bytes) builder.append(String.format("%02x", value));
+		return builder.toString();
+	}
+
+	/**
+	 * Indicates if a report has already been converted and written in a batch.
+	 *
+	 * @param reportId The report identifier.
+	 * @return <code>true</code> if the report is completed, <code>false</code> otherwise.
+	 */
+	public boolean isCompleted(Integer reportId) {
+		return completed.contains(reportId);
+	}
+
+	/**
+	 * Returns the number of reports completed.
+	 *
+	 * @return The number of reports completed.
+	 */
+	public int getCompletedCount() {
+		return completed.size();
+	}
+
+	/**
+	 * Adds a converted report to the current batch, which is written when it reaches <code>BATCH_SIZE</code> reports.
+	 *
+	 * @param reportId The report identifier.
+	 * @param graphName The name of the graph of the report.
+	 * @param model The model of the report.
+	 * @throws IOException In case of problem writing the batch.
+	 */
+	public void add(Integer reportId, String graphName, Model model) throws IOException {
+
+		pendingReports.addNamedModel(graphName, model);
+		pendingReports.getDefaultModel().setNsPrefixes(model.getNsPrefixMap());
+		pendingIds.add(reportId);
+		if (pendingIds.size() >= BATCH_SIZE) flush();
+	}
+
+	/**
+	 * Writes the current batch, if it is not empty, and records its reports in the journal.
+	 *
+	 * @throws IOException In case of problem writing the batch or the journal.
+	 */
+	public void flush() throws IOException {
+
+		if (pendingIds.isEmpty()) return;
+
+		String batchName = String.format("batch-%06d.trig", nextBatchNumber);
+		File batchFile = new File(directory, batchName);
+		File temporaryFile = new File(directory, batchName + ".tmp");
+		try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile)) {
+			OutputStream output = new BufferedOutputStream(fileOutput, 65536);
+			RDFDataMgr.write(output, pendingReports, RDFFormat.TRIG_BLOCKS);
+			output.flush();
+			fileOutput.getChannel().force(true);
+		}
+		Files.move(temporaryFile.toPath(), batchFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		// The rename must be durable before the batch is recorded in the journal
+		syncDirectory(directory);
+
+		// The identifiers are followed by their number, so that a line truncated by a crash is not taken into account
+		StringBuilder line = new StringBuilder(batchName).append('\t');
+		for (int index = 0; index < pendingIds.size(); index++) line.append((index == 0) ? "" : ",").append(pendingIds.get(index));
+		line.append('\t').append(pendingIds.size()).append('\n');
+		Files.write(journalFile.toPath(), line.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+
+		logger.debug("Batch " + batchName + " written with " + pendingIds.size() + " reports");
+		batchFiles.add(batchName);
+		completed.addAll(pendingIds);
+		nextBatchNumber++;
+		pendingIds.clear();
+		pendingReports.asDatasetGraph().clear();
+	}
+
+	/**
+	 * Sends the content of all the batches written to a stream, in the order in which they were written.
+	 * Each prefix is sent only once, and neither <code>start</code> nor <code>finish</code> are called on the stream.
+	 *
+	 * @param output The destination stream.
+	 */
+	public void replay(StreamRDF output) {
+
+		Map<String, String> prefixesSent = new HashMap<>();
+		StreamRDF batchOutput = new StreamRDFWrapper(output) {
+			@Override
+			public void start() {}
+			@Override
+			public void prefix(String prefix, String iri) {
+				if (!iri.equals(prefixesSent.put(prefix, iri))) super.prefix(prefix, iri);
+			}
+			@Override
+			public void finish() {}
+		};
+		for (String batchName : batchFiles) RDFParser.source(new File(directory, batchName).toPath()).lang(Lang.TRIG).parse(batchOutput);
+	}
+
+	/**
+	 * Deletes a checkpoint directory and its content, typically after the conversion has succeeded and its result has been saved.
+	 *
+	 * @param directory The checkpoint directory.
+	 * @throws IOException In case of problem deleting the files.
+	 */
+	public static void delete(File directory) throws IOException {
+
+		if (!directory.exists()) return;
+		for (File file : directory.listFiles()) Files.delete(file.toPath());
+		Files.delete(directory.toPath());
+	}
+
+	/**
+	 * Reads the journal, retaining the complete lines whose batch file exists.
+	 * The journal is then rewritten with these lines only, so that a line truncated by a crash is not followed by the next lines appended.
+	 */
+	private void readJournal() throws IOException {
+
+		if (!journalFile.exists()) return;
+		StringBuilder validLines = new StringBuilder();
+		for (String line : Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8)) {
+			String[] fields = line.split("\t");
+			if ((fields.length != 3) || !fields[0].matches("batch-[0-9]+\\.trig") || !new File(directory, fields[0]).exists()) continue;
+			List<Integer> batchIds = new ArrayList<>();
+			try {
+				for (String id : fields[1].split(",")) batchIds.add(Integer.parseInt(id));
+				if (batchIds.size() != Integer.parseInt(fields[2])) continue;
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			completed.addAll(batchIds);
+			batchFiles.add(fields[0]);
+			nextBatchNumber = Math.max(nextBatchNumber, Integer.parseInt(fields[0].replaceAll("[^0-9]", "")) + 1);
+			validLines.append(line).append('\n');
+		}
+		writeAtomically(journalFile, validLines.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void writeAtomically(File file, byte[] content) throws IOException {
+
+		File temporaryFile = new File(file.getPath() + ".tmp");
+		Files.write(temporaryFile.toPath(), content);
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory(file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Synchronizes a directory to disk, so that the renames made in it survive a crash.
+	 * Some platforms (Windows) cannot open a directory: the synchronization is then skipped and the renames are only as durable as the file system makes them.
+	 */
+	private static void syncDirectory(File directory) {
+
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			logger.debug("Directory " + directory + " could not be synchronized - " + e.getMessage());
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the names of the batch files of the checkpoint.
+	 *
+	 * @return The names of the batch files, in the order in which they were written.
+	 */
+	public List<String> getBatchFiles() {
+		return Collections.unmodifiableList(batchFiles);
+	}
+}
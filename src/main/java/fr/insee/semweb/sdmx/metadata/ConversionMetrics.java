@@ -0,0 +1,398 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.atlas.json.io.JSWriter;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects timers, counters and histograms on the stages of a conversion run, and records JDK Flight Recorder events around the conversion of each SIMS report.
+ * Timers and histograms keep the count, total, minimum and maximum of the values recorded, and approximate percentiles from exponential buckets.
+ * The metrics are thread-safe, and are listed in the summary and in the JSON export in the order of their creation.
+ *
+ * @author Franck
+ */
+public class ConversionMetrics {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(ConversionMetrics.class);
+
+	/** Names of the stages of the conversion */
+	public static String DATASET_LOAD = "dataset.load";
+	public static String URI_MAPPINGS = "uri.mappings";
+	public static String ASSOCIATIONS = "associations.extraction";
+	public static String REFERENCES = "references.conversion";
+	public static String CODE_MAPPINGS = "code.mappings";
+	public static String REPORT_CONVERSION = "report.conversion";
+	/** Post-processing and writing of the converted reports, measured globally on the output stream of the converter */
+	public static String OUTPUT = "output";
+	/** Post-processing and writing measured separately (see <code>timedStream</code>) */
+	public static String POST_PROCESSING = "post.processing";
+	public static String WRITING = "writing";
+
+	/** Indicates if the JDK Flight Recorder API is available in the running JVM */
+	static final boolean FLIGHT_RECORDER_AVAILABLE = isFlightRecorderAvailable();
+
+	private final Map<String, Histogram> timers = Collections.synchronizedMap(new LinkedHashMap<>());
+	private final Map<String, AtomicLong> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+	private final Map<String, Histogram> histograms = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	/**
+	 * Starts a timer on a stage: the elapsed time is recorded when the timer is closed, typically at the end of a try-with-resources block.
+	 *
+	 * @param stage The name of the stage.
+	 * @return The timer started.
+	 */
+	public Timer startTimer(String stage) {
+		return new Timer(stage, null);
+	}
+
+	/**
+	 * Starts a timer on the conversion of a SIMS report, and a Flight Recorder event if the API is available.
+	 *
+	 * @param documentationId The identifier of the M0 documentation converted.
+	 * @return The timer started.
+	 */
+	public Timer startReportTimer(int documentationId) {
+		return new Timer(REPORT_CONVERSION, FLIGHT_RECORDER_AVAILABLE ? ReportConversionEvent.begin(documentationId) : null);
+	}
+
+	/**
+	 * Records a duration for a stage.
+	 *
+	 * @param stage The name of the stage.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public void recordTime(String stage, long nanos) {
+		timers.computeIfAbsent(stage, name -> new Histogram()).record(nanos);
+	}
+
+	/**
+	 * Adds a value to a counter.
+	 *
+	 * @param counter The name of the counter.
+	 * @param delta The value to add.
+	 */
+	public void increment(String counter, long delta) {
+		counters.computeIfAbsent(counter, name -> new AtomicLong()).addAndGet(delta);
+	}
+
+	/**
+	 * Records a value in a histogram.
+	 *
+	 * @param histogram The name of the histogram.
+	 * @param value The value to record (negative values are counted in the first bucket).
+	 */
+	public void recordValue(String histogram, long value) {
+		histograms.computeIfAbsent(histogram, name -> new Histogram()).record(value);
+	}
+
+	/**
+	 * Returns the statistics of the durations recorded for a stage.
+	 *
+	 * @param stage The name of the stage.
+	 * @return The statistics in nanoseconds, or <code>null</code> if nothing was recorded for the stage.
+	 */
+	public Histogram getTimer(String stage) {
+		return timers.get(stage);
+	}
+
+	/**
+	 * Returns the value of a counter.
+	 *
+	 * @param counter The name of the counter.
+	 * @return The value of the counter, 0 if it was never incremented.
+	 */
+	public long getCounter(String counter) {
+		AtomicLong value = counters.get(counter);
+		return (value == null) ? 0 : value.get();
+	}
+
+	/**
+	 * Returns the statistics of the values recorded in a histogram.
+	 *
+	 * @param histogram The name of the histogram.
+	 * @return The statistics, or <code>null</code> if nothing was recorded in the histogram.
+	 */
+	public Histogram getHistogram(String histogram) {
+		return histograms.get(histogram);
+	}
+
+	/**
+	 * Removes all the metrics recorded.
+	 */
+	public void reset() {
+		timers.clear();
+		counters.clear();
+		histograms.clear();
+	}
+
+	/**
+	 * Returns a stream wrapper that records in a timer the time spent in the wrapped stream, for example the time spent writing or in a post-processing stage.
+	 * Time spent in the stages chained after the wrapped stream is included: to isolate a stage, wrap each stream of the chain with a different stage name
+	 * and subtract the time of the next stage.
+	 *
+	 * @param next The stream to wrap.
+	 * @param stage The name of the stage.
+	 * @return The timed stream.
+	 */
+	public StreamRDF timedStream(StreamRDF next, String stage) {
+		return new TimedStream(next, stage);
+	}
+
+	/**
+	 * Returns a human-readable summary of the metrics, with durations in milliseconds.
+	 *
+	 * @return The summary as a multi-line string.
+	 */
+	public String summary() {
+
+		StringBuilder summary = new StringBuilder("Conversion metrics\n");
+		summary.append(String.format("%-26s %9s %12s %10s %10s %10s %10s %10s%n", "Stage", "Count", "Total (ms)", "Mean", "p50", "p90", "p99", "Max"));
+		for (Map.Entry<String, Histogram> timer : snapshot(timers)) {
+			Histogram stats = timer.getValue();
+			summary.append(String.format("%-26s %9d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n", timer.getKey(), stats.getCount(), stats.getTotal() / 1e6,
+					stats.getMean() / 1e6, stats.getPercentile(50) / 1e6, stats.getPercentile(90) / 1e6, stats.getPercentile(99) / 1e6, stats.getMax() / 1e6));
+		}
+		for (Map.Entry<String, Histogram> histogram : snapshot(histograms)) {
+			Histogram stats = histogram.getValue();
+			summary.append(String.format("%-26s %9d %12d %10.1f %10d %10d %10d %10d%n", histogram.getKey(), stats.getCount(), stats.getTotal(),
+					stats.getMean(), stats.getPercentile(50), stats.getPercentile(90), stats.getPercentile(99), stats.getMax()));
+		}
+		for (Map.Entry<String, AtomicLong> counter : snapshot(counters)) summary.append(String.format("%-26s %9d%n", counter.getKey(), counter.getValue().get()));
+
+		return summary.toString();
+	}
+
+	/**
+	 * Returns the metrics as a JSON object with 'timers' (durations in nanoseconds), 'histograms' and 'counters' members.
+	 *
+	 * @return The JSON object as a string.
+	 */
+	public String toJSON() {
+
+		StringBuilder json = new StringBuilder("{\"timers\":{");
+		appendHistograms(json, snapshot(timers));
+		json.append("},\"histograms\":{");
+		appendHistograms(json, snapshot(histograms));
+		json.append("},\"counters\":{");
+		boolean first = true;
+		for (Map.Entry<String, AtomicLong> counter : snapshot(counters)) {
+			json.append(first ? "" : ",").append(JSWriter.outputQuotedString(counter.getKey())).append(':').append(counter.getValue().get());
+			first = false;
+		}
+		json.append("}}");
+
+		return json.toString();
+	}
+
+	private static void appendHistograms(StringBuilder json, List<Map.Entry<String, Histogram>> histograms) {
+
+		boolean first = true;
+		for (Map.Entry<String, Histogram> histogram : histograms) {
+			Histogram stats = histogram.getValue();
+			json.append(first ? "" : ",").append(JSWriter.outputQuotedString(histogram.getKey())).append(":{");
+			json.append("\"count\":").append(stats.getCount()).append(",\"total\":").append(stats.getTotal()).append(",\"min\":").append(stats.getMin());
+			json.append(",\"max\":").append(stats.getMax()).append(",\"p50\":").append(stats.getPercentile(50)).append(",\"p90\":").append(stats.getPercentile(90));
+			json.append(",\"p99\":").append(stats.getPercentile(99)).append('}');
+			first = false;
+		}
+	}
+
+	/**
+	 * Writes the metrics to a JSON file.
+	 *
+	 * @param jsonFile The file to write.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public void writeJSON(File jsonFile) throws IOException {
+
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(jsonFile.toPath()), StandardCharsets.UTF_8))) {
+			writer.write(toJSON());
+		}
+	}
+
+	/**
+	 * Logs the summary of the metrics and writes them to the JSON file of the configuration, if one is specified.
+	 */
+	public void report() {
+
+		logger.info(summary());
+		if (Configuration.METRICS_JSON_FILE_NAME == null) return;
+		try {
+			writeJSON(new File(Configuration.METRICS_JSON_FILE_NAME));
+			logger.info("Conversion metrics written to " + Configuration.METRICS_JSON_FILE_NAME);
+		} catch (IOException e) {
+			logger.error("Error writing conversion metrics to " + Configuration.METRICS_JSON_FILE_NAME + " - " + e.getMessage());
+		}
+	}
+
+	private static <V> List<Map.Entry<String, V>> snapshot(Map<String, V> metrics) {
+		synchronized (metrics) {
+			return new ArrayList<>(metrics.entrySet());
+		}
+	}
+
+	private static boolean isFlightRecorderAvailable() {
+
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			logger.debug("JDK Flight Recorder API not available, no events will be recorded");
+			return false;
+		}
+	}
+
+	/**
+	 * A timer on a stage, recording the elapsed time when it is stopped or closed.
+	 */
+	public class Timer implements AutoCloseable {
+
+		private final String stage;
+		private final long start = System.nanoTime();
+		/** The Flight Recorder event, typed as <code>Object</code> so that this class can be loaded without the Flight Recorder API */
+		private final Object event;
+		private boolean stopped = false;
+
+		private Timer(String stage, Object event) {
+			this.stage = stage;
+			this.event = event;
+		}
+
+		/**
+		 * Stops the timer and records the elapsed time (subsequent calls have no effect).
+		 *
+		 * @param statementCount For report conversions, the number of statements produced (ignored for other stages).
+		 * @return The elapsed time in nanoseconds.
+		 */
+		public long stop(long statementCount) {
+
+			long elapsed = System.nanoTime() - start;
+			if (stopped) return elapsed;
+			stopped = true;
+			recordTime(stage, elapsed);
+			if (REPORT_CONVERSION.equals(stage)) {
+				increment("reports.converted", 1);
+				recordValue("report.statements", statementCount);
+			}
+			if (event != null) ReportConversionEvent.commit(event, statementCount);
+			return elapsed;
+		}
+
+		@Override
+		public void close() {
+			stop(0);
+		}
+	}
+
+	/**
+	 * Count, total, minimum and maximum of recorded values, with exponential buckets for approximate percentiles (values are within a factor 2 of the result).
+	 */
+	public static class Histogram {
+
+		private final long[] buckets = new long[64];
+		private long count = 0;
+		private long total = 0;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+
+		synchronized void record(long value) {
+
+			buckets[(value <= 0) ? 0 : 64 - Long.numberOfLeadingZeros(value) - 1]++;
+			count++;
+			total += value;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getTotal() {
+			return total;
+		}
+
+		public synchronized long getMin() {
+			return (count == 0) ? 0 : min;
+		}
+
+		public synchronized long getMax() {
+			return (count == 0) ? 0 : max;
+		}
+
+		public synchronized double getMean() {
+			return (count == 0) ? 0 : (double) total / count;
+		}
+
+		/**
+		 * Returns an approximate percentile: the upper bound of the bucket containing it, capped by the maximum.
+		 *
+		 * @param percentile The percentile, between 0 and 100.
+		 * @return The approximate value of the percentile, 0 if no value was recorded.
+		 */
+		public synchronized long getPercentile(double percentile) {
+
+			if (count == 0) return 0;
+			long rank = (long) Math.ceil(count * percentile / 100);
+			long cumulated = 0;
+			for (int bucket = 0; bucket < buckets.length; bucket++) {
+				cumulated += buckets[bucket];
+				if (cumulated >= Math.max(1, rank)) return Math.max(min, Math.min(max, (bucket >= 62) ? Long.MAX_VALUE : (2L << bucket) - 1));
+			}
+			return max;
+		}
+	}
+
+	/**
+	 * Stream wrapper recording the time spent in the wrapped stream.
+	 */
+	private class TimedStream extends StreamRDFWrapper {
+
+		private final String stage;
+
+		TimedStream(StreamRDF next, String stage) {
+			super(next);
+			this.stage = stage;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			long start = System.nanoTime();
+			super.triple(triple);
+			recordTime(stage, System.nanoTime() - start);
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			long start = System.nanoTime();
+			super.quad(quad);
+			recordTime(stage, System.nanoTime() - start);
+		}
+
+		@Override
+		public void finish() {
+			long start = System.nanoTime();
+			super.finish();
+			recordTime(stage, System.nanoTime() - start);
+		}
+	}
+}
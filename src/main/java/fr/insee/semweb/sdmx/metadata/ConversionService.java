@@ -0,0 +1,455 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFWriterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long-running conversion service: an embedded HTTP server converting single resources on demand.
+ * The state needed by the conversions is loaded once and kept in memory, and the responses are cached until one of the source files changes
+ * (which is checked at most every <code>CHECK_INTERVAL</code> milliseconds) or until a reload is requested.
+ * Converted resources are available at <code>/{type}/{id}</code>, in the format given by the <code>format</code> parameter (file extension)
+ * or by the <code>Accept</code> header (Turtle by default). <code>/status</code> returns statistics, and a POST on <code>/reload</code> reloads the state.
+ * The converters rely on the static state of the converter classes, so conversions are made one at a time, whereas cached responses are served concurrently.
+ *
+ * @author Franck
+ */
+public class ConversionService implements AutoCloseable {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(ConversionService.class);
+
+	/** Minimum time in milliseconds between two checks of the source files */
+	public static long CHECK_INTERVAL = 1000;
+	/** Maximum number of responses in the cache */
+	public static int MAX_CACHED_RESPONSES = 5000;
+	/** Number of threads serving the requests */
+	public static int THREADS = 4;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Function<String, Model>> converters = new LinkedHashMap<>();
+	private final List<File> sources = new ArrayList<>();
+	private Runnable loader = () -> {};
+
+	/** Lock held during conversions and loads */
+	private final ReentrantLock conversionLock = new ReentrantLock();
+	/** Serialized responses in access order, synchronized on the map itself */
+	private final LinkedHashMap<String, byte[]> responses = new LinkedHashMap<>(16, 0.75f, true);
+	private volatile String sourceStamps = null;
+	private volatile long lastCheck = 0;
+	private volatile long loadDuration = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+
+	/**
+	 * Creates a conversion service without converters.
+	 *
+	 * @param address The address on which the service will listen (port 0 for any free port).
+	 * @throws IOException In case of problem creating the HTTP server.
+	 */
+	public ConversionService(InetSocketAddress address) throws IOException {
+
+		server = HttpServer.create(address, 0);
+		server.createContext("/", this::handle);
+		executor = Executors.newFixedThreadPool(THREADS);
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Creates the conversion service for M0 documentations, families, series, operations and indicators.
+	 * Documentations are converted to SIMS reports from a partition of the M0 documentation model, the other resources are extracted from the
+	 * conversion of their whole type, which is made on the first request and kept until the next load.
+	 * Identifiers are the M0 identifiers (which are also the identifiers of the SIMS reports).
+	 *
+	 * @param address The address on which the service will listen.
+	 * @param includeReferences If <code>true</code>, the properties of referenced documents and links will be included in the SIMS reports.
+	 * @return The conversion service, not started.
+	 * @throws IOException In case of problem creating the HTTP server.
+	 */
+	public static ConversionService createDefaultService(InetSocketAddress address, boolean includeReferences) throws IOException {
+
+		M0State state = new M0State(includeReferences);
+		return new ConversionService(address)
+			.watch(new File(Configuration.M0_FILE_NAME), new File(Configuration.SIMS_XLSX_FILE_NAME), new File(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME),
+					new File(Configuration.GEO_REFERENCE_FILE_NAME), new File(Configuration.FAMILY_THEMES_XLSX_FILE_NAME),
+					new File(Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME), new File(Configuration.DDS_ID_TO_WEB4G_ID_FILE_NAME),
+					new File(Configuration.SSM_ORGANIZATIONS_FILE_NAME))
+			.setLoader(state::load)
+			.addConverter("documentation", state::convertDocumentation)
+			.addConverter("family", id -> state.convertResource("http://baseUri/familles/famille/", id, M0Converter::convertFamilies))
+			.addConverter("series", id -> state.convertResource("http://baseUri/series/serie/", id, M0Converter::convertSeries))
+			.addConverter("operation", id -> state.convertResource("http://baseUri/operations/operation/", id, M0Converter::convertOperations))
+			.addConverter("indicator", id -> state.convertResource("http://baseUri/indicateurs/indicateur/", id, M0Converter::convertIndicators));
+	}
+
+	/**
+	 * Declares a type of resource served.
+	 *
+	 * @param type The type of resource, which is the first segment of the request paths.
+	 * @param converter The function returning the model of a resource from its identifier, or <code>null</code> if the resource does not exist.
+	 * @return This service.
+	 */
+	public ConversionService addConverter(String type, Function<String, Model> converter) {
+		converters.put(type, converter);
+		return this;
+	}
+
+	/**
+	 * Declares source files whose modification triggers the reload of the state and empties the cache.
+	 *
+	 * @param files The source files.
+	 * @return This service.
+	 */
+	public ConversionService watch(File... files) {
+		sources.addAll(Arrays.asList(files));
+		return this;
+	}
+
+	/**
+	 * Sets the action loading the state used by the converters.
+	 *
+	 * @param loader The action loading the state.
+	 * @return This service.
+	 */
+	public ConversionService setLoader(Runnable loader) {
+		this.loader = loader;
+		return this;
+	}
+
+	/**
+	 * Loads the state and starts the HTTP server.
+	 */
+	public void start() {
+
+		reload();
+		server.start();
+		logger.info("Conversion service listening on port " + getPort() + " for types " + converters.keySet());
+	}
+
+	/**
+	 * Stops the HTTP server.
+	 */
+	@Override
+	public void close() {
+
+		server.stop(0);
+		executor.shutdownNow();
+		logger.info("Conversion service stopped");
+	}
+
+	/**
+	 * Loads the state used by the converters and empties the cache.
+	 */
+	public void reload() {
+		load(false);
+	}
+
+	/**
+	 * Returns the serialized model of a resource, from the cache if possible.
+	 *
+	 * @param type The type of the resource.
+	 * @param id The identifier of the resource.
+	 * @param lang The language of the serialization.
+	 * @return The serialized model, or <code>null</code> if the type is unknown or the resource does not exist.
+	 */
+	public byte[] getResponse(String type, String id, Lang lang) {
+
+		Function<String, Model> converter = converters.get(type);
+		if (converter == null) return null;
+		checkSources();
+
+		String key = type + "/" + id + "|" + lang.getName();
+		byte[] response;
+		synchronized (responses) {
+			response = responses.get(key);
+		}
+		if (response != null) {
+			hits.incrementAndGet();
+			return response;
+		}
+		conversionLock.lock();
+		try {
+			// The response may have been produced while waiting for the lock
+			synchronized (responses) {
+				response = responses.get(key);
+			}
+			if (response != null) {
+				hits.incrementAndGet();
+				return response;
+			}
+			misses.incrementAndGet();
+			long start = System.currentTimeMillis();
+			Model model = converter.apply(id);
+			if (model == null) return null;
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			RDFDataMgr.write(output, model, lang);
+			response = output.toByteArray();
+			logger.debug("Resource " + type + "/" + id + " converted in " + (System.currentTimeMillis() - start) + " ms (" + model.size() + " statements)");
+			// The response is cached while holding the lock, so that a response computed before a load cannot be cached after it
+			synchronized (responses) {
+				responses.put(key, response);
+				Iterator<String> keyIterator = responses.keySet().iterator();
+				while (responses.size() > MAX_CACHED_RESPONSES) {
+					keyIterator.next();
+					keyIterator.remove();
+				}
+			}
+			return response;
+		} finally {
+			conversionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the statistics of the service as a map of names and values.
+	 *
+	 * @return The statistics.
+	 */
+	public Map<String, Object> getStatistics() {
+
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("hits", hits.get());
+		statistics.put("misses", misses.get());
+		synchronized (responses) {
+			statistics.put("cached", responses.size());
+		}
+		statistics.put("loads", loads.get());
+		statistics.put("load-duration", loadDuration);
+		return statistics;
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public List<File> getSources() {
+		return sources;
+	}
+
+	/**
+	 * Reloads the state if a source file has changed since the last load, checking the files at most every <code>CHECK_INTERVAL</code> milliseconds.
+	 */
+	private void checkSources() {
+
+		long now = System.currentTimeMillis();
+		if (now - lastCheck < CHECK_INTERVAL) return;
+		lastCheck = now;
+		if (!currentStamps().equals(sourceStamps)) load(true);
+	}
+
+	/**
+	 * Loads the state and empties the cache.
+	 *
+	 * @param onlyIfChanged If <code>true</code>, the state is not loaded if it was already loaded since the source files changed.
+	 */
+	private void load(boolean onlyIfChanged) {
+
+		conversionLock.lock();
+		try {
+			// The stamps are read before loading, so that a change during the load triggers another load
+			String stamps = currentStamps();
+			if (onlyIfChanged && stamps.equals(sourceStamps)) return;
+			logger.info((sourceStamps == null) ? "Loading conversion state" : "Reloading conversion state");
+			long start = System.currentTimeMillis();
+			loader.run();
+			synchronized (responses) {
+				responses.clear();
+			}
+			sourceStamps = stamps;
+			lastCheck = System.currentTimeMillis();
+			loadDuration = lastCheck - start;
+			loads.incrementAndGet();
+			logger.info("Conversion state loaded in " + loadDuration + " ms");
+		} finally {
+			conversionLock.unlock();
+		}
+	}
+
+	private String currentStamps() {
+
+		StringBuilder stamps = new StringBuilder();
+		for (File source : sources) stamps.append(PipelineOrchestrator.fileStamp(source)).append('\n');
+		return stamps.toString();
+	}
+
+	/**
+	 * Handles a HTTP request.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+
+		try {
+			String[] path = exchange.getRequestURI().getPath().split("/");
+			String method = exchange.getRequestMethod();
+			if ((path.length == 2) && "status".equals(path[1]) && "GET".equals(method)) {
+				StringBuilder status = new StringBuilder();
+				getStatistics().forEach((name, value) -> status.append(name).append(": ").append(value).append('\n'));
+				send(exchange, 200, "text/plain; charset=utf-8", status.toString().getBytes(StandardCharsets.UTF_8));
+			} else if ((path.length == 2) && "reload".equals(path[1]) && "POST".equals(method)) {
+				reload();
+				exchange.sendResponseHeaders(204, -1);
+			} else if ((path.length == 3) && "GET".equals(method)) {
+				Lang lang = requestedLang(exchange);
+				if (lang == null) {
+					send(exchange, 406, "text/plain; charset=utf-8", "No supported RDF format requested".getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+				byte[] response = getResponse(path[1], URLDecoder.decode(path[2], "UTF-8"), lang);
+				if (response == null) exchange.sendResponseHeaders(404, -1);
+				else send(exchange, 200, lang.getContentType().getContentTypeStr() + "; charset=utf-8", response);
+			} else exchange.sendResponseHeaders(404, -1);
+		} catch (Exception e) {
+			logger.error("Error processing request " + exchange.getRequestURI(), e);
+			if (exchange.getResponseCode() == -1) exchange.sendResponseHeaders(500, -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	/**
+	 * Returns the RDF language requested by the <code>format</code> query parameter or by the <code>Accept</code> header.
+	 *
+	 * @return The language requested, Turtle if there is no preference, or <code>null</code> if none of the languages requested can be written.
+	 */
+	private static Lang requestedLang(HttpExchange exchange) {
+
+		String query = exchange.getRequestURI().getQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (parameter.startsWith("format=")) return writableLang(RDFLanguages.fileExtToLang(parameter.substring(7)));
+			}
+		}
+		String accept = exchange.getRequestHeaders().getFirst("Accept");
+		if (accept == null) return Lang.TURTLE;
+		for (String mediaRange : accept.split(",")) {
+			String mediaType = mediaRange.split(";")[0].trim();
+			if (mediaType.equals("*/*") || mediaType.equals("text/*")) return Lang.TURTLE;
+			Lang lang = writableLang(RDFLanguages.contentTypeToLang(mediaType));
+			if (lang != null) return lang;
+		}
+		return null;
+	}
+
+	private static Lang writableLang(Lang lang) {
+		return ((lang == null) || (RDFWriterRegistry.defaultSerialization(lang) == null)) ? null : lang;
+	}
+
+	/**
+	 * Starts the default conversion service.
+	 *
+	 * @param args Options <code>--port n</code> (default 8080), <code>--bind address</code> (default the loopback address, use <code>0.0.0.0</code> to listen on all interfaces)
+	 * and <code>--references</code> (include the documents and links in the SIMS reports).
+	 * @throws IOException In case of problem creating the HTTP server.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int port = 8080;
+		InetAddress bindAddress = InetAddress.getLoopbackAddress();
+		boolean includeReferences = false;
+		for (int index = 0; index < args.length; index++) {
+			if ("--port".equals(args[index])) port = Integer.parseInt(args[++index]);
+			else if ("--bind".equals(args[index])) bindAddress = InetAddress.getByName(args[++index]);
+			else if ("--references".equals(args[index])) includeReferences = true;
+			else throw new IllegalArgumentException("Unknown option " + args[index]);
+		}
+
+		ConversionService service = createDefaultService(new InetSocketAddress(bindAddress, port), includeReferences);
+		if (!bindAddress.isLoopbackAddress()) logger.warn("Conversion service listening on " + bindAddress.getHostAddress() + ", it is reachable from other hosts");
+		Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+		service.start();
+	}
+
+	/**
+	 * The in-memory state of the default service: the M0 dataset and conversion indexes (held by the converter classes),
+	 * the partitions of the M0 documentation model, and the converted models of the other types of resources.
+	 */
+	private static class M0State {
+
+		private final boolean includeReferences;
+		private SortedMap<Integer, Model> documentationPartitions = null;
+		private final Map<String, Model> typeModels = new HashMap<>();
+
+		M0State(boolean includeReferences) {
+			this.includeReferences = includeReferences;
+		}
+
+		void load() {
+
+			// The identifier mappings are read again with the dataset, in case the CSV files changed
+			Configuration.readIdMappings();
+			M0Converter.useDataset(RDFDataMgr.loadDataset(Configuration.M0_FILE_NAME));
+			// The SIMSFr scheme and the geographic reference are read again, in case the files changed
+			M0SIMSConverter.loadConversionState(true, includeReferences);
+			documentationPartitions = M0Extractor.partitionM0DocumentationModel(M0Converter.m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "documentations"));
+			M0Converter.allURIMappings = M0Converter.createURIMappings();
+			typeModels.clear();
+		}
+
+		Model convertDocumentation(String id) {
+
+			Model m0Model;
+			try {
+				m0Model = documentationPartitions.get(Integer.parseInt(id));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			return (m0Model == null) ? null : M0SIMSConverter.convertM0ModelToSIMS(m0Model, includeReferences);
+		}
+
+		Model convertResource(String m0BaseURI, String id, Supplier<Model> typeConverter) {
+
+			String targetURI = M0Converter.allURIMappings.get(m0BaseURI + id);
+			if (targetURI == null) return null;
+			Model typeModel = typeModels.computeIfAbsent(m0BaseURI, uri -> typeConverter.get());
+			Resource targetResource = typeModel.createResource(targetURI);
+			if (!typeModel.contains(targetResource, null)) return null;
+			Model resourceModel = ModelFactory.createDefaultModel().setNsPrefixes(typeModel.getNsPrefixMap());
+			resourceModel.add(typeModel.listStatements(targetResource, null, (RDFNode) null));
+			return resourceModel;
+		}
+	}
+}
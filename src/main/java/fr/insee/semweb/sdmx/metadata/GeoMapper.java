@@ -1,17 +1,17 @@
 package fr.insee.semweb.sdmx.metadata;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import org.apache.jena.query.Dataset;
 import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QueryFactory;
-import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
@@ -19,10 +19,11 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Selector;
 import org.apache.jena.rdf.model.SimpleSelector;
 import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.vocabulary.SKOS;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import fr.insee.semweb.utils.SPARQLClient;
+
 public class GeoMapper {
 
 	final static String SPARQL_ENDPOINT = "http://rdf.insee.fr/sparql";
@@ -60,41 +61,159 @@ public class GeoMapper {
 		return m0CodeToResourceMappings;		
 	}
 
+	/**
+	 * Returns the mappings between the M0 codes of territories and target resources, completing the hard-wired mappings with a geographic reference index.
+	 * M0 codes which are not hard-wired are mapped to the territory of the index, current or suppressed, whose name is the same as their M0 name.
+	 * 
+	 * @param referenceIndex The geographic reference index.
+	 * @param m0CodeNames The M0 names of the territories, keyed by M0 code.
+	 * @return The mappings as a map where the keys are the M0 codes and the values the target resources, sorted on keys.
+	 */
+	public static SortedMap<String, Resource> createM0CodeToURIMappings(GeoReferenceIndex referenceIndex, Map<String, String> m0CodeNames) {
+
+		return createM0CodeToURIMappings(referenceIndex, m0CodeNames, null);
+	}
+
+	/**
+	 * Returns the mappings between the M0 codes of territories and target resources, completing the hard-wired mappings with the exact name matches in a geographic reference index.
+	 * Approximate name matches are not mapped: they are logged and returned as candidates for review.
+	 * 
+	 * @param referenceIndex The geographic reference index.
+	 * @param m0CodeNames The M0 names of the territories, keyed by M0 code.
+	 * @param candidates A map where the approximate matches will be put, keyed by M0 code (can be <code>null</code>).
+	 * @return The mappings as a map where the keys are the M0 codes and the values the target resources, sorted on keys.
+	 */
+	public static SortedMap<String, Resource> createM0CodeToURIMappings(GeoReferenceIndex referenceIndex, Map<String, String> m0CodeNames, Map<String, TerritoryNameMatcher.Match> candidates) {
+
+		SortedMap<String, Resource> m0CodeToResourceMappings = createM0CodeToURIMappings();
+		TerritoryNameMatcher matcher = new TerritoryNameMatcher(referenceIndex);
+		for (Map.Entry<String, String> m0CodeName : m0CodeNames.entrySet()) {
+			if (m0CodeToResourceMappings.containsKey(m0CodeName.getKey())) continue;
+			TerritoryNameMatcher.Match match = matcher.match(m0CodeName.getValue(), TerritoryNameMatcher.DEFAULT_THRESHOLD);
+			if (match == null) logger.debug("No territory found for M0 code " + m0CodeName.getKey() + " (" + m0CodeName.getValue() + ")");
+			else if (match.isExact()) {
+				logger.debug("M0 code " + m0CodeName.getKey() + " (" + m0CodeName.getValue() + ") mapped to " + match);
+				m0CodeToResourceMappings.put(m0CodeName.getKey(), ResourceFactory.createResource(match.getTerritory().getURI()));
+			} else {
+				logger.warn("M0 code " + m0CodeName.getKey() + " (" + m0CodeName.getValue() + ") not mapped, candidate for review: " + match);
+				if (candidates != null) candidates.put(m0CodeName.getKey(), match);
+			}
+		}
+		return m0CodeToResourceMappings;
+	}
+
+	/**
+	 * Returns the mappings between the M0 codes of territories and target resources used for the conversion of the REF_AREA attribute.
+	 * If the geographic reference snapshot is available, the hard-wired mappings are completed by matching the names of the CL_AREA codes.
+	 * 
+	 * @param m0Dataset The M0 dataset.
+	 * @return The mappings as a map where the keys are the M0 codes and the values the target resources, sorted on keys.
+	 */
+	public static SortedMap<String, Resource> createM0CodeToURIMappings(Dataset m0Dataset) {
+
+		File snapshotFile = new File(Configuration.GEO_REFERENCE_FILE_NAME);
+		if (!snapshotFile.exists()) {
+			logger.warn("Geographic reference snapshot " + snapshotFile.getAbsolutePath() + " not found, only hard-wired territory mappings will be used");
+			return createM0CodeToURIMappings();
+		}
+		try {
+			return createM0CodeToURIMappings(GeoReferenceIndex.fromSnapshot(snapshotFile), createM0GeoNameCodeMappings(m0Dataset));
+		} catch (IOException e) {
+			logger.error("Error reading geographic reference snapshot, only hard-wired territory mappings will be used - " + e.getMessage());
+			return createM0CodeToURIMappings();
+		}
+	}
+
+	/**
+	 * Returns the geographic reference index read from the snapshot file, the snapshot being created from the RDF endpoint if it does not exist or if a refresh is requested.
+	 * 
+	 * @param refresh If <code>true</code>, the snapshot is refreshed from the RDF endpoint.
+	 * @return The geographic reference index.
+	 * @throws IOException In case of problem reading or writing the snapshot.
+	 */
+	public static GeoReferenceIndex loadReferenceIndex(boolean refresh) throws IOException {
+
+		return loadReferenceIndex(new File(Configuration.GEO_REFERENCE_FILE_NAME), refresh);
+	}
+
+	/**
+	 * Returns the geographic reference index read from a snapshot file, the snapshot being created from the RDF endpoint if it does not exist or if a refresh is requested.
+	 * 
+	 * @param snapshotFile The snapshot file.
+	 * @param refresh If <code>true</code>, the snapshot is refreshed from the RDF endpoint.
+	 * @return The geographic reference index.
+	 * @throws IOException In case of problem reading or writing the snapshot.
+	 */
+	public static GeoReferenceIndex loadReferenceIndex(File snapshotFile, boolean refresh) throws IOException {
+
+		if (snapshotFile.exists() && !refresh) return GeoReferenceIndex.fromSnapshot(snapshotFile);
+
+		System.setProperty("http.proxyHost", "proxy-rie.http.insee.fr");
+		System.setProperty("http.proxyPort", "8080");
+
+		try (SPARQLClient client = SPARQLClient.forEndpoint(SPARQL_ENDPOINT, 4, 0)) {
+			return GeoReferenceIndex.load(snapshotFile, client, true);
+		}
+	}
+
 	/**
 	 * Returns the mappings between the M0 names of territories (TITLE attribute of the CL_AREA codes) and target URIs.
 	 * 
-	 * @return The mappings as a map where the keys are the M0 names and the values the target URIs, sorted on keys.
+	 * @return The mappings as a map where the keys are the M0 names and the values the target URIs, sorted on keys, or <code>null</code> if the geographic reference is not available.
 	 */
 	public static SortedMap<String, String> createGeoURIMappings() {
-		return null;
+
+		try {
+			M0Converter.readDataset();
+			return createGeoURIMappings(M0Converter.m0Dataset, loadReferenceIndex(false));
+		} catch (IOException e) {
+			logger.error("Geographic reference not available - " + e.getMessage());
+			return null;
+		}
 	}
 
 	/**
-	 * Returns the mappings between the M0 names and codes of territories (TITLE and CODE_VALUE attributes).
+	 * Returns the mappings between the M0 names of territories (TITLE attribute of the CL_AREA codes) and the URIs of the territories of a reference index with the same name.
+	 * Approximate name matches are only logged as candidates for review.
 	 * 
-	 * @return The mappings as a map where the keys are the M0 names and the values are the M0 codes, sorted on keys.
+	 * @param m0Dataset The M0 dataset.
+	 * @param referenceIndex The geographic reference index.
+	 * @return The mappings as a map where the keys are the M0 names and the values the target URIs, sorted on keys (names without exact match are omitted).
+	 */
+	public static SortedMap<String, String> createGeoURIMappings(Dataset m0Dataset, GeoReferenceIndex referenceIndex) {
+
+		SortedMap<String, String> geoURIMappings = new TreeMap<>();
+		TerritoryNameMatcher matcher = new TerritoryNameMatcher(referenceIndex);
+		for (String m0Name : createM0GeoNameCodeMappings(m0Dataset).values()) {
+			TerritoryNameMatcher.Match match = matcher.match(m0Name, TerritoryNameMatcher.DEFAULT_THRESHOLD);
+			if (match == null) logger.warn("No territory found for M0 name " + m0Name);
+			else if (match.isExact()) geoURIMappings.put(m0Name, match.getTerritory().getURI());
+			else logger.warn("M0 name " + m0Name + " not mapped, candidate for review: " + match);
+		}
+		return geoURIMappings;
+	}
+
+	/**
+	 * Returns the mappings between the M0 codes and names of territories (CODE_VALUE and TITLE attributes).
+	 * 
+	 * @return The mappings as a map where the keys are the M0 codes and the values are the M0 names, sorted on keys.
 	 */
 	public static SortedMap<String, String> createM0GeoNameCodeMappings() {
 
+		M0Converter.readDataset();
+		return createM0GeoNameCodeMappings(M0Converter.m0Dataset);
+	}
+
+	/**
+	 * Returns the mappings between the M0 codes and names of territories, read in the CL_AREA code list of a M0 dataset.
+	 * 
+	 * @param m0Dataset The M0 dataset.
+	 * @return The mappings as a map where the keys are the M0 codes and the values are the M0 (French) names, sorted on keys.
+	 */
+	public static SortedMap<String, String> createM0GeoNameCodeMappings(Dataset m0Dataset) {
+
 		SortedMap<String, String> m0GeoNameCodeMappings = new TreeMap<>();
-		Model codeListsModel = M0Converter.convertCodeLists();
-		// Get the M0 resource for the CL_AREA code list
-		List<Resource> m0CLAreaResources = new ArrayList<>();
-		codeListsModel.listStatements(null, SKOS.notation, "CL_AREA").forEachRemaining(statement -> m0CLAreaResources.add(statement.getSubject()));
-		if (m0CLAreaResources.size() != 1) logger.error("There should be exactly one code list with notation CL_AREA, but found " + m0CLAreaResources.size());
-		else {
-			// Get all the code URIs
-			Resource m0CLAreaResource = m0CLAreaResources.get(0);
-			m0CLAreaResources.clear();
-			codeListsModel.listSubjectsWithProperty(SKOS.inScheme, m0CLAreaResource).forEachRemaining(resource -> m0CLAreaResources.add(resource));
-			// Now for each code get the notation and French label
-			for (Resource codeResource : m0CLAreaResources) {
-				String code = codeResource.listProperties(SKOS.notation).toList().get(0).getObject().toString();
-				String label = codeResource.listProperties(SKOS.prefLabel, "fr").toList().get(0).getObject().asLiteral().getLexicalForm();
-				m0GeoNameCodeMappings.put(code, label);
-			}
-		}
-		codeListsModel.close();
+		M0Extractor.extractCodeListLabels(m0Dataset, "CL_AREA").forEach((code, labels) -> m0GeoNameCodeMappings.put(code, labels[0]));
 		return m0GeoNameCodeMappings;
 	}
 
@@ -124,28 +243,38 @@ public class GeoMapper {
 
 	/**
 	 * Queries the RDF endpoint for the mappings between territory names and URIs.
+	 * For offline use, the same mappings are returned by <code>GeoReferenceIndex.getNameURIMappings</code>.
 	 * 
 	 * @return The mappings as a map where the keys are the territory names and their URIs, sorted on keys.
 	 */
 	public static SortedMap<String, String> queryNameURIMappings() {
 
+		System.setProperty("http.proxyHost", "proxy-rie.http.insee.fr");
+		System.setProperty("http.proxyPort", "8080");
+
+		try (SPARQLClient client = SPARQLClient.forEndpoint(SPARQL_ENDPOINT, 4, 0)) {
+			return queryNameURIMappings(client);
+		}
+	}
+
+	/**
+	 * Queries through a SPARQL client the mappings between territory names and URIs.
+	 * 
+	 * @param client The SPARQL client.
+	 * @return The mappings as a map where the keys are the territory names and their URIs, sorted on keys.
+	 */
+	public static SortedMap<String, String> queryNameURIMappings(SPARQLClient client) {
+
 		Query query = QueryFactory.create(QUERY_STRING);
 		String var1 = query.getProjectVars().get(0).getVarName();
 		String var2 = query.getProjectVars().get(1).getVarName();
 
 		SortedMap<String, String> labelURIMappings = new TreeMap<>();
-
-		System.setProperty("http.proxyHost", "proxy-rie.http.insee.fr");
-		System.setProperty("http.proxyPort", "8080");
-		
-		try (QueryExecution execution = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query)) {
-			ResultSet results = execution.execSelect();
-			results.forEachRemaining(solution -> {
-				String uri = solution.get(var1).toString();
-				String name = solution.get(var2).toString();
-				String previousValue = labelURIMappings.put(name, uri);
-				if (previousValue != null) logger.warn("Multiple URIs for name " + name + ": previous value " + previousValue + " replaced by " + uri);
-			});
+		for (QuerySolution solution : SPARQLClient.await(client.select(QUERY_STRING))) {
+			String uri = solution.get(var1).toString();
+			String name = solution.get(var2).toString();
+			String previousValue = labelURIMappings.put(name, uri);
+			if (previousValue != null) logger.warn("Multiple URIs for name " + name + ": previous value " + previousValue + " replaced by " + uri);
 		}
 		return labelURIMappings;
 	}
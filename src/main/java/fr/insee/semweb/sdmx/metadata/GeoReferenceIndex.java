@@ -0,0 +1,402 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.insee.semweb.utils.SPARQLClient;
+import fr.insee.semweb.utils.Utils;
+
+/**
+ * In-memory index of the geographic reference territories, allowing to map territory codes and names to URIs without querying the SPARQL endpoint.
+ * The index is loaded from a RDF extract (territories described with the Insee geographic ontology) or from a CSV snapshot,
+ * and can be refreshed from the endpoint. Names are looked up after normalization (case, diacritics and punctuation are ignored) in a trie.
+ * Suppressed territories are kept in the index with their validity dates, since M0 documentations can refer to former territories;
+ * codes are only indexed for current territories.
+ *
+ * @author Franck
+ */
+public class GeoReferenceIndex {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(GeoReferenceIndex.class);
+
+	/** Namespace of the Insee geographic ontology */
+	public static String IGEO_NS = "http://rdf.insee.fr/def/geo#";
+
+	/** Value of the suppression date of the territories suppressed at an unknown date */
+	public static final String UNKNOWN_DATE = "?";
+
+	/** Query retrieving the current and suppressed territories from the SPARQL endpoint */
+	final static String REFRESH_QUERY_STRING = "PREFIX igeo:<" + IGEO_NS + "> " +
+			"SELECT ?territoire ?type ?code ?nom ?creation ?suppression ?evenementSuppression WHERE {?territoire a ?type ; igeo:nom ?nom . " +
+			"OPTIONAL {?territoire igeo:codeINSEE ?code} OPTIONAL {?territoire igeo:creation/igeo:date ?creation} " +
+			"OPTIONAL {?territoire igeo:suppression ?evenementSuppression OPTIONAL {?evenementSuppression igeo:date ?suppression}}} " +
+			"VALUES ?type {igeo:Region igeo:Departement}";
+
+	/** Header of the CSV snapshots */
+	final static String SNAPSHOT_HEADER = "uri,type,code,creation,suppression,name";
+
+	/** Territories indexed by type and code */
+	private final Map<String, Territory> codeIndex = new HashMap<>();
+	/** Trie of the normalized names of the territories */
+	private final TrieNode nameTrie = new TrieNode();
+	private final List<Territory> territories = new ArrayList<>();
+
+	/**
+	 * Creates an index from a file, which can be a CSV snapshot (extension '.csv') or a RDF file in any format recognized by Jena.
+	 *
+	 * @param referenceFile The file containing the geographic reference.
+	 * @return The geographic reference index.
+	 * @throws IOException In case of problem reading the file.
+	 */
+	public static GeoReferenceIndex fromFile(File referenceFile) throws IOException {
+
+		if (referenceFile.getName().toLowerCase().endsWith(".csv")) return fromSnapshot(referenceFile);
+		return fromModel(RDFDataMgr.loadModel(referenceFile.getAbsolutePath()));
+	}
+
+	/**
+	 * Creates an index from a model describing territories with the Insee geographic ontology, with the creation and suppression dates of the territories.
+	 *
+	 * @param geoModel The model containing the territories.
+	 * @return The geographic reference index.
+	 */
+	public static GeoReferenceIndex fromModel(Model geoModel) {
+
+		GeoReferenceIndex index = new GeoReferenceIndex();
+		Property nameProperty = geoModel.createProperty(IGEO_NS + "nom");
+		Property codeProperty = geoModel.createProperty(IGEO_NS + "codeINSEE");
+		Property creationProperty = geoModel.createProperty(IGEO_NS + "creation");
+		Property suppressionProperty = geoModel.createProperty(IGEO_NS + "suppression");
+		for (Resource territory : geoModel.listSubjectsWithProperty(nameProperty).toList()) {
+			if (!territory.isURIResource()) continue;
+			Statement typeStatement = territory.getProperty(RDF.type);
+			Statement codeStatement = territory.getProperty(codeProperty);
+			String type = ((typeStatement == null) || !typeStatement.getObject().isURIResource()) ? null : typeStatement.getResource().getLocalName();
+			String code = (codeStatement == null) ? null : codeStatement.getObject().asLiteral().getLexicalForm();
+			String name = territory.getProperty(nameProperty).getObject().asLiteral().getLexicalForm();
+			index.add(new Territory(territory.getURI(), type, code, name, getEventDate(territory, creationProperty), getEventDate(territory, suppressionProperty)));
+		}
+		logger.info("Geographic reference index created with " + index.size() + " territories");
+
+		return index;
+	}
+
+	/**
+	 * Returns the date of the event (creation or suppression) of a territory, <code>UNKNOWN_DATE</code> if the event has no date, or <code>null</code> if there is no event.
+	 */
+	private static String getEventDate(Resource territory, Property eventProperty) {
+
+		Statement eventStatement = territory.getProperty(eventProperty);
+		if (eventStatement == null) return null;
+		if (eventStatement.getObject().isLiteral()) return eventStatement.getLiteral().getLexicalForm();
+		Statement dateStatement = eventStatement.getResource().getProperty(territory.getModel().createProperty(IGEO_NS + "date"));
+		return ((dateStatement == null) || !dateStatement.getObject().isLiteral()) ? UNKNOWN_DATE : dateStatement.getLiteral().getLexicalForm();
+	}
+
+	/**
+	 * Creates an index from a CSV snapshot written by <code>writeSnapshot</code>.
+	 * Snapshots written without validity dates (columns URI, type, code and name) are also accepted: all their territories are considered current.
+	 *
+	 * @param snapshotFile The CSV snapshot file.
+	 * @return The geographic reference index.
+	 * @throws IOException In case of problem reading the file.
+	 */
+	public static GeoReferenceIndex fromSnapshot(File snapshotFile) throws IOException {
+
+		GeoReferenceIndex index = new GeoReferenceIndex();
+		List<String> lines = Files.readAllLines(snapshotFile.toPath(), StandardCharsets.UTF_8);
+		boolean withDates = !lines.isEmpty() && lines.get(0).equals(SNAPSHOT_HEADER);
+		for (String line : lines) {
+			// Columns are URI, type, code, creation and suppression dates and name, the name being last since it can contain commas
+			String[] fields = line.split(",", withDates ? 6 : 4);
+			if ((fields.length < (withDates ? 6 : 4)) || !fields[0].startsWith("http")) continue;
+			if (withDates) index.add(new Territory(fields[0], StringUtils.trimToNull(fields[1]), StringUtils.trimToNull(fields[2]), fields[5],
+					StringUtils.trimToNull(fields[3]), StringUtils.trimToNull(fields[4])));
+			else index.add(new Territory(fields[0], StringUtils.trimToNull(fields[1]), StringUtils.trimToNull(fields[2]), fields[3], null, null));
+		}
+		logger.info("Geographic reference index read from " + snapshotFile.getAbsolutePath() + " with " + index.size() + " territories");
+
+		return index;
+	}
+
+	/**
+	 * Creates an index by querying the current and suppressed territories on a SPARQL endpoint.
+	 *
+	 * @param client The SPARQL client.
+	 * @return The geographic reference index.
+	 */
+	public static GeoReferenceIndex fromEndpoint(SPARQLClient client) {
+
+		GeoReferenceIndex index = new GeoReferenceIndex();
+		Set<String> territoryURIs = new HashSet<>();
+		for (QuerySolution solution : SPARQLClient.await(client.select(REFRESH_QUERY_STRING))) {
+			// Territories with several names, codes or events are only taken once
+			if (!territoryURIs.add(solution.getResource("territoire").getURI())) continue;
+			String type = solution.getResource("type").getLocalName();
+			RDFNode code = solution.get("code");
+			RDFNode creation = solution.get("creation");
+			RDFNode suppression = solution.get("suppression");
+			String suppressionDate = (suppression != null) ? suppression.asLiteral().getLexicalForm() : (solution.contains("evenementSuppression") ? UNKNOWN_DATE : null);
+			index.add(new Territory(solution.getResource("territoire").getURI(), type, (code == null) ? null : code.asLiteral().getLexicalForm(), solution.getLiteral("nom").getLexicalForm(),
+					(creation == null) ? null : creation.asLiteral().getLexicalForm(), suppressionDate));
+		}
+		logger.info("Geographic reference index queried with " + index.size() + " territories");
+
+		return index;
+	}
+
+	/**
+	 * Returns the index read from a snapshot file, or refreshes the snapshot from the SPARQL endpoint if it does not exist or if a refresh is requested.
+	 *
+	 * @param snapshotFile The CSV snapshot file.
+	 * @param client The SPARQL client used for refreshing the snapshot (can be <code>null</code> if no refresh is needed).
+	 * @param refresh If <code>true</code>, the snapshot is refreshed even if it exists.
+	 * @return The geographic reference index.
+	 * @throws IOException In case of problem reading or writing the snapshot.
+	 */
+	public static GeoReferenceIndex load(File snapshotFile, SPARQLClient client, boolean refresh) throws IOException {
+
+		if (snapshotFile.exists() && !refresh) return fromSnapshot(snapshotFile);
+		if (client == null) throw new IOException("Snapshot file " + snapshotFile.getAbsolutePath() + " cannot be refreshed without SPARQL client");
+		GeoReferenceIndex index = fromEndpoint(client);
+		index.writeSnapshot(snapshotFile);
+
+		return index;
+	}
+
+	/**
+	 * Writes the index as a CSV snapshot, replacing atomically any existing snapshot.
+	 *
+	 * @param snapshotFile The CSV snapshot file.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public void writeSnapshot(File snapshotFile) throws IOException {
+
+		File temporaryFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(SNAPSHOT_HEADER);
+			writer.newLine();
+			for (Territory territory : territories) {
+				writer.write(territory.uri + "," + StringUtils.defaultString(territory.type) + "," + StringUtils.defaultString(territory.code) + ","
+						+ StringUtils.defaultString(territory.creationDate) + "," + StringUtils.defaultString(territory.suppressionDate) + "," + territory.name);
+				writer.newLine();
+			}
+		}
+		Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		logger.info("Geographic reference snapshot written to " + snapshotFile.getAbsolutePath());
+	}
+
+	/**
+	 * Adds a territory to the index.
+	 *
+	 * @param territory The territory to add.
+	 */
+	public void add(Territory territory) {
+
+		territories.add(territory);
+		// Codes of suppressed territories can have been reused
+		if ((territory.code != null) && !territory.isSuppressed()) codeIndex.put(territory.type + "/" + territory.code, territory);
+		TrieNode node = nameTrie;
+		for (char character : normalize(territory.name).toCharArray()) node = node.children.computeIfAbsent(character, key -> new TrieNode());
+		node.territories.add(territory);
+	}
+
+	/**
+	 * Returns the current territory of a given type with a given code.
+	 *
+	 * @param type The type of the territory (local name in the geographic ontology, for example 'Region').
+	 * @param code The code of the territory.
+	 * @return The territory, or <code>null</code> if there is none.
+	 */
+	public Territory lookupCode(String type, String code) {
+		return codeIndex.get(type + "/" + code);
+	}
+
+	/**
+	 * Returns the territories, current or suppressed, whose normalized name is equal to the normalized name given.
+	 *
+	 * @param name The name of the territory.
+	 * @return The list of territories with this name, possibly empty.
+	 */
+	public List<Territory> lookupName(String name) {
+
+		TrieNode node = findNode(normalize(name));
+		return (node == null) ? Collections.emptyList() : Collections.unmodifiableList(node.territories);
+	}
+
+	/**
+	 * Returns the territories whose normalized name starts with the normalized prefix given.
+	 *
+	 * @param prefix The beginning of the name.
+	 * @return The list of territories whose names start with the prefix, possibly empty.
+	 */
+	public List<Territory> lookupNamePrefix(String prefix) {
+
+		List<Territory> results = new ArrayList<>();
+		TrieNode node = findNode(normalize(prefix));
+		if (node != null) node.collect(results);
+		return results;
+	}
+
+	/**
+	 * Returns the mappings between the names and URIs of the current territories, as returned by <code>GeoMapper.queryNameURIMappings</code>.
+	 *
+	 * @return The mappings as a map where the keys are the territory names and their URIs, sorted on keys.
+	 */
+	public SortedMap<String, String> getNameURIMappings() {
+
+		SortedMap<String, String> nameURIMappings = new TreeMap<>();
+		for (Territory territory : territories) {
+			if (territory.isSuppressed()) continue;
+			String previousValue = nameURIMappings.put(territory.name, territory.uri);
+			if (previousValue != null) logger.warn("Multiple URIs for name " + territory.name + ": previous value " + previousValue + " replaced by " + territory.uri);
+		}
+		return nameURIMappings;
+	}
+
+	/**
+	 * Returns the list of all territories in the index, current or suppressed.
+	 *
+	 * @return The list of territories.
+	 */
+	public List<Territory> getTerritories() {
+		return Collections.unmodifiableList(territories);
+	}
+
+	/**
+	 * Returns the number of territories in the index, current or suppressed.
+	 *
+	 * @return The number of territories.
+	 */
+	public int size() {
+		return territories.size();
+	}
+
+	/**
+	 * Normalizes a territory name: diacritics are removed, case is lowered and sequences of characters other than letters and digits are replaced by a space.
+	 *
+	 * @param name The name to normalize.
+	 * @return The normalized name.
+	 */
+	public static String normalize(String name) {
+
+		if (name == null) return "";
+		return Utils.removeDiacritics(name).toLowerCase().replaceAll("[^a-z0-9]+", " ").trim();
+	}
+
+	/**
+	 * Returns the trie node corresponding to a normalized key, or <code>null</code> if there is none.
+	 */
+	private TrieNode findNode(String key) {
+
+		TrieNode node = nameTrie;
+		for (int position = 0; (position < key.length()) && (node != null); position++) node = node.children.get(key.charAt(position));
+		return node;
+	}
+
+	/**
+	 * A territory of the geographic reference.
+	 */
+	public static class Territory {
+
+		private final String uri;
+		private final String type;
+		private final String code;
+		private final String name;
+		private final String creationDate;
+		private final String suppressionDate;
+
+		/**
+		 * Creates a territory.
+		 *
+		 * @param uri The URI of the territory.
+		 * @param type The type of the territory (local name in the geographic ontology).
+		 * @param code The code of the territory, or <code>null</code>.
+		 * @param name The name of the territory.
+		 * @param creationDate The creation date of the territory, or <code>null</code> if unknown.
+		 * @param suppressionDate The suppression date of the territory, <code>UNKNOWN_DATE</code> if it was suppressed at an unknown date, or <code>null</code> if it is current.
+		 */
+		public Territory(String uri, String type, String code, String name, String creationDate, String suppressionDate) {
+			this.uri = uri;
+			this.type = type;
+			this.code = code;
+			this.name = name;
+			this.creationDate = creationDate;
+			this.suppressionDate = suppressionDate;
+		}
+
+		public String getURI() {
+			return uri;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getCreationDate() {
+			return creationDate;
+		}
+
+		public String getSuppressionDate() {
+			return suppressionDate;
+		}
+
+		public boolean isSuppressed() {
+			return suppressionDate != null;
+		}
+
+		@Override
+		public String toString() {
+			String validity = isSuppressed() ? ", " + StringUtils.defaultString(creationDate) + "/" + suppressionDate : "";
+			return name + " (" + type + " " + code + validity + ") - " + uri;
+		}
+	}
+
+	/**
+	 * A node of the trie of normalized names.
+	 */
+	private static class TrieNode {
+
+		final Map<Character, TrieNode> children = new TreeMap<>();
+		final List<Territory> territories = new ArrayList<>();
+
+		void collect(List<Territory> results) {
+			results.addAll(territories);
+			for (TrieNode child : children.values()) child.collect(results);
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.insee.semweb.utils.GraphDiff;
+
+/**
+ * Publishes the named graphs produced by the conversion (SIMS reports, operations...) as deltas with the previous publication.
+ * The publisher keeps in a state directory a manifest with the fingerprint of each graph published and a snapshot of its canonical statements.
+ * Only the graphs whose fingerprint has changed are compared with their snapshot, and the differences are expressed as SPARQL Update requests
+ * or as an RDF Patch. The state is only updated once the deltas have been applied.
+ *
+ * @author Franck
+ */
+public class GraphPublisher {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(GraphPublisher.class);
+
+	/** Name of the manifest file in the state directory */
+	public static String MANIFEST_FILE_NAME = "manifest.properties";
+
+	/** Possible changes of a graph between two publications */
+	public enum ChangeType {
+		ADDED, MODIFIED, REMOVED
+	}
+
+	private final File stateDirectory;
+	private final File snapshotDirectory;
+	private final Properties manifest = new Properties();
+
+	/**
+	 * Creates a publisher using the state saved in a directory by the previous publications.
+	 *
+	 * @param stateDirectory The directory containing the manifest and snapshots (created if necessary).
+	 * @throws IOException In case of problem reading the manifest.
+	 */
+	public GraphPublisher(File stateDirectory) throws IOException {
+
+		this.stateDirectory = stateDirectory;
+		this.snapshotDirectory = new File(stateDirectory, "snapshots");
+		File manifestFile = new File(stateDirectory, MANIFEST_FILE_NAME);
+		if (manifestFile.exists()) {
+			try (Reader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+				manifest.load(reader);
+			}
+		}
+	}
+
+	/**
+	 * Computes the changes between the named graphs of a dataset and the previous publication.
+	 *
+	 * @param dataset The dataset containing the graphs to publish.
+	 * @param complete If <code>true</code>, the dataset contains all the graphs to publish and the graphs previously published that are missing are removed.
+	 * @return The list of changes, in the order of the graph URIs.
+	 * @throws IOException In case of problem reading the snapshots.
+	 */
+	public List<GraphDelta> computeDeltas(Dataset dataset, boolean complete) throws IOException {
+
+		List<GraphDelta> deltas = new ArrayList<>();
+		TreeSet<String> graphNames = new TreeSet<>();
+		dataset.listNames().forEachRemaining(graphNames::add);
+		for (String graphName : graphNames) {
+			List<String> statements = GraphDiff.canonicalStatements(dataset.getNamedModel(graphName).getGraph());
+			String fingerprint = fingerprint(statements);
+			String previousFingerprint = manifest.getProperty(graphName);
+			if (fingerprint.equals(previousFingerprint)) continue;
+			List<String> previousStatements = (previousFingerprint == null) ? Collections.emptyList() : readSnapshot(graphName);
+			GraphDelta delta = new GraphDelta(graphName, (previousFingerprint == null) ? ChangeType.ADDED : ChangeType.MODIFIED, fingerprint, statements);
+			// Both lists are sorted: a merge gives the removed and added statements
+			int oldIndex = 0, newIndex = 0;
+			while (oldIndex < previousStatements.size() || newIndex < statements.size()) {
+				int comparison = (oldIndex == previousStatements.size()) ? 1 : (newIndex == statements.size()) ? -1 : previousStatements.get(oldIndex).compareTo(statements.get(newIndex));
+				if (comparison == 0) {
+					oldIndex++;
+					newIndex++;
+				}
+				else if (comparison < 0) delta.removed.add(previousStatements.get(oldIndex++));
+				else delta.added.add(statements.get(newIndex++));
+			}
+			deltas.add(delta);
+		}
+		if (complete) {
+			for (String graphName : new TreeSet<>(manifest.stringPropertyNames())) {
+				if (graphNames.contains(graphName)) continue;
+				GraphDelta delta = new GraphDelta(graphName, ChangeType.REMOVED, null, Collections.emptyList());
+				delta.removed.addAll(readSnapshot(graphName));
+				deltas.add(delta);
+			}
+		}
+		logger.info(deltas.size() + " graphs changed out of " + graphNames.size() + " graphs published");
+		return deltas;
+	}
+
+	/**
+	 * Records the changes as published: the manifest and the snapshots are updated.
+	 *
+	 * @param deltas The changes that have been applied to the target store.
+	 * @throws IOException In case of problem writing the state.
+	 */
+	public void commit(List<GraphDelta> deltas) throws IOException {
+
+		snapshotDirectory.mkdirs();
+		for (GraphDelta delta : deltas) {
+			File snapshotFile = snapshotFile(delta.graphName);
+			if (delta.type == ChangeType.REMOVED) {
+				manifest.remove(delta.graphName);
+				snapshotFile.delete();
+			} else {
+				File temporaryFile = new File(snapshotFile.getPath() + ".tmp");
+				Files.write(temporaryFile.toPath(), delta.statements, StandardCharsets.UTF_8);
+				Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				manifest.setProperty(delta.graphName, delta.fingerprint);
+			}
+		}
+		// The manifest is written last, so that an interrupted commit only causes graphs to be compared again
+		File manifestFile = new File(stateDirectory, MANIFEST_FILE_NAME);
+		File temporaryFile = new File(stateDirectory, MANIFEST_FILE_NAME + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+			manifest.store(writer, "Fingerprints of the published graphs");
+		}
+		Files.move(temporaryFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Publishes the changes of a dataset to a SPARQL endpoint (or any RDF connection) and records them as published.
+	 *
+	 * @param dataset The dataset containing the graphs to publish.
+	 * @param complete If <code>true</code>, the graphs previously published that are missing from the dataset are removed.
+	 * @param connection The connection to the target store.
+	 * @return The changes published.
+	 * @throws IOException In case of problem reading or writing the state.
+	 */
+	public List<GraphDelta> publish(Dataset dataset, boolean complete, RDFConnection connection) throws IOException {
+
+		List<GraphDelta> deltas = computeDeltas(dataset, complete);
+		if (!deltas.isEmpty()) {
+			connection.update(toSPARQLUpdate(deltas));
+			commit(deltas);
+		}
+		return deltas;
+	}
+
+	/**
+	 * Publishes the changes of a dataset either to a SPARQL endpoint or to a file, and records them as published.
+	 *
+	 * @param dataset The dataset containing the graphs to publish.
+	 * @param complete If <code>true</code>, the graphs previously published that are missing from the dataset are removed.
+	 * @param target The SPARQL update endpoint URL, or the file where the changes are written (RDF Patch if its extension is <code>.rdfp</code>, SPARQL Update otherwise).
+	 * @return The changes published.
+	 * @throws IOException In case of problem reading or writing the state or the output file.
+	 */
+	public List<GraphDelta> publish(Dataset dataset, boolean complete, String target) throws IOException {
+
+		if (target.startsWith("http://") || target.startsWith("https://")) {
+			try (RDFConnection connection = RDFConnectionFactory.connect(target)) {
+				return publish(dataset, complete, connection);
+			}
+		}
+		List<GraphDelta> deltas = computeDeltas(dataset, complete);
+		try (Writer writer = Files.newBufferedWriter(new File(target).toPath(), StandardCharsets.UTF_8)) {
+			if (target.endsWith(".rdfp")) writeRDFPatch(deltas, writer);
+			else writer.write(toSPARQLUpdate(deltas));
+		}
+		// The file written is considered as the publication
+		commit(deltas);
+		return deltas;
+	}
+
+	/**
+	 * Expresses changes as a SPARQL Update request.
+	 * Since blank nodes cannot be designated in a <code>DELETE DATA</code> operation, graphs in which statements with blank nodes are removed are replaced entirely.
+	 *
+	 * @param deltas The changes.
+	 * @return The SPARQL Update request (empty if there are no changes).
+	 */
+	public static String toSPARQLUpdate(List<GraphDelta> deltas) {
+
+		List<String> operations = new ArrayList<>();
+		for (GraphDelta delta : deltas) {
+			String graph = "<" + delta.graphName + ">";
+			if (delta.type == ChangeType.REMOVED) {
+				operations.add("DROP SILENT GRAPH " + graph);
+				continue;
+			}
+			List<String> added = delta.added;
+			if (delta.removed.stream().anyMatch(GraphPublisher::hasBlankNode)) {
+				operations.add("CLEAR SILENT GRAPH " + graph);
+				added = delta.statements;
+			}
+			else if (!delta.removed.isEmpty()) operations.add(dataOperation("DELETE", graph, delta.removed, operations.size()));
+			if (!added.isEmpty()) operations.add(dataOperation("INSERT", graph, added, operations.size()));
+		}
+		return String.join(" ;\n", operations);
+	}
+
+	/**
+	 * Writes changes as an RDF Patch in a single transaction.
+	 * The blank nodes are written with their canonical labels, which the target store must keep.
+	 *
+	 * @param deltas The changes.
+	 * @param writer The writer where the patch is written.
+	 * @throws IOException In case of problem writing the patch.
+	 */
+	public static void writeRDFPatch(List<GraphDelta> deltas, Writer writer) throws IOException {
+
+		writer.write("H id <uuid:" + UUID.randomUUID() + "> .\n");
+		writer.write("TX .\n");
+		for (GraphDelta delta : deltas) {
+			String graph = " <" + delta.graphName + "> .\n";
+			for (String statement : delta.removed) writer.write("D " + statement.substring(0, statement.length() - 2) + graph);
+			for (String statement : delta.added) writer.write("A " + statement.substring(0, statement.length() - 2) + graph);
+		}
+		writer.write("TC .\n");
+	}
+
+	/**
+	 * Returns a data operation on a graph. The blank node labels are made specific to the operation, since a label cannot be used in two operations of a request.
+	 */
+	private static String dataOperation(String operation, String graph, List<String> statements, int operationIndex) {
+
+		StringBuilder builder = new StringBuilder(operation).append(" DATA {\n  GRAPH ").append(graph).append(" {\n");
+		for (String statement : statements) {
+			String[] terms = splitStatement(statement);
+			for (int index = 0; index < 3; index += 2) {
+				if (terms[index].startsWith("_:")) terms[index] = "_:o" + operationIndex + terms[index].substring(2);
+			}
+			builder.append("    ").append(terms[0]).append(" ").append(terms[1]).append(" ").append(terms[2]).append(" .\n");
+		}
+		return builder.append("  }\n}").toString();
+	}
+
+	private static boolean hasBlankNode(String statement) {
+
+		String[] terms = splitStatement(statement);
+		return terms[0].startsWith("_:") || terms[2].startsWith("_:");
+	}
+
+	/**
+	 * Splits a canonical statement into subject, predicate and object (subjects and predicates do not contain spaces in N-Triples).
+	 */
+	private static String[] splitStatement(String statement) {
+
+		int first = statement.indexOf(' ');
+		int second = statement.indexOf(' ', first + 1);
+		return new String[] {statement.substring(0, first), statement.substring(first + 1, second), statement.substring(second + 1, statement.length() - 2)};
+	}
+
+	private List<String> readSnapshot(String graphName) throws IOException {
+
+		File snapshotFile = snapshotFile(graphName);
+		if (!snapshotFile.exists()) {
+			logger.warn("Snapshot of graph " + graphName + " is missing, all its statements will be considered as added");
+			return Collections.emptyList();
+		}
+		return Files.readAllLines(snapshotFile.toPath(), StandardCharsets.UTF_8);
+	}
+
+	private File snapshotFile(String graphName) {
+
+		return new File(snapshotDirectory, fingerprint(Collections.singletonList(graphName)).substring(0, 32) + ".nt");
+	}
+
+	private static String fingerprint(List<String> statements) {
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String statement : statements) digest.update((statement + "\n").getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder();
+			for (byte value : digest.digest()) builder.append(String.format("%02x", value));
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // SHA-256 is available on all Java platforms
+		}
+	}
+
+	/**
+	 * Computes the changes between an RDF file (for example the output of the SIMS conversion) and the previous publication,
+	 * and either sends them to a SPARQL endpoint or writes them to a file.
+	 *
+	 * @param args The RDF file to publish, the state directory and the SPARQL update endpoint URL or the output file
+	 * (RDF Patch if its extension is <code>.rdfp</code>, SPARQL Update otherwise).
+	 * @throws IOException In case of problem reading or writing the files.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 3) {
+			logger.error("Usage: GraphPublisher <RDF file> <state directory> <update endpoint URL | output file>");
+			System.exit(2);
+		}
+		new GraphPublisher(new File(args[1])).publish(RDFDataMgr.loadDataset(args[0]), true, args[2]);
+	}
+
+	/**
+	 * The changes of a graph between two publications.
+	 */
+	public static class GraphDelta {
+
+		private final String graphName;
+		private final ChangeType type;
+		private final String fingerprint;
+		/** All the canonical statements of the new version of the graph */
+		private final List<String> statements;
+		private final List<String> added = new ArrayList<>();
+		private final List<String> removed = new ArrayList<>();
+
+		GraphDelta(String graphName, ChangeType type, String fingerprint, List<String> statements) {
+			this.graphName = graphName;
+			this.type = type;
+			this.fingerprint = fingerprint;
+			this.statements = statements;
+		}
+
+		public String getGraphName() {
+			return graphName;
+		}
+
+		public ChangeType getType() {
+			return type;
+		}
+
+		public List<String> getAdded() {
+			return added;
+		}
+
+		public List<String> getRemoved() {
+			return removed;
+		}
+
+		@Override
+		public String toString() {
+			return graphName + " " + type + " (-" + removed.size() + " +" + added.size() + ")";
+		}
+	}
+}
@@ -66,6 +66,12 @@ public class M0Converter {
 	/** All the mappings between M0 and target URIs for families, series, operations and indicators */
 	static Map<String, String> allURIMappings = null;
 
+	/** The RDF file of the target organization model used for the organization mappings, <code>null</code> for the file of the configuration */
+	static File targetOrganizationsFile = null;
+
+	/** The metrics of the conversion stages, reset at the start of each SIMS conversion run */
+	public static ConversionMetrics metrics = new ConversionMetrics();
+
 	/**
 	 * Return a dataset containing two named graphs: one for families, series and operations, and one for indicators.
 	 * 
@@ -202,25 +208,30 @@ public class M0Converter {
 	/**
 	 * Extracts the information on organizations from the M0 model and restructures it according to ORG.
 	 * For now we only extract the ID_CODE and (French) TITLE, and check consistency with target model (created from spreadsheet).
+	 * The target model is read in the file <code>Configuration.SSM_ORGANIZATIONS_FILE_NAME</code>.
 	 * 
 	 * @return A Jena <code>Model</code> containing the M0 organizations in ORG format.
 	 */
 	public static Model convertOrganizations() {
 
+		return convertOrganizations(new File(Configuration.SSM_ORGANIZATIONS_FILE_NAME));
+	}
+
+	/**
+	 * Extracts the information on organizations from the M0 model and restructures it according to ORG, checking consistency with a given target model.
+	 * 
+	 * @param targetOrganizationsFile The RDF file containing the target organization model (for example the output of <code>OrganizationModelMaker.createSSMModel</code>).
+	 * @return A Jena <code>Model</code> containing the M0 organizations in ORG format.
+	 */
+	public static Model convertOrganizations(File targetOrganizationsFile) {
+
 		// Read dataset and create model to return and read target model for consistency check
 		readDataset();
 		logger.debug("Extracting information on organizations from M0 dataset " + M0_FILE_NAME);
 		Model orgModel = ModelFactory.createDefaultModel();
 		orgModel.setNsPrefix("rdfs", RDFS.getURI());
 		orgModel.setNsPrefix("org", ORG.getURI());
-		Model targetModel = ModelFactory.createDefaultModel();
-		try {
-			targetModel.read("src/main/resources/ssm.ttl");
-			logger.debug("Target model read from 'src/main/resources/ssm.ttl'");
-		} catch (Exception e) {
-			// Model will be empty: all requests will return no results
-			logger.warn("Error while reading the target organization model - " + e.getMessage());
-		}
+		OrganizationResolver targetOrganizations = OrganizationResolver.fromModel(readTargetOrganizationModel(targetOrganizationsFile));
 
 		// Open the 'organismes' model first to obtain the number of organizations and create them in an ORG model
 		Model m0Model = m0Dataset.getNamedModel(M0_BASE_GRAPH_URI + "organismes");
@@ -250,11 +261,10 @@ public class M0Converter {
 			// Check that organization is in the target scheme (for non Insee organizations)
 			if ((orgId.length() == 4) && (StringUtils.isNumeric(orgId.substring(1)))) continue; // Insee organizations identifiers are like XNNN
 			// Look in the target model for an organization with identifier equal to orgId
-			if (!targetModel.contains(null, DCTerms.identifier, orgId)) logger.warn("Organization " + orgId + " not found in target model");
+			if (!targetOrganizations.containsIdentifier(orgId)) logger.warn("Organization " + orgId + " not found in target model");
 			
 		}
 		m0Model.close();
-		targetModel.close();
 
 		return orgModel;
 	}
@@ -352,72 +362,74 @@ public class M0Converter {
 		Map<String, Integer> idCounters = new HashMap<String, Integer>();
 
 		readDataset();
-		SortedMap<String, String> uriMappings = new TreeMap<String, String>(Comparator.nullsFirst(new URIComparator()));
-		List<String> types = Arrays.asList("famille", "serie", "operation", "indicateur");
-		logger.info("Starting the creation of all the URI mappings for families, series, operations and indicators");
-
-		// 1: Get fixed mappings and remove correspondent identifiers from available identifiers
-		// Target identifiers range from 1001 upwards (except for families)
-		List<Integer> availableNumbers = IntStream.rangeClosed(1001, 1999).boxed().collect(Collectors.toList());
-		// First we have to remove from available numbers all those associated with fixed mappings
-		// We have to do a complete pass on all types of objects because there is no separation of the ranges for identifiers of different types
-		for (String resourceType : types) {
-			Map<Integer, String> typeMappings = getIdURIFixedMappings(m0Dataset, resourceType);
-			if (typeMappings.size() != 0) logger.info("Number of fixed mappings for type " + resourceType + ": " + typeMappings.size() + ", a corresponding amount of available identifiers will be removed");
-			for (int index : typeMappings.keySet()) {
-				// Add fixed mapping to the global list of all mappings
-				uriMappings.put("http://baseUri/" + resourceType + "s/" + resourceType + "/" + index, typeMappings.get(index));
-				int toRemove = Integer.parseInt(StringUtils.substringAfterLast(typeMappings.get(index), "/").substring(1));
-				availableNumbers.removeIf(number -> number == toRemove); // Not super-efficient, but the list is not that big
+		try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.URI_MAPPINGS)) {
+			SortedMap<String, String> uriMappings = new TreeMap<String, String>(Comparator.nullsFirst(new URIComparator()));
+			List<String> types = Arrays.asList("famille", "serie", "operation", "indicateur");
+			logger.info("Starting the creation of all the URI mappings for families, series, operations and indicators");
+
+			// 1: Get fixed mappings and remove correspondent identifiers from available identifiers
+			// Target identifiers range from 1001 upwards (except for families)
+			List<Integer> availableNumbers = IntStream.rangeClosed(1001, 1999).boxed().collect(Collectors.toList());
+			// First we have to remove from available numbers all those associated with fixed mappings
+			// We have to do a complete pass on all types of objects because there is no separation of the ranges for identifiers of different types
+			for (String resourceType : types) {
+				Map<Integer, String> typeMappings = getIdURIFixedMappings(m0Dataset, resourceType);
+				if (typeMappings.size() != 0) logger.info("Number of fixed mappings for type " + resourceType + ": " + typeMappings.size() + ", a corresponding amount of available identifiers will be removed");
+				for (int index : typeMappings.keySet()) {
+					// Add fixed mapping to the global list of all mappings
+					uriMappings.put("http://baseUri/" + resourceType + "s/" + resourceType + "/" + index, typeMappings.get(index));
+					int toRemove = Integer.parseInt(StringUtils.substringAfterLast(typeMappings.get(index), "/").substring(1));
+					availableNumbers.removeIf(number -> number == toRemove); // Not super-efficient, but the list is not that big
+				}
 			}
-		}
-		logger.info("Total number of fixed mappings: " + uriMappings.size());
-
-		// 2: Attribute remaining identifiers to all resources that don't have a fixed mapping
-		for (String resourceType : types) {
-			idCounters.put(resourceType, 0); // Initialize identification counter for this type of resources
-			// Get the model corresponding to this type of resource
-			Model m0Model = m0Dataset.getNamedModel(M0_BASE_GRAPH_URI + resourceType + "s");
-			int maxNumber = M0Extractor.getMaxSequence(m0Model);
-			for (int index = 1; index <= maxNumber; index++) {
-				String m0URI = "http://baseUri/" + resourceType + "s/" + resourceType + "/" + index;
-				if (uriMappings.containsKey(m0URI)) continue; // Fixed mappings already dealt with
-				// The following instruction does not actually add the resource to the model, so the test on the next line will work as expected
-				Resource m0Resource = m0Model.createResource(m0URI);
-				if (!m0Model.contains(m0Resource, null)) continue; // Verify that M0 resource actually exist
-				// At this point, the resource exists and has not a fixed mapping: attribute target URI based on first available number, except for families who use the M0 index
-				if ("famille".equals(resourceType)) uriMappings.put(m0Resource.getURI(), operationResourceURI(Integer.toString(index), resourceType));
-				else {
-					Integer targetId = availableNumbers.get(0);
-					availableNumbers.remove(0);
-					uriMappings.put(m0Resource.getURI(), operationResourceURI(targetId.toString(), resourceType));
+			logger.info("Total number of fixed mappings: " + uriMappings.size());
+
+			// 2: Attribute remaining identifiers to all resources that don't have a fixed mapping
+			for (String resourceType : types) {
+				idCounters.put(resourceType, 0); // Initialize identification counter for this type of resources
+				// Get the model corresponding to this type of resource
+				Model m0Model = m0Dataset.getNamedModel(M0_BASE_GRAPH_URI + resourceType + "s");
+				int maxNumber = M0Extractor.getMaxSequence(m0Model);
+				for (int index = 1; index <= maxNumber; index++) {
+					String m0URI = "http://baseUri/" + resourceType + "s/" + resourceType + "/" + index;
+					if (uriMappings.containsKey(m0URI)) continue; // Fixed mappings already dealt with
+					// The following instruction does not actually add the resource to the model, so the test on the next line will work as expected
+					Resource m0Resource = m0Model.createResource(m0URI);
+					if (!m0Model.contains(m0Resource, null)) continue; // Verify that M0 resource actually exist
+					// At this point, the resource exists and has not a fixed mapping: attribute target URI based on first available number, except for families who use the M0 index
+					if ("famille".equals(resourceType)) uriMappings.put(m0Resource.getURI(), operationResourceURI(Integer.toString(index), resourceType));
+					else {
+						Integer targetId = availableNumbers.get(0);
+						availableNumbers.remove(0);
+						uriMappings.put(m0Resource.getURI(), operationResourceURI(targetId.toString(), resourceType));
+					}
+					idCounters.put(resourceType, idCounters.get(resourceType) + 1);
+					if (idRanges.get(resourceType) > 0) idRanges.put(resourceType, idRanges.get(resourceType) - 1);
+				}
+				m0Model.close();
+				logger.info("Number of new mappings created for type " + resourceType + ": " + idCounters.get(resourceType));
+				if (idRanges.get(resourceType) > 0) {
+					//idRanges.put(resourceType, idRanges.get(resourceType) - idCounters.get(resourceType));
+					// Reserve some available numbers for future new series or operations
+					logger.debug("Reserving " + idRanges.get(resourceType) + " identifiers for future instances of type " + resourceType);
+					availableNumbers.subList(0, idRanges.get(resourceType)).clear();
 				}
-				idCounters.put(resourceType, idCounters.get(resourceType) + 1);
-				if (idRanges.get(resourceType) > 0) idRanges.put(resourceType, idRanges.get(resourceType) - 1);
+				logger.info("Total number of remaining identifiers for new mappings: " + availableNumbers.size());
+				logger.debug("Next available identifier is " + availableNumbers.get(0));
 			}
-			m0Model.close();
-			logger.info("Number of new mappings created for type " + resourceType + ": " + idCounters.get(resourceType));
-			if (idRanges.get(resourceType) > 0) {
-				//idRanges.put(resourceType, idRanges.get(resourceType) - idCounters.get(resourceType));
-				// Reserve some available numbers for future new series or operations
-				logger.debug("Reserving " + idRanges.get(resourceType) + " identifiers for future instances of type " + resourceType);
-				availableNumbers.subList(0, idRanges.get(resourceType)).clear();
+
+			// 3: Check that there is no duplicate on the mapped URIs
+			logger.debug("Checking for duplicate values in the mapped target URIs"); 
+			List<String> mappedURIs = new ArrayList<String>();
+			for (String m0URI : uriMappings.keySet()) {
+				String mappedURI = uriMappings.get(m0URI);
+				if (mappedURIs.contains(mappedURI)) logger.error("Duplicate value in mappings: " + mappedURI); 
+				else mappedURIs.add(mappedURI);
 			}
-			logger.info("Total number of remaining identifiers for new mappings: " + availableNumbers.size());
-			logger.debug("Next available identifier is " + availableNumbers.get(0));
-		}
 
-		// 3: Check that there is no duplicate on the mapped URIs
-		logger.debug("Checking for duplicate values in the mapped target URIs"); 
-		List<String> mappedURIs = new ArrayList<String>();
-		for (String m0URI : uriMappings.keySet()) {
-			String mappedURI = uriMappings.get(m0URI);
-			if (mappedURIs.contains(mappedURI)) logger.error("Duplicate value in mappings: " + mappedURI); 
-			else mappedURIs.add(mappedURI);
+			logger.info("Total number of URI mappings for operations, series, families and indicators: " + uriMappings.size());
+			return uriMappings;
 		}
-
-		logger.info("Total number of URI mappings for operations, series, families and indicators: " + uriMappings.size());
-		return uriMappings;
 	}
 
 	/**
@@ -837,11 +849,75 @@ public class M0Converter {
 	 */
 	protected static void readDataset() {
 		if (m0Dataset == null) {
-			m0Dataset = RDFDataMgr.loadDataset(M0_FILE_NAME);
+			try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.DATASET_LOAD)) {
+				m0Dataset = RDFDataMgr.loadDataset(M0_FILE_NAME);
+			}
 			logger.debug("M0 dataset read from file " + M0_FILE_NAME);
 		}
 	}
 
+	/**
+	 * Sets the M0 dataset used by the conversion methods, for example when it is shared with other processes.
+	 * If the dataset is not the current one, the URI mappings computed on the previous dataset are discarded.
+	 *
+	 * @param dataset The M0 dataset.
+	 */
+	static void useDataset(Dataset dataset) {
+		if (dataset != m0Dataset) {
+			m0Dataset = dataset;
+			resetURIMappings();
+		}
+	}
+
+	/**
+	 * Reads again the sources of the URI mappings other than the M0 dataset, typically after they changed: the identifier mapping files of the configuration
+	 * and the target organization model. The URI mappings computed from the previous sources are discarded.
+	 *
+	 * @param organizationsFile The RDF file of the target organization model, or <code>null</code> for the file of the configuration.
+	 */
+	static void reloadURIMappingSources(File organizationsFile) {
+		Configuration.readIdMappings();
+		targetOrganizationsFile = organizationsFile;
+		resetURIMappings();
+	}
+
+	/**
+	 * Discards the URI mappings, which will be computed again when needed.
+	 */
+	static void resetURIMappings() {
+		allURIMappings = null;
+		fixedURIMappings = null;
+		organizationURIMappings = null;
+	}
+
+	/**
+	 * Returns the RDF file of the target organization model used for the organization mappings.
+	 *
+	 * @return The file set by <code>reloadURIMappingSources</code>, or by default the file of the configuration.
+	 */
+	static File getTargetOrganizationsFile() {
+		return (targetOrganizationsFile == null) ? new File(Configuration.SSM_ORGANIZATIONS_FILE_NAME) : targetOrganizationsFile;
+	}
+
+	/**
+	 * Reads the target organization model (created from the spreadsheet).
+	 * 
+	 * @param targetOrganizationsFile The RDF file containing the target organization model.
+	 * @return The target organization model, empty if the file cannot be read.
+	 */
+	static Model readTargetOrganizationModel(File targetOrganizationsFile) {
+
+		Model targetModel = ModelFactory.createDefaultModel();
+		try {
+			RDFDataMgr.read(targetModel, targetOrganizationsFile.getPath());
+			logger.debug("Target model read from " + targetOrganizationsFile.getPath());
+		} catch (Exception e) {
+			// Model will be empty: all requests will return no results
+			logger.warn("Error while reading the target organization model - " + e.getMessage());
+		}
+		return targetModel;
+	}
+
 	/**
 	 * Reads the mappings between M0 and target URIs for organizations.
 	 * 
@@ -849,6 +925,17 @@ public class M0Converter {
 	 */
 	public static SortedMap<String, String> readOrganizationURIMappings() {
 
+		return readOrganizationURIMappings(null);
+	}
+
+	/**
+	 * Reads the mappings between M0 and target URIs for organizations, using the URIs of the target organization model when the organizations are found in it.
+	 * 
+	 * @param resolver The resolver for the target organization model (if <code>null</code>, target URIs are computed from the identifiers).
+	 * @return A sorted map in which the keys are the M0 URIs of the organizations and the values their target URIs.
+	 */
+	public static SortedMap<String, String> readOrganizationURIMappings(OrganizationResolver resolver) {
+
 		readDataset();
 		SortedMap<String, String> organizationURIMappings = new TreeMap<String, String>(new URIComparator());
 		// Read the 'organismes' model and loop through the statements with 'ID_CODE' subjects
@@ -866,7 +953,8 @@ public class M0Converter {
 				String orgURI = null;
 				// TODO Will not work for regional units
 				if ((orgId.length() == 4) && (Configuration.isInseeOrganization(orgId))) orgURI = inseeUnitURI("DG75-" + orgId);
-				else orgURI = organizationURI(orgId);
+				else if (resolver != null) orgURI = resolver.resolveIdentifier(orgId);
+				if (orgURI == null) orgURI = organizationURI(orgId);
 				organizationURIMappings.put(m0URI, orgURI);
 			}
 		});
@@ -881,7 +969,7 @@ public class M0Converter {
 	 */
 	public static String convertM0OrganizationURI(String m0URI) {
 
-		if (organizationURIMappings == null) organizationURIMappings = readOrganizationURIMappings();
+		if (organizationURIMappings == null) organizationURIMappings = readOrganizationURIMappings(OrganizationResolver.fromModel(readTargetOrganizationModel(getTargetOrganizationsFile())));
 		if (organizationURIMappings.containsKey(m0URI)) return organizationURIMappings.get(m0URI);
 		return null;
 	}
@@ -0,0 +1,460 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.SKOS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Generates synthetic M0 datasets with the shape of the production M0 dump, for tests and benchmarks at different scales.
+ * The dataset contains the eleven M0 named graphs, with resources described by <code>{type}/{n}/{ATTRIBUTE}</code> values in French and English,
+ * sequence resources, and the associations between operations, organizations, documentations, links, documents, code lists and codes.
+ * The content is entirely determined by the seed and the size factor (size factor 1 corresponds approximately to the production dataset).
+ *
+ * @author Franck
+ */
+public class M0DatasetGenerator {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(M0DatasetGenerator.class);
+
+	/** Numbers of families, series, operations, indicators, organizations, documentations, links and documents for size factor 1 */
+	public static int FAMILY_COUNT = 60;
+	public static int SERIES_COUNT = 150;
+	public static int OPERATION_COUNT = 250;
+	public static int INDICATOR_COUNT = 80;
+	public static int ORGANIZATION_COUNT = 120;
+	public static int DOCUMENTATION_COUNT = 400;
+	public static int LINK_COUNT = 1000;
+	public static int DOCUMENT_COUNT = 700;
+	/** Number of generic code lists and of codes in each generic code list for size factor 1 */
+	public static int CODE_LIST_COUNT = 35;
+	public static int CODES_PER_LIST = 20;
+	/** Proportion of M0 identifiers that correspond to deleted resources (the sequence numbers are not reused) */
+	public static double DELETION_RATE = 0.03;
+
+	/** Code lists used by the converters, with their codes and labels: the unit measure code list must be number 2 */
+	static String[][][] REFERENCE_CODE_LISTS = {
+		{{"CL_FREQ", "Fréquence", "Frequency"}, {"A", "Annuelle", "Annual"}, {"S", "Semestrielle", "Half-yearly"}, {"T", "Trimestrielle", "Quarterly"}, {"M", "Mensuelle", "Monthly"}, {"P", "Pluriannuelle", "Multi-annual"}},
+		{{"CL_UNIT_MEASURE", "Unité de mesure", "Unit of measure"}, {"EUR", "Euros", "Euros"}, {"PCT", "Pourcentage", "Percentage"}, {"NB", "Nombre", "Number"}, {"O", "Autre", "Other"}},
+		{{"CL_SOURCE_CATEGORY", "Catégorie de source", "Source category"}, {"S", "Enquête", "Survey"}, {"A", "Source administrative", "Administrative source"}, {"I", "Indicateur synthétique", "Synthetic indicator"}},
+		{{"CL_SURVEY_STATUS", "Statut de l'enquête", "Survey status"}, {"O", "Obligatoire", "Compulsory"}, {"F", "Facultative", "Voluntary"}},
+		{{"CL_AREA", "Territoire", "Area"}, {"FR", "France", "France"}, {"FRE1", "Nord-Pas-de-Calais", ""}, {"FRHDF01", "Hauts-de-France", ""}, {"FRY1", "Guadeloupe", ""}, {"FRY3", "Guyane", ""}, {"FRY4", "La Réunion", ""}, {"FRY5", "Mayotte", ""}}
+	};
+
+	/** M0 predicates as graph nodes */
+	static Node VALUES = Configuration.M0_VALUES.asNode();
+	static Node VALUES_EN = Configuration.M0_VALUES_EN.asNode();
+	static Node RELATED_TO = Configuration.M0_RELATED_TO.asNode();
+	static Node RELATED_TO_EN = Configuration.M0_RELATED_TO_EN.asNode();
+	static Node SEQUENCE_VALUE = NodeFactory.createURI("http://rem.org/schema#sequenceValue");
+
+	private final long seed;
+	private final double sizeFactor;
+
+	private Random random;
+	private StreamRDF output;
+	private long quadCount;
+
+	/**
+	 * Creates a generator for a given seed and size factor.
+	 *
+	 * @param seed The seed of the pseudo-random generation: two generations with the same seed and size factor produce the same dataset.
+	 * @param sizeFactor The ratio between the number of resources generated and the number of resources in the production dataset (must be positive).
+	 */
+	public M0DatasetGenerator(long seed, double sizeFactor) {
+
+		if (sizeFactor <= 0) throw new IllegalArgumentException("Invalid size factor: " + sizeFactor);
+		this.seed = seed;
+		this.sizeFactor = sizeFactor;
+	}
+
+	/**
+	 * Generates a synthetic M0 dataset and returns it as an in-memory dataset.
+	 *
+	 * @return The synthetic M0 dataset, with the same implementation as the datasets read by <code>RDFDataMgr</code>.
+	 */
+	public Dataset createDataset() {
+
+		Dataset m0Dataset = DatasetFactory.createTxnMem();
+		generate(StreamRDFLib.dataset(m0Dataset.asDatasetGraph()));
+		return m0Dataset;
+	}
+
+	/**
+	 * Generates a synthetic M0 dataset and writes it to a TriG file, without keeping the dataset in memory.
+	 *
+	 * @param trigFile The TriG file to write.
+	 * @return The number of quads written.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public long writeTriG(File trigFile) throws IOException {
+
+		if (trigFile.getParentFile() != null) trigFile.getParentFile().mkdirs();
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(trigFile))) {
+			return writeTriG(outputStream);
+		}
+	}
+
+	/**
+	 * Generates a synthetic M0 dataset and writes it in TriG to an output stream.
+	 *
+	 * @param outputStream The output stream where the dataset will be written (it is not closed).
+	 * @return The number of quads written.
+	 */
+	public long writeTriG(OutputStream outputStream) {
+
+		StreamRDF writer = StreamRDFWriter.getWriterStream(outputStream, RDFFormat.TRIG_BLOCKS);
+		writer.prefix("message", "http://www.SDMX.org/resources/SDMXML/schemas/v2_0/message#");
+		writer.prefix("skos", SKOS.getURI());
+		return generate(writer);
+	}
+
+	/**
+	 * Generates a synthetic M0 dataset as a stream of quads, graph after graph.
+	 *
+	 * @param output The stream where the quads are sent.
+	 * @return The number of quads generated.
+	 */
+	public long generate(StreamRDF output) {
+
+		this.random = new Random(seed);
+		this.output = output;
+		this.quadCount = 0;
+		output.start();
+
+		logger.info("Generating synthetic M0 dataset with seed " + seed + " and size factor " + sizeFactor);
+		List<Integer> families = generateOperations("famille", scaled(FAMILY_COUNT));
+		List<Integer> series = generateOperations("serie", scaled(SERIES_COUNT));
+		List<Integer> operations = generateOperations("operation", scaled(OPERATION_COUNT));
+		List<Integer> indicators = generateOperations("indicateur", scaled(INDICATOR_COUNT));
+		List<Integer> organizations = generateOrganizations(scaled(ORGANIZATION_COUNT));
+		List<Integer> links = generateLinks(scaled(LINK_COUNT));
+		List<Integer> documents = generateDocuments(scaled(DOCUMENT_COUNT));
+		List<int[]> codeLists = generateCodeLists();
+		// There are never more documentations than series, operations and indicators to attach them to
+		List<Integer> documentations = generateDocumentations(Math.min(scaled(DOCUMENTATION_COUNT), series.size() + operations.size() + indicators.size()));
+		generateAssociations(families, series, operations, indicators, organizations, documentations, links, documents, codeLists);
+
+		output.finish();
+		logger.info(quadCount + " quads generated");
+		return quadCount;
+	}
+
+	/**
+	 * Generates the graph of families, series, operations or indicators and returns the identifiers of the resources created.
+	 */
+	private List<Integer> generateOperations(String type, int count) {
+
+		String graph = type + "s";
+		String baseURI = "http://baseUri/" + graph + "/" + type + "/";
+		List<Integer> identifiers = generateIdentifiers(graph, baseURI, count);
+		for (int identifier : identifiers) {
+			String resourceURI = baseURI + identifier;
+			addConcept(graph, resourceURI);
+			addAttribute(graph, resourceURI, "ID", Integer.toString(identifier), null);
+			addAttribute(graph, resourceURI, "TITLE", "Titre " + type + " " + identifier + " " + randomText(3), "Title " + type + " " + identifier + " " + randomText(3));
+			if (random.nextInt(3) == 0) addAttribute(graph, resourceURI, "ALT_LABEL", type.substring(0, 3).toUpperCase() + identifier, null);
+			addAttribute(graph, resourceURI, "SUMMARY", randomText(20 + random.nextInt(100)), random.nextBoolean() ? randomText(20 + random.nextInt(100)) : null);
+			if (!"famille".equals(type)) {
+				if (random.nextBoolean()) addAttribute(graph, resourceURI, "HISTORY", randomText(10 + random.nextInt(60)), null);
+				addAttribute(graph, resourceURI, "FREQ_COLL", randomCode(0), null);
+			}
+			if ("serie".equals(type)) {
+				addAttribute(graph, resourceURI, "SOURCE_CATEGORY", randomCode(2), null);
+				addAttribute(graph, resourceURI, "ID_DDS", "OPE-SERIE-" + identifier, null);
+			}
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Generates the 'organismes' graph and returns the identifiers of the organizations created.
+	 */
+	private List<Integer> generateOrganizations(int count) {
+
+		String baseURI = "http://baseUri/organismes/organisme/";
+		List<Integer> identifiers = generateIdentifiers("organismes", baseURI, count);
+		for (int identifier : identifiers) {
+			String resourceURI = baseURI + identifier;
+			addConcept("organismes", resourceURI);
+			// Insee units have identifiers like 'DG75-F201', other organizations have acronyms
+			String organizationCode = (random.nextInt(3) > 0) ? String.format("DG75-F%03d", identifier) : "ORG" + identifier;
+			addAttribute("organismes", resourceURI, "ID_CODE", organizationCode, null);
+			addAttribute("organismes", resourceURI, "TITLE", "Organisme " + randomText(2) + " (" + organizationCode + ")", null);
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Generates the 'liens' graph and returns the identifiers of the links created.
+	 */
+	private List<Integer> generateLinks(int count) {
+
+		String baseURI = M0SIMSConverter.M0_LINK_BASE_URI;
+		List<Integer> identifiers = generateIdentifiers("liens", baseURI, count);
+		for (int identifier : identifiers) {
+			String resourceURI = baseURI + identifier;
+			addConcept("liens", resourceURI);
+			addAttribute("liens", resourceURI, "TITLE", "Lien " + randomText(4), null);
+			addAttribute("liens", resourceURI, "URI", "https://www.insee.fr/fr/statistiques/" + (1000000 + random.nextInt(9000000)), null);
+			// Older links have a TYPE attribute, newer ones a SUMMARY
+			addAttribute("liens", resourceURI, random.nextBoolean() ? "SUMMARY" : "TYPE", randomText(5), null);
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Generates the 'documents' graph and returns the identifiers of the documents created.
+	 */
+	private List<Integer> generateDocuments(int count) {
+
+		String baseURI = M0SIMSConverter.M0_DOCUMENT_BASE_URI;
+		List<Integer> identifiers = generateIdentifiers("documents", baseURI, count);
+		for (int identifier : identifiers) {
+			String resourceURI = baseURI + identifier;
+			addConcept("documents", resourceURI);
+			addAttribute("documents", resourceURI, "TITLE", "Document " + randomText(4), null);
+			addAttribute("documents", resourceURI, "URI", "document-" + identifier + ".pdf", null);
+			// Dates are in format dd/MM/yyyy, with either DATE, DATE_PUBLICATION or both
+			int dateAttributes = random.nextInt(4);
+			if (dateAttributes != 1) addAttribute("documents", resourceURI, "DATE", randomDate(), null);
+			if (dateAttributes != 0) addAttribute("documents", resourceURI, "DATE_PUBLICATION", randomDate(), null);
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Generates the 'codelists' and 'codes' graphs and returns the numbers of the codes of each code list, the code list number being in first position.
+	 */
+	private List<int[]> generateCodeLists() {
+
+		int codeListCount = REFERENCE_CODE_LISTS.length + scaled(CODE_LIST_COUNT);
+		List<int[]> codeLists = new ArrayList<>();
+		int codeNumber = 0;
+		for (int clNumber = 1; clNumber <= codeListCount; clNumber++) {
+			String[][] codeList = (clNumber <= REFERENCE_CODE_LISTS.length) ? REFERENCE_CODE_LISTS[clNumber - 1] : createGenericCodeList(clNumber);
+			String clURI = Configuration.M0_CODE_LISTS_BASE_URI + clNumber;
+			addConcept("codelists", clURI);
+			addAttribute("codelists", clURI, "ID", Integer.toString(clNumber), null);
+			addAttribute("codelists", clURI, "CODE_VALUE", codeList[0][0], null);
+			addAttribute("codelists", clURI, "TITLE", codeList[0][1], codeList[0][2]);
+			addAttribute("codelists", clURI, "ID_METIER", codeList[0][1] + " - " + clNumber, null);
+			int[] codeNumbers = new int[codeList.length];
+			codeNumbers[0] = clNumber;
+			for (int index = 1; index < codeList.length; index++) {
+				String codeURI = Configuration.M0_CODES_BASE_URI + (++codeNumber);
+				addConcept("codes", codeURI);
+				addAttribute("codes", codeURI, "ID", Integer.toString(codeNumber), null);
+				addAttribute("codes", codeURI, "CODE_VALUE", codeList[index][0], null);
+				addAttribute("codes", codeURI, "TITLE", codeList[index][1], codeList[index][2].isEmpty() ? null : codeList[index][2]);
+				addAttribute("codes", codeURI, "ID_METIER", codeList[index][1] + " - " + codeNumber, null);
+				codeNumbers[index] = codeNumber;
+			}
+			codeLists.add(codeNumbers);
+		}
+		addSequence("codelists", Configuration.M0_CODE_LISTS_BASE_URI, codeListCount);
+		addSequence("codes", Configuration.M0_CODES_BASE_URI, codeNumber);
+
+		return codeLists;
+	}
+
+	private String[][] createGenericCodeList(int clNumber) {
+
+		String[][] codeList = new String[CODES_PER_LIST + 1][];
+		codeList[0] = new String[] {"CL_LIST_" + clNumber, "Liste " + randomText(2), "List " + randomText(2)};
+		for (int index = 1; index <= CODES_PER_LIST; index++) codeList[index] = new String[] {"C" + index, "Code " + randomText(2), random.nextBoolean() ? "Code " + randomText(2) : ""};
+		return codeList;
+	}
+
+	/**
+	 * Generates the 'documentations' graph and returns the identifiers of the documentations created.
+	 */
+	private List<Integer> generateDocumentations(int count) {
+
+		String baseURI = Configuration.M0_SIMS_BASE_URI;
+		List<Integer> identifiers = generateIdentifiers("documentations", baseURI, count);
+		for (int identifier : identifiers) {
+			String resourceURI = baseURI + identifier;
+			addConcept("documentations", resourceURI);
+			addAttribute("documentations", resourceURI, "ID", Integer.toString(identifier), null);
+			addAttribute("documentations", resourceURI, "CONTACT_NAME", "Contact " + randomText(2), null);
+			addAttribute("documentations", resourceURI, "META_UPDATE", String.format("20%02d-%02d-%02d", 10 + random.nextInt(11), 1 + random.nextInt(12), 1 + random.nextInt(28)), null);
+			addAttribute("documentations", resourceURI, "SUMMARY", randomText(50 + random.nextInt(300)), random.nextBoolean() ? randomText(50 + random.nextInt(300)) : null);
+			addAttribute("documentations", resourceURI, "FREQ_COLL", randomCode(0), null);
+			addAttribute("documentations", resourceURI, "REF_AREA", randomCode(4), null);
+			addAttribute("documentations", resourceURI, "UNIT_MEASURE", randomCode(1), null);
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Generates the 'associations' graph.
+	 */
+	private void generateAssociations(List<Integer> families, List<Integer> series, List<Integer> operations, List<Integer> indicators,
+			List<Integer> organizations, List<Integer> documentations, List<Integer> links, List<Integer> documents, List<int[]> codeLists) {
+
+		// Code lists and codes
+		for (int[] codeNumbers : codeLists) {
+			for (int index = 1; index < codeNumbers.length; index++) {
+				addAssociation(Configuration.M0_CODE_LISTS_BASE_URI + codeNumbers[0] + "/RELATED_TO", Configuration.M0_CODES_BASE_URI + codeNumbers[index] + "/RELATED_TO", false);
+			}
+		}
+		// Hierarchies: each series has a family, each operation has a series
+		for (int serie : series) addAssociation("http://baseUri/series/serie/" + serie + "/ASSOCIE_A", "http://baseUri/familles/famille/" + pick(families) + "/ASSOCIE_A", false);
+		for (int operation : operations) addAssociation("http://baseUri/operations/operation/" + operation + "/ASSOCIE_A", "http://baseUri/series/serie/" + pick(series) + "/ASSOCIE_A", false);
+		// Relations between series and indicators, stored in both directions
+		for (int index = 0; index < (series.size() + indicators.size()) / 3; index++) {
+			String oneEnd = random.nextBoolean() ? "http://baseUri/series/serie/" + pick(series) : "http://baseUri/indicateurs/indicateur/" + pick(indicators);
+			String otherEnd = "http://baseUri/series/serie/" + pick(series);
+			if (oneEnd.equals(otherEnd)) continue;
+			addAssociation(oneEnd + "/RELATED_TO", otherEnd + "/RELATED_TO", false);
+			addAssociation(otherEnd + "/RELATED_TO", oneEnd + "/RELATED_TO", false);
+		}
+		// Replacements between series
+		for (int index = 1; index < series.size(); index++) {
+			if (random.nextInt(20) == 0) addAssociation("http://baseUri/series/serie/" + series.get(index) + "/REPLACES", "http://baseUri/series/serie/" + series.get(random.nextInt(index)) + "/REMPLACE_PAR", false);
+		}
+		// Indicators are produced from one or two series
+		for (int indicator : indicators) {
+			for (int index = 0; index <= random.nextInt(2); index++) addAssociation("http://baseUri/indicateurs/indicateur/" + indicator + "/PRODUCED_FROM", "http://baseUri/series/serie/" + pick(series) + "/PRODUIT_INDICATEURS", false);
+		}
+		// Organizations of series and indicators
+		List<String> organizationEnds = new ArrayList<>();
+		for (int serie : series) organizationEnds.add("http://baseUri/series/serie/" + serie);
+		for (int indicator : indicators) organizationEnds.add("http://baseUri/indicateurs/indicateur/" + indicator);
+		for (String organizationEnd : organizationEnds) {
+			addAssociation(organizationEnd + "/ORGANISATION", "http://baseUri/organismes/organisme/" + pick(organizations) + "/ORGANISATION", false);
+			for (int index = 0; index < random.nextInt(3); index++) addAssociation(organizationEnd + "/STAKEHOLDERS", "http://baseUri/organismes/organisme/" + pick(organizations) + "/STAKEHOLDERS", false);
+		}
+
+		// Documentations are attached to distinct series, operations and indicators, in that order
+		List<String> attachmentTargets = new ArrayList<>();
+		for (int serie : series) attachmentTargets.add("http://baseUri/series/serie/" + serie);
+		for (int operation : operations) attachmentTargets.add("http://baseUri/operations/operation/" + operation);
+		for (int indicator : indicators) attachmentTargets.add("http://baseUri/indicateurs/indicateur/" + indicator);
+		for (int index = 0; index < documentations.size(); index++) {
+			String documentationURI = Configuration.M0_SIMS_BASE_URI + documentations.get(index);
+			addAssociation(documentationURI + "/ASSOCIE_A", attachmentTargets.get(index) + "/ASSOCIE_A", false);
+			addAssociation(documentationURI + "/CONTACT_ORGANISATION", "http://baseUri/organismes/organisme/" + pick(organizations) + "/CONTACT_ORGANISATION", false);
+			if (random.nextInt(4) == 0) addAssociation(documentationURI + "/ORGANISATION_UNIT", "http://baseUri/organismes/organisme/" + pick(organizations) + "/ORGANISATION_UNIT", false);
+		}
+		// Each link or document is referenced by an attribute of a documentation, in French (relatedTo) or English (relatedToGb)
+		for (int link : links) {
+			addAssociation(Configuration.M0_SIMS_BASE_URI + pick(documentations) + "/SEE_ALSO", M0SIMSConverter.M0_LINK_BASE_URI + link + "/SEE_ALSO", random.nextInt(5) == 0);
+		}
+		for (int document : documents) {
+			addAssociation(Configuration.M0_SIMS_BASE_URI + pick(documentations) + "/SUMMARY", M0SIMSConverter.M0_DOCUMENT_BASE_URI + document + "/SUMMARY", random.nextInt(5) == 0);
+		}
+	}
+
+	/**
+	 * Draws the identifiers of the resources of a graph, some sequence numbers corresponding to deleted resources, and adds the sequence resource to the graph.
+	 */
+	private List<Integer> generateIdentifiers(String graph, String baseURI, int count) {
+
+		List<Integer> identifiers = new ArrayList<>();
+		int sequence = 0;
+		while (identifiers.size() < count) {
+			sequence++;
+			if (random.nextDouble() >= DELETION_RATE) identifiers.add(sequence);
+		}
+		addSequence(graph, baseURI, sequence);
+		return identifiers;
+	}
+
+	private int scaled(int count) {
+		return Math.max(1, (int) Math.round(count * sizeFactor));
+	}
+
+	private int pick(List<Integer> identifiers) {
+		return identifiers.get(random.nextInt(identifiers.size()));
+	}
+
+	/**
+	 * Returns a random code of one of the reference code lists.
+	 */
+	private String randomCode(int codeListIndex) {
+
+		String[][] codeList = REFERENCE_CODE_LISTS[codeListIndex];
+		return codeList[1 + random.nextInt(codeList.length - 1)][0];
+	}
+
+	private String randomDate() {
+		return String.format("%02d/%02d/20%02d", 1 + random.nextInt(28), 1 + random.nextInt(12), 10 + random.nextInt(11));
+	}
+
+	/**
+	 * Returns a text made of pseudo-random words.
+	 */
+	private String randomText(int wordCount) {
+
+		StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < wordCount; index++) builder.append(index == 0 ? "" : " ").append(Integer.toString(36 + random.nextInt(100000), 36));
+		return builder.toString();
+	}
+
+	private void addConcept(String graph, String resourceURI) {
+		addQuad(graph, NodeFactory.createURI(resourceURI), RDF.type.asNode(), SKOS.Concept.asNode());
+	}
+
+	private void addAttribute(String graph, String resourceURI, String attributeName, String frenchValue, String englishValue) {
+
+		Node attribute = NodeFactory.createURI(resourceURI + "/" + attributeName);
+		addQuad(graph, attribute, VALUES, NodeFactory.createLiteral(frenchValue));
+		if (englishValue != null) addQuad(graph, attribute, VALUES_EN, NodeFactory.createLiteral(englishValue));
+	}
+
+	private void addAssociation(String subjectURI, String objectURI, boolean inEnglish) {
+		addQuad("associations", NodeFactory.createURI(subjectURI), inEnglish ? RELATED_TO_EN : RELATED_TO, NodeFactory.createURI(objectURI));
+	}
+
+	private void addSequence(String graph, String baseURI, int sequence) {
+		addQuad(graph, NodeFactory.createURI(baseURI + "sequence"), SEQUENCE_VALUE, NodeFactory.createLiteral(Integer.toString(sequence)));
+	}
+
+	private void addQuad(String graph, Node subject, Node predicate, Node object) {
+
+		output.quad(Quad.create(NodeFactory.createURI(Configuration.M0_BASE_GRAPH_URI + graph), subject, predicate, object));
+		quadCount++;
+	}
+
+	/**
+	 * Writes a synthetic M0 dataset to a TriG file.
+	 * The output file is mandatory, so that the generator never overwrites the M0 file of the configuration by default.
+	 *
+	 * @param args Output file name, size factor (default 1) and seed (default 42).
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 1) {
+			logger.error("Usage: M0DatasetGenerator <output TriG file> [size factor] [seed]");
+			System.exit(1);
+		}
+		File trigFile = new File(args[0]);
+		double sizeFactor = (args.length > 1) ? Double.parseDouble(args[1]) : 1;
+		long seed = (args.length > 2) ? Long.parseLong(args[2]) : 42;
+
+		long quadCount = new M0DatasetGenerator(seed, sizeFactor).writeTriG(trigFile);
+		logger.info(quadCount + " quads written to " + trigFile.getAbsolutePath());
+	}
+}
@@ -5,7 +5,7 @@ import static fr.insee.semweb.sdmx.metadata.Configuration.M0_RELATED_TO;
 import static fr.insee.semweb.sdmx.metadata.Configuration.M0_VALUES;
 import static fr.insee.semweb.sdmx.metadata.Configuration.M0_VALUES_EN;
 
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -36,6 +36,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import fr.insee.semweb.sdmx.metadata.Configuration.OrganizationRole;
+import fr.insee.semweb.utils.RDFOutput;
 import fr.insee.semweb.utils.URIComparator;
 
 /**
@@ -174,6 +175,47 @@ public class M0Extractor {
 		return unitMeasureMappings;
 	}
 
+	/**
+	 * Extracts the codes and labels of a M0 code list identified by its notation, reading directly the 'codelists', 'associations' and 'codes' M0 models.
+	 * 
+	 * @param m0Dataset The M0 dataset where the code list will be read.
+	 * @param clNotation The notation of the code list (CODE_VALUE attribute, for example 'CL_AREA').
+	 * @return A map between the code values and arrays containing the labels (French and English, in that order), empty if the code list is not found.
+	 */
+	public static SortedMap<String, String[]> extractCodeListLabels(Dataset m0Dataset, String clNotation) {
+
+		SortedMap<String, String[]> codeListLabels = new TreeMap<String, String[]>();
+
+		// Find the code list in the 'codelists' M0 model from the value of its CODE_VALUE attribute
+		Model clM0Model = m0Dataset.getNamedModel(M0_BASE_GRAPH_URI + "codelists");
+		List<Resource> clResources = clM0Model.listSubjectsWithProperty(M0_VALUES, clNotation).filterKeep(resource -> resource.getURI().endsWith("/CODE_VALUE")).toList();
+		if (clResources.size() != 1) {
+			logger.error("There should be exactly one code list with notation " + clNotation + ", but found " + clResources.size());
+			return codeListLabels;
+		}
+		String clURI = clResources.get(0).getURI().replace("/CODE_VALUE", "");
+
+		// The models are not closed since this would close the graphs of in-memory datasets
+		// Get the codes of the list in the 'associations' M0 model, then their values and labels in the 'codes' M0 model
+		Model associationsM0Model = m0Dataset.getNamedModel(M0_BASE_GRAPH_URI + "associations");
+		Model codeM0Model = m0Dataset.getNamedModel(M0_BASE_GRAPH_URI + "codes");
+		associationsM0Model.listObjectsOfProperty(associationsM0Model.createResource(clURI + "/RELATED_TO"), M0_RELATED_TO).forEachRemaining(codeRelation -> {
+			String codeURI = codeRelation.asResource().getURI().replace("/RELATED_TO", "");
+			Statement valueStatement = codeM0Model.getProperty(codeM0Model.createResource(codeURI + "/CODE_VALUE"), M0_VALUES);
+			if (valueStatement == null) return;
+			Resource labelResource = codeM0Model.createResource(codeURI + "/TITLE");
+			Statement frenchStatement = codeM0Model.getProperty(labelResource, M0_VALUES);
+			Statement englishStatement = codeM0Model.getProperty(labelResource, M0_VALUES_EN);
+			String[] labels = new String[2];
+			labels[0] = (frenchStatement == null) ? "" : frenchStatement.getObject().toString();
+			labels[1] = (englishStatement == null) ? "" : englishStatement.getObject().toString();
+			codeListLabels.put(valueStatement.getObject().toString(), labels);
+		});
+		logger.debug(codeListLabels.size() + " codes found for code list " + clNotation);
+
+		return codeListLabels;
+	}
+
 	/**
 	 * Extracts the mappings between identifiers and labels for M0 organizations.
 	 * 
@@ -496,9 +538,39 @@ public class M0Extractor {
 		return m0DocumentIdSet;
 	}
 
+	/**
+	 * Partitions a M0 'documentation' model by documentation identifier, in one pass on the statements.
+	 * Each partition contains the same statements as the model returned by <code>extractM0ResourceModel</code> for the documentation,
+	 * so that a documentation can be extracted without scanning the whole model.
+	 *
+	 * @param m0DocumentationModel The M0 'documentation' model.
+	 * @return A sorted map whose keys are the documentation identifiers and whose values are the M0 models of the documentations.
+	 */
+	public static SortedMap<Integer, Model> partitionM0DocumentationModel(Model m0DocumentationModel) {
+
+		logger.debug("Partitioning the M0 documentation model by documentation identifier");
+		SortedMap<Integer, Model> partitions = new TreeMap<Integer, Model>();
+
+		StmtIterator statementIterator = m0DocumentationModel.listStatements();
+		while (statementIterator.hasNext()) {
+			Statement statement = statementIterator.next();
+			String subjectURI = statement.getSubject().getURI();
+			if ((subjectURI == null) || !subjectURI.startsWith(Configuration.M0_SIMS_BASE_URI)) continue;
+			try {
+				Integer documentationId = Integer.parseInt(subjectURI.substring(Configuration.M0_SIMS_BASE_URI.length()).split("/")[0]);
+				partitions.computeIfAbsent(documentationId, id -> ModelFactory.createDefaultModel()).add(statement);
+			} catch (NumberFormatException e) {
+				// Sequence number resource: http://baseUri/documentations/documentation/sequence
+			}
+		}
+		logger.debug("M0 documentation model partitioned into " + partitions.size() + " documentations");
+
+		return partitions;
+	}
+
 	/**
 	 * Extracts from the base M0 model all the statements related to a given base resource (series, operation, etc.).
-	 * The statements extracted are those whose subject URI begins with the base resource URI.
+	 * The statements extracted are those whose subject is the base resource or one of its attributes (URI beginning with the base resource URI followed by '/').
 	 * 
 	 * @param m0Model A Jena <code>Model</code> in M0 format from which the statements will be extracted.
 	 * @param m0URI The URI of the M0 base resource for which the statements must to extracted.
@@ -510,9 +582,10 @@ public class M0Extractor {
 	
 		Model extractModel = ModelFactory.createDefaultModel();
 		Selector selector = new SimpleSelector(null, null, (RDFNode) null) {
-									// Override 'selects' method to retain only statements whose subject URI begins with the wanted URI
+									// Override 'selects' method to retain only statements whose subject URI is or begins with the wanted URI (but documentation/1 must not select documentation/10)
 							        public boolean selects(Statement statement) {
-							        	return statement.getSubject().getURI().startsWith(m0URI);
+							        	String subjectURI = statement.getSubject().getURI();
+							        	return subjectURI.startsWith(m0URI) && ((subjectURI.length() == m0URI.length()) || (subjectURI.charAt(m0URI.length()) == '/'));
 							        }
 							    };
 		// Copy the relevant statements to the extract model
@@ -556,9 +629,9 @@ public class M0Extractor {
 			@Override
 			public void accept(String graphURI) {
 				String graphName = graphURI.replace(Configuration.M0_BASE_GRAPH_URI, "");
-				String fileName = "src/main/resources/data/m0-" + graphName + ".ttl";
-				try (FileWriter writer = new FileWriter(fileName)) {
-					m0Dataset.getNamedModel(graphURI).write(writer, "TTL");
+				String fileName = RDFOutput.outputFile(new File("src/main/resources/data"), "m0-" + graphName, false).getPath();
+				try {
+					RDFOutput.write(m0Dataset.getNamedModel(graphURI), new File(fileName));
 					logger.info("Graph " + graphName + " extracted and saved to file " + fileName);
 				} catch (IOException e) {
 					logger.error("Error while trying to save graph " + graphName + " to file " + fileName);
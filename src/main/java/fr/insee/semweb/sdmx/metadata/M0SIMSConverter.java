@@ -1,6 +1,7 @@
 package fr.insee.semweb.sdmx.metadata;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -8,8 +9,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
@@ -18,6 +21,7 @@ import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntProperty;
 import org.apache.jena.query.Dataset;
@@ -33,7 +37,10 @@ import org.apache.jena.rdf.model.Selector;
 import org.apache.jena.rdf.model.SimpleSelector;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
 import org.apache.jena.sparql.vocabulary.FOAF;
 import org.apache.jena.vocabulary.DC;
 import org.apache.jena.vocabulary.DCTerms;
@@ -100,28 +107,172 @@ public class M0SIMSConverter extends M0Converter {
 	 */
 	public static Dataset convertToSIMS(List<Integer> m0Ids, boolean namedModels, boolean withAttachments, boolean includeReferences) {
 
-		// We will need the documentation model, the SIMSFr scheme and the SIMSFr MSD
-		if (m0Dataset == null) m0Dataset = RDFDataMgr.loadDataset(Configuration.M0_FILE_NAME);
+		SortedSet<Integer> docIdentifiers = initializeConversion(m0Ids, withAttachments, includeReferences, null);
 		Model m0DocumentationModel = m0Dataset.getNamedModel("http://rdf.insee.fr/graphe/documentations");
-		simsFrMSD = (OntModel) ModelFactory.createOntologyModel().read(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME);
-		simsFRScheme = SIMSFrScheme.readSIMSFrFromExcel(new File(Configuration.SIMS_XLSX_FILE_NAME));
 
-		// We will also need all the attribute references to links and documents, and the values of organizational attributes (which are obtained through associations)
-		Model m0AssociationsModel = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "associations");
-		attributeReferencesFr = getAllAttributeReferences(m0AssociationsModel, "fr");
-		attributeReferencesEn = getAllAttributeReferences(m0AssociationsModel, "en");
-		organizationValues = getOrganizationValues(m0AssociationsModel);
-		// If all documents and links information are to be included in the target documentation models, we need the complete documents and links model 
-		if (includeReferences) simsDocumentsAndLinksModel = convertDocumentsToSIMS().add(convertLinksToSIMS());
+		Dataset simsDataset = DatasetFactory.create();
+		for (Integer docIdentifier : docIdentifiers) {
+			// Extract the M0 model containing the resource of the current documentation and convert it to SIMS format
+			ConversionMetrics.Timer reportTimer = metrics.startReportTimer(docIdentifier);
+			Model docModel = M0Extractor.extractM0ResourceModel(m0DocumentationModel, Configuration.M0_SIMS_BASE_URI + docIdentifier);
+			Model simsModel = convertM0ModelToSIMS(docModel, includeReferences);
+			reportTimer.stop(simsModel.size());
+			if (!namedModels) simsDataset.getDefaultModel().add(simsModel);
+			else {
+				simsDataset.addNamedModel(Configuration.simsReportGraphURI(docIdentifier.toString()), simsModel);
+			}
+			simsModel.close();
+			docModel.close();
+		}
+		m0DocumentationModel.close();
+		metrics.report();
+		return simsDataset;
+	}
 
-		// We also need the mappings between codes and labels for units of measure, since the coded values are now replaces by text (see hack below)
-		umMappings = M0Extractor.extractUnitMeasureMappings(m0Dataset, false);
+	/**
+	 * Converts a list (or all) of M0 'documentation' models to SIMS models and sends the results to a stream as quads, one named graph per report.
+	 * Each report model is released as soon as it is sent, so that post-processing stages and writers chained on the stream do not require the whole result in memory.
+	 * 
+	 * @param m0Ids A <code>List</code> of M0 'documentation' metadata set identifiers, or <code>null</code> to convert all models.
+	 * @param withAttachments If <code>true</code>, the resulting models will include the triple attaching the SIMS to its target.
+	 * @param includeReferences If <code>true</code>, the properties of referenced documents and links will be included in the models sent.
+	 * @param output The <code>StreamRDF</code> receiving the quads (<code>start</code> and <code>finish</code> are called by this method).
+	 * @return The number of reports sent to the stream.
+	 */
+	public static int convertToSIMS(List<Integer> m0Ids, boolean withAttachments, boolean includeReferences, StreamRDF output) {
 
-		// We also need the mappings between M0 CL_AREA codes and the target territory resources
-		geoMappings = GeoMapper.createM0CodeToURIMappings();
+		SortedSet<Integer> docIdentifiers = initializeConversion(m0Ids, withAttachments, includeReferences, null);
+		Model m0DocumentationModel = m0Dataset.getNamedModel("http://rdf.insee.fr/graphe/documentations");
 
-		// Finally, if attachments are requested, we need the correspondence between documentations and the documented resources
-		if (withAttachments) simsAttachments = getSIMSAttachments(m0AssociationsModel);
+		Map<String, String> prefixesSent = new HashMap<>();
+		output.start();
+		for (Integer docIdentifier : docIdentifiers) {
+			ConversionMetrics.Timer reportTimer = metrics.startReportTimer(docIdentifier);
+			Model docModel = M0Extractor.extractM0ResourceModel(m0DocumentationModel, Configuration.M0_SIMS_BASE_URI + docIdentifier);
+			Model simsModel = convertM0ModelToSIMS(docModel, includeReferences);
+			reportTimer.stop(simsModel.size());
+			// Prefixes are sent only once
+			simsModel.getNsPrefixMap().forEach((prefix, namespace) -> {
+				if (!namespace.equals(prefixesSent.put(prefix, namespace))) output.prefix(prefix, namespace);
+			});
+			// The time spent in the post-processing stages and writer chained on the output stream is measured globally
+			try (ConversionMetrics.Timer outputTimer = metrics.startTimer(ConversionMetrics.OUTPUT)) {
+				StreamPostProcessor.sendToStream(simsModel, NodeFactory.createURI(Configuration.simsReportGraphURI(docIdentifier.toString())), output);
+			}
+			simsModel.close();
+			docModel.close();
+		}
+		try (ConversionMetrics.Timer outputTimer = metrics.startTimer(ConversionMetrics.OUTPUT)) {
+			output.finish();
+		}
+		m0DocumentationModel.close();
+		metrics.report();
+		return docIdentifiers.size();
+	}
+
+	/**
+	 * Converts a list (or all) of M0 'documentation' models to SIMS models with checkpoints, and returns them in a dataset, one named graph per report.
+	 * 
+	 * @param m0Ids A <code>List</code> of M0 'documentation' metadata set identifiers, or <code>null</code> to convert all models.
+	 * @param withAttachments If <code>true</code>, the resulting models will include the triple attaching the SIMS to its target.
+	 * @param includeReferences If <code>true</code>, the properties of referenced documents and links will be included in the models.
+	 * @param checkpointDirectory The directory where the converted reports are saved by batches (see <code>ConversionCheckpoint</code>).
+	 * @return A Jena dataset containing the models corresponding to the identifiers received.
+	 * @throws IOException In case of problem reading or writing the checkpoint.
+	 */
+	public static Dataset convertToSIMS(List<Integer> m0Ids, boolean withAttachments, boolean includeReferences, File checkpointDirectory) throws IOException {
+
+		DatasetGraph simsDatasetGraph = DatasetGraphFactory.create();
+		convertToSIMS(m0Ids, withAttachments, includeReferences, StreamRDFLib.dataset(simsDatasetGraph), checkpointDirectory);
+		return DatasetFactory.wrap(simsDatasetGraph);
+	}
+
+	/**
+	 * Converts a list (or all) of M0 'documentation' models to SIMS models with checkpoints, and sends the results to a stream as quads, one named graph per report.
+	 * The converted reports are saved by batches in the checkpoint directory, including when the conversion fails. If the conversion is run again on the same inputs,
+	 * the reports already saved are not converted again. When all the reports are converted, the reports saved are sent to the stream in the order of the batches.
+	 * 
+	 * @param m0Ids A <code>List</code> of M0 'documentation' metadata set identifiers, or <code>null</code> to convert all models.
+	 * @param withAttachments If <code>true</code>, the resulting models will include the triple attaching the SIMS to its target.
+	 * @param includeReferences If <code>true</code>, the properties of referenced documents and links will be included in the models sent.
+	 * @param output The <code>StreamRDF</code> receiving the quads (<code>start</code> and <code>finish</code> are called by this method).
+	 * @param checkpointDirectory The directory where the converted reports are saved by batches (see <code>ConversionCheckpoint</code>).
+	 * @return The number of reports sent to the stream.
+	 * @throws IOException In case of problem reading or writing the checkpoint.
+	 */
+	public static int convertToSIMS(List<Integer> m0Ids, boolean withAttachments, boolean includeReferences, StreamRDF output, File checkpointDirectory) throws IOException {
+
+		return convertToSIMS(m0Ids, withAttachments, includeReferences, output, checkpointDirectory, null);
+	}
+
+	/**
+	 * Converts a list (or all) of M0 'documentation' models to SIMS models with checkpoints, using a SIMSFr scheme already read by the caller.
+	 * 
+	 * @param m0Ids A <code>List</code> of M0 'documentation' metadata set identifiers, or <code>null</code> to convert all models.
+	 * @param withAttachments If <code>true</code>, the resulting models will include the triple attaching the SIMS to its target.
+	 * @param includeReferences If <code>true</code>, the properties of referenced documents and links will be included in the models sent.
+	 * @param output The <code>StreamRDF</code> receiving the quads (<code>start</code> and <code>finish</code> are called by this method).
+	 * @param checkpointDirectory The directory where the converted reports are saved by batches (see <code>ConversionCheckpoint</code>).
+	 * @param simsFrScheme The SIMSFr scheme (see <code>PipelineOrchestrator</code>), or <code>null</code> to read it from the Excel file of the configuration.
+	 * @return The number of reports sent to the stream.
+	 * @throws IOException In case of problem reading or writing the checkpoint.
+	 * @see #convertToSIMS(List, boolean, boolean, StreamRDF, File)
+	 */
+	public static int convertToSIMS(List<Integer> m0Ids, boolean withAttachments, boolean includeReferences, StreamRDF output, File checkpointDirectory, SIMSFrScheme simsFrScheme) throws IOException {
+
+		// The checkpoint is valid for the same input files and conversion options
+		List<File> inputFiles = Arrays.asList(new File(Configuration.M0_FILE_NAME), new File(Configuration.SIMS_XLSX_FILE_NAME),
+				new File(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME), new File(Configuration.GEO_REFERENCE_FILE_NAME),
+				new File(Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME), new File(Configuration.DDS_ID_TO_WEB4G_ID_FILE_NAME), getTargetOrganizationsFile());
+		String options = "attachments=" + withAttachments + ";references=" + includeReferences;
+		ConversionCheckpoint checkpoint = new ConversionCheckpoint(checkpointDirectory, ConversionCheckpoint.fingerprint(inputFiles, options));
+
+		SortedSet<Integer> docIdentifiers = initializeConversion(m0Ids, withAttachments, includeReferences, simsFrScheme);
+		Model m0DocumentationModel = m0Dataset.getNamedModel("http://rdf.insee.fr/graphe/documentations");
+		long resumedCount = docIdentifiers.stream().filter(checkpoint::isCompleted).count();
+		if (resumedCount > 0) logger.info("Resuming conversion: " + resumedCount + " reports out of " + docIdentifiers.size() + " already converted");
+
+		try {
+			for (Integer docIdentifier : docIdentifiers) {
+				if (checkpoint.isCompleted(docIdentifier)) continue;
+				ConversionMetrics.Timer reportTimer = metrics.startReportTimer(docIdentifier);
+				Model docModel = M0Extractor.extractM0ResourceModel(m0DocumentationModel, Configuration.M0_SIMS_BASE_URI + docIdentifier);
+				Model simsModel = convertM0ModelToSIMS(docModel, includeReferences);
+				reportTimer.stop(simsModel.size());
+				checkpoint.add(docIdentifier, Configuration.simsReportGraphURI(docIdentifier.toString()), simsModel);
+				docModel.close();
+			}
+		} finally {
+			// The reports converted before an error are saved for the next run
+			checkpoint.flush();
+		}
+
+		// Only the requested reports are sent, the checkpoint may contain others if the list of identifiers changed between runs
+		Set<String> graphNames = new HashSet<>();
+		for (Integer docIdentifier : docIdentifiers) graphNames.add(Configuration.simsReportGraphURI(docIdentifier.toString()));
+		try (ConversionMetrics.Timer outputTimer = metrics.startTimer(ConversionMetrics.OUTPUT)) {
+			output.start();
+			checkpoint.replay(StreamPostProcessor.filter(output, quad -> graphNames.contains(quad.getGraph().getURI())));
+			output.finish();
+		}
+		m0DocumentationModel.close();
+		metrics.report();
+		return docIdentifiers.size();
+	}
+
+	/**
+	 * Loads the information needed for the conversion of M0 'documentation' models and returns the identifiers of the models to convert.
+	 * 
+	 * @param m0Ids A <code>List</code> of M0 'documentation' metadata set identifiers, or <code>null</code> to select all models.
+	 * @param withAttachments If <code>true</code>, the correspondence between documentations and the documented resources will be loaded.
+	 * @param includeReferences If <code>true</code>, the complete documents and links model will be created.
+	 * @param simsFrScheme The SIMSFr scheme, or <code>null</code> to read it from the Excel file of the configuration.
+	 * @return The sorted set of M0 'documentation' identifiers to convert.
+	 */
+	private static SortedSet<Integer> initializeConversion(List<Integer> m0Ids, boolean withAttachments, boolean includeReferences, SIMSFrScheme simsFrScheme) {
+
+		loadConversionState(withAttachments, includeReferences, simsFrScheme);
+		Model m0DocumentationModel = m0Dataset.getNamedModel("http://rdf.insee.fr/graphe/documentations");
 
 		// If list of identifiers received was null, get the list of all existing M0 'documentation' model identifiers
 		SortedSet<Integer> docIdentifiers = new TreeSet<Integer>();
@@ -134,22 +285,69 @@ public class M0SIMSConverter extends M0Converter {
 			logger.debug("Converting a list of M0 'documentation' models to SIMSFr format (" + docIdentifiers.size() + " models)");
 		}
 
-		Dataset simsDataset = DatasetFactory.create();
-		for (Integer docIdentifier : docIdentifiers) {
-			// Extract the M0 model containing the resource of the current documentation
-			Model docModel = M0Extractor.extractM0ResourceModel(m0DocumentationModel, Configuration.M0_SIMS_BASE_URI + docIdentifier);
-			// Convert to SIMS format
-			Model simsModel = convertM0ModelToSIMS(docModel, includeReferences);
-			if (!namedModels) simsDataset.getDefaultModel().add(simsModel);
-			else {
-				simsDataset.addNamedModel(Configuration.simsReportGraphURI(docIdentifier.toString()), simsModel);
+		return docIdentifiers;
+	}
+
+	/**
+	 * Loads the M0 dataset, the SIMSFr scheme and MSD and the indexes needed for the conversion of M0 'documentation' models.
+	 * After this call, <code>convertM0ModelToSIMS</code> can be called on any number of documentation models (see <code>ConversionService</code>).
+	 * The conversion metrics are reset, so that each conversion run reports only its own metrics.
+	 * 
+	 * @param withAttachments If <code>true</code>, the correspondence between documentations and the documented resources will be loaded.
+	 * @param includeReferences If <code>true</code>, the complete documents and links model will be created.
+	 */
+	static void loadConversionState(boolean withAttachments, boolean includeReferences) {
+
+		loadConversionState(withAttachments, includeReferences, null);
+	}
+
+	/**
+	 * Loads the information needed for the conversion of M0 'documentation' models, using a SIMSFr scheme already read by the caller.
+	 * 
+	 * @param withAttachments If <code>true</code>, the correspondence between documentations and the documented resources will be loaded.
+	 * @param includeReferences If <code>true</code>, the complete documents and links model will be created.
+	 * @param simsFrScheme The SIMSFr scheme, or <code>null</code> to read it from the Excel file of the configuration.
+	 */
+	static void loadConversionState(boolean withAttachments, boolean includeReferences, SIMSFrScheme simsFrScheme) {
+
+		metrics.reset();
+		// We will need the documentation model, the SIMSFr scheme and the SIMSFr MSD
+		readDataset();
+		try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.DATASET_LOAD)) {
+			simsFrMSD = (OntModel) ModelFactory.createOntologyModel().read(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME);
+			// The SIMSFr scheme is read for each run, unless it is provided by the caller (see PipelineOrchestrator)
+			simsFRScheme = (simsFrScheme != null) ? simsFrScheme : SIMSFrScheme.readSIMSFrFromExcel(new File(Configuration.SIMS_XLSX_FILE_NAME));
+		}
+
+		// We will also need all the attribute references to links and documents, and the values of organizational attributes (which are obtained through associations)
+		Model m0AssociationsModel = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "associations");
+		try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.ASSOCIATIONS)) {
+			attributeReferencesFr = getAllAttributeReferences(m0AssociationsModel, "fr");
+			attributeReferencesEn = getAllAttributeReferences(m0AssociationsModel, "en");
+			organizationValues = getOrganizationValues(m0AssociationsModel);
+		}
+		// If all documents and links information are to be included in the target documentation models, we need the complete documents and links model 
+		if (includeReferences) {
+			try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.REFERENCES)) {
+				simsDocumentsAndLinksModel = convertDocumentsToSIMS().add(convertLinksToSIMS());
 			}
-			simsModel.close();
-			docModel.close();
 		}
-		m0DocumentationModel.close();
+
+		try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.CODE_MAPPINGS)) {
+			// We also need the mappings between codes and labels for units of measure, since the coded values are now replaces by text (see hack below)
+			umMappings = M0Extractor.extractUnitMeasureMappings(m0Dataset, false);
+			// We also need the mappings between M0 CL_AREA codes and the target territory resources
+			geoMappings = GeoMapper.createM0CodeToURIMappings(m0Dataset);
+		}
+
+		// Finally, if attachments are requested, we need the correspondence between documentations and the documented resources
+		if (withAttachments) {
+			try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.ASSOCIATIONS)) {
+				simsAttachments = getSIMSAttachments(m0AssociationsModel);
+			}
+		}
+
 		m0AssociationsModel.close();
-		return simsDataset;
 	}
 
 	/**
@@ -159,7 +357,7 @@ public class M0SIMSConverter extends M0Converter {
 	 * @param includeReferences If <code>true</code>, the properties of referenced documents and links will be included in the model returned.
 	 * @return A Jena <code>Model</code> containing the metadata in SIMSFr format.
 	 */
-	private static Model convertM0ModelToSIMS(Model m0Model, boolean includeReferences) {
+	static Model convertM0ModelToSIMS(Model m0Model, boolean includeReferences) {
 
 		// Retrieve base URI (the base resource is a skos:Concept) and the corresponding M0 identifier
 		List<Statement> conceptStatements = m0Model.listStatements(null, RDF.type, SKOS.Concept).toList();
@@ -1,33 +1,46 @@
 package fr.insee.semweb.sdmx.metadata;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Set;
 
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
+import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RiotException;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.ORG;
 import org.apache.jena.vocabulary.OWL;
@@ -41,6 +54,7 @@ import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import fr.insee.semweb.utils.RDFOutput;
 import fr.insee.semweb.utils.Utils;
 
 /**
@@ -51,6 +65,10 @@ import fr.insee.semweb.utils.Utils;
 public class OrganizationModelMaker {
 
 	public static Logger logger = LogManager.getLogger(OrganizationModelMaker.class);
+	/** Properties file containing the parameters of the LDAP directory */
+	public static String LDAP_PROPERTIES_PATH = "src/main/resources/ldap.properties";
+	/** Name of the synchronization state property containing the last modification timestamp read in the LDAP directory */
+	public static String LDAP_SYNC_TIMESTAMP_PROPERTY = "ldap.sync.timestamp";
 	/** Use directly the DILA URIs for the organizations or make sameAs links */
 	public static boolean USE_DILA_URI = false;
 	/** For these line numbers, org:linkedTo relations will be used between the organization and its mother */
@@ -162,65 +180,174 @@ public class OrganizationModelMaker {
 	 */
 	public static Model createInseeModelFromLDAP() {
 
-		final String LDAP_PROPERTIES_PATH = "src/main/resources/ldap.properties";
+		Properties ldapProperties = readLDAPProperties();
+		if (ldapProperties == null) return null;
+
+		return createInseeModelFromLDAP(ldapProperties);
+	}
+
+	/**
+	 * Reads the information on Insee structures in a LDAP directory and transforms it into a Jena model.
+	 * 
+	 * @param ldapProperties The LDAP properties (host name, base, filter, attributes and optionally page size).
+	 * @return A Jena <code>Model</code> containing the organization scheme conforming to the ORG ontology, or <code>null</code> in case of error.
+	 */
+	public static Model createInseeModelFromLDAP(Properties ldapProperties) {
 
 		logger.info("Building Insee organization model from LDAP directory");
 
-		// Read properties (properties file should be UTF-8)
-		Properties ldapProperties = new Properties();
-		try (InputStream ldapPropertiesStream = new FileInputStream(LDAP_PROPERTIES_PATH))  {
-			ldapProperties.load(new InputStreamReader(ldapPropertiesStream, StandardCharsets.UTF_8));
-		} catch (Exception e) {
-			logger.error("Error while reading LDAP properties file " + LDAP_PROPERTIES_PATH + e.getMessage());
-			return null;
+		Model inseeModel = createInseeLDAPModel();
+		if (refreshInseeModelFromLDAP(inseeModel, ldapProperties, new Properties()) < 0) return null;
+
+		return inseeModel;
+	}
+
+	/**
+	 * Synchronizes a Turtle file containing the Insee organization model with the LDAP directory.
+	 * If the model file and the synchronization state file exist, only the units modified since the last synchronization are read from the directory,
+	 * otherwise the model is entirely rebuilt. Deleted units are only removed by a complete rebuild (which can be forced by deleting the state file).
+	 * The model file is only rewritten if units were added or changed, and both files are replaced atomically.
+	 * 
+	 * @param ldapProperties The LDAP properties (host name, base, filter, attributes and optionally page size).
+	 * @param modelFile The Turtle file containing the organization model.
+	 * @param syncStateFile The properties file where the synchronization state is persisted.
+	 * @return The updated organization model, or <code>null</code> in case of error.
+	 */
+	public static Model synchronizeInseeModelFromLDAP(Properties ldapProperties, File modelFile, File syncStateFile) {
+
+		Model inseeModel = null;
+		Properties syncState = new Properties();
+		if (modelFile.exists() && syncStateFile.exists()) {
+			try (InputStream syncStateStream = new FileInputStream(syncStateFile)) {
+				syncState.load(syncStateStream);
+				inseeModel = RDFDataMgr.loadModel(modelFile.getAbsolutePath());
+				logger.info("Incremental synchronization of Insee organization model since " + syncState.getProperty(LDAP_SYNC_TIMESTAMP_PROPERTY));
+			} catch (IOException | RiotException e) {
+				logger.warn("Error reading synchronization state or model, model will be rebuilt - " + e.getMessage());
+				syncState.clear();
+				inseeModel = null;
+			}
 		}
+		if (inseeModel == null) inseeModel = createInseeLDAPModel();
+
+		String previousTimestamp = syncState.getProperty(LDAP_SYNC_TIMESTAMP_PROPERTY);
+		int changes = refreshInseeModelFromLDAP(inseeModel, ldapProperties, syncState);
+		if (changes < 0) return null;
+		boolean timestampChanged = !Objects.equals(previousTimestamp, syncState.getProperty(LDAP_SYNC_TIMESTAMP_PROPERTY));
+		if ((changes == 0) && !timestampChanged && modelFile.exists() && syncStateFile.exists()) return inseeModel;
+		// Both files are written to temporary files and moved into place, the model first, so that an interrupted write leaves the previous versions
+		try {
+			if ((changes > 0) || !modelFile.exists()) {
+				File temporaryModelFile = new File(modelFile.getPath() + ".tmp");
+				// The model file is read back as Turtle at the next synchronization, whatever the configured output language
+				RDFOutput.write(inseeModel, temporaryModelFile, RDFFormat.TURTLE_BLOCKS, RDFOutput.Compression.NONE);
+				Files.move(temporaryModelFile.toPath(), modelFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			File temporaryStateFile = new File(syncStateFile.getPath() + ".tmp");
+			try (OutputStream syncStateStream = new FileOutputStream(temporaryStateFile)) {
+				syncState.store(syncStateStream, "Synchronization state of the Insee organization model with the LDAP directory");
+			}
+			Files.move(temporaryStateFile.toPath(), syncStateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.error("Error while saving the Insee organization model or its synchronization state - " + e.getMessage());
+		}
+
+		return inseeModel;
+	}
+
+	/**
+	 * Reads the units modified since the last synchronization in a LDAP directory and updates the Insee organization model accordingly.
+	 * The directory is queried with paged results, and each entry is added to the model as soon as it is read.
+	 * 
+	 * @param inseeModel The Insee organization model to update.
+	 * @param ldapProperties The LDAP properties (host name, base, filter, attributes and optionally page size).
+	 * @param syncState The synchronization state: if it contains a timestamp, only the entries modified at or after it are read; it is updated with the latest modification timestamp read.
+	 * @return The number of units whose statements were added or changed in the model (units read again without change are not counted), or -1 in case of error.
+	 */
+	public static int refreshInseeModelFromLDAP(Model inseeModel, Properties ldapProperties, Properties syncState) {
 
 		// Read and check properties
 		String ldapHostname = ldapProperties.getProperty("ldap.hostname");
 		String ldapBase = ldapProperties.getProperty("ldap.base");
 		String ldapFilter = ldapProperties.getProperty("ldap.filter");
 		String ldapAttributesString = ldapProperties.getProperty("ldap.attributes");
+		int pageSize = Integer.parseInt(ldapProperties.getProperty("ldap.pagesize", "500"));
 		if ((ldapHostname == null) || (ldapBase == null) || (ldapFilter == null) || (ldapAttributesString == null)) {
 			logger.error("Invalid LDAP properties " + ldapProperties);
-			return null;
+			return -1;
 		}
 		String[] ldapAttributes = ldapAttributesString.split(",");
-		logger.info("LDAP parameters - host: '" + ldapHostname + "', base: '" + ldapBase + "', filter: '" + ldapFilter + "', attributes: " + Arrays.toString(ldapAttributes));
+		// The modification timestamp is an operational attribute which must be requested explicitly
+		String[] returnedAttributes = Arrays.copyOf(ldapAttributes, ldapAttributes.length + 1);
+		returnedAttributes[ldapAttributes.length] = "modifyTimestamp";
+		String lastTimestamp = syncState.getProperty(LDAP_SYNC_TIMESTAMP_PROPERTY);
+		if (!ldapFilter.startsWith("(")) ldapFilter = "(" + ldapFilter + ")";
+		// Entries modified at the last timestamp are read again, since other changes can have occurred in the same second (adding a unit is idempotent)
+		if (lastTimestamp != null) ldapFilter = "(&" + ldapFilter + "(modifyTimestamp>=" + lastTimestamp + "))";
+		logger.info("LDAP parameters - host: '" + ldapHostname + "', base: '" + ldapBase + "', filter: '" + ldapFilter + "', attributes: " + Arrays.toString(ldapAttributes) + ", page size: " + pageSize);
 
 		// Construct environment and connect to the directory root
 		Hashtable<String, String> environment = new Hashtable<String, String>();
 		environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
 		environment.put(Context.PROVIDER_URL, ldapHostname);
 		environment.put(Context.SECURITY_AUTHENTICATION, "none");
-		SortedMap<String, String> units = new TreeMap<>();
-		SortedMap<String, String> hierarchy = new TreeMap<>();
+		Resource insee = inseeModel.createResource(Configuration.organizationURI("Insee"));
+		int unitCount = 0;
+		String maxTimestamp = lastTimestamp;
+		LdapContext context = null;
 		try {
-			DirContext context = new InitialDirContext(environment);
+			context = new InitialLdapContext(environment, null);
 
 			// Specify search criteria for units
 			SearchControls controls = new SearchControls();
 			controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-			controls.setReturningAttributes(ldapAttributes);
-			// Execute search and browse through results to fill list of units and hierarchy
-			NamingEnumeration<SearchResult> results = context.search(ldapBase, ldapFilter, controls);
-			while (results.hasMore()) {
-				SearchResult entree = results.next();
-				String unit = entree.getAttributes().get(ldapAttributes[0]).get(0).toString(); // Get first (and unique) value of 'ou' attribute
-				// HACK Filter out the 'AUTRE' unit
-				if ("AUTRE".equalsIgnoreCase(unit)) continue;
-				units.put(unit, entree.getAttributes().get(ldapAttributes[1]).get(0).toString()); // Get first (and unique) value of 'description' attribute
-				if (entree.getAttributes().get(ldapAttributes[2]) != null) {
-					String parent = entree.getAttributes().get(ldapAttributes[2]).get(0).toString().split(",")[0].substring(3); // First RDN is 'ou=<Id>', thus the substring
-					hierarchy.put(unit, parent);
+			controls.setReturningAttributes(returnedAttributes);
+			// Execute search page by page and add each unit to the model
+			byte[] cookie = null;
+			do {
+				context.setRequestControls(new Control[] {new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL)});
+				NamingEnumeration<SearchResult> results = context.search(ldapBase, ldapFilter, controls);
+				while (results.hasMore()) {
+					Attributes attributes = results.next().getAttributes();
+					if (attributes.get("modifyTimestamp") != null) {
+						String timestamp = attributes.get("modifyTimestamp").get(0).toString();
+						if ((maxTimestamp == null) || (timestamp.compareTo(maxTimestamp) > 0)) maxTimestamp = timestamp;
+					}
+					String unit = attributes.get(ldapAttributes[0]).get(0).toString(); // Get first (and unique) value of 'ou' attribute
+					// HACK Filter out the 'AUTRE' unit
+					if ("AUTRE".equalsIgnoreCase(unit)) continue;
+					String description = attributes.get(ldapAttributes[1]).get(0).toString(); // Get first (and unique) value of 'description' attribute
+					String parent = null;
+					if (attributes.get(ldapAttributes[2]) != null) {
+						parent = attributes.get(ldapAttributes[2]).get(0).toString().split(",")[0].substring(3); // First RDN is 'ou=<Id>', thus the substring
+					}
+					if (addLDAPUnit(inseeModel, insee, unit, description, parent)) unitCount++;
 				}
-			}
-			context.close();
-		} catch (NamingException e) {
+				cookie = null;
+				Control[] responseControls = context.getResponseControls();
+				if (responseControls != null) {
+					for (Control responseControl : responseControls) {
+						if (responseControl instanceof PagedResultsResponseControl) cookie = ((PagedResultsResponseControl) responseControl).getCookie();
+					}
+				}
+			} while ((cookie != null) && (cookie.length > 0));
+		} catch (NamingException | IOException e) {
 			logger.error("Error while querying the list of units - " + e.getMessage());
+			return -1;
+		} finally {
+			if (context != null) try { context.close(); } catch (NamingException ignored) {}
 		}
-		System.out.println(hierarchy);
+		if (maxTimestamp != null) syncState.setProperty(LDAP_SYNC_TIMESTAMP_PROPERTY, maxTimestamp);
+		logger.info(unitCount + " units added or changed from LDAP directory");
+
+		return unitCount;
+	}
+
+	/**
+	 * Creates the Insee organization model with its prefixes and the Insee organization.
+	 */
+	private static Model createInseeLDAPModel() {
 
-		// Create the Jena model
 		Model inseeModel = ModelFactory.createDefaultModel();
 
 		inseeModel.setNsPrefix("rdfs", RDFS.getURI());
@@ -235,26 +362,60 @@ public class OrganizationModelMaker {
 		insee.addProperty(SKOS.prefLabel, inseeModel.createLiteral("Institut national de la statistique et des études économiques", "fr"));
 		insee.addProperty(SKOS.prefLabel, inseeModel.createLiteral("National Institute of Statistics and Economic Studies", "en"));
 
-		for (String unitIdentifier : units.keySet()) {
-			logger.debug("Creating resource for unit " + unitIdentifier);
-			Resource unitResource = inseeModel.createResource(Configuration.inseeUnitURI(unitIdentifier));
-			unitResource.addProperty(RDF.type, ORG.OrganizationalUnit);
-			unitResource.addProperty(RDF.type, ORG.Organization); // Materialize the subsumption in order to simplify requests
-			unitResource.addProperty(DCTerms.identifier, unitIdentifier);
-			unitResource.addProperty(SKOS.prefLabel, inseeModel.createLiteral(units.get(unitIdentifier).trim(), "fr"));
-			if (hierarchy.containsKey(unitIdentifier)) {
-				Resource parentResource = inseeModel.createResource(Configuration.inseeUnitURI(hierarchy.get(unitIdentifier)));
-				parentResource.addProperty(ORG.hasUnit, unitResource);
-				unitResource.addProperty(ORG.unitOf, parentResource);
-			} else {
-				insee.addProperty(ORG.hasUnit, unitResource);
-				unitResource.addProperty(ORG.unitOf, insee);
-			}
-		}
-
 		return inseeModel;
 	}
 
+	/**
+	 * Adds or replaces a unit read from the LDAP directory in the Insee organization model.
+	 * 
+	 * @return <code>true</code> if the statements of the unit changed, <code>false</code> if the unit was already in the model with the same content.
+	 */
+	private static boolean addLDAPUnit(Model inseeModel, Resource insee, String unitIdentifier, String description, String parentIdentifier) {
+
+		logger.debug("Creating resource for unit " + unitIdentifier);
+		Resource unitResource = inseeModel.createResource(Configuration.inseeUnitURI(unitIdentifier));
+		Set<Statement> previousStatements = unitStatements(inseeModel, unitResource);
+		// Remove the previous label and position in the hierarchy of the unit, if any
+		unitResource.removeAll(SKOS.prefLabel);
+		for (RDFNode formerParent : inseeModel.listObjectsOfProperty(unitResource, ORG.unitOf).toList()) inseeModel.remove(formerParent.asResource(), ORG.hasUnit, unitResource);
+		unitResource.removeAll(ORG.unitOf);
+
+		unitResource.addProperty(RDF.type, ORG.OrganizationalUnit);
+		unitResource.addProperty(RDF.type, ORG.Organization); // Materialize the subsumption in order to simplify requests
+		unitResource.addProperty(DCTerms.identifier, unitIdentifier);
+		unitResource.addProperty(SKOS.prefLabel, inseeModel.createLiteral(description.trim(), "fr"));
+		Resource parentResource = (parentIdentifier == null) ? insee : inseeModel.createResource(Configuration.inseeUnitURI(parentIdentifier));
+		parentResource.addProperty(ORG.hasUnit, unitResource);
+		unitResource.addProperty(ORG.unitOf, parentResource);
+
+		return !previousStatements.equals(unitStatements(inseeModel, unitResource));
+	}
+
+	/**
+	 * Returns the statements describing a unit: those having the unit as subject, and the links from its parent.
+	 */
+	private static Set<Statement> unitStatements(Model inseeModel, Resource unitResource) {
+
+		Set<Statement> statements = new HashSet<>(inseeModel.listStatements(unitResource, null, (RDFNode) null).toList());
+		statements.addAll(inseeModel.listStatements(null, ORG.hasUnit, unitResource).toList());
+		return statements;
+	}
+
+	/**
+	 * Reads the LDAP properties file (the file should be UTF-8).
+	 */
+	private static Properties readLDAPProperties() {
+
+		Properties ldapProperties = new Properties();
+		try (InputStream ldapPropertiesStream = new FileInputStream(LDAP_PROPERTIES_PATH))  {
+			ldapProperties.load(new InputStreamReader(ldapPropertiesStream, StandardCharsets.UTF_8));
+		} catch (Exception e) {
+			logger.error("Error while reading LDAP properties file " + LDAP_PROPERTIES_PATH + e.getMessage());
+			return null;
+		}
+		return ldapProperties;
+	}
+
 	/**
 	 * Reads the information on SSM structures in the dedicated Excel sheet and transforms it into a Jena model.
 	 * 
@@ -276,6 +437,7 @@ public class OrganizationModelMaker {
 		Iterator<Row> orgRows = orgSheet.rowIterator();
 		Iterator<Row> detailRows = detailSheet.rowIterator();
 		orgRows.next(); detailRows.next(); // Skip the title lines
+		Set<String> createdOrganizations = new HashSet<>(); // URIs of the organizations already in the model
 
 		while (orgRows.hasNext()) {
 			Row orgRow = orgRows.next();
@@ -293,13 +455,19 @@ public class OrganizationModelMaker {
 			String orgURI = (USE_DILA_URI && (dilaURI.length() > 0) ? dilaURI : Configuration.organizationURI(orgId));
 			logger.debug("Creating organization resource for " + orgId + " with URI " + orgURI);
 			Resource organization = orgModel.createResource(orgURI, ORG.Organization);
+			createdOrganizations.add(orgURI);
 
 			organization.addProperty(DCTerms.identifier, orgId);
 			// French label is in column B and English label in column C (both should be always present)
-			String label = stripTrailingParenthesis(orgRow.getCell(1).toString().trim());
-			organization.addProperty(SKOS.prefLabel, orgModel.createLiteral(label, "fr"));
-			label = stripTrailingParenthesis(orgRow.getCell(2).toString().trim());
-			organization.addProperty(SKOS.prefLabel, orgModel.createLiteral(label, "en"));
+			// Acronyms in trailing parenthesis are removed from the labels and kept as alternative labels
+			String label = orgRow.getCell(1).toString().trim();
+			organization.addProperty(SKOS.prefLabel, orgModel.createLiteral(stripTrailingParenthesis(label), "fr"));
+			String acronym = getTrailingParenthesis(label);
+			if (acronym != null) organization.addProperty(SKOS.altLabel, orgModel.createLiteral(acronym, "fr"));
+			label = orgRow.getCell(2).toString().trim();
+			organization.addProperty(SKOS.prefLabel, orgModel.createLiteral(stripTrailingParenthesis(label), "en"));
+			acronym = getTrailingParenthesis(label);
+			if (acronym != null) organization.addProperty(SKOS.altLabel, orgModel.createLiteral(acronym, "en"));
 			// TODO I don't really know what to do with 'Dénomination SSM', declare it as altLabel for now
 			String ssmName = orgRow.getCell(3, MissingCellPolicy.CREATE_NULL_AS_BLANK).toString().trim();
 			if (ssmName.length() > 0) organization.addProperty(SKOS.altLabel, orgModel.createLiteral(ssmName, "fr"));
@@ -338,7 +506,7 @@ public class OrganizationModelMaker {
 
 			// Create mother organization and links to the daughter with appropriate property
 			// NB: there can be duplicates in mothers and grand-mothers, so we avoid to create duplicate SKOS labels
-			boolean existingOrg = orgModel.contains(ResourceFactory.createResource(motherURI), null, (RDFNode) null);
+			boolean existingOrg = !createdOrganizations.add(motherURI);
 			Resource mother = orgModel.createResource(motherURI, ORG.Organization);
 			if (!existingOrg) mother.addProperty(SKOS.prefLabel, orgModel.createLiteral(motherLabel, "fr"));
 			// Add organization as a daughter with appropriate property
@@ -356,7 +524,7 @@ public class OrganizationModelMaker {
 
 			// Create grand-mother organization if there is one
 			if (grannyURI != null) {
-				existingOrg = orgModel.contains(ResourceFactory.createResource(grannyURI), null, (RDFNode) null);
+				existingOrg = !createdOrganizations.add(grannyURI);
 				Resource granny = orgModel.createResource(grannyURI, ORG.Organization);
 				if (!existingOrg) granny.addProperty(SKOS.prefLabel, orgModel.createLiteral(grannyLabel, "fr"));
 				if (reportLinkMother.contains(rowNumber)) {
@@ -417,12 +585,25 @@ public class OrganizationModelMaker {
 	 */
 	public static String stripTrailingParenthesis(String label) {
 
-		if (label.endsWith(")")) {
-			return label.substring(0, label.lastIndexOf("(")).trim();
+		if (label.endsWith(")") && (label.lastIndexOf('(') >= 0)) {
+			return label.substring(0, label.lastIndexOf('(')).trim();
 		}
 		return label;
 	}
 
+	/**
+	 * Returns the content of the right-most parenthesis ending a string, typically the acronym in a label like 'Name (ACRONYM)'.
+	 * 
+	 * @param label The string to process.
+	 * @return The content of the trailing parenthesis, or <code>null</code> if the string does not end with a parenthesis or if the parenthesis is empty.
+	 */
+	public static String getTrailingParenthesis(String label) {
+
+		if (!label.endsWith(")") || (label.lastIndexOf('(') < 0)) return null;
+		String content = label.substring(label.lastIndexOf('(') + 1, label.length() - 1).trim();
+		return content.isEmpty() ? null : content;
+	}
+
 	/**
 	 * Creates an acronym from a string by concatenating the first letter of each token.
 	 * 
@@ -431,7 +612,6 @@ public class OrganizationModelMaker {
 	 */
 	public static String createAccronym(String label) {
 
-		System.out.println(label);
 		String[] terms = label.split("\\s");
 		StringBuilder builder = new StringBuilder();
 		for (String term : terms) builder.append(term.charAt(0));
@@ -0,0 +1,159 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.ORG;
+import org.apache.jena.vocabulary.SKOS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.insee.semweb.utils.Utils;
+
+/**
+ * Resolves organizations to their URIs from their identifiers, labels or acronyms.
+ * Identifiers, labels and acronyms are normalized once when an organization model is indexed, so that each resolution is a simple hash lookup.
+ *
+ * @author Franck
+ */
+public class OrganizationResolver {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(OrganizationResolver.class);
+
+	/** Organization URIs by normalized identifier */
+	private final Map<String, String> identifierIndex = new HashMap<>();
+	/** Organization URIs by normalized label */
+	private final Map<String, String> labelIndex = new HashMap<>();
+	/** Organization URIs by normalized acronym */
+	private final Map<String, String> acronymIndex = new HashMap<>();
+
+	/**
+	 * Creates a resolver for the organizations of a model, as produced by <code>OrganizationModelMaker</code>.
+	 *
+	 * @param orgModel The organization model.
+	 * @return The organization resolver.
+	 */
+	public static OrganizationResolver fromModel(Model orgModel) {
+
+		OrganizationResolver resolver = new OrganizationResolver();
+		resolver.addModel(orgModel);
+
+		return resolver;
+	}
+
+	/**
+	 * Adds to the indexes the organizations of a model: identifiers (<code>dcterms:identifier</code> or <code>org:identifier</code>),
+	 * labels (<code>skos:prefLabel</code> and <code>skos:altLabel</code>) and acronyms (content of trailing parenthesis in labels, and alternative labels,
+	 * which contain the acronyms removed from the preferred labels by <code>OrganizationModelMaker.createSSMModel</code>).
+	 * In case of collision, the first organization indexed is kept.
+	 *
+	 * @param orgModel The organization model.
+	 */
+	public void addModel(Model orgModel) {
+
+		for (Property identifierProperty : new Property[] {DCTerms.identifier, ORG.identifier}) {
+			indexValues(orgModel, identifierProperty, identifierIndex, false);
+		}
+		indexValues(orgModel, SKOS.prefLabel, labelIndex, true);
+		indexValues(orgModel, SKOS.altLabel, labelIndex, true);
+		indexValues(orgModel, SKOS.altLabel, acronymIndex, false);
+		logger.debug("Organization resolver contains " + identifierIndex.size() + " identifiers, " + labelIndex.size() + " labels and " + acronymIndex.size() + " acronyms");
+	}
+
+	/**
+	 * Indexes the values of a property on URI subjects, and the acronyms contained in labels.
+	 */
+	private void indexValues(Model orgModel, Property property, Map<String, String> index, boolean isLabel) {
+
+		StmtIterator iterator = orgModel.listStatements(null, property, (RDFNode) null);
+		while (iterator.hasNext()) {
+			Statement statement = iterator.next();
+			if (!statement.getSubject().isURIResource() || !statement.getObject().isLiteral()) continue;
+			String uri = statement.getSubject().getURI();
+			String value = statement.getLiteral().getLexicalForm().trim();
+			if (isLabel) {
+				// A label ending with a parenthesis is of the form 'Name (ACRONYM)'
+				String acronym = OrganizationModelMaker.getTrailingParenthesis(value);
+				if (acronym != null) putIfAbsent(acronymIndex, normalize(acronym), uri);
+				putIfAbsent(index, normalize(OrganizationModelMaker.stripTrailingParenthesis(value)), uri);
+			}
+			else putIfAbsent(index, normalize(value), uri);
+		}
+		iterator.close();
+	}
+
+	private static void putIfAbsent(Map<String, String> index, String key, String uri) {
+
+		if (key.isEmpty()) return;
+		String previousURI = index.putIfAbsent(key, uri);
+		if ((previousURI != null) && !previousURI.equals(uri)) logger.debug("Key " + key + " already indexed for " + previousURI + ", ignored for " + uri);
+	}
+
+	/**
+	 * Returns the URI of the organization with a given identifier.
+	 *
+	 * @param identifier The identifier of the organization (case and diacritics are ignored).
+	 * @return The URI of the organization, or <code>null</code> if the identifier is unknown.
+	 */
+	public String resolveIdentifier(String identifier) {
+		return (identifier == null) ? null : identifierIndex.get(normalize(identifier));
+	}
+
+	/**
+	 * Returns the URI of the organization with a given label (trailing parenthesis, case and diacritics are ignored).
+	 *
+	 * @param label The label of the organization.
+	 * @return The URI of the organization, or <code>null</code> if the label is unknown.
+	 */
+	public String resolveLabel(String label) {
+		return (label == null) ? null : labelIndex.get(normalize(OrganizationModelMaker.stripTrailingParenthesis(label.trim())));
+	}
+
+	/**
+	 * Returns the URI of the organization with a given acronym.
+	 *
+	 * @param acronym The acronym of the organization (case and diacritics are ignored).
+	 * @return The URI of the organization, or <code>null</code> if the acronym is unknown.
+	 */
+	public String resolveAcronym(String acronym) {
+		return (acronym == null) ? null : acronymIndex.get(normalize(acronym));
+	}
+
+	/**
+	 * Returns the URI of an organization designated by an identifier, a label or an acronym, tried in that order.
+	 *
+	 * @param key The identifier, label or acronym of the organization.
+	 * @return The URI of the organization, or <code>null</code> if no organization is found.
+	 */
+	public String resolve(String key) {
+
+		String uri = resolveIdentifier(key);
+		if (uri == null) uri = resolveLabel(key);
+		if (uri == null) uri = resolveAcronym(key);
+		return uri;
+	}
+
+	/**
+	 * Indicates if an organization with a given identifier is known.
+	 *
+	 * @param identifier The identifier of the organization.
+	 * @return <code>true</code> if the identifier is indexed, <code>false</code> otherwise.
+	 */
+	public boolean containsIdentifier(String identifier) {
+		return resolveIdentifier(identifier) != null;
+	}
+
+	/**
+	 * Normalizes an identifier, label or acronym for indexing.
+	 */
+	static String normalize(String value) {
+		return Utils.slug(value);
+	}
+}
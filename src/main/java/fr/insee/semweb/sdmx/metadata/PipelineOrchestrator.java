@@ -0,0 +1,751 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import fr.insee.semweb.utils.RDFOutput;
+
+/**
+ * Runs the production of the RDF outputs as a graph of stages.
+ * Each stage declares its input files, the stages it depends on and its output files. Independent stages are run in parallel,
+ * inputs loaded by one stage (M0 dataset, SIMSFr scheme, Excel workbooks...) are shared with the others through the <code>PipelineContext</code>,
+ * and a stage is skipped if the content of its inputs and of the outputs of its dependencies has not changed since its last successful run.
+ * Stages that use the static state of the same class are put in the same exclusive group so that they are not run concurrently.
+ *
+ * @author Franck
+ */
+public class PipelineOrchestrator {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(PipelineOrchestrator.class);
+
+	/** Name of the file storing the input fingerprints of the stages, in the output directory */
+	public static String STATE_FILE_NAME = "pipeline-state.properties";
+
+	/** Name of the directory storing the state of the publication, in the output directory */
+	public static String PUBLICATION_DIRECTORY_NAME = "publication";
+
+	/** Names of the shared inputs of the default pipeline */
+	public static final String M0_DATASET = "m0-dataset";
+	public static final String SIMS_FR_SCHEME = "sims-fr-scheme";
+	public static final String ORGANIZATION_WORKBOOK = "organization-workbook";
+	public static final String URI_MAPPING_SOURCES = "uri-mapping-sources";
+
+	/** Possible outcomes of a stage */
+	public enum StageStatus {
+		/** The stage was run successfully */
+		COMPLETED,
+		/** The inputs of the stage had not changed: the stage was not run */
+		SKIPPED,
+		/** The stage was run and raised an error */
+		FAILED,
+		/** The stage was not run because one of its dependencies failed */
+		CANCELLED
+	}
+
+	/** The action performed by a stage */
+	@FunctionalInterface
+	public interface StageAction {
+		void run(PipelineContext context) throws Exception;
+	}
+
+	private final File outputDirectory;
+	private final PipelineContext context;
+	private final Map<String, Stage> stages = new LinkedHashMap<>();
+	private final Map<String, Object> groupLocks = new ConcurrentHashMap<>();
+	/** Content hashes of the files, keyed by path, modification time and length */
+	private final Map<String, String> fileHashes = new ConcurrentHashMap<>();
+	private boolean force = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates an orchestrator without stages.
+	 *
+	 * @param outputDirectory The directory where the outputs and the state file are written.
+	 */
+	public PipelineOrchestrator(File outputDirectory) {
+
+		this.outputDirectory = outputDirectory;
+		this.context = new PipelineContext(outputDirectory);
+	}
+
+	/**
+	 * Adds a stage to the pipeline.
+	 *
+	 * @param stage The stage to add.
+	 * @return This orchestrator.
+	 */
+	public PipelineOrchestrator addStage(Stage stage) {
+
+		if (stages.containsKey(stage.name)) throw new IllegalArgumentException("Duplicate stage " + stage.name);
+		stages.put(stage.name, stage);
+		return this;
+	}
+
+	/**
+	 * Runs all the stages of the pipeline.
+	 *
+	 * @return The outcome of each stage, in execution order.
+	 * @throws IOException In case of problem reading or writing the state file.
+	 */
+	public Map<String, StageStatus> run() throws IOException {
+
+		return run(null);
+	}
+
+	/**
+	 * Runs a selection of stages of the pipeline, with the stages they depend on.
+	 *
+	 * @param targets The names of the stages to run, or <code>null</code> or an empty collection to run all stages.
+	 * @return The outcome of each stage, in execution order.
+	 * @throws IOException In case of problem reading or writing the state file.
+	 */
+	public Map<String, StageStatus> run(Collection<String> targets) throws IOException {
+
+		List<Stage> order = executionOrder((targets == null || targets.isEmpty()) ? stages.keySet() : targets);
+		logger.info("Running stages " + order.stream().map(stage -> stage.name).reduce((first, second) -> first + ", " + second).orElse(""));
+
+		if (!outputDirectory.exists()) outputDirectory.mkdirs();
+		File stateFile = new File(outputDirectory, STATE_FILE_NAME);
+		Properties state = new Properties();
+		if (stateFile.exists()) {
+			try (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+				state.load(reader);
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, order.size())));
+		Map<String, CompletableFuture<StageStatus>> futures = new LinkedHashMap<>();
+		try {
+			for (Stage stage : order) {
+				List<CompletableFuture<StageStatus>> dependencies = new ArrayList<>();
+				for (String dependency : stage.dependencies) dependencies.add(futures.get(dependency));
+				// Stages never complete exceptionally: errors are reported by the status
+				CompletableFuture<StageStatus> future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+						.thenApplyAsync(ignored -> execute(stage, dependencies, state, stateFile), executor);
+				futures.put(stage.name, future);
+			}
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+		} finally {
+			executor.shutdown();
+		}
+
+		Map<String, StageStatus> results = new LinkedHashMap<>();
+		futures.forEach((name, future) -> results.put(name, future.join()));
+		logger.info("Pipeline results: " + results);
+		return results;
+	}
+
+	/**
+	 * Returns the stages affected by changes in a set of files: the stages having one of the files as input, and the stages depending on them.
+	 *
+	 * @param changedFiles The files that changed.
+	 * @return The names of the affected stages, in declaration order.
+	 */
+	public Set<String> affectedStages(Collection<File> changedFiles) {
+
+		Set<Path> changedPaths = new HashSet<>();
+		for (File file : changedFiles) changedPaths.add(file.toPath().toAbsolutePath().normalize());
+
+		Set<String> affected = new LinkedHashSet<>();
+		for (Stage stage : stages.values()) {
+			if (stage.inputs.stream().anyMatch(input -> changedPaths.contains(input.toPath().toAbsolutePath().normalize()))) affected.add(stage.name);
+		}
+		// Add the dependent stages until no new stage is found
+		boolean added = !affected.isEmpty();
+		while (added) {
+			added = false;
+			for (Stage stage : stages.values()) {
+				if (!affected.contains(stage.name) && stage.dependencies.stream().anyMatch(affected::contains)) added = affected.add(stage.name);
+			}
+		}
+		// Return the stages in declaration order
+		Set<String> result = new LinkedHashSet<>();
+		for (String name : stages.keySet()) if (affected.contains(name)) result.add(name);
+		return result;
+	}
+
+	/**
+	 * Runs one stage once all its dependencies are finished, unless it can be skipped.
+	 */
+	private StageStatus execute(Stage stage, List<CompletableFuture<StageStatus>> dependencies, Properties state, File stateFile) {
+
+		for (CompletableFuture<StageStatus> dependency : dependencies) {
+			StageStatus status = dependency.join();
+			if ((status == StageStatus.FAILED) || (status == StageStatus.CANCELLED)) {
+				logger.warn("Stage " + stage.name + " cancelled because one of its dependencies did not succeed");
+				return StageStatus.CANCELLED;
+			}
+		}
+
+		try {
+			String fingerprint = fingerprint(stage);
+			if (!force && fingerprint.equals(getState(state, stage.name)) && stage.outputs.stream().allMatch(File::exists)) {
+				logger.info("Inputs of stage " + stage.name + " unchanged, stage skipped");
+				return StageStatus.SKIPPED;
+			}
+			logger.info("Starting stage " + stage.name);
+			long start = System.currentTimeMillis();
+			if (stage.exclusiveGroup == null) stage.action.run(context);
+			else {
+				synchronized (groupLocks.computeIfAbsent(stage.exclusiveGroup, group -> new Object())) {
+					stage.action.run(context);
+				}
+			}
+			logger.info("Stage " + stage.name + " completed in " + (System.currentTimeMillis() - start) + " ms");
+			saveState(state, stateFile, stage.name, fingerprint);
+			return StageStatus.COMPLETED;
+		} catch (Exception e) {
+			logger.error("Error in stage " + stage.name, e);
+			try {
+				saveState(state, stateFile, stage.name, null);
+			} catch (IOException ignored) { }
+			return StageStatus.FAILED;
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of a stage from the content of its inputs and of the outputs of its dependencies.
+	 */
+	String fingerprint(Stage stage) throws IOException {
+
+		List<File> files = new ArrayList<>(stage.inputs);
+		for (String dependency : stage.dependencies) files.addAll(stages.get(dependency).outputs);
+
+		MessageDigest digest = newDigest();
+		digest.update(stage.name.getBytes(StandardCharsets.UTF_8));
+		for (File file : files) {
+			digest.update(("\n" + file.getPath() + "\t" + (file.exists() ? contentHash(file) : "absent")).getBytes(StandardCharsets.UTF_8));
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the content of a file, which is computed only once as long as the file is not modified.
+	 */
+	private String contentHash(File file) throws IOException {
+
+		String key = file.getAbsolutePath() + "|" + fileStamp(file);
+		String hash = fileHashes.get(key);
+		if (hash == null) {
+			MessageDigest digest = newDigest();
+			byte[] buffer = new byte[65536];
+			try (InputStream input = new FileInputStream(file)) {
+				int read;
+				while ((read = input.read(buffer)) > 0) digest.update(buffer, 0, read);
+			}
+			hash = toHex(digest.digest());
+			fileHashes.put(key, hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns a marker changing when a file is modified, with the precision of the file system for the modification time.
+	 */
+	static String fileStamp(File file) {
+
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			return attributes.lastModifiedTime() + "|" + attributes.size();
+		} catch (IOException e) {
+			return "absent";
+		}
+	}
+
+	private static String getState(Properties state, String stageName) {
+
+		synchronized (state) {
+			return state.getProperty(stageName);
+		}
+	}
+
+	/**
+	 * Records (or removes if <code>null</code>) the fingerprint of a stage and rewrites the state file atomically.
+	 */
+	private static void saveState(Properties state, File stateFile, String stageName, String fingerprint) throws IOException {
+
+		synchronized (state) {
+			if (fingerprint == null) state.remove(stageName);
+			else state.setProperty(stageName, fingerprint);
+			File temporaryFile = new File(stateFile.getPath() + ".tmp");
+			try (Writer writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+				state.store(writer, "Input fingerprints of the pipeline stages");
+			}
+			Files.move(temporaryFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Returns the stages to run in an order compatible with their dependencies.
+	 */
+	List<Stage> executionOrder(Collection<String> targets) {
+
+		List<Stage> order = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+		for (String target : targets) visit(target, visited, new HashSet<>(), order);
+		return order;
+	}
+
+	private void visit(String name, Set<String> visited, Set<String> path, List<Stage> order) {
+
+		if (visited.contains(name)) return;
+		Stage stage = stages.get(name);
+		if (stage == null) throw new IllegalArgumentException("Unknown stage " + name);
+		if (!path.add(name)) throw new IllegalArgumentException("Cycle in the dependencies of stage " + name);
+		for (String dependency : stage.dependencies) visit(dependency, visited, path, order);
+		path.remove(name);
+		visited.add(name);
+		order.add(stage);
+	}
+
+	private static MessageDigest newDigest() {
+
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // SHA-256 is available on all Java platforms
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder builder = new StringBuilder();
+		for (byte value : bytes) builder.append(String.format("%02x", value));
+		return builder.toString();
+	}
+
+	/**
+	 * Creates the pipeline producing all the outputs of the project, without publication.
+	 *
+	 * @param outputDirectory The directory where the outputs and the state file are written.
+	 * @return The orchestrator for the complete pipeline.
+	 */
+	public static PipelineOrchestrator createDefaultPipeline(File outputDirectory) {
+
+		return createDefaultPipeline(outputDirectory, null);
+	}
+
+	/**
+	 * Creates the pipeline producing all the outputs of the project.
+	 * The SIMS models are written at the locations specified in the configuration since they are read by the conversion of the reports,
+	 * the other outputs are written in the output directory.
+	 * If a publication target is given, a last stage publishes the changes of the operation and SIMS graphs with a <code>GraphPublisher</code>.
+	 *
+	 * @param outputDirectory The directory where the outputs and the state file are written.
+	 * @param publicationTarget The SPARQL update endpoint URL or the file where the changes are written, or <code>null</code> for no publication.
+	 * @return The orchestrator for the complete pipeline.
+	 */
+	public static PipelineOrchestrator createDefaultPipeline(File outputDirectory, String publicationTarget) {
+
+		PipelineOrchestrator orchestrator = new PipelineOrchestrator(outputDirectory);
+
+		orchestrator.addStage(new Stage("sims-models", context -> SIMSModelMaker.writeModels(getSIMSFrScheme(context)))
+				.inputs(Configuration.SIMS_XLSX_FILE_NAME)
+				.outputs(Configuration.SIMS_CS_TURTLE_FILE_NAME, Configuration.SIMS_FR_CS_TURTLE_FILE_NAME, Configuration.SIMS_MSD_TURTLE_FILE_NAME, Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME));
+
+		File codesFile = RDFOutput.outputFile(outputDirectory, "codes", true);
+		orchestrator.addStage(new Stage("code-lists", context -> {
+			Dataset codes = CodelistModelMaker.readCodelistDataset(new File(Configuration.CL_XLSX_FILE_NAME), Configuration.INSEE_BASE_GRAPH_URI + "concepts", Configuration.INSEE_BASE_GRAPH_URI + "codes", null);
+			if (codes == null) throw new IOException("Error reading the code lists from " + Configuration.CL_XLSX_FILE_NAME);
+			RDFOutput.write(codes, codesFile);
+		}).inputs(Configuration.CL_XLSX_FILE_NAME).outputs(codesFile));
+
+		// POI workbooks are not thread-safe: the stages sharing the organization workbook are run one at a time
+		File inseeFile = RDFOutput.outputFile(outputDirectory, "insee", false);
+		orchestrator.addStage(new Stage("insee-organizations", context -> writeModel(OrganizationModelMaker.createInseeModel(getOrganizationWorkbook(context)), inseeFile))
+				.inputs(Configuration.ORGANIZATIONS_XLSX_FILE_NAME).outputs(inseeFile).exclusiveGroup(ORGANIZATION_WORKBOOK));
+		File ssmFile = RDFOutput.outputFile(outputDirectory, "ssm", false);
+		orchestrator.addStage(new Stage("ssm-organizations", context -> writeModel(OrganizationModelMaker.createSSMModel(getOrganizationWorkbook(context)), ssmFile))
+				.inputs(Configuration.ORGANIZATIONS_XLSX_FILE_NAME).outputs(ssmFile).exclusiveGroup(ORGANIZATION_WORKBOOK));
+
+		// The M0 converters share static state: the M0 stages are run one at a time
+		File m0CodesFile = RDFOutput.outputFile(outputDirectory, "m0-codes", false);
+		orchestrator.addStage(new Stage("m0-code-lists", context -> {
+			useM0Dataset(context);
+			writeModel(M0Converter.convertCodeLists(), m0CodesFile);
+		}).inputs(Configuration.M0_FILE_NAME).outputs(m0CodesFile).exclusiveGroup(M0_DATASET));
+
+		// The M0 organizations are checked against the SSM organizations produced by the pipeline
+		File m0OrganizationsFile = RDFOutput.outputFile(outputDirectory, "m0-organizations", false);
+		orchestrator.addStage(new Stage("m0-organizations", context -> {
+			useM0Dataset(context);
+			writeModel(M0Converter.convertOrganizations(ssmFile), m0OrganizationsFile);
+		}).inputs(Configuration.M0_FILE_NAME).dependsOn("ssm-organizations").outputs(m0OrganizationsFile).exclusiveGroup(M0_DATASET));
+
+		// The operations and the reports refer to the organizations through their URIs in the SSM organizations produced by the pipeline
+		File operationsFile = RDFOutput.outputFile(outputDirectory, "operations", true);
+		orchestrator.addStage(new Stage("operations", context -> {
+			useM0Dataset(context);
+			useURIMappingSources(context, ssmFile);
+			Dataset operations = M0Converter.convertAllOperationsAndIndicators(Configuration.INSEE_BASE_GRAPH_URI + "operations", Configuration.INSEE_BASE_GRAPH_URI + "produits");
+			RDFOutput.write(operations, operationsFile);
+		}).inputs(Configuration.M0_FILE_NAME, Configuration.FAMILY_THEMES_XLSX_FILE_NAME, Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME, Configuration.DDS_ID_TO_WEB4G_ID_FILE_NAME)
+				.dependsOn("ssm-organizations").outputs(operationsFile).exclusiveGroup(M0_DATASET));
+
+		// The reports converted by a failed run are kept in a checkpoint directory, which is removed once the output is written
+		File simsFile = RDFOutput.outputFile(outputDirectory, "sims", true);
+		File simsCheckpointDirectory = new File(outputDirectory, "sims-checkpoint");
+		orchestrator.addStage(new Stage("sims-reports", context -> {
+			useM0Dataset(context);
+			useURIMappingSources(context, ssmFile);
+			SIMSFrScheme simsFrScheme = getSIMSFrScheme(context);
+			try (OutputStream output = RDFOutput.openStream(simsFile, RDFOutput.COMPRESSION)) {
+				M0SIMSConverter.convertToSIMS(null, true, false, RDFOutput.writerStream(output, true), simsCheckpointDirectory, simsFrScheme);
+			}
+			ConversionCheckpoint.delete(simsCheckpointDirectory);
+		}).inputs(Configuration.M0_FILE_NAME, Configuration.SIMS_XLSX_FILE_NAME, Configuration.GEO_REFERENCE_FILE_NAME, Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME, Configuration.DDS_ID_TO_WEB4G_ID_FILE_NAME)
+				.dependsOn("sims-models", "ssm-organizations").outputs(simsFile).exclusiveGroup(M0_DATASET));
+
+		// The publication state is kept in the output directory, and the graphs missing from the outputs are removed from the target
+		if (publicationTarget != null) {
+			File publicationDirectory = new File(outputDirectory, PUBLICATION_DIRECTORY_NAME);
+			Stage publication = new Stage("publication", context -> {
+				Dataset dataset = DatasetFactory.create();
+				RDFDataMgr.read(dataset, operationsFile.getAbsolutePath());
+				RDFDataMgr.read(dataset, simsFile.getAbsolutePath());
+				new GraphPublisher(publicationDirectory).publish(dataset, true, publicationTarget);
+			}).dependsOn("operations", "sims-reports");
+			if (!publicationTarget.startsWith("http://") && !publicationTarget.startsWith("https://")) publication.outputs(new File(publicationTarget));
+			orchestrator.addStage(publication);
+		}
+
+		return orchestrator;
+	}
+
+	static void useM0Dataset(PipelineContext context) throws Exception {
+
+		Dataset m0Dataset = context.get(M0_DATASET, new File(Configuration.M0_FILE_NAME), () -> {
+			try (ConversionMetrics.Timer timer = M0Converter.metrics.startTimer(ConversionMetrics.DATASET_LOAD)) {
+				return RDFDataMgr.loadDataset(Configuration.M0_FILE_NAME);
+			}
+		});
+		M0Converter.useDataset(m0Dataset);
+	}
+
+	/**
+	 * Makes the M0 converters use the current identifier mapping files and a target organization model, reading them again if they changed since the previous use.
+	 */
+	static void useURIMappingSources(PipelineContext context, File targetOrganizationsFile) throws Exception {
+
+		List<File> sources = Arrays.asList(new File(Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME), new File(Configuration.DDS_ID_TO_WEB4G_ID_FILE_NAME), targetOrganizationsFile);
+		context.get(URI_MAPPING_SOURCES, sources, () -> {
+			M0Converter.reloadURIMappingSources(targetOrganizationsFile);
+			return targetOrganizationsFile;
+		});
+	}
+
+	static SIMSFrScheme getSIMSFrScheme(PipelineContext context) throws Exception {
+
+		File simsFile = new File(Configuration.SIMS_XLSX_FILE_NAME);
+		SIMSFrScheme simsFrScheme = context.get(SIMS_FR_SCHEME, simsFile, () -> SIMSFrScheme.readSIMSFrFromExcel(simsFile));
+		if (simsFrScheme == null) throw new IOException("Error reading the SIMSFr scheme from " + Configuration.SIMS_XLSX_FILE_NAME);
+		return simsFrScheme;
+	}
+
+	private static Workbook getOrganizationWorkbook(PipelineContext context) throws Exception {
+
+		File workbookFile = new File(Configuration.ORGANIZATIONS_XLSX_FILE_NAME);
+		return context.get(ORGANIZATION_WORKBOOK, workbookFile, () -> WorkbookFactory.create(workbookFile));
+	}
+
+	private static void writeModel(Model model, File file) throws IOException {
+
+		RDFOutput.write(model, file);
+		model.close();
+	}
+
+	/**
+	 * Runs the default pipeline.
+	 *
+	 * @param args Options <code>--output directory</code> (default <code>target/pipeline</code>), <code>--force</code> (run even the unchanged stages),
+	 * <code>--threads n</code>, <code>--format ttl|nt|rt</code> (language of the outputs), <code>--compression none|gzip|bzip2|zstd</code>,
+	 * <code>--pretty</code> (use the pretty writers), <code>--publish endpoint|file</code> (publish the changes of the operation and SIMS graphs),
+	 * followed by the names of the stages to run (default all).
+	 * @throws IOException In case of problem reading or writing the state file.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		File outputDirectory = new File("target/pipeline");
+		boolean force = false;
+		String publicationTarget = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> targets = new ArrayList<>();
+		for (int index = 0; index < args.length; index++) {
+			if ("--output".equals(args[index])) outputDirectory = new File(args[++index]);
+			else if ("--force".equals(args[index])) force = true;
+			else if ("--threads".equals(args[index])) threads = Integer.parseInt(args[++index]);
+			else if ("--format".equals(args[index])) {
+				RDFOutput.OUTPUT_LANG = RDFLanguages.fileExtToLang(args[++index]);
+				if (RDFOutput.OUTPUT_LANG == null) throw new IllegalArgumentException("Unknown output format " + args[index]);
+			}
+			else if ("--compression".equals(args[index])) RDFOutput.COMPRESSION = RDFOutput.Compression.valueOf(args[++index].toUpperCase());
+			else if ("--pretty".equals(args[index])) RDFOutput.PRETTY = true;
+			else if ("--publish".equals(args[index])) publicationTarget = args[++index];
+			else targets.add(args[index]);
+		}
+
+		PipelineOrchestrator orchestrator = createDefaultPipeline(outputDirectory, publicationTarget).setForce(force).setThreads(threads);
+		Map<String, StageStatus> results;
+		try {
+			results = orchestrator.run(targets);
+		} finally {
+			orchestrator.getContext().close();
+		}
+		if (results.containsValue(StageStatus.FAILED) || results.containsValue(StageStatus.CANCELLED)) System.exit(1);
+	}
+
+	public Map<String, Stage> getStages() {
+		return stages;
+	}
+
+	public PipelineContext getContext() {
+		return context;
+	}
+
+	public PipelineOrchestrator setForce(boolean force) {
+		this.force = force;
+		return this;
+	}
+
+	public PipelineOrchestrator setThreads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * A stage of the pipeline: an action with its input files, the stages it depends on and its output files.
+	 * The outputs of the dependencies are implicitly inputs of the stage.
+	 */
+	public static class Stage {
+
+		private final String name;
+		private StageAction action;
+		private final List<File> inputs = new ArrayList<>();
+		private final List<File> outputs = new ArrayList<>();
+		private final List<String> dependencies = new ArrayList<>();
+		private String exclusiveGroup = null;
+
+		/**
+		 * Creates a stage without inputs, outputs or dependencies.
+		 *
+		 * @param name The name of the stage.
+		 * @param action The action performed by the stage.
+		 */
+		public Stage(String name, StageAction action) {
+
+			this.name = name;
+			this.action = action;
+		}
+
+		/**
+		 * Replaces the action performed by the stage, for example by an incremental version (see <code>PipelineWatcher</code>).
+		 *
+		 * @param action The new action.
+		 * @return This stage.
+		 */
+		public Stage action(StageAction action) {
+			this.action = action;
+			return this;
+		}
+
+		public Stage inputs(String... fileNames) {
+			for (String fileName : fileNames) inputs.add(new File(fileName));
+			return this;
+		}
+
+		public Stage inputs(File... files) {
+			inputs.addAll(Arrays.asList(files));
+			return this;
+		}
+
+		public Stage outputs(String... fileNames) {
+			for (String fileName : fileNames) outputs.add(new File(fileName));
+			return this;
+		}
+
+		public Stage outputs(File... files) {
+			outputs.addAll(Arrays.asList(files));
+			return this;
+		}
+
+		public Stage dependsOn(String... stageNames) {
+			dependencies.addAll(Arrays.asList(stageNames));
+			return this;
+		}
+
+		/**
+		 * Puts the stage in a group of stages that must not be run concurrently.
+		 *
+		 * @param group The name of the group.
+		 * @return This stage.
+		 */
+		public Stage exclusiveGroup(String group) {
+			exclusiveGroup = group;
+			return this;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<File> getInputs() {
+			return inputs;
+		}
+
+		public List<File> getOutputs() {
+			return outputs;
+		}
+
+		public List<String> getDependencies() {
+			return dependencies;
+		}
+	}
+
+	/**
+	 * The inputs shared between the stages of a pipeline.
+	 * Each input is loaded once by the first stage requesting it, and loaded again only if its source file has been modified.
+	 */
+	public static class PipelineContext implements AutoCloseable {
+
+		private final File outputDirectory;
+		private final Map<String, SharedInput> inputs = new ConcurrentHashMap<>();
+
+		PipelineContext(File outputDirectory) {
+			this.outputDirectory = outputDirectory;
+		}
+
+		/**
+		 * Returns a shared input, loading it if it is not already loaded or if its source file has changed.
+		 * Concurrent requests for the same input wait for the end of the loading. An input replaced after a change of its source file is closed if it is closeable.
+		 *
+		 * @param name The name of the input.
+		 * @param source The file from which the input is loaded, or <code>null</code> if the input does not depend on a file.
+		 * @param loader The function loading the input.
+		 * @return The input.
+		 * @throws Exception The error raised by the loader.
+		 */
+		public <T> T get(String name, File source, Callable<T> loader) throws Exception {
+
+			return get(name, (source == null) ? Collections.<File>emptyList() : Collections.singletonList(source), loader);
+		}
+
+		/**
+		 * Returns a shared input loaded from several files, loading it if it is not already loaded or if one of its source files has changed.
+		 *
+		 * @param name The name of the input.
+		 * @param sources The files from which the input is loaded.
+		 * @param loader The function loading the input.
+		 * @return The input.
+		 * @throws Exception The error raised by the loader.
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> T get(String name, List<File> sources, Callable<T> loader) throws Exception {
+
+			StringBuilder stampBuilder = new StringBuilder();
+			for (File source : sources) stampBuilder.append(source.getPath()).append('|').append(fileStamp(source)).append('\n');
+			String stamp = stampBuilder.toString();
+			SharedInput[] replaced = new SharedInput[1];
+			SharedInput input = inputs.compute(name, (key, current) -> {
+				if ((current != null) && current.stamp.equals(stamp)) return current;
+				replaced[0] = current;
+				return new SharedInput(stamp);
+			});
+			if (replaced[0] != null) {
+				logger.debug("Source of shared input " + name + " changed, previous value released");
+				replaced[0].close();
+			}
+			return (T) input.get(loader);
+		}
+
+		public File getOutputDirectory() {
+			return outputDirectory;
+		}
+
+		/**
+		 * Releases the inputs, closing those that are closeable.
+		 */
+		@Override
+		public void close() {
+
+			for (SharedInput input : inputs.values()) input.close();
+			inputs.clear();
+		}
+	}
+
+	private static class SharedInput {
+
+		private final String stamp;
+		private boolean loaded = false;
+		private Object value = null;
+		private Exception failure = null;
+
+		SharedInput(String stamp) {
+			this.stamp = stamp;
+		}
+
+		synchronized Object get(Callable<?> loader) throws Exception {
+
+			if (!loaded) {
+				try {
+					value = loader.call();
+				} catch (Exception e) {
+					failure = e;
+				}
+				loaded = true;
+			}
+			if (failure != null) throw failure;
+			return value;
+		}
+
+		/**
+		 * Closes the value if it is closeable, waiting for the end of its loading.
+		 */
+		synchronized void close() {
+
+			if (value instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) value).close();
+				} catch (Exception ignored) { }
+			}
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.PipelineContext;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.Stage;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.StageAction;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.StageStatus;
+import fr.insee.semweb.utils.GraphDiff;
+import fr.insee.semweb.utils.RDFOutput;
+
+/**
+ * Watches the input files of a pipeline and runs the affected stages when they change.
+ * The stages affected by a change are those having the file as input and the stages depending on them; among these, the stages whose inputs
+ * have the same content as at their last run are skipped by the orchestrator. Events are grouped until no change is detected during <code>DEBOUNCE_DELAY</code>
+ * milliseconds, so that a file written in several steps triggers only one run. The inputs shared in the pipeline context stay loaded between runs,
+ * and are loaded again only when their source file changes.
+ *
+ * @author Franck
+ */
+public class PipelineWatcher implements AutoCloseable {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(PipelineWatcher.class);
+
+	/** Time in milliseconds without new changes after which the affected stages are run */
+	public static long DEBOUNCE_DELAY = 500;
+
+	private final PipelineOrchestrator orchestrator;
+	private final WatchService watchService;
+	/** Watched input files, by directory */
+	private final Map<Path, Set<Path>> watchedFiles = new HashMap<>();
+	private Consumer<Map<String, StageStatus>> listener = results -> {};
+
+	/**
+	 * Creates a watcher for the input files of the stages of a pipeline.
+	 *
+	 * @param orchestrator The orchestrator of the pipeline.
+	 * @throws IOException In case of problem registering the directories of the input files.
+	 */
+	public PipelineWatcher(PipelineOrchestrator orchestrator) throws IOException {
+
+		this.orchestrator = orchestrator;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		for (Stage stage : orchestrator.getStages().values()) {
+			for (File input : stage.getInputs()) {
+				Path path = input.toPath().toAbsolutePath().normalize();
+				Path directory = path.getParent();
+				if (!watchedFiles.containsKey(directory)) {
+					if (!Files.isDirectory(directory)) {
+						logger.warn("Directory " + directory + " does not exist, input file " + path + " will not be watched");
+						continue;
+					}
+					// Files replaced by editors are often deleted or renamed, then created
+					directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+					watchedFiles.put(directory, new HashSet<>());
+				}
+				watchedFiles.get(directory).add(path);
+			}
+		}
+	}
+
+	/**
+	 * Sets a listener receiving the results of each run.
+	 *
+	 * @param listener The listener.
+	 * @return This watcher.
+	 */
+	public PipelineWatcher setListener(Consumer<Map<String, StageStatus>> listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Runs the whole pipeline, then waits for changes of the input files and runs the affected stages, until the watcher is closed.
+	 *
+	 * @throws InterruptedException If the thread is interrupted while waiting for changes.
+	 */
+	public void watch() throws InterruptedException {
+
+		runStages(Collections.emptySet());
+		logger.info("Watching " + watchedFiles.values().stream().mapToInt(Set::size).sum() + " input files in " + watchedFiles.size() + " directories");
+		try {
+			while (true) {
+				Set<File> changedFiles = new LinkedHashSet<>();
+				WatchKey key = watchService.take();
+				// Events are collected until no new event arrives during the debounce delay
+				while (key != null) {
+					collectChanges(key, changedFiles);
+					key = watchService.poll(DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+				}
+				if (changedFiles.isEmpty()) continue;
+				Set<String> affectedStages = orchestrator.affectedStages(changedFiles);
+				logger.info("Changes detected in " + changedFiles + ", affected stages: " + affectedStages);
+				runStages(affectedStages);
+			}
+		} catch (ClosedWatchServiceException e) {
+			logger.info("Watch stopped");
+		}
+	}
+
+	/**
+	 * Stops watching the input files.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	/**
+	 * Runs stages of the pipeline, errors on the state file being logged so that the watch can continue.
+	 */
+	private void runStages(Set<String> stageNames) {
+
+		try {
+			listener.accept(orchestrator.run(stageNames));
+		} catch (IOException e) {
+			logger.error("Error running stages " + stageNames, e);
+		}
+	}
+
+	/**
+	 * Adds to a set the watched files concerned by the events of a watch key.
+	 */
+	private void collectChanges(WatchKey key, Set<File> changedFiles) {
+
+		Path directory = (Path) key.watchable();
+		Set<Path> directoryFiles = watchedFiles.getOrDefault(directory, Collections.emptySet());
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				// Some events were lost: all the files of the directory are considered modified
+				for (Path path : directoryFiles) changedFiles.add(path.toFile());
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (directoryFiles.contains(path)) changedFiles.add(path.toFile());
+		}
+		key.reset();
+	}
+
+	/**
+	 * Runs the default pipeline, then watches its input files. The SIMS reports are converted incrementally.
+	 *
+	 * @param args Options <code>--output directory</code> (default <code>target/pipeline</code>) and <code>--threads n</code>.
+	 * @throws IOException In case of problem registering the directories of the input files.
+	 * @throws InterruptedException If the watch is interrupted.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		File outputDirectory = new File("target/pipeline");
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int index = 0; index < args.length; index++) {
+			if ("--output".equals(args[index])) outputDirectory = new File(args[++index]);
+			else if ("--threads".equals(args[index])) threads = Integer.parseInt(args[++index]);
+			else throw new IllegalArgumentException("Unknown option " + args[index]);
+		}
+
+		PipelineOrchestrator orchestrator = PipelineOrchestrator.createDefaultPipeline(outputDirectory).setThreads(threads);
+		Stage reportStage = orchestrator.getStages().get("sims-reports");
+		List<File> sharedFiles = new ArrayList<>(reportStage.getInputs());
+		sharedFiles.remove(new File(Configuration.M0_FILE_NAME));
+		sharedFiles.add(new File(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME));
+		File ssmFile = orchestrator.getStages().get("ssm-organizations").getOutputs().get(0);
+		sharedFiles.add(ssmFile);
+		reportStage.action(new IncrementalReportConversion(reportStage.getOutputs().get(0), sharedFiles, ssmFile));
+
+		try (PipelineWatcher watcher = new PipelineWatcher(orchestrator)) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					watcher.close();
+				} catch (IOException ignored) { }
+			}));
+			watcher.watch();
+		} finally {
+			orchestrator.getContext().close();
+		}
+	}
+
+	/**
+	 * Action of the SIMS reports stage converting only the M0 documentations that changed since the previous run, the reports being kept in memory between runs.
+	 * Only the documentation graph of the M0 dataset is compared per documentation: if another M0 graph or one of the shared files (SIMSFr scheme, MSD, identifier
+	 * mappings, SSM organizations...) changes, all the reports are converted again, since these feed indexes and URI mappings used by all reports.
+	 */
+	public static class IncrementalReportConversion implements StageAction {
+
+		private final File outputFile;
+		private final List<File> sharedFiles;
+		private final File organizationsFile;
+		private final Dataset reports = DatasetFactory.create();
+		private Map<Integer, String> documentationFingerprints = new HashMap<>();
+		private String sharedFingerprint = null;
+		private int convertedCount = 0;
+
+		/**
+		 * Creates the incremental conversion of the SIMS reports.
+		 *
+		 * @param outputFile The file where the reports are written.
+		 * @param sharedFiles The files other than the M0 dataset on which all the reports depend.
+		 * @param organizationsFile The RDF file of the target organization model used for the organization URIs.
+		 */
+		public IncrementalReportConversion(File outputFile, List<File> sharedFiles, File organizationsFile) {
+
+			this.outputFile = outputFile;
+			this.sharedFiles = sharedFiles;
+			this.organizationsFile = organizationsFile;
+		}
+
+		@Override
+		public void run(PipelineContext context) throws Exception {
+
+			PipelineOrchestrator.useM0Dataset(context);
+			SIMSFrScheme simsFrScheme = PipelineOrchestrator.getSIMSFrScheme(context);
+			Dataset m0Dataset = M0Converter.m0Dataset;
+			String documentationGraph = Configuration.M0_BASE_GRAPH_URI + "documentations";
+
+			String currentSharedFingerprint = sharedFingerprint(m0Dataset, documentationGraph);
+			if (!currentSharedFingerprint.equals(sharedFingerprint)) {
+				logger.info("Inputs shared by all reports changed, all reports will be converted");
+				M0Converter.reloadURIMappingSources(organizationsFile);
+				M0SIMSConverter.loadConversionState(true, false, simsFrScheme);
+				reports.asDatasetGraph().clear();
+				documentationFingerprints.clear();
+			}
+
+			SortedMap<Integer, Model> partitions = M0Extractor.partitionM0DocumentationModel(m0Dataset.getNamedModel(documentationGraph));
+			Map<Integer, String> currentFingerprints = new HashMap<>();
+			convertedCount = 0;
+			for (Map.Entry<Integer, Model> partition : partitions.entrySet()) {
+				String fingerprint = hash(Collections.singletonList(partition.getValue().getGraph()));
+				currentFingerprints.put(partition.getKey(), fingerprint);
+				if (fingerprint.equals(documentationFingerprints.get(partition.getKey()))) continue;
+				reports.replaceNamedModel(Configuration.simsReportGraphURI(partition.getKey().toString()), M0SIMSConverter.convertM0ModelToSIMS(partition.getValue(), false));
+				convertedCount++;
+			}
+			int removedCount = 0;
+			for (Integer documentationId : documentationFingerprints.keySet()) {
+				if (currentFingerprints.containsKey(documentationId)) continue;
+				reports.removeNamedModel(Configuration.simsReportGraphURI(documentationId.toString()));
+				removedCount++;
+			}
+			logger.info(convertedCount + " reports converted, " + removedCount + " reports removed");
+			documentationFingerprints = currentFingerprints;
+			sharedFingerprint = currentSharedFingerprint;
+
+			RDFOutput.write(reports, outputFile);
+		}
+
+		/**
+		 * Returns the number of reports converted during the last run.
+		 *
+		 * @return The number of reports converted.
+		 */
+		public int getConvertedCount() {
+			return convertedCount;
+		}
+
+		/**
+		 * Computes the fingerprint of the M0 graphs other than the documentation graph and of the stamps of the shared files.
+		 */
+		private String sharedFingerprint(Dataset m0Dataset, String documentationGraph) {
+
+			List<String> graphNames = new ArrayList<>();
+			m0Dataset.listNames().forEachRemaining(graphNames::add);
+			graphNames.remove(documentationGraph);
+			Collections.sort(graphNames);
+			List<Graph> graphs = new ArrayList<>();
+			for (String graphName : graphNames) graphs.add(m0Dataset.getNamedModel(graphName).getGraph());
+			StringBuilder stamps = new StringBuilder(String.join(" ", graphNames)).append('\n').append(hash(graphs));
+			for (File file : sharedFiles) stamps.append('\n').append(file.getPath()).append('\t').append(PipelineOrchestrator.fileStamp(file));
+			return stamps.toString();
+		}
+
+		private static String hash(Collection<Graph> graphs) {
+
+			MessageDigest digest;
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e); // SHA-256 is available on all Java platforms
+			}
+			for (Graph graph : graphs) {
+				for (String statement : GraphDiff.canonicalStatements(graph)) digest.update((statement + "\n").getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			StringBuilder builder = new StringBuilder();
+			for (byte value : digest.digest()) builder.append(String.format("%02x", value));
+			return builder.toString();
+		}
+	}
+}
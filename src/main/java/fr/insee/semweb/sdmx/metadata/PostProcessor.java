@@ -1,7 +1,12 @@
 package fr.insee.semweb.sdmx.metadata;
 
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 import org.apache.jena.vocabulary.SKOS;
@@ -9,7 +14,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
-import java.util.function.Consumer;
 
 /**
  * Applies specific treatments after M0 -> target conversion.
@@ -29,71 +33,115 @@ public class PostProcessor {
 	 */
 	public static void enrichGSIMLabels(Model simsModel, Model resourceModel) {
 
-		// Loop through the instances of metadata report
-		Selector selector = new SimpleSelector(null, RDF.type, Configuration.SIMS_METADATA_REPORT);
-		simsModel.listStatements(selector).forEachRemaining(new Consumer<Statement>() {
-			@Override
-			public void accept(Statement statement) {
-				logger.debug(statement);
-				// Get the subject report and the associated target resource
-				Resource report = statement.getSubject();
-				StmtIterator attachmentStatements = report.listProperties(Configuration.SIMS_TARGET);
-				if (!attachmentStatements.hasNext())
-					logger.error("Report " + report.getURI() + " is not attached to any resource");
-				else {
-					Resource targetResource = attachmentStatements.nextStatement().getObject().asResource();
-					logger.info("Report " + report.getURI() + " is attached to resource " + targetResource.getURI()
-							+ ", looking up for resource in resource model");
-					// If we find the report attached to more than one resource, that's an error
-					attachmentStatements.forEachRemaining(ignoredStatement -> {
-						logger.error("Statement ignored: " + ignoredStatement.toString());
-					});
-					attachmentStatements.close();
-					// Try to find the documented resource and its labels (SKOS prefLabel) in the
-					// resource model
-					Resource documentedResource = resourceModel.createResource(targetResource.getURI());
-					StmtIterator labelStatements = documentedResource.listProperties(SKOS.prefLabel);
-					if (!labelStatements.hasNext())
-						logger.error("No label found for resource " + documentedResource.getURI()
-						+ " in the resource model");					
-					else {
-					while(labelStatements.hasNext()) {
-						Statement labelStatement = labelStatements.nextStatement();
-						if (labelStatement != null) {
-							Literal label = labelStatement.getObject().asLiteral();
-							if ("fr".equals(label.getLanguage())) {
-								String frenchResourceLabel = label.getLexicalForm();
-								// Remove current report's French label
-								Statement statementToReplace = report.getProperty(RDFS.label, "fr");
-								simsModel.remove(statementToReplace);
-								// Add new value for the report's French label
-								String newReportFrenchLabel = "Rapport qualité : " + frenchResourceLabel;
-								report.addProperty(RDFS.label, simsModel.createLiteral(newReportFrenchLabel, "fr"));
-								logger.debug("French label modified for resource " + documentedResource.getURI()
-									+ " in the resource model");
-							}
-							else if ("en".equals(label.getLanguage())) {
-								String englishResourceLabel = label.getLexicalForm();
-								// Remove current report's English label
-								Statement statementToReplace = report.getProperty(RDFS.label, "en");
-								simsModel.remove(statementToReplace);
-								// Add new value for the report's English label
-								String newReportFrenchLabel = "Quality report: " + englishResourceLabel;
-								report.addProperty(RDFS.label, simsModel.createLiteral(newReportFrenchLabel, "en"));
-								logger.debug("English label modified for resource " + documentedResource.getURI()
-									+ " in the resource model");
-							} 
-						}
-					}
-					}
-				}}});
+		enrichGSIMLabels(simsModel, createLabelIndex(resourceModel));
+	}
+
+	/**
+	 * Personalizes the labels of SIMS documentations using a pre-computed index of the labels of the documented resources.
+	 * All modifications are computed first and then applied to the model as one removal and one addition.
+	 *
+	 * @param simsModel The Jena model containing the SIMS documentations.
+	 * @param labelIndex The label index, as returned by the <code>createLabelIndex</code> method.
+	 * @return The number of reports whose labels were modified.
+	 */
+	public static int enrichGSIMLabels(Model simsModel, Map<String, String[]> labelIndex) {
+
+		List<Statement> statementsToRemove = new ArrayList<>();
+		List<Statement> statementsToAdd = new ArrayList<>();
+		int modifiedReports = 0;
+
+		// Loop through the instances of metadata report and compute the label modifications
+		ResIterator reportIterator = simsModel.listSubjectsWithProperty(RDF.type, Configuration.SIMS_METADATA_REPORT);
+		while (reportIterator.hasNext()) {
+			Resource report = reportIterator.next();
+			List<RDFNode> targets = simsModel.listObjectsOfProperty(report, Configuration.SIMS_TARGET).toList();
+			if (targets.isEmpty()) {
+				logger.error("Report " + report.getURI() + " is not attached to any resource");
+				continue;
+			}
+			// If we find the report attached to more than one resource, that's an error
+			if (targets.size() > 1) logger.error("Report " + report.getURI() + " is attached to more than one resource, only " + targets.get(0) + " will be considered");
+			if (!targets.get(0).isURIResource()) {
+				logger.error("Target of report " + report.getURI() + " is not a URI resource");
+				continue;
+			}
+			String targetURI = targets.get(0).asResource().getURI();
+			String[] targetLabels = labelIndex.get(targetURI);
+			if (targetLabels == null) {
+				logger.error("No label found for resource " + targetURI + " in the resource model");
+				continue;
+			}
+			logger.debug("Report " + report.getURI() + " is attached to resource " + targetURI);
+			if (targetLabels[0] != null) {
+				statementsToRemove.addAll(simsModel.listStatements(report, RDFS.label, (String) null, "fr").toList());
+				statementsToAdd.add(simsModel.createStatement(report, RDFS.label, simsModel.createLiteral("Rapport qualité : " + targetLabels[0], "fr")));
+			}
+			if (targetLabels[1] != null) {
+				statementsToRemove.addAll(simsModel.listStatements(report, RDFS.label, (String) null, "en").toList());
+				statementsToAdd.add(simsModel.createStatement(report, RDFS.label, simsModel.createLiteral("Quality report: " + targetLabels[1], "en")));
+			}
+			modifiedReports++;
+		}
+		reportIterator.close();
+
+		// Apply the modifications in one batch
+		simsModel.remove(statementsToRemove);
+		simsModel.add(statementsToAdd);
+		logger.info("Labels modified for " + modifiedReports + " reports (" + statementsToRemove.size() + " statements removed, " + statementsToAdd.size() + " statements added)");
+
+		return modifiedReports;
+	}
+
+	/**
+	 * Personalizes the labels of the SIMS documentations contained in the named graphs of a dataset.
+	 * The label index is computed once and the named graphs are processed in parallel.
+	 *
+	 * @param simsDataset The dataset containing the SIMS documentations, one per named graph.
+	 * @param resourceModel The Jena model containing the documented resources.
+	 * @return The total number of reports whose labels were modified.
+	 */
+	public static int enrichGSIMLabels(Dataset simsDataset, Model resourceModel) {
+
+		Map<String, String[]> labelIndex = createLabelIndex(resourceModel);
+
+		// Named models are resolved sequentially, each one is then modified independently
+		List<Model> simsModels = new ArrayList<>();
+		simsDataset.listNames().forEachRemaining(graphName -> simsModels.add(simsDataset.getNamedModel(graphName)));
+		logger.info("Enriching labels in " + simsModels.size() + " named graphs");
+
+		return simsModels.parallelStream().mapToInt(simsModel -> enrichGSIMLabels(simsModel, labelIndex)).sum();
+	}
+
+	/**
+	 * Creates an index of the French and English SKOS preferred labels of the resources of a model.
+	 * If a resource has several labels in the same language, the last one read is kept.
+	 *
+	 * @param resourceModel The Jena model containing the resources and their labels.
+	 * @return A map whose keys are the resource URIs and the values arrays containing the French and English labels (or <code>null</code>).
+	 */
+	public static Map<String, String[]> createLabelIndex(Model resourceModel) {
+
+		Map<String, String[]> labelIndex = new HashMap<>();
+		StmtIterator labelIterator = resourceModel.listStatements(null, SKOS.prefLabel, (RDFNode) null);
+		while (labelIterator.hasNext()) {
+			Statement labelStatement = labelIterator.next();
+			if (!labelStatement.getSubject().isURIResource() || !labelStatement.getObject().isLiteral()) continue;
+			Literal label = labelStatement.getLiteral();
+			int languageIndex = "fr".equals(label.getLanguage()) ? 0 : ("en".equals(label.getLanguage()) ? 1 : -1);
+			if (languageIndex < 0) continue;
+			labelIndex.computeIfAbsent(labelStatement.getSubject().getURI(), uri -> new String[2])[languageIndex] = label.getLexicalForm();
+		}
+		labelIterator.close();
+		logger.debug("Label index created for " + labelIndex.size() + " resources");
+
+		return labelIndex;
 	}
 
 	/**
 	 * Modifies a Jena model by adding statements on resources of a given class. All
 	 * statements of the list will be added to each instance of the given class
 	 * which is subject in the model. Subjects of the provided statements are
-	 * ignored. No checks are made to verify if statements are already in the model.
+	 * ignored.
 	 *
 	 * @param model        The Jena model to modify.
 	 * @param resourceType The type (OWL/RDFS class) of subject resources to
@@ -103,21 +151,52 @@ public class PostProcessor {
 	 */
 	public static void addStatements(Model model, Resource resourceType, List<Statement> statements) {
 
-		// Loop through the instances of the given class in the model
-		logger.info(statements.size() + " statements to be added to all instances of " + resourceType.getURI());
-		final int[] modifiedResources = { 0 }; // Variables used in inner Consumer should be final
-		Selector selector = new SimpleSelector(null, RDF.type, resourceType);
-		model.listStatements(selector).forEachRemaining(new Consumer<Statement>() {
-			@Override
-			public void accept(Statement statement) {
-				Resource instance = statement.getSubject();
-				for (Statement statementToAdd : statements) {
-					instance.addProperty(statementToAdd.getPredicate(), statementToAdd.getObject());
+		addStatements(model, Collections.singletonMap(resourceType, statements));
+	}
+
+	/**
+	 * Modifies a Jena model by adding statements on resources of given classes, in a single pass for all classes.
+	 * The instances of the classes are collected first, the new triples are then staged and committed to the graph in one bulk addition.
+	 * Subjects of the provided statements are ignored, and triples already present in the model are not counted as added.
+	 *
+	 * @param model The Jena model to modify.
+	 * @param rules A map whose keys are the types (OWL/RDFS classes) of subject resources to qualify and values the lists of statements containing properties and values to add.
+	 * @return A map giving for each type the number of triples actually added to the model.
+	 */
+	public static Map<Resource, Integer> addStatements(Model model, Map<Resource, List<Statement>> rules) {
+
+		Graph graph = model.getGraph();
+		Map<Node, Resource> typeNodes = new HashMap<>();
+		for (Resource resourceType : rules.keySet()) typeNodes.put(resourceType.asNode(), resourceType);
+
+		// Collect the instances of all the given classes in one pass on the type statements
+		Map<Resource, List<Node>> instances = new HashMap<>();
+		ExtendedIterator<Triple> typeIterator = graph.find(Node.ANY, RDF.type.asNode(), Node.ANY);
+		while (typeIterator.hasNext()) {
+			Triple typeTriple = typeIterator.next();
+			Resource resourceType = typeNodes.get(typeTriple.getObject());
+			if (resourceType != null) instances.computeIfAbsent(resourceType, type -> new ArrayList<>()).add(typeTriple.getSubject());
+		}
+		typeIterator.close();
+
+		// Stage the new triples, then commit them with one bulk addition
+		Map<Resource, Integer> addedTriples = new LinkedHashMap<>();
+		Set<Triple> stagedTriples = new LinkedHashSet<>();
+		for (Map.Entry<Resource, List<Statement>> rule : rules.entrySet()) {
+			List<Node> ruleInstances = instances.getOrDefault(rule.getKey(), Collections.emptyList());
+			logger.info(rule.getValue().size() + " statements to be added to " + ruleInstances.size() + " instances of " + rule.getKey().getURI());
+			int ruleCount = 0;
+			for (Node instance : ruleInstances) {
+				for (Statement statementToAdd : rule.getValue()) {
+					Triple triple = Triple.create(instance, statementToAdd.getPredicate().asNode(), statementToAdd.getObject().asNode());
+					if (!graph.contains(triple) && stagedTriples.add(triple)) ruleCount++;
 				}
-				logger.debug("Statements added to resource " + instance.getURI());
-				modifiedResources[0]++;
 			}
-		});
-		logger.info(modifiedResources[0] + " resources modified");
+			addedTriples.put(rule.getKey(), ruleCount);
+		}
+		GraphUtil.add(graph, new ArrayList<>(stagedTriples));
+		logger.info(stagedTriples.size() + " triples added to the model, details by type: " + addedTriples);
+
+		return addedTriples;
 	}
 }
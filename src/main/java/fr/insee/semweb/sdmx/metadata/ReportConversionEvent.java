@@ -0,0 +1,47 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event covering the conversion of one M0 documentation into a SIMS report.
+ * This class must only be loaded when the Flight Recorder API is available (see <code>ConversionMetrics</code>).
+ *
+ * @author Franck
+ */
+@Name("fr.insee.semweb.ReportConversion")
+@Label("SIMS Report Conversion")
+@Category({"SDMX Metadata", "Conversion"})
+@Description("Conversion of a M0 documentation into a SIMS report")
+class ReportConversionEvent extends Event {
+
+	@Label("Documentation Identifier")
+	int documentationId;
+
+	@Label("Statements Produced")
+	long statementCount;
+
+	/**
+	 * Creates and begins an event for a documentation.
+	 */
+	static Object begin(int documentationId) {
+
+		ReportConversionEvent event = new ReportConversionEvent();
+		event.documentationId = documentationId;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends and commits an event created by <code>begin</code>.
+	 */
+	static void commit(Object event, long statementCount) {
+
+		ReportConversionEvent reportEvent = (ReportConversionEvent) event;
+		reportEvent.statementCount = statementCount;
+		reportEvent.commit();
+	}
+}
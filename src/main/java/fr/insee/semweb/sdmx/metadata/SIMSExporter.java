@@ -1,29 +1,609 @@
 package fr.insee.semweb.sdmx.metadata;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.atlas.json.io.JSWriter;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.sparql.util.Closure;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.DCTypes;
 import org.apache.jena.vocabulary.ORG;
+import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.SKOS;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import fr.insee.semweb.utils.SPARQLClient;
+import fr.insee.semweb.utils.URIComparator;
 
+/**
+ * Exports SIMS reports from the RDF store to other formats and models.
+ */
 public class SIMSExporter {
 
 	public static Logger logger = LogManager.getLogger();
 
-	// Export as SMDX
-	public static void exportAsSDMX(Model simsModel) {
-		
+	/** Caches of expanded SIMS models, by connection */
+	private static final Map<RDFConnection, SIMSModelCache> modelCaches = new ConcurrentHashMap<>();
+
+	/** Namespace of the SDMX-ML 2.1 message schema */
+	public static final String SDMX_MESSAGE_NS = "http://www.sdmx.org/resources/sdmxml/schemas/v2_1/message";
+	/** Namespace of the SDMX-ML 2.1 generic metadata schema */
+	public static final String SDMX_GENERIC_METADATA_NS = "http://www.sdmx.org/resources/sdmxml/schemas/v2_1/metadata/generic";
+	/** Namespace of the SDMX-ML 2.1 common schema */
+	public static final String SDMX_COMMON_NS = "http://www.sdmx.org/resources/sdmxml/schemas/v2_1/common";
+	/** Identifier of the sender of the SDMX-ML messages (Insee agency) */
+	public static String SDMX_SENDER_ID = "FR1";
+	/** Identifier of the metadata structure definition referenced in the SDMX-ML messages */
+	public static String SDMX_MSD_ID = "SIMSFR";
+	/** Maximum number of levels of blank nodes followed in the descriptions of the targets of SIMS documents retrieved by batches */
+	public static int TARGET_DESCRIPTION_DEPTH = 3;
+	/** Number of SIMS reports rendered in parallel and held in memory by the JSON export of a dataset */
+	public static int JSON_EXPORT_GROUP_SIZE = 64;
+	/** Comment marking the place of the reports in the envelope of a concatenated SDMX-ML message */
+	private static final String REPORTS_MARKER = "SIMS reports";
+
+	/**
+	 * Exports the SIMS reports contained in a Jena model as a SDMX-ML 2.1 GenericMetadata message.
+	 * The reported attributes are written in the order of the SIMSFr scheme, nested according to the scheme hierarchy.
+	 * 
+	 * @param simsModel The Jena model containing the SIMS reports.
+	 * @param simsFrScheme The SIMSFr scheme.
+	 * @param output The stream where the message is written (it is not closed by this method).
+	 * @throws XMLStreamException In case of problem writing the XML stream.
+	 */
+	public static void exportAsSDMX(Model simsModel, SIMSFrScheme simsFrScheme, OutputStream output) throws XMLStreamException {
+
+		Map<String, List<SIMSFrEntry>> schemeTree = getSchemeTree(simsFrScheme);
+		List<Resource> reports = simsModel.listSubjectsWithProperty(RDF.type, Configuration.SIMS_METADATA_REPORT).toList();
+		String messageId = (reports.size() == 1) ? "SIMS_" + StringUtils.substringAfterLast(reports.get(0).getURI(), "/") : "SIMS";
+
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+		writeMessageStart(writer, messageId);
+		for (Resource report : reports) writeReport(writer, simsModel, report, schemeTree);
+		writeMessageEnd(writer);
+		writer.close();
+	}
+
+	/**
+	 * Exports each SIMS report contained in the named graphs of a dataset as a SDMX-ML 2.1 GenericMetadata message in a separate file.
+	 * The reports are exported in parallel, the name of each file is the identifier of the report followed by the '.xml' extension.
+	 * 
+	 * @param simsDataset The dataset containing the SIMS reports, one per named graph.
+	 * @param simsFrScheme The SIMSFr scheme.
+	 * @param outputDirectory The directory where the files are written.
+	 * @return The number of files successfully written.
+	 */
+	public static int exportAsSDMX(Dataset simsDataset, SIMSFrScheme simsFrScheme, File outputDirectory) {
+
+		Map<String, List<SIMSFrEntry>> schemeTree = getSchemeTree(simsFrScheme);
+		List<Model> simsModels = new ArrayList<>();
+		simsDataset.listNames().forEachRemaining(graphName -> simsModels.add(simsDataset.getNamedModel(graphName)));
+		logger.info("Exporting " + simsModels.size() + " SIMS reports as SDMX-ML files in directory " + outputDirectory.getAbsolutePath());
+
+		AtomicInteger exportedFiles = new AtomicInteger();
+		simsModels.parallelStream().forEach(simsModel -> {
+			for (Resource report : simsModel.listSubjectsWithProperty(RDF.type, Configuration.SIMS_METADATA_REPORT).toList()) {
+				String reportId = StringUtils.substringAfterLast(report.getURI(), "/");
+				try (OutputStream output = new BufferedOutputStream(new FileOutputStream(new File(outputDirectory, reportId + ".xml")))) {
+					XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+					writeMessageStart(writer, "SIMS_" + reportId);
+					writeReport(writer, simsModel, report, schemeTree);
+					writeMessageEnd(writer);
+					writer.close();
+					exportedFiles.incrementAndGet();
+				} catch (IOException | XMLStreamException e) {
+					logger.error("Error writing SDMX-ML file for report " + report.getURI() + " - " + e.getMessage());
+				}
+			}
+		});
+		logger.info(exportedFiles.get() + " SDMX-ML files written");
+
+		return exportedFiles.get();
+	}
+
+	/**
+	 * Exports the SIMS reports contained in the named graphs of a dataset as one SDMX-ML 2.1 GenericMetadata message.
+	 * The reports are rendered in parallel and then written in the order of the graph names.
+	 * 
+	 * @param simsDataset The dataset containing the SIMS reports, one per named graph.
+	 * @param simsFrScheme The SIMSFr scheme.
+	 * @param output The stream where the message is written (it is not closed by this method).
+	 * @throws XMLStreamException In case of problem writing the XML stream.
+	 * @throws IOException In case of problem writing to the output stream.
+	 */
+	public static void exportAsSDMX(Dataset simsDataset, SIMSFrScheme simsFrScheme, OutputStream output) throws XMLStreamException, IOException {
+
+		Map<String, List<SIMSFrEntry>> schemeTree = getSchemeTree(simsFrScheme);
+		SortedSet<String> graphNames = new TreeSet<>(new URIComparator());
+		simsDataset.listNames().forEachRemaining(graphNames::add);
+		List<Model> simsModels = new ArrayList<>();
+		for (String graphName : graphNames) simsModels.add(simsDataset.getNamedModel(graphName));
+		logger.info("Exporting " + simsModels.size() + " SIMS reports as one SDMX-ML message");
+
+		// Each report is rendered as a fragment using the prefixes declared on the root element of the message
+		List<byte[]> fragments;
+		try {
+			fragments = simsModels.parallelStream().map(simsModel -> {
+				ByteArrayOutputStream fragment = new ByteArrayOutputStream();
+				try {
+					XMLStreamWriter fragmentWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(fragment, "UTF-8");
+					setPrefixes(fragmentWriter);
+					for (Resource report : simsModel.listSubjectsWithProperty(RDF.type, Configuration.SIMS_METADATA_REPORT).toList()) {
+						writeReport(fragmentWriter, simsModel, report, schemeTree);
+					}
+					fragmentWriter.close();
+				} catch (XMLStreamException e) {
+					throw new FragmentException(e);
+				}
+				return fragment.toByteArray();
+			}).collect(Collectors.toList());
+		} catch (FragmentException e) {
+			// Nothing has been written yet, so that a failed export does not leave a truncated message
+			throw (XMLStreamException) e.getCause();
+		}
+
+		// The envelope is written completely, with a comment marking the place of the reports in the metadata set
+		ByteArrayOutputStream envelopeOutput = new ByteArrayOutputStream();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(envelopeOutput, "UTF-8");
+		writeMessageStart(writer, "SIMS");
+		writer.writeComment(REPORTS_MARKER);
+		writeMessageEnd(writer);
+		writer.close();
+		String envelope = new String(envelopeOutput.toByteArray(), StandardCharsets.UTF_8);
+		String marker = "<!--" + REPORTS_MARKER + "-->";
+		int markerPosition = envelope.indexOf(marker);
+		if (markerPosition < 0) throw new XMLStreamException("Reports marker not found in SDMX-ML message envelope");
+
+		output.write(envelope.substring(0, markerPosition).getBytes(StandardCharsets.UTF_8));
+		for (byte[] fragment : fragments) output.write(fragment);
+		output.write(envelope.substring(markerPosition + marker.length()).getBytes(StandardCharsets.UTF_8));
+		output.flush();
+	}
+
+	/**
+	 * Unchecked wrapper for the errors raised while rendering reports in parallel.
+	 */
+	private static class FragmentException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		FragmentException(XMLStreamException cause) {
+			super(cause);
+		}
+	}
+
+	/**
+	 * Writes the start of a SDMX-ML GenericMetadata message, up to the opening of the metadata set.
+	 * 
+	 * @param writer The XML stream writer.
+	 * @param messageId The identifier of the message.
+	 * @throws XMLStreamException In case of problem writing the XML stream.
+	 */
+	private static void writeMessageStart(XMLStreamWriter writer, String messageId) throws XMLStreamException {
+
+		writer.writeStartDocument("UTF-8", "1.0");
+		setPrefixes(writer);
+		writer.writeStartElement(SDMX_MESSAGE_NS, "GenericMetadata");
+		writer.writeNamespace("mes", SDMX_MESSAGE_NS);
+		writer.writeNamespace("gen", SDMX_GENERIC_METADATA_NS);
+		writer.writeNamespace("com", SDMX_COMMON_NS);
+		writer.writeStartElement(SDMX_MESSAGE_NS, "Header");
+		writeElement(writer, SDMX_MESSAGE_NS, "ID", messageId);
+		writeElement(writer, SDMX_MESSAGE_NS, "Test", "false");
+		writeElement(writer, SDMX_MESSAGE_NS, "Prepared", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+		writer.writeEmptyElement(SDMX_MESSAGE_NS, "Sender");
+		writer.writeAttribute("id", SDMX_SENDER_ID);
+		writer.writeStartElement(SDMX_MESSAGE_NS, "Structure");
+		writer.writeAttribute("structureID", SDMX_MSD_ID);
+		writer.writeStartElement(SDMX_COMMON_NS, "Structure");
+		writer.writeEmptyElement("Ref");
+		writer.writeAttribute("agencyID", SDMX_SENDER_ID);
+		writer.writeAttribute("id", SDMX_MSD_ID);
+		writer.writeEndElement(); // com:Structure
+		writer.writeEndElement(); // mes:Structure
+		writer.writeEndElement(); // mes:Header
+		writer.writeStartElement(SDMX_MESSAGE_NS, "MetadataSet");
+		writer.writeAttribute("structureRef", SDMX_MSD_ID);
+	}
+
+	/**
+	 * Writes the end of a SDMX-ML GenericMetadata message, closing the metadata set.
+	 * 
+	 * @param writer The XML stream writer.
+	 * @throws XMLStreamException In case of problem writing the XML stream.
+	 */
+	private static void writeMessageEnd(XMLStreamWriter writer) throws XMLStreamException {
+
+		writer.writeEndElement(); // mes:MetadataSet
+		writer.writeEndElement(); // mes:GenericMetadata
+		writer.writeEndDocument();
+		writer.flush();
+	}
+
+	/**
+	 * Writes a SIMS report as a SDMX-ML generic metadata report.
+	 * 
+	 * @param writer The XML stream writer.
+	 * @param simsModel The Jena model containing the SIMS report.
+	 * @param report The SIMS report resource.
+	 * @param schemeTree The SIMSFr scheme tree, as returned by <code>getSchemeTree</code>.
+	 * @throws XMLStreamException In case of problem writing the XML stream.
+	 */
+	private static void writeReport(XMLStreamWriter writer, Model simsModel, Resource report, Map<String, List<SIMSFrEntry>> schemeTree) throws XMLStreamException {
+
+		String reportId = StringUtils.substringAfterLast(report.getURI(), "/");
+		logger.debug("Writing SDMX-ML metadata report " + reportId);
+
+		// Collect the values of the reported attributes, then compute which branches of the scheme have values
+		Map<String, List<RDFNode>> reportValues = new HashMap<>();
+		for (List<SIMSFrEntry> entries : schemeTree.values()) {
+			for (SIMSFrEntry entry : entries) {
+				List<RDFNode> values = getReportedValues(simsModel, report, reportId, entry);
+				if (!values.isEmpty()) reportValues.put(entry.getIndex(), values);
+			}
+		}
+		Set<String> filledIndexes = new HashSet<>();
+		for (String index : reportValues.keySet()) {
+			for (String ancestor = index; ancestor != null; ancestor = SIMSEntry.getParentIndex(ancestor)) filledIndexes.add(ancestor);
+		}
+
+		writer.writeStartElement(SDMX_GENERIC_METADATA_NS, "Report");
+		writer.writeAttribute("id", reportId);
+		writer.writeStartElement(SDMX_GENERIC_METADATA_NS, "Target");
+		writer.writeAttribute("id", "FULL_TARGET");
+		Statement targetStatement = report.getProperty(Configuration.SIMS_TARGET);
+		if ((targetStatement != null) && targetStatement.getObject().isURIResource()) {
+			writer.writeStartElement(SDMX_GENERIC_METADATA_NS, "ReferenceValue");
+			writer.writeAttribute("id", "TARGET");
+			writer.writeStartElement(SDMX_GENERIC_METADATA_NS, "ObjectReference");
+			writeElement(writer, null, "URN", targetStatement.getResource().getURI());
+			writer.writeEndElement(); // gen:ObjectReference
+			writer.writeEndElement(); // gen:ReferenceValue
+		}
+		writer.writeEndElement(); // gen:Target
+		writeAttributeSet(writer, schemeTree, schemeTree.get(null), reportValues, filledIndexes);
+		writer.writeEndElement(); // gen:Report
+	}
+
+	/**
+	 * Writes recursively a set of reported attributes, skipping the branches without values.
+	 */
+	private static void writeAttributeSet(XMLStreamWriter writer, Map<String, List<SIMSFrEntry>> schemeTree, List<SIMSFrEntry> entries,
+			Map<String, List<RDFNode>> reportValues, Set<String> filledIndexes) throws XMLStreamException {
+
+		if ((entries == null) || entries.stream().noneMatch(entry -> filledIndexes.contains(entry.getIndex()))) return;
+
+		writer.writeStartElement(SDMX_GENERIC_METADATA_NS, "AttributeSet");
+		for (SIMSFrEntry entry : entries) {
+			if (!filledIndexes.contains(entry.getIndex())) continue;
+			List<RDFNode> values = reportValues.getOrDefault(entry.getIndex(), Collections.emptyList());
+			// Texts are grouped in the first element, other values are written in repeated elements
+			List<Literal> texts = new ArrayList<>();
+			List<String> simpleValues = new ArrayList<>();
+			for (RDFNode value : values) {
+				if (value.isLiteral()) {
+					if (value.asLiteral().getLanguage().isEmpty()) simpleValues.add(value.asLiteral().getLexicalForm());
+					else texts.add(value.asLiteral());
+				} else if (value.isURIResource()) {
+					Statement textStatement = value.asResource().getProperty(RDF.value);
+					if ((textStatement != null) && textStatement.getObject().isLiteral()) texts.add(textStatement.getLiteral());
+					else if (!value.asResource().hasProperty(RDF.type, DCTypes.Text)) simpleValues.add(value.asResource().getURI());
+				}
+			}
+			int elementCount = Math.max(1, simpleValues.size());
+			for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+				writer.writeStartElement(SDMX_GENERIC_METADATA_NS, "ReportedAttribute");
+				writer.writeAttribute("id", entry.getCode());
+				if (elementIndex < simpleValues.size()) writer.writeAttribute("value", simpleValues.get(elementIndex));
+				if (elementIndex == 0) {
+					for (Literal text : texts) {
+						writer.writeStartElement(SDMX_COMMON_NS, "Text");
+						writer.writeAttribute("xml", XMLConstants.XML_NS_URI, "lang", text.getLanguage());
+						writer.writeCharacters(text.getLexicalForm());
+						writer.writeEndElement();
+					}
+					writeAttributeSet(writer, schemeTree, schemeTree.get(entry.getIndex()), reportValues, filledIndexes);
+				}
+				writer.writeEndElement(); // gen:ReportedAttribute
+			}
+		}
+		writer.writeEndElement(); // gen:AttributeSet
+	}
+
+	/**
+	 * Returns the values of a SIMSFr attribute in a report, whether they are attached to a reported attribute or directly to the report.
+	 * 
+	 * @param simsModel The Jena model containing the SIMS report.
+	 * @param report The SIMS report resource.
+	 * @param reportId The identifier of the report.
+	 * @param entry The SIMSFr entry corresponding to the attribute.
+	 * @return The list of values of the attribute (literals or resources), possibly empty.
+	 */
+	static List<RDFNode> getReportedValues(Model simsModel, Resource report, String reportId, SIMSFrEntry entry) {
+
+		Property attributeProperty = simsModel.createProperty(Configuration.simsAttributePropertyURI(entry, false));
+		Resource reportedAttribute = simsModel.createResource(Configuration.simsReportedAttributeURI(reportId, entry.getNotation()));
+		List<RDFNode> values = simsModel.listObjectsOfProperty(reportedAttribute, attributeProperty).toList();
+		values.addAll(simsModel.listObjectsOfProperty(report, attributeProperty).toList());
+
+		return values;
+	}
+
+	/**
+	 * Organizes the SIMSFr metadata attributes (direct attributes and quality metrics excluded) as a tree.
+	 * 
+	 * @param simsFrScheme The SIMSFr scheme.
+	 * @return A map whose keys are the indexes of the parent entries (<code>null</code> for top-level entries) and values the lists of children entries in scheme order.
+	 */
+	static Map<String, List<SIMSFrEntry>> getSchemeTree(SIMSFrScheme simsFrScheme) {
+
+		Set<String> attributeIndexes = new HashSet<>();
+		for (SIMSFrEntry entry : simsFrScheme.getEntries()) {
+			if (!entry.isDirect() && !entry.isQualityMetric()) attributeIndexes.add(entry.getIndex());
+		}
+		Map<String, List<SIMSFrEntry>> schemeTree = new HashMap<>();
+		for (SIMSFrEntry entry : simsFrScheme.getEntries()) {
+			if (entry.isDirect() || entry.isQualityMetric()) continue;
+			String parentIndex = attributeIndexes.contains(entry.getParentIndex()) ? entry.getParentIndex() : null;
+			schemeTree.computeIfAbsent(parentIndex, index -> new ArrayList<>()).add(entry);
+		}
+
+		return schemeTree;
+	}
+
+	/**
+	 * Declares the SDMX-ML prefixes on a XML stream writer.
+	 */
+	private static void setPrefixes(XMLStreamWriter writer) throws XMLStreamException {
+
+		writer.setPrefix("mes", SDMX_MESSAGE_NS);
+		writer.setPrefix("gen", SDMX_GENERIC_METADATA_NS);
+		writer.setPrefix("com", SDMX_COMMON_NS);
+	}
+
+	/**
+	 * Writes a simple element with text content.
+	 */
+	private static void writeElement(XMLStreamWriter writer, String namespace, String localName, String text) throws XMLStreamException {
+
+		if (namespace == null) writer.writeStartElement(localName);
+		else writer.writeStartElement(namespace, localName);
+		writer.writeCharacters(text);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Exports a SIMS report contained in a Jena model as a compact JSON object, written directly to a stream.
+	 * The object contains the identifier and URI of the report, its target and the reported attributes keyed by SIMSFr notation, in scheme order.
+	 * Each attribute has a list of values (simple values or coded values with their labels) and/or texts keyed by language.
+	 * As in compacted JSON-LD, a language with one text has a string value, and a language with several texts has an array of strings.
+	 * 
+	 * @param simsModel The Jena model containing the SIMS report, base or expanded.
+	 * @param simsURI The URI of the SIMS report.
+	 * @param simsFrScheme The SIMSFr scheme.
+	 * @param output The stream where the JSON object is written (it is not closed by this method).
+	 * @throws IOException In case of problem writing to the output stream.
+	 */
+	public static void exportAsJSON(Model simsModel, String simsURI, SIMSFrScheme simsFrScheme, OutputStream output) throws IOException {
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		writeJSONReport(writer, simsModel, simsModel.createResource(simsURI), getJSONEntries(simsFrScheme));
+		writer.flush();
+	}
+
+	/**
+	 * Exports the SIMS reports contained in the named graphs of a dataset as a JSON array of compact report objects.
+	 * The reports are written in the order of the graph names as they are rendered: groups of <code>JSON_EXPORT_GROUP_SIZE</code> reports are rendered in parallel,
+	 * so that only one group is held in memory at a time.
+	 * 
+	 * @param simsDataset The dataset containing the SIMS reports, one per named graph.
+	 * @param simsFrScheme The SIMSFr scheme.
+	 * @param output The stream where the JSON array is written (it is not closed by this method).
+	 * @throws IOException In case of problem writing to the output stream.
+	 */
+	public static void exportAsJSON(Dataset simsDataset, SIMSFrScheme simsFrScheme, OutputStream output) throws IOException {
+
+		List<SIMSFrEntry> entries = getJSONEntries(simsFrScheme);
+		SortedSet<String> graphNames = new TreeSet<>(new URIComparator());
+		simsDataset.listNames().forEachRemaining(graphNames::add);
+		List<String> graphList = new ArrayList<>(graphNames);
+		logger.info("Exporting " + graphList.size() + " SIMS reports as JSON");
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		writer.write('[');
+		boolean firstReport = true;
+		for (int start = 0; start < graphList.size(); start += JSON_EXPORT_GROUP_SIZE) {
+			List<String> fragments = graphList.subList(start, Math.min(start + JSON_EXPORT_GROUP_SIZE, graphList.size())).parallelStream().flatMap(graphName -> {
+				Model simsModel = simsDataset.getNamedModel(graphName);
+				List<String> reportFragments = new ArrayList<>();
+				for (Resource report : simsModel.listSubjectsWithProperty(RDF.type, Configuration.SIMS_METADATA_REPORT).toList()) {
+					StringWriter fragment = new StringWriter();
+					try {
+						writeJSONReport(fragment, simsModel, report, entries);
+						reportFragments.add(fragment.toString());
+					} catch (IOException e) {
+						logger.error("Error rendering SIMS report " + report.getURI() + " as JSON - " + e.getMessage());
+					}
+				}
+				return reportFragments.stream();
+			}).collect(Collectors.toList());
+			for (String fragment : fragments) {
+				if (!firstReport) writer.write(',');
+				firstReport = false;
+				writer.write(fragment);
+			}
+			writer.flush();
+		}
+		writer.write(']');
+		writer.flush();
+	}
+
+	/**
+	 * Writes a SIMS report as a compact JSON object.
+	 * 
+	 * @param writer The writer where the JSON object is written.
+	 * @param simsModel The Jena model containing the SIMS report.
+	 * @param report The SIMS report resource.
+	 * @param entries The SIMSFr entries to export, in scheme order.
+	 * @throws IOException In case of problem writing the JSON object.
+	 */
+	private static void writeJSONReport(Writer writer, Model simsModel, Resource report, List<SIMSFrEntry> entries) throws IOException {
+
+		String reportId = StringUtils.substringAfterLast(report.getURI(), "/");
+		logger.debug("Writing JSON metadata report " + reportId);
+
+		writer.write("{\"id\":" + JSWriter.outputQuotedString(reportId) + ",\"uri\":" + JSWriter.outputQuotedString(report.getURI()));
+		Statement targetStatement = report.getProperty(Configuration.SIMS_TARGET);
+		if ((targetStatement != null) && targetStatement.getObject().isURIResource()) {
+			writer.write(",\"target\":");
+			writeJSONResource(writer, targetStatement.getResource());
+		}
+		writer.write(",\"attributes\":{");
+		boolean firstAttribute = true;
+		for (SIMSFrEntry entry : entries) {
+			List<RDFNode> values = getReportedValues(simsModel, report, reportId, entry);
+			if (values.isEmpty()) continue;
+			// Texts are grouped by language, other values are listed
+			Map<String, List<String>> texts = new LinkedHashMap<>();
+			List<RDFNode> simpleValues = new ArrayList<>();
+			for (RDFNode value : values) {
+				if (value.isLiteral()) {
+					if (value.asLiteral().getLanguage().isEmpty()) simpleValues.add(value);
+					else texts.computeIfAbsent(value.asLiteral().getLanguage(), language -> new ArrayList<>()).add(value.asLiteral().getLexicalForm());
+				} else if (value.isURIResource()) {
+					Statement textStatement = value.asResource().getProperty(RDF.value);
+					if ((textStatement != null) && textStatement.getObject().isLiteral()) {
+						texts.computeIfAbsent(textStatement.getLiteral().getLanguage(), language -> new ArrayList<>()).add(textStatement.getLiteral().getLexicalForm());
+					}
+					else if (!value.asResource().hasProperty(RDF.type, DCTypes.Text)) simpleValues.add(value);
+				}
+			}
+			if (texts.isEmpty() && simpleValues.isEmpty()) continue;
+			if (!firstAttribute) writer.write(',');
+			firstAttribute = false;
+			writer.write(JSWriter.outputQuotedString(entry.getNotation()) + ":{");
+			if (!simpleValues.isEmpty()) {
+				writer.write("\"values\":[");
+				for (int index = 0; index < simpleValues.size(); index++) {
+					if (index > 0) writer.write(',');
+					RDFNode value = simpleValues.get(index);
+					if (value.isLiteral()) writer.write(JSWriter.outputQuotedString(value.asLiteral().getLexicalForm()));
+					else writeJSONResource(writer, value.asResource());
+				}
+				writer.write(']');
+			}
+			if (!texts.isEmpty()) {
+				if (!simpleValues.isEmpty()) writer.write(',');
+				writer.write("\"texts\":");
+				writeJSONTexts(writer, texts);
+			}
+			writer.write('}');
+		}
+		writer.write("}}");
+	}
+
+	/**
+	 * Writes a resource as a JSON object containing its URI and its labels by language, if any.
+	 */
+	private static void writeJSONResource(Writer writer, Resource resource) throws IOException {
+
+		writer.write("{\"uri\":" + JSWriter.outputQuotedString(resource.getURI()));
+		Map<String, String> labels = new LinkedHashMap<>();
+		resource.listProperties(SKOS.prefLabel).forEachRemaining(statement -> {
+			if (statement.getObject().isLiteral()) labels.putIfAbsent(statement.getLiteral().getLanguage(), statement.getLiteral().getLexicalForm());
+		});
+		if (!labels.isEmpty()) {
+			writer.write(",\"labels\":");
+			writeJSONLanguageMap(writer, labels);
+		}
+		writer.write('}');
+	}
+
+	/**
+	 * Writes texts keyed by language as a JSON object, a language with several texts having an array of strings as value.
+	 */
+	private static void writeJSONTexts(Writer writer, Map<String, List<String>> texts) throws IOException {
+
+		writer.write('{');
+		boolean first = true;
+		for (Map.Entry<String, List<String>> languageTexts : texts.entrySet()) {
+			if (!first) writer.write(',');
+			first = false;
+			writer.write(JSWriter.outputQuotedString(languageTexts.getKey()) + ":");
+			if (languageTexts.getValue().size() == 1) writer.write(JSWriter.outputQuotedString(languageTexts.getValue().get(0)));
+			else writer.write(languageTexts.getValue().stream().map(JSWriter::outputQuotedString).collect(Collectors.joining(",", "[", "]")));
+		}
+		writer.write('}');
+	}
+
+	/**
+	 * Writes a map of strings keyed by language as a JSON object.
+	 */
+	private static void writeJSONLanguageMap(Writer writer, Map<String, String> values) throws IOException {
+
+		writer.write('{');
+		boolean first = true;
+		for (Map.Entry<String, String> value : values.entrySet()) {
+			if (!first) writer.write(',');
+			first = false;
+			writer.write(JSWriter.outputQuotedString(value.getKey()) + ":" + JSWriter.outputQuotedString(value.getValue()));
+		}
+		writer.write('}');
+	}
+
+	/**
+	 * Returns the SIMSFr entries exported in JSON (all entries except direct attributes), in scheme order.
+	 */
+	private static List<SIMSFrEntry> getJSONEntries(SIMSFrScheme simsFrScheme) {
+
+		return simsFrScheme.getEntries().stream().filter(entry -> !entry.isDirect()).collect(Collectors.toList());
 	}
 
 	/**
@@ -36,11 +616,75 @@ public class SIMSExporter {
 	 */
 	public static Model queryExpandedSIMSModel(RDFConnection connection, String simsURI) {
 
+		return queryExpandedSIMSModel(connection, simsURI, null);
+	}
+
+	/**
+	 * Queries over an RDF connection to create a Jena SIMS expanded model, adding the labels of the coded values from a local index.
+	 * If a model cache is enabled for the connection, the model is taken from the cache: it is then shared and must not be modified.
+	 * 
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param simsURI URI of the SIMS document.
+	 * @param codeLabels The index of code labels, or <code>null</code> if code labels should not be added.
+	 * @return A Jena model containing the expanded SIMS information.
+	 */
+	public static Model queryExpandedSIMSModel(RDFConnection connection, String simsURI, CodeLabelIndex codeLabels) {
+
+		SIMSModelCache modelCache = modelCaches.get(connection);
+		if (modelCache == null) return loadExpandedSIMSModel(connection, simsURI, codeLabels);
+
+		Model simsModel = modelCache.get(simsURI);
+		if ((simsModel == null) || (codeLabels == null)) return simsModel;
+		// The cached model is shared: the labels are added to a copy
+		Model labelledModel = ModelFactory.createDefaultModel().add(simsModel);
+		labelledModel.setNsPrefixes(simsModel.getNsPrefixMap());
+		codeLabels.addCodeLabels(labelledModel);
+		return labelledModel;
+	}
+
+	/**
+	 * Enables a cache of the expanded SIMS models for the calls to <code>queryExpandedSIMSModel</code> on a connection.
+	 * 
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param maxEntries The maximum number of models in the cache.
+	 * @param maxWeight The maximum total number of statements in the cached models.
+	 * @param timeToLive The time to live of the entries in milliseconds (0 or negative for no expiration).
+	 * @param revalidate If <code>true</code>, expired entries are revalidated using the version markers returned by <code>queryReportVersion</code>.
+	 * @return The cache, which gives access to its metrics.
+	 */
+	public static SIMSModelCache enableModelCache(RDFConnection connection, int maxEntries, long maxWeight, long timeToLive, boolean revalidate) {
+
+		SIMSModelCache modelCache = SIMSModelCache.forConnection(connection, maxEntries, maxWeight, timeToLive, revalidate);
+		modelCaches.put(connection, modelCache);
+		return modelCache;
+	}
+
+	/**
+	 * Disables the cache of the expanded SIMS models for a connection, typically before the connection is closed.
+	 * 
+	 * @param connection <code>RDFConnection</code> for which a cache was enabled.
+	 */
+	public static void disableModelCache(RDFConnection connection) {
+
+		modelCaches.remove(connection);
+	}
+
+	/**
+	 * Queries over an RDF connection to create a Jena SIMS expanded model, without using the cache.
+	 * 
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param simsURI URI of the SIMS document.
+	 * @param codeLabels The index of code labels, or <code>null</code> if code labels should not be added.
+	 * @return A Jena model containing the expanded SIMS information.
+	 */
+	static Model loadExpandedSIMSModel(RDFConnection connection, String simsURI, CodeLabelIndex codeLabels) {
+
 		// Get the graph containing the SIMS information
 		// For example: http://id.insee.fr/qualite/rapport/1507 -> http://rdf.insee.fr/graphes/qualite/rapport/1507
 		String simsGraphURI = Configuration.simsReportGraphURI(StringUtils.substringAfterLast(simsURI, "/"));
 		logger.debug("About to query graph " + simsGraphURI);
-		Model simsModel = connection.fetch(simsGraphURI);
+		// Local connections return a view of the graph in the store, which must not be modified
+		Model simsModel = ModelFactory.createDefaultModel().add(connection.fetch(simsGraphURI));
 		// Extract the URI of the resource to which the SIMS documentation is attached
 		Resource simsResource = simsModel.createResource(simsURI);
 		List<RDFNode> targets = simsModel.listObjectsOfProperty(simsResource, Configuration.SIMS_TARGET).toList();
@@ -54,12 +698,219 @@ public class SIMSExporter {
 		logger.debug("About to send DESCRIBE query for resource " + targetURI);
 		simsModel.add(connection.queryDescribe(targetQuery));
 
-		// TODO Add code labels
+		// Add labels of the coded values
+		if (codeLabels != null) codeLabels.addCodeLabels(simsModel);
 
 		addPrefixes(simsModel);
 		return simsModel;
 	}
 
+	/**
+	 * Queries over an RDF connection to create the Jena SIMS expanded models of a collection of SIMS documents.
+	 * The SIMS graphs and the descriptions of their targets are retrieved by batches with <code>VALUES</code>-based SELECT and CONSTRUCT queries, several batches being queried concurrently.
+	 * The connection must be usable from several threads at the same time, which is the case for remote and local connections.
+	 * The description of a target is its concise bounded description (statements having the target as subject, and recursively the blank nodes they reach), limited to
+	 * <code>TARGET_DESCRIPTION_DEPTH</code> levels of blank nodes.
+	 * 
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param simsURIs The URIs of the SIMS documents.
+	 * @param batchSize Maximum number of SIMS documents per query.
+	 * @param maxConcurrency Maximum number of queries running at the same time.
+	 * @return A map whose keys are the SIMS URIs and values the expanded models, in the order of the collection (invalid documents are omitted).
+	 */
+	public static Map<String, Model> queryExpandedSIMSModels(RDFConnection connection, Collection<String> simsURIs, int batchSize, int maxConcurrency) {
+
+		return queryExpandedSIMSModels(connection, simsURIs, batchSize, maxConcurrency, null);
+	}
+
+	/**
+	 * Queries by batches the Jena SIMS expanded models of a collection of SIMS documents, adding the labels of the coded values from a local index.
+	 * 
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param simsURIs The URIs of the SIMS documents.
+	 * @param batchSize Maximum number of SIMS documents per query.
+	 * @param maxConcurrency Maximum number of queries running at the same time.
+	 * @param codeLabels The index of code labels, or <code>null</code> if code labels should not be added.
+	 * @return A map whose keys are the SIMS URIs and values the expanded models, in the order of the collection (invalid documents are omitted).
+	 */
+	public static Map<String, Model> queryExpandedSIMSModels(RDFConnection connection, Collection<String> simsURIs, int batchSize, int maxConcurrency, CodeLabelIndex codeLabels) {
+
+		try (SPARQLClient client = new SPARQLClient(connection, null, maxConcurrency, 0)) {
+			return queryExpandedSIMSModels(client, simsURIs, batchSize, codeLabels);
+		}
+	}
+
+	/**
+	 * Queries by batches through an asynchronous SPARQL client the Jena SIMS expanded models of a collection of SIMS documents.
+	 * All batches are submitted at once, the client limiting the number of queries running at the same time.
+	 * 
+	 * @param client The SPARQL client.
+	 * @param simsURIs The URIs of the SIMS documents.
+	 * @param batchSize Maximum number of SIMS documents per query.
+	 * @param codeLabels The index of code labels, or <code>null</code> if code labels should not be added.
+	 * @return A map whose keys are the SIMS URIs and values the expanded models, in the order of the collection (invalid documents are omitted).
+	 */
+	public static Map<String, Model> queryExpandedSIMSModels(SPARQLClient client, Collection<String> simsURIs, int batchSize, CodeLabelIndex codeLabels) {
+
+		List<String> uriList = new ArrayList<>(new LinkedHashSet<>(simsURIs));
+		List<List<String>> batches = new ArrayList<>();
+		for (int start = 0; start < uriList.size(); start += batchSize) batches.add(uriList.subList(start, Math.min(start + batchSize, uriList.size())));
+		logger.info("Querying " + uriList.size() + " expanded SIMS models in " + batches.size() + " batches");
+
+		List<CompletableFuture<Map<String, Model>>> requests = new ArrayList<>();
+		for (List<String> batch : batches) {
+			logger.debug("About to query " + batch.size() + " SIMS graphs");
+			requests.add(client.select(getSIMSGraphsQuery(batch)).thenCompose(graphSolutions -> {
+				// Extract the SIMS models and the URIs of the resources to which they are attached, then add descriptions of the target resources
+				Map<String, String> simsTargets = new HashMap<>();
+				Map<String, Model> simsModels = extractSIMSModels(toDataset(graphSolutions), batch, simsTargets);
+				if (simsModels.isEmpty()) return CompletableFuture.completedFuture(simsModels);
+				logger.debug("About to query descriptions of " + simsTargets.size() + " target resources");
+				return client.construct(getTargetsQuery(simsTargets.values())).thenApply(targetModel -> {
+					for (Map.Entry<String, Model> simsEntry : simsModels.entrySet()) {
+						Resource target = targetModel.createResource(simsTargets.get(simsEntry.getKey()));
+						Closure.closure(target, false, simsEntry.getValue());
+						addPrefixes(simsEntry.getValue());
+					}
+					return simsModels;
+				});
+			}));
+		}
+
+		Map<String, Model> expandedModels = new HashMap<>();
+		for (CompletableFuture<Map<String, Model>> request : requests) {
+			try {
+				expandedModels.putAll(SPARQLClient.await(request));
+			} catch (RuntimeException e) {
+				logger.error("Error while querying a batch of SIMS models - " + e);
+			}
+		}
+		Map<String, Model> orderedModels = new LinkedHashMap<>();
+		for (String simsURI : uriList) if (expandedModels.containsKey(simsURI)) orderedModels.put(simsURI, expandedModels.get(simsURI));
+		if (codeLabels != null) orderedModels.values().parallelStream().forEach(codeLabels::addCodeLabels);
+		return orderedModels;
+	}
+
+	/**
+	 * Queries asynchronously through a SPARQL client the Jena SIMS expanded model of a SIMS document, with the same content as <code>queryExpandedSIMSModel</code>.
+	 * Calling this method for many documents before waiting for the results allows to overlap the latency of the queries.
+	 * 
+	 * @param client The SPARQL client.
+	 * @param simsURI URI of the SIMS document.
+	 * @param codeLabels The index of code labels, or <code>null</code> if code labels should not be added.
+	 * @return A future returning the expanded model, or <code>null</code> if the SIMS document does not target exactly one resource.
+	 */
+	public static CompletableFuture<Model> queryExpandedSIMSModel(SPARQLClient client, String simsURI, CodeLabelIndex codeLabels) {
+
+		String simsGraphURI = Configuration.simsReportGraphURI(StringUtils.substringAfterLast(simsURI, "/"));
+		return client.fetch(simsGraphURI).thenCompose(graphModel -> {
+			Model simsModel = ModelFactory.createDefaultModel().add(graphModel);
+			List<RDFNode> targets = simsModel.listObjectsOfProperty(simsModel.createResource(simsURI), Configuration.SIMS_TARGET).toList();
+			if (targets.size() != 1) {
+				logger.error("SIMS documentation " + simsURI + " should target exactly one resource, but found " + targets.size() + " - " + targets);
+				return CompletableFuture.completedFuture(null);
+			}
+			return client.describe("DESCRIBE <" + targets.get(0).toString() + ">").thenApply(targetModel -> {
+				simsModel.add(targetModel);
+				if (codeLabels != null) codeLabels.addCodeLabels(simsModel);
+				addPrefixes(simsModel);
+				return simsModel;
+			});
+		});
+	}
+
+	/**
+	 * Returns the SELECT query retrieving the quads of the graphs of a list of SIMS documents.
+	 * CONSTRUCT queries with quad templates are not standard SPARQL and are not supported by all endpoints.
+	 */
+	private static String getSIMSGraphsQuery(List<String> simsURIs) {
+
+		StringBuilder graphValues = new StringBuilder();
+		for (String simsURI : simsURIs) graphValues.append(" <").append(Configuration.simsReportGraphURI(StringUtils.substringAfterLast(simsURI, "/"))).append(">");
+		return "SELECT ?g ?s ?p ?o WHERE { VALUES ?g {" + graphValues + " } GRAPH ?g { ?s ?p ?o } }";
+	}
+
+	/**
+	 * Returns the CONSTRUCT query retrieving the concise bounded descriptions of a collection of resources, limited to <code>TARGET_DESCRIPTION_DEPTH</code> levels of blank nodes.
+	 */
+	private static String getTargetsQuery(Collection<String> targetURIs) {
+
+		StringBuilder targetValues = new StringBuilder();
+		for (String targetURI : new HashSet<>(targetURIs)) targetValues.append(" <").append(targetURI).append(">");
+		// Each level follows the objects of the previous level that are blank nodes
+		StringBuilder template = new StringBuilder("?t ?p ?o0 .");
+		StringBuilder pattern = new StringBuilder("?t ?p ?o0");
+		for (int level = 1; level <= TARGET_DESCRIPTION_DEPTH; level++) {
+			template.append(" ?o").append(level - 1).append(" ?p").append(level).append(" ?o").append(level).append(" .");
+			pattern.append(" OPTIONAL { ?o").append(level - 1).append(" ?p").append(level).append(" ?o").append(level).append(" FILTER(isBlank(?o").append(level - 1).append("))");
+		}
+		for (int level = 1; level <= TARGET_DESCRIPTION_DEPTH; level++) pattern.append(" }");
+		return "CONSTRUCT { " + template + " } WHERE { VALUES ?t {" + targetValues + " } " + pattern + " }";
+	}
+
+	/**
+	 * Creates a dataset from the solutions of a query returning quads in variables <code>g</code>, <code>s</code>, <code>p</code> and <code>o</code>.
+	 */
+	private static Dataset toDataset(List<QuerySolution> solutions) {
+
+		Dataset dataset = DatasetFactory.create();
+		for (QuerySolution solution : solutions) {
+			Model graphModel = dataset.getNamedModel(solution.getResource("g").getURI());
+			graphModel.add(solution.getResource("s"), graphModel.createProperty(solution.getResource("p").getURI()), solution.get("o"));
+		}
+		return dataset;
+	}
+
+	/**
+	 * Extracts the SIMS models from a dataset of SIMS graphs, and records the targets of the SIMS documents.
+	 * 
+	 * @param graphDataset The dataset containing the SIMS graphs.
+	 * @param simsURIs The URIs of the SIMS documents.
+	 * @param simsTargets A map where the URI of the target of each valid SIMS document will be recorded.
+	 * @return A map whose keys are the URIs of the valid SIMS documents and values copies of their models.
+	 */
+	private static Map<String, Model> extractSIMSModels(Dataset graphDataset, List<String> simsURIs, Map<String, String> simsTargets) {
+
+		Map<String, Model> simsModels = new LinkedHashMap<>();
+		for (String simsURI : simsURIs) {
+			String simsGraphURI = Configuration.simsReportGraphURI(StringUtils.substringAfterLast(simsURI, "/"));
+			Model simsModel = ModelFactory.createDefaultModel().add(graphDataset.getNamedModel(simsGraphURI));
+			List<RDFNode> targets = simsModel.listObjectsOfProperty(simsModel.createResource(simsURI), Configuration.SIMS_TARGET).toList();
+			if ((targets.size() != 1) || !targets.get(0).isURIResource()) {
+				logger.error("SIMS documentation " + simsURI + " should target exactly one resource, but found " + targets.size() + " - " + targets);
+				continue;
+			}
+			simsModels.put(simsURI, simsModel);
+			simsTargets.put(simsURI, targets.get(0).asResource().getURI());
+		}
+
+		return simsModels;
+	}
+
+	/**
+	 * Queries over an RDF connection the version marker of a SIMS document, which is the number of statements and a MD5 hash of the content of its graph.
+	 * The hash is computed by the store on the statements sorted in a sub-query; stores that do not keep this order in the aggregation only cause unnecessary reloads.
+	 * Blank nodes are not distinguished from one another in the hash.
+	 * 
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param simsURI URI of the SIMS document.
+	 * @return The version marker, or <code>null</code> if the graph of the report is empty or absent.
+	 */
+	public static String queryReportVersion(RDFConnection connection, String simsURI) {
+
+		String simsGraphURI = Configuration.simsReportGraphURI(StringUtils.substringAfterLast(simsURI, "/"));
+		String objectTerm = "IF(isBlank(?o), \"_:\", IF(isLiteral(?o), CONCAT(\"'\", STR(?o), \"'@\", LANG(?o), \"^^\", STR(DATATYPE(?o))), STR(?o)))";
+		String queryString = "SELECT (COUNT(?statement) AS ?count) (MD5(GROUP_CONCAT(?statement; separator=\"\\n\")) AS ?hash) WHERE { "
+				+ "SELECT ?statement WHERE { GRAPH <" + simsGraphURI + "> { ?s ?p ?o } "
+				+ "BIND(CONCAT(IF(isBlank(?s), \"_:\", STR(?s)), \" \", STR(?p), \" \", " + objectTerm + ") AS ?statement) } ORDER BY ?statement }";
+		String[] version = new String[1];
+		connection.querySelect(queryString, solution -> {
+			if (solution.contains("count") && (solution.getLiteral("count").getLong() > 0)) version[0] = solution.getLiteral("count").getLong() + "-" + solution.getLiteral("hash").getLexicalForm();
+		});
+
+		return version[0];
+	}
+
 	/**
 	 * Adds to a completed SIMS model the prefix mappings that it uses.
 	 *
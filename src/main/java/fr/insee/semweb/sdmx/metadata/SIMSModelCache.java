@@ -0,0 +1,213 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A bounded LRU cache of expanded SIMS models.
+ * Entries are evicted when the number of models or the total weight (number of statements) exceeds the limits, and expire after a time to live.
+ * If a version provider is given, expired entries are revalidated by comparing the current version marker of the report with the cached one,
+ * and fetched again only if the version has changed.
+ * The models returned are shared between callers and must not be modified.
+ *
+ * @author Franck
+ */
+public class SIMSModelCache {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(SIMSModelCache.class);
+
+	private final Function<String, Model> loader;
+	private final Function<String, String> versionProvider;
+	private final int maxEntries;
+	private final long maxWeight;
+	private final long timeToLive;
+
+	/** Cache entries in access order */
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalWeight = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+
+	/**
+	 * Creates a cache of expanded SIMS models.
+	 *
+	 * @param loader The function returning the expanded model for a SIMS URI (or <code>null</code> if the model cannot be obtained).
+	 * @param versionProvider The function returning the current version marker for a SIMS URI, or <code>null</code> if no revalidation should be made.
+	 * @param maxEntries The maximum number of models in the cache.
+	 * @param maxWeight The maximum total number of statements in the cached models.
+	 * @param timeToLive The time to live of the entries in milliseconds (0 or negative for no expiration).
+	 */
+	public SIMSModelCache(Function<String, Model> loader, Function<String, String> versionProvider, int maxEntries, long maxWeight, long timeToLive) {
+
+		this.loader = loader;
+		this.versionProvider = versionProvider;
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Creates a cache of the expanded SIMS models obtained from the store on a RDF connection, as returned by <code>SIMSExporter.queryExpandedSIMSModel</code>.
+	 *
+	 * @param connection <code>RDFConnection</code> allowing to query RDF data.
+	 * @param maxEntries The maximum number of models in the cache.
+	 * @param maxWeight The maximum total number of statements in the cached models.
+	 * @param timeToLive The time to live of the entries in milliseconds (0 or negative for no expiration).
+	 * @param revalidate If <code>true</code>, expired entries are revalidated using the content hash of the graphs of the reports.
+	 * @return The cache.
+	 */
+	public static SIMSModelCache forConnection(RDFConnection connection, int maxEntries, long maxWeight, long timeToLive, boolean revalidate) {
+
+		Function<String, String> versionProvider = revalidate ? simsURI -> SIMSExporter.queryReportVersion(connection, simsURI) : null;
+		return new SIMSModelCache(simsURI -> SIMSExporter.loadExpandedSIMSModel(connection, simsURI, null), versionProvider, maxEntries, maxWeight, timeToLive);
+	}
+
+	/**
+	 * Returns the expanded model of a SIMS document, from the cache if possible.
+	 * Models are loaded outside of the cache lock, so concurrent requests for the same missing model can lead to several loads.
+	 *
+	 * @param simsURI The URI of the SIMS document.
+	 * @return The expanded SIMS model, or <code>null</code> if it cannot be obtained.
+	 */
+	public Model get(String simsURI) {
+
+		CacheEntry entry;
+		synchronized (this) {
+			entry = entries.get(simsURI);
+		}
+		long now = System.currentTimeMillis();
+		String version = null;
+		boolean versionRead = false;
+		if (entry != null) {
+			if ((timeToLive <= 0) || (now - entry.loadTime < timeToLive)) {
+				hits.incrementAndGet();
+				return entry.model;
+			}
+			// Entry expired: if the version is unchanged, it is renewed without loading the model again
+			if ((versionProvider != null) && (entry.version != null)) {
+				version = versionProvider.apply(simsURI);
+				versionRead = true;
+				if (entry.version.equals(version)) {
+					logger.debug("Cached model for " + simsURI + " revalidated");
+					revalidations.incrementAndGet();
+					hits.incrementAndGet();
+					entry.loadTime = now;
+					return entry.model;
+				}
+			}
+		}
+		misses.incrementAndGet();
+		// The version read for the revalidation is reused for the new entry, so that the version is queried only once
+		if (!versionRead && (versionProvider != null)) version = versionProvider.apply(simsURI);
+		Model model = loader.apply(simsURI);
+		if (model == null) return null;
+		put(simsURI, new CacheEntry(model, version, now));
+
+		return model;
+	}
+
+	/**
+	 * Removes the model of a SIMS document from the cache.
+	 *
+	 * @param simsURI The URI of the SIMS document.
+	 */
+	public synchronized void invalidate(String simsURI) {
+
+		CacheEntry entry = entries.remove(simsURI);
+		if (entry != null) totalWeight -= entry.weight;
+	}
+
+	/**
+	 * Removes all the models from the cache.
+	 */
+	public synchronized void invalidateAll() {
+
+		entries.clear();
+		totalWeight = 0;
+	}
+
+	/**
+	 * Adds an entry to the cache and evicts the least recently used entries if the limits are exceeded.
+	 */
+	private synchronized void put(String simsURI, CacheEntry entry) {
+
+		CacheEntry previousEntry = entries.put(simsURI, entry);
+		if (previousEntry != null) totalWeight -= previousEntry.weight;
+		totalWeight += entry.weight;
+		Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+		while (((entries.size() > maxEntries) || (totalWeight > maxWeight)) && (entries.size() > 1)) {
+			Map.Entry<String, CacheEntry> eldest = iterator.next();
+			if (eldest.getValue() == entry) break; // The new entry is kept even if it exceeds the weight limit alone
+			totalWeight -= eldest.getValue().weight;
+			iterator.remove();
+			evictions.incrementAndGet();
+			logger.debug("Model for " + eldest.getKey() + " evicted from cache");
+		}
+	}
+
+	/**
+	 * Returns a summary of the cache metrics.
+	 *
+	 * @return A string giving the size, weight, hits, misses, evictions and revalidations of the cache.
+	 */
+	public String getStatistics() {
+
+		long requests = hits.get() + misses.get();
+		String hitRate = (requests == 0) ? "n/a" : String.format("%.1f%%", 100.0 * hits.get() / requests);
+		return "Cache size: " + size() + " models, weight: " + getWeight() + " statements, hits: " + hits.get() + ", misses: " + misses.get()
+			+ " (hit rate " + hitRate + "), evictions: " + evictions.get() + ", revalidations: " + revalidations.get();
+	}
+
+	// Getters for the metrics
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return totalWeight;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getRevalidations() {
+		return revalidations.get();
+	}
+
+	private static class CacheEntry {
+
+		final Model model;
+		final String version;
+		final long weight;
+		volatile long loadTime;
+
+		CacheEntry(Model model, String version, long loadTime) {
+			this.model = model;
+			this.version = version;
+			this.weight = model.size();
+			this.loadTime = loadTime;
+		}
+	}
+}
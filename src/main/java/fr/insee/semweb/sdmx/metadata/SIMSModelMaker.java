@@ -1,7 +1,6 @@
 package fr.insee.semweb.sdmx.metadata;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +23,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import fr.insee.semweb.sdmx.metadata.SIMSEntry.EntryType;
+import fr.insee.semweb.utils.RDFOutput;
 import fr.insee.stamina.utils.DQV;
 
 /**
@@ -56,42 +56,39 @@ public class SIMSModelMaker {
 			System.exit(1);
 		}
 
-		// Create the SKOS concept scheme for SIMSv2 (strict) without the French labels and with the DQV constructs
-		Model simsSKOSModel = createConceptScheme(simsFrScheme, true, false, true);
 		try {
-			simsSKOSModel.write(new FileWriter(Configuration.SIMS_CS_TURTLE_FILE_NAME), "TTL");
+			writeModels(simsFrScheme);
 		} catch (IOException e) {
-			logger.fatal("Error writing the SIMSv2 concept scheme Turtle file", e);
+			logger.fatal("Error writing the SIMS/SIMSFr Turtle files", e);
 			System.exit(1);
 		}
+	}
+
+	/**
+	 * Creates the concept schemes and MSD for both SIMSv2 and SIMSv2Fr and writes them to the Turtle files specified in the configuration.
+	 * 
+	 * @param simsFrScheme The SIMSFr scheme read from the Excel file.
+	 * @throws IOException In case of problem writing one of the files.
+	 */
+	public static void writeModels(SIMSFrScheme simsFrScheme) throws IOException {
+
+		// Create the SKOS concept scheme for SIMSv2 (strict) without the French labels and with the DQV constructs
+		// The vocabularies are small and meant to be read: they are written with the pretty Turtle writer
+		Model simsSKOSModel = createConceptScheme(simsFrScheme, true, false, true);
+		RDFOutput.writePretty(simsSKOSModel, new File(Configuration.SIMS_CS_TURTLE_FILE_NAME));
 
 		// Create the SKOS concept scheme for SIMSv2Fr with the French labels and the DQV constructs
 		simsSKOSModel = createConceptScheme(simsFrScheme, false, true, true);
-		try {
-			simsSKOSModel.write(new FileWriter(Configuration.SIMS_FR_CS_TURTLE_FILE_NAME), "TTL");
-		} catch (IOException e) {
-			logger.fatal("Error writing the SIMSv2Fr concept scheme Turtle file", e);
-			System.exit(1);
-		}
+		RDFOutput.writePretty(simsSKOSModel, new File(Configuration.SIMS_FR_CS_TURTLE_FILE_NAME));
 		simsSKOSModel.close();
 
 		// Create the SIMS MSD model for SIMSv2 (strict, ie without French extensions)
 		Model simsMSDModel = createMetadataStructureDefinition(simsFrScheme, true, false);
-		try {
-			simsMSDModel.write(new FileWriter(Configuration.SIMS_MSD_TURTLE_FILE_NAME), "TTL");
-		} catch (IOException e) {
-			logger.fatal("Error writing the SIMSv2 MSD Turtle file", e);
-			System.exit(1);
-		}
+		RDFOutput.writePretty(simsMSDModel, new File(Configuration.SIMS_MSD_TURTLE_FILE_NAME));
 
 		// Create the SIMS MSD model for SIMSv2Fr
 		simsMSDModel = createMetadataStructureDefinition(simsFrScheme, false, true);
-		try {
-			simsMSDModel.write(new FileWriter(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME), "TTL");
-		} catch (IOException e) {
-			logger.fatal("Error writing the SIMSv2Fr MSD Turtle file", e);
-			System.exit(1);
-		}
+		RDFOutput.writePretty(simsMSDModel, new File(Configuration.SIMS_FR_MSD_TURTLE_FILE_NAME));
 		simsMSDModel.close();
 	}
 
@@ -0,0 +1,276 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Post-processing stages operating on RDF streams, equivalent to the treatments of <code>PostProcessor</code> but without materializing the models.
+ * Each stage wraps the next <code>StreamRDF</code> of the chain, so that stages can be inserted between the SIMS converter and the output writer, for example:
+ * <pre>
+ * StreamRDF writer = StreamRDFWriter.getWriterStream(out, RDFFormat.TRIG_BLOCKS);
+ * StreamRDF chain = StreamPostProcessor.labelEnrichment(StreamPostProcessor.prefixNormalization(writer, prefixes), labelIndex);
+ * M0SIMSConverter.convertToSIMS(null, true, false, chain);
+ * </pre>
+ * Triples received are treated as belonging to the default graph and are passed on as triples.
+ *
+ * @author Franck
+ */
+public class StreamPostProcessor {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(StreamPostProcessor.class);
+
+	/**
+	 * Returns a stage personalizing the labels of SIMS reports with the labels of the documented resources (see <code>PostProcessor.enrichGSIMLabels</code>).
+	 * The labels of a report are held back until its target is known, and only until the end of the current graph.
+	 *
+	 * @param next The next stream of the chain.
+	 * @param labelIndex The index of the labels of the documented resources, as returned by <code>PostProcessor.createLabelIndex</code>.
+	 * @return The label enrichment stage.
+	 */
+	public static StreamRDF labelEnrichment(StreamRDF next, Map<String, String[]> labelIndex) {
+		return new LabelEnrichmentStage(next, labelIndex);
+	}
+
+	/**
+	 * Returns a stage adding statements on the instances of given classes (see <code>PostProcessor.addStatements</code>).
+	 * The statements are emitted in the same graph as the type declaration of the instance.
+	 *
+	 * @param next The next stream of the chain.
+	 * @param rules A map whose keys are the classes and values the lists of statements to add to their instances (subjects are ignored).
+	 * @return The statement injection stage.
+	 */
+	public static StreamRDF statementInjection(StreamRDF next, Map<Resource, List<Statement>> rules) {
+		return new StatementInjectionStage(next, rules);
+	}
+
+	/**
+	 * Returns a stage normalizing the prefix declarations: the canonical prefixes are declared at the start, namespaces having a canonical prefix are renamed,
+	 * and declarations conflicting with the canonical ones or already made are dropped.
+	 *
+	 * @param next The next stream of the chain.
+	 * @param canonicalPrefixes The canonical prefix mapping.
+	 * @return The prefix normalization stage.
+	 */
+	public static StreamRDF prefixNormalization(StreamRDF next, PrefixMapping canonicalPrefixes) {
+		return new PrefixNormalizationStage(next, canonicalPrefixes);
+	}
+
+	/**
+	 * Returns a stage passing on only the quads (or triples) that satisfy a predicate.
+	 * Triples are tested as quads whose graph is <code>Quad.defaultGraphNodeGenerated</code>.
+	 *
+	 * @param next The next stream of the chain.
+	 * @param filter The predicate that quads must satisfy to be passed on.
+	 * @return The filtering stage.
+	 */
+	public static StreamRDF filter(StreamRDF next, Predicate<Quad> filter) {
+		return new FilterStage(next, filter);
+	}
+
+	/**
+	 * Sends the statements of a Jena model to a stream as quads in a given graph, or as triples if the graph name is <code>null</code>.
+	 * Neither <code>start</code> nor <code>finish</code> are called on the stream.
+	 *
+	 * @param model The Jena model to send.
+	 * @param graphName The name of the graph, or <code>null</code> to send triples.
+	 * @param stream The destination stream.
+	 */
+	public static void sendToStream(Model model, Node graphName, StreamRDF stream) {
+
+		Iterator<Triple> tripleIterator = model.getGraph().find();
+		while (tripleIterator.hasNext()) {
+			Triple triple = tripleIterator.next();
+			if (graphName == null) stream.triple(triple);
+			else stream.quad(new Quad(graphName, triple));
+		}
+	}
+
+	/**
+	 * Base class for the stages, which route triples and quads through a single method.
+	 * Triples are represented as quads whose graph is <code>Quad.defaultGraphNodeGenerated</code>.
+	 */
+	private static abstract class QuadStage extends StreamRDFWrapper {
+
+		public QuadStage(StreamRDF next) {
+			super(next);
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			process(new Quad(Quad.defaultGraphNodeGenerated, triple));
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			process(quad);
+		}
+
+		/** Processes a quad, or a triple wrapped in a quad. */
+		protected abstract void process(Quad quad);
+
+		/** Passes a quad, or a triple wrapped in a quad, to the next stream. */
+		protected void emit(Quad quad) {
+			if (Quad.defaultGraphNodeGenerated.equals(quad.getGraph())) other.triple(quad.asTriple());
+			else other.quad(quad);
+		}
+	}
+
+	private static class LabelEnrichmentStage extends QuadStage {
+
+		private final Map<String, String[]> labelIndex;
+		private final String reportBaseURI = Configuration.simsReportURI("");
+		private final Node labelProperty = RDFS.label.asNode();
+		private final Node targetProperty = Configuration.SIMS_TARGET.asNode();
+		/** Targets of the reports seen so far in the current graph */
+		private final Map<Node, String> reportTargets = new HashMap<>();
+		/** Labels of reports whose target is not known yet */
+		private final Map<Node, List<Quad>> pendingLabels = new HashMap<>();
+		private Node currentGraph = null;
+		private int modifiedLabels = 0;
+
+		public LabelEnrichmentStage(StreamRDF next, Map<String, String[]> labelIndex) {
+			super(next);
+			this.labelIndex = labelIndex;
+		}
+
+		@Override
+		protected void process(Quad quad) {
+
+			if (!quad.getGraph().equals(currentGraph)) {
+				flushPendingLabels();
+				reportTargets.clear();
+				currentGraph = quad.getGraph();
+			}
+			Node subject = quad.getSubject();
+			if (labelProperty.equals(quad.getPredicate()) && subject.isURI() && subject.getURI().startsWith(reportBaseURI)) {
+				String targetURI = reportTargets.get(subject);
+				if (targetURI == null) pendingLabels.computeIfAbsent(subject, key -> new ArrayList<>()).add(quad);
+				else emit(relabel(quad, targetURI));
+				return;
+			}
+			emit(quad);
+			if (targetProperty.equals(quad.getPredicate()) && quad.getObject().isURI()) {
+				reportTargets.put(subject, quad.getObject().getURI());
+				List<Quad> labels = pendingLabels.remove(subject);
+				if (labels != null) for (Quad label : labels) emit(relabel(label, quad.getObject().getURI()));
+			}
+		}
+
+		@Override
+		public void finish() {
+			flushPendingLabels();
+			logger.info("Labels modified by stream post-processing: " + modifiedLabels);
+			super.finish();
+		}
+
+		/** Passes on unchanged the labels of the reports for which no target was found */
+		private void flushPendingLabels() {
+			for (List<Quad> labels : pendingLabels.values()) for (Quad label : labels) emit(label);
+			pendingLabels.clear();
+		}
+
+		/** Returns the quad with the personalized label if the target has a label in the language of the quad, or the quad unchanged otherwise */
+		private Quad relabel(Quad labelQuad, String targetURI) {
+
+			String[] targetLabels = labelIndex.get(targetURI);
+			if ((targetLabels == null) || !labelQuad.getObject().isLiteral()) return labelQuad;
+			String language = labelQuad.getObject().getLiteralLanguage();
+			String newLabel = null;
+			if ("fr".equals(language) && (targetLabels[0] != null)) newLabel = "Rapport qualité : " + targetLabels[0];
+			else if ("en".equals(language) && (targetLabels[1] != null)) newLabel = "Quality report: " + targetLabels[1];
+			if (newLabel == null) return labelQuad;
+			modifiedLabels++;
+			return new Quad(labelQuad.getGraph(), labelQuad.getSubject(), labelQuad.getPredicate(), NodeFactory.createLiteral(newLabel, language));
+		}
+	}
+
+	private static class StatementInjectionStage extends QuadStage {
+
+		private final Map<Node, List<Statement>> rules = new HashMap<>();
+		private final Node typeProperty = RDF.type.asNode();
+
+		public StatementInjectionStage(StreamRDF next, Map<Resource, List<Statement>> rules) {
+			super(next);
+			rules.forEach((type, statements) -> this.rules.put(type.asNode(), statements));
+		}
+
+		@Override
+		protected void process(Quad quad) {
+
+			emit(quad);
+			if (!typeProperty.equals(quad.getPredicate())) return;
+			List<Statement> statements = rules.get(quad.getObject());
+			if (statements == null) return;
+			for (Statement statement : statements) {
+				emit(new Quad(quad.getGraph(), quad.getSubject(), statement.getPredicate().asNode(), statement.getObject().asNode()));
+			}
+		}
+	}
+
+	private static class PrefixNormalizationStage extends StreamRDFWrapper {
+
+		private final PrefixMapping canonicalPrefixes;
+		private final Map<String, String> declaredPrefixes = new HashMap<>();
+
+		public PrefixNormalizationStage(StreamRDF next, PrefixMapping canonicalPrefixes) {
+			super(next);
+			this.canonicalPrefixes = canonicalPrefixes;
+		}
+
+		@Override
+		public void start() {
+			super.start();
+			canonicalPrefixes.getNsPrefixMap().forEach(this::declare);
+		}
+
+		@Override
+		public void prefix(String prefix, String namespace) {
+
+			String canonicalPrefix = canonicalPrefixes.getNsURIPrefix(namespace);
+			if (canonicalPrefix != null) prefix = canonicalPrefix;
+			else if (canonicalPrefixes.getNsPrefixURI(prefix) != null) return; // Conflicts with a canonical prefix
+			if (declaredPrefixes.containsKey(prefix)) return;
+			declare(prefix, namespace);
+		}
+
+		private void declare(String prefix, String namespace) {
+			declaredPrefixes.put(prefix, namespace);
+			other.prefix(prefix, namespace);
+		}
+	}
+
+	private static class FilterStage extends QuadStage {
+
+		private final Predicate<Quad> filter;
+
+		public FilterStage(StreamRDF next, Predicate<Quad> filter) {
+			super(next);
+			this.filter = filter;
+		}
+
+		@Override
+		protected void process(Quad quad) {
+			if (filter.test(quad)) emit(quad);
+		}
+	}
+}
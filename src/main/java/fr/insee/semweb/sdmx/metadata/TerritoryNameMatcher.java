@@ -0,0 +1,152 @@
+package fr.insee.semweb.sdmx.metadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.insee.semweb.sdmx.metadata.GeoReferenceIndex.Territory;
+
+/**
+ * Finds the territory of a geographic reference index whose name best matches a given name.
+ * Names are first looked up exactly (after normalization) in the trie of the index, then by similarity of trigrams using an inverted index:
+ * the score of a candidate is the Dice coefficient of the trigram sets of the two names.
+ * Similar names can designate different territories (for example a former region and the département with the end of its name),
+ * so only exact matches should be used for linking: approximate matches are candidates for review.
+ *
+ * @author Franck
+ */
+public class TerritoryNameMatcher {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(TerritoryNameMatcher.class);
+
+	/** Default minimal score for a match */
+	public static double DEFAULT_THRESHOLD = 0.6;
+
+	private final GeoReferenceIndex referenceIndex;
+	private final List<Territory> territories;
+	/** Number of distinct trigrams of each territory name, by position in the list of territories */
+	private final int[] trigramCounts;
+	/** Positions of the territories containing each trigram */
+	private final Map<String, List<Integer>> trigramIndex = new HashMap<>();
+
+	/**
+	 * Creates a matcher for the territories of a geographic reference index.
+	 *
+	 * @param referenceIndex The geographic reference index.
+	 */
+	public TerritoryNameMatcher(GeoReferenceIndex referenceIndex) {
+
+		this.referenceIndex = referenceIndex;
+		this.territories = referenceIndex.getTerritories();
+		this.trigramCounts = new int[territories.size()];
+		for (int position = 0; position < territories.size(); position++) {
+			Set<String> trigrams = getTrigrams(GeoReferenceIndex.normalize(territories.get(position).getName()));
+			trigramCounts[position] = trigrams.size();
+			for (String trigram : trigrams) trigramIndex.computeIfAbsent(trigram, key -> new ArrayList<>()).add(position);
+		}
+		logger.debug("Trigram index created with " + trigramIndex.size() + " trigrams for " + territories.size() + " territories");
+	}
+
+	/**
+	 * Returns the territory whose normalized name is equal to the normalized name given, if it is unique.
+	 *
+	 * @param name The name to match.
+	 * @return The exact match, or <code>null</code> if there is no territory with this name or if there are several.
+	 */
+	public Match matchExact(String name) {
+
+		List<Territory> exactMatches = referenceIndex.lookupName(name);
+		if (exactMatches.size() == 1) return new Match(exactMatches.get(0), 1.0, true);
+		if (exactMatches.size() > 1) logger.debug("Ambiguous name " + name + ": " + exactMatches);
+		return null;
+	}
+
+	/**
+	 * Returns the best match for a territory name: the exact match if there is one, otherwise the most similar territory.
+	 *
+	 * @param name The name to match.
+	 * @param threshold The minimal score for an approximate match, between 0 and 1.
+	 * @return The best match, or <code>null</code> if the name is ambiguous, if no territory reaches the threshold or if the best score is shared by several territories.
+	 */
+	public Match match(String name, double threshold) {
+
+		Match exactMatch = matchExact(name);
+		if (exactMatch != null) return exactMatch;
+		if (!referenceIndex.lookupName(name).isEmpty()) return null; // Ambiguous name
+
+		// Count the trigrams shared with each candidate using the inverted index
+		Set<String> trigrams = getTrigrams(GeoReferenceIndex.normalize(name));
+		if (trigrams.isEmpty()) return null;
+		Map<Integer, Integer> sharedCounts = new HashMap<>();
+		for (String trigram : trigrams) {
+			List<Integer> positions = trigramIndex.get(trigram);
+			if (positions != null) for (Integer position : positions) sharedCounts.merge(position, 1, Integer::sum);
+		}
+		int bestPosition = -1;
+		double bestScore = 0;
+		boolean ambiguous = false;
+		for (Map.Entry<Integer, Integer> sharedCount : sharedCounts.entrySet()) {
+			double score = 2.0 * sharedCount.getValue() / (trigrams.size() + trigramCounts[sharedCount.getKey()]);
+			if (score > bestScore) {
+				bestScore = score;
+				bestPosition = sharedCount.getKey();
+				ambiguous = false;
+			} else if (score == bestScore) ambiguous = true;
+		}
+		if ((bestPosition < 0) || (bestScore < threshold) || ambiguous) return null;
+
+		return new Match(territories.get(bestPosition), bestScore, false);
+	}
+
+	/**
+	 * Returns the set of trigrams of a normalized name, padded with spaces so that the beginning and the end of the name are weighted.
+	 */
+	static Set<String> getTrigrams(String normalizedName) {
+
+		Set<String> trigrams = new LinkedHashSet<>();
+		if (normalizedName.isEmpty()) return trigrams;
+		String padded = "  " + normalizedName + " ";
+		for (int position = 0; position + 3 <= padded.length(); position++) trigrams.add(padded.substring(position, position + 3));
+		return trigrams;
+	}
+
+	/**
+	 * A territory matching a name, with the similarity score and an indicator telling if the match is exact.
+	 */
+	public static class Match {
+
+		private final Territory territory;
+		private final double score;
+		private final boolean exact;
+
+		public Match(Territory territory, double score, boolean exact) {
+			this.territory = territory;
+			this.score = score;
+			this.exact = exact;
+		}
+
+		public Territory getTerritory() {
+			return territory;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public boolean isExact() {
+			return exact;
+		}
+
+		@Override
+		public String toString() {
+			return territory + (exact ? " (exact)" : " (score " + String.format("%.2f", score) + ")");
+		}
+	}
+}
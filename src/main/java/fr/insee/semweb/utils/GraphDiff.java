@@ -0,0 +1,457 @@
+package fr.insee.semweb.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Computes the differences between two RDF files or datasets without loading them in Jena models.
+ * Each input is first written as a sorted canonical file with one line <code>graph URI TAB N-Triples statement</code> per quad,
+ * in which the blank nodes are labelled by a hash of their neighbourhood so that identical graphs give identical files.
+ * The sort is an external merge sort and the two sorted files are compared in a single streaming pass.
+ * The statements involving blank nodes are held in memory until the end of the input for their labelling, so the memory used
+ * only stays independent of the size of the graphs for graphs without blank nodes, or with a bounded number of blank node statements.
+ *
+ * @author Franck
+ */
+public class GraphDiff {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(GraphDiff.class);
+
+	/** Maximum number of lines sorted in memory before being written to a temporary file */
+	public static int CHUNK_SIZE = 200000;
+
+	/** Maximum number of refinement iterations for the labelling of the blank nodes */
+	public static int MAX_ITERATIONS = 64;
+
+	/**
+	 * Writes the sorted canonical form of an RDF file (any syntax known by Jena, possibly compressed).
+	 *
+	 * @param rdfFile The RDF file.
+	 * @param sortedFile The file where the sorted canonical lines are written.
+	 * @return The number of distinct lines written.
+	 * @throws IOException In case of problem reading or writing the files.
+	 */
+	public static long canonicalize(File rdfFile, File sortedFile) throws IOException {
+
+		CanonicalSink sink = new CanonicalSink(sortedFile);
+		try {
+			RDFDataMgr.parse(sink, rdfFile.getAbsolutePath());
+			return sink.close();
+		} finally {
+			sink.sorter.deleteChunks();
+		}
+	}
+
+	/**
+	 * Writes the sorted canonical form of a dataset.
+	 *
+	 * @param dataset The dataset.
+	 * @param sortedFile The file where the sorted canonical lines are written.
+	 * @return The number of distinct lines written.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static long canonicalize(Dataset dataset, File sortedFile) throws IOException {
+
+		CanonicalSink sink = new CanonicalSink(sortedFile);
+		try {
+			StreamRDFOps.datasetToStream(dataset.asDatasetGraph(), sink);
+			return sink.close();
+		} finally {
+			sink.sorter.deleteChunks();
+		}
+	}
+
+	/**
+	 * Compares two RDF files.
+	 *
+	 * @param oldFile The RDF file of the previous run.
+	 * @param newFile The RDF file of the current run.
+	 * @param diffFile The file where the removed (prefixed with '-') and added (prefixed with '+') lines are written, or <code>null</code> for counts only.
+	 * @return The counts of removed and added statements per graph.
+	 * @throws IOException In case of problem reading or writing the files.
+	 */
+	public static DiffResult compare(File oldFile, File newFile, File diffFile) throws IOException {
+
+		File oldSorted = File.createTempFile("graph-diff-old", ".txt");
+		File newSorted = File.createTempFile("graph-diff-new", ".txt");
+		try {
+			canonicalize(oldFile, oldSorted);
+			canonicalize(newFile, newSorted);
+			return diff(oldSorted, newSorted, diffFile);
+		} finally {
+			oldSorted.delete();
+			newSorted.delete();
+		}
+	}
+
+	/**
+	 * Compares two sorted canonical files in a single pass.
+	 *
+	 * @param oldSorted The sorted canonical file of the previous run.
+	 * @param newSorted The sorted canonical file of the current run.
+	 * @param diffFile The file where the removed (prefixed with '-') and added (prefixed with '+') lines are written, or <code>null</code> for counts only.
+	 * @return The counts of removed and added statements per graph.
+	 * @throws IOException In case of problem reading or writing the files.
+	 */
+	public static DiffResult diff(File oldSorted, File newSorted, File diffFile) throws IOException {
+
+		DiffResult result = new DiffResult();
+		try (BufferedReader oldReader = Files.newBufferedReader(oldSorted.toPath(), StandardCharsets.UTF_8);
+			BufferedReader newReader = Files.newBufferedReader(newSorted.toPath(), StandardCharsets.UTF_8);
+			Writer diffWriter = (diffFile == null) ? null : Files.newBufferedWriter(diffFile.toPath(), StandardCharsets.UTF_8)) {
+			String oldLine = oldReader.readLine();
+			String newLine = newReader.readLine();
+			while (oldLine != null || newLine != null) {
+				int comparison = (oldLine == null) ? 1 : (newLine == null) ? -1 : oldLine.compareTo(newLine);
+				if (comparison == 0) {
+					result.unchanged++;
+					oldLine = oldReader.readLine();
+					newLine = newReader.readLine();
+				} else if (comparison < 0) {
+					result.count(oldLine, 0);
+					if (diffWriter != null) diffWriter.write("-" + oldLine + "\n");
+					oldLine = oldReader.readLine();
+				} else {
+					result.count(newLine, 1);
+					if (diffWriter != null) diffWriter.write("+" + newLine + "\n");
+					newLine = newReader.readLine();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sorted canonical N-Triples statements of a graph held in memory, the blank nodes being labelled as in the canonical files of a default graph.
+	 *
+	 * @param graph The graph.
+	 * @return The sorted list of distinct statements, each ending with ' .'.
+	 */
+	public static List<String> canonicalStatements(Graph graph) {
+
+		List<Quad> blankQuads = new ArrayList<>();
+		Set<String> statements = new HashSet<>();
+		graph.find().forEachRemaining(triple -> {
+			Quad quad = new Quad(Quad.defaultGraphIRI, triple);
+			if (triple.getSubject().isBlank() || triple.getObject().isBlank()) blankQuads.add(quad);
+			else statements.add(canonicalLine(quad, Collections.emptyMap()).substring(1));
+		});
+		Map<Node, String> labels = labelBlankNodes(blankQuads);
+		for (Quad quad : blankQuads) statements.add(canonicalLine(quad, labels).substring(1));
+
+		List<String> sortedStatements = new ArrayList<>(statements);
+		Collections.sort(sortedStatements);
+		return sortedStatements;
+	}
+
+	/**
+	 * Returns the canonical line for a quad, the blank nodes being replaced by their labels.
+	 */
+	static String canonicalLine(Quad quad, Map<Node, String> labels) {
+
+		return graphName(quad) + "\t" + term(quad.getSubject(), labels) + " " + term(quad.getPredicate(), labels) + " " + term(quad.getObject(), labels) + " .";
+	}
+
+	/**
+	 * Returns the URI of the graph of a quad, or an empty string for the default graph whatever its representation.
+	 */
+	private static String graphName(Quad quad) {
+
+		return (quad.getGraph() == null || quad.isDefaultGraph()) ? "" : quad.getGraph().toString();
+	}
+
+	private static String term(Node node, Map<Node, String> labels) {
+
+		return node.isBlank() ? "_:" + labels.get(node) : NodeFmtLib.str(node);
+	}
+
+	/**
+	 * Labels the blank nodes by iteratively hashing the statements in which they appear, until the partition of the blank nodes by label is stable.
+	 * Blank nodes that cannot be distinguished by their neighbourhood are then individualized one at a time: the first node of the smallest tied label
+	 * gets a distinct label and the partition is refined again, until all the labels are distinct. Distinct blank nodes thus never give identical lines,
+	 * which would be merged by the sort. When the tied nodes are interchangeable (automorphic), which is the usual case, the result does not depend on
+	 * the node chosen; otherwise two isomorphic graphs can exceptionally be reported as different, but never the reverse.
+	 */
+	static Map<Node, String> labelBlankNodes(List<Quad> quads) {
+
+		Map<Node, List<Quad>> incidence = new HashMap<>();
+		for (Quad quad : quads) {
+			if (quad.getSubject().isBlank()) incidence.computeIfAbsent(quad.getSubject(), node -> new ArrayList<>()).add(quad);
+			if (quad.getObject().isBlank() && !quad.getObject().equals(quad.getSubject())) incidence.computeIfAbsent(quad.getObject(), node -> new ArrayList<>()).add(quad);
+		}
+		Map<Node, String> labels = new HashMap<>();
+		for (Node node : incidence.keySet()) labels.put(node, "");
+
+		while (true) {
+			labels = refine(incidence, labels);
+			// Look for the smallest label shared by several blank nodes
+			SortedMap<String, Node> tiedLabels = new TreeMap<>();
+			Set<String> seenLabels = new HashSet<>();
+			for (Map.Entry<Node, String> entry : labels.entrySet()) {
+				if (!seenLabels.add(entry.getValue())) tiedLabels.putIfAbsent(entry.getValue(), entry.getKey());
+			}
+			if (tiedLabels.isEmpty()) return labels;
+			Node individualized = tiedLabels.get(tiedLabels.firstKey());
+			labels.put(individualized, hash(labels.get(individualized) + "\n!"));
+		}
+	}
+
+	/**
+	 * Refines the labels of the blank nodes by hashing their neighbourhood until the number of distinct labels does not increase anymore.
+	 */
+	private static Map<Node, String> refine(Map<Node, List<Quad>> incidence, Map<Node, String> labels) {
+
+		int distinctLabels = new HashSet<>(labels.values()).size();
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			Map<Node, String> newLabels = new HashMap<>();
+			for (Map.Entry<Node, List<Quad>> entry : incidence.entrySet()) {
+				List<String> descriptions = new ArrayList<>();
+				for (Quad quad : entry.getValue()) descriptions.add(describe(quad, entry.getKey(), labels));
+				Collections.sort(descriptions);
+				newLabels.put(entry.getKey(), hash(labels.get(entry.getKey()) + "\n" + String.join("\n", descriptions)));
+			}
+			int newDistinctLabels = new HashSet<>(newLabels.values()).size();
+			labels = newLabels;
+			if (newDistinctLabels == distinctLabels && iteration > 0) break;
+			distinctLabels = newDistinctLabels;
+		}
+		return labels;
+	}
+
+	private static String describe(Quad quad, Node node, Map<Node, String> labels) {
+
+		String subject = quad.getSubject().equals(node) ? "@" : quad.getSubject().isBlank() ? "_:" + labels.get(quad.getSubject()) : NodeFmtLib.str(quad.getSubject());
+		String object = quad.getObject().equals(node) ? "@" : quad.getObject().isBlank() ? "_:" + labels.get(quad.getObject()) : NodeFmtLib.str(quad.getObject());
+		return graphName(quad) + " " + subject + " " + NodeFmtLib.str(quad.getPredicate()) + " " + object;
+	}
+
+	private static String hash(String value) {
+
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder("b");
+			for (int index = 0; index < 16; index++) builder.append(String.format("%02x", digest[index]));
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // SHA-256 is available on all Java platforms
+		}
+	}
+
+	/**
+	 * Compares two RDF files and logs the differences per graph.
+	 *
+	 * @param args The previous file, the current file and optionally the file where the differences are written.
+	 * @throws IOException In case of problem reading or writing the files.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			logger.error("Usage: GraphDiff <previous RDF file> <current RDF file> [diff file]");
+			System.exit(2);
+		}
+		DiffResult result = compare(new File(args[0]), new File(args[1]), (args.length > 2) ? new File(args[2]) : null);
+		logger.info("Differences between " + args[0] + " and " + args[1] + "\n" + result);
+	}
+
+	/**
+	 * The counts of removed and added statements per graph.
+	 */
+	public static class DiffResult {
+
+		/** Removed and added statements, keyed by graph URI (empty string for the default graph) */
+		private final SortedMap<String, long[]> counts = new TreeMap<>();
+		private long unchanged = 0;
+
+		private void count(String line, int index) {
+			counts.computeIfAbsent(line.substring(0, line.indexOf('\t')), graph -> new long[2])[index]++;
+		}
+
+		public Set<String> getGraphs() {
+			return counts.keySet();
+		}
+
+		public long getRemoved(String graph) {
+			return counts.containsKey(graph) ? counts.get(graph)[0] : 0;
+		}
+
+		public long getAdded(String graph) {
+			return counts.containsKey(graph) ? counts.get(graph)[1] : 0;
+		}
+
+		public long getTotalRemoved() {
+			return counts.values().stream().mapToLong(values -> values[0]).sum();
+		}
+
+		public long getTotalAdded() {
+			return counts.values().stream().mapToLong(values -> values[1]).sum();
+		}
+
+		public long getUnchanged() {
+			return unchanged;
+		}
+
+		public boolean isEmpty() {
+			return counts.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+
+			StringBuilder builder = new StringBuilder();
+			counts.forEach((graph, values) -> builder.append(graph.isEmpty() ? "(default graph)" : graph).append(": -").append(values[0]).append(" +").append(values[1]).append("\n"));
+			builder.append("Total: -").append(getTotalRemoved()).append(" +").append(getTotalAdded()).append(", ").append(unchanged).append(" unchanged");
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Receives the parsed quads, sends the ground ones to the sorter and keeps those with blank nodes for labelling at the end.
+	 */
+	private static class CanonicalSink extends StreamRDFBase {
+
+		private final ExternalSorter sorter;
+		private final File sortedFile;
+		private final List<Quad> blankQuads = new ArrayList<>();
+		private IOException failure = null;
+
+		CanonicalSink(File sortedFile) {
+			this.sortedFile = sortedFile;
+			this.sorter = new ExternalSorter(sortedFile.getAbsoluteFile().getParentFile());
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			quad(new Quad(Quad.defaultGraphIRI, triple));
+		}
+
+		@Override
+		public void quad(Quad quad) {
+
+			if (failure != null) return;
+			if (quad.getSubject().isBlank() || quad.getObject().isBlank()) blankQuads.add(quad);
+			else add(canonicalLine(quad, Collections.emptyMap()));
+		}
+
+		private void add(String line) {
+			try {
+				sorter.add(line);
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+
+		long close() throws IOException {
+
+			Map<Node, String> labels = labelBlankNodes(blankQuads);
+			for (Quad quad : blankQuads) add(canonicalLine(quad, labels));
+			blankQuads.clear();
+			if (failure != null) throw failure;
+			return sorter.finish(sortedFile);
+		}
+	}
+
+	/**
+	 * Sorts lines with a bounded memory: chunks of lines are sorted in memory and written to temporary files, which are then merged.
+	 * Duplicate lines are removed: since distinct blank nodes always get distinct labels, they can only come from duplicate statements.
+	 */
+	static class ExternalSorter {
+
+		private final File directory;
+		private final List<String> buffer = new ArrayList<>();
+		private final List<File> chunks = new ArrayList<>();
+
+		ExternalSorter(File directory) {
+			this.directory = directory;
+		}
+
+		void add(String line) throws IOException {
+
+			buffer.add(line);
+			if (buffer.size() >= CHUNK_SIZE) flush();
+		}
+
+		private void flush() throws IOException {
+
+			Collections.sort(buffer);
+			File chunk = File.createTempFile("graph-diff-chunk", ".txt", directory);
+			chunks.add(chunk);
+			try (Writer writer = Files.newBufferedWriter(chunk.toPath(), StandardCharsets.UTF_8)) {
+				for (String line : buffer) writer.write(line + "\n");
+			}
+			buffer.clear();
+		}
+
+		/**
+		 * Merges the sorted chunks into the output file.
+		 *
+		 * @return The number of distinct lines written.
+		 */
+		long finish(File output) throws IOException {
+
+			if (!buffer.isEmpty() || chunks.isEmpty()) flush();
+			List<BufferedReader> readers = new ArrayList<>();
+			long count = 0;
+			try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+				// Each entry of the queue is the current line of a chunk with the index of the chunk
+				PriorityQueue<Object[]> queue = new PriorityQueue<>((first, second) -> ((String) first[0]).compareTo((String) second[0]));
+				for (File chunk : chunks) {
+					BufferedReader reader = Files.newBufferedReader(chunk.toPath(), StandardCharsets.UTF_8);
+					readers.add(reader);
+					String line = reader.readLine();
+					if (line != null) queue.add(new Object[] {line, readers.size() - 1});
+				}
+				String previous = null;
+				while (!queue.isEmpty()) {
+					Object[] head = queue.poll();
+					String line = (String) head[0];
+					if (!line.equals(previous)) {
+						writer.write(line + "\n");
+						count++;
+						previous = line;
+					}
+					String next = readers.get((Integer) head[1]).readLine();
+					if (next != null) queue.add(new Object[] {next, head[1]});
+				}
+			} finally {
+				for (BufferedReader reader : readers) reader.close();
+				deleteChunks();
+			}
+			return count;
+		}
+
+		void deleteChunks() {
+
+			for (File chunk : chunks) chunk.delete();
+			chunks.clear();
+		}
+	}
+}
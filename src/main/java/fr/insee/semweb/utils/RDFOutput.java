@@ -0,0 +1,231 @@
+package fr.insee.semweb.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.PrefixMap;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Output layer for the generated RDF files.
+ * By default the files are written with the streaming writers of Jena (Turtle or TriG in blocks, N-Triples, N-Quads or RDF Thrift),
+ * which do not analyze the whole graph before writing, through a buffered file channel and with an optional compression.
+ * The pretty writers are only used on request, typically for the small vocabulary files that are meant to be read.
+ *
+ * @author Franck
+ */
+public class RDFOutput {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(RDFOutput.class);
+
+	/** Possible compressions of the output files, with the corresponding file suffixes */
+	public enum Compression {
+		NONE(""), GZIP(".gz"), BZIP2(".bz2"), ZSTD(".zst");
+
+		private final String suffix;
+
+		Compression(String suffix) {
+			this.suffix = suffix;
+		}
+
+		public String getSuffix() {
+			return suffix;
+		}
+	}
+
+	/** Language of the output files: Turtle, N-Triples or RDF Thrift (TriG and N-Quads are used for datasets) */
+	public static Lang OUTPUT_LANG = Lang.TURTLE;
+	/** Compression of the output files */
+	public static Compression COMPRESSION = Compression.NONE;
+	/** If <code>true</code>, the pretty writers are used instead of the streaming writers (the compression still applies) */
+	public static boolean PRETTY = false;
+	/** Size of the output buffer in bytes */
+	public static int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Writes a model to a file with the configured language and compression.
+	 *
+	 * @param model The model to write.
+	 * @param file The file to write to.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static void write(Model model, File file) throws IOException {
+
+		write(model, file, PRETTY ? prettyFormat(OUTPUT_LANG, false) : streamingFormat(OUTPUT_LANG, false), COMPRESSION);
+	}
+
+	/**
+	 * Writes a model to a file with a given format and compression.
+	 *
+	 * @param model The model to write.
+	 * @param file The file to write to.
+	 * @param format The RDF format: if a streaming writer exists for the format, it is used.
+	 * @param compression The compression of the file.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static void write(Model model, File file, RDFFormat format, Compression compression) throws IOException {
+
+		try (OutputStream output = openStream(file, compression)) {
+			if (StreamRDFWriter.registered(format)) StreamRDFOps.graphToStream(model.getGraph(), StreamRDFWriter.getWriterStream(output, format));
+			else RDFDataMgr.write(output, model, format);
+		}
+		logger.debug(model.size() + " statements written to " + file.getPath() + " in format " + format);
+	}
+
+	/**
+	 * Writes a dataset to a file with the configured language and compression.
+	 *
+	 * @param dataset The dataset to write.
+	 * @param file The file to write to.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static void write(Dataset dataset, File file) throws IOException {
+
+		write(dataset, file, PRETTY ? prettyFormat(OUTPUT_LANG, true) : streamingFormat(OUTPUT_LANG, true), COMPRESSION);
+	}
+
+	/**
+	 * Writes a dataset to a file with a given format and compression.
+	 *
+	 * @param dataset The dataset to write.
+	 * @param file The file to write to.
+	 * @param format The RDF format, which must support named graphs: if a streaming writer exists for the format, it is used.
+	 * @param compression The compression of the file.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static void write(Dataset dataset, File file, RDFFormat format, Compression compression) throws IOException {
+
+		try (OutputStream output = openStream(file, compression)) {
+			if (StreamRDFWriter.registered(format)) {
+				// The prefixes of the named models are merged since they are declared once at the beginning of the stream
+				PrefixMap prefixes = PrefixMapFactory.create(dataset.getDefaultModel());
+				dataset.listNames().forEachRemaining(name -> prefixes.putAll(dataset.getNamedModel(name)));
+				StreamRDF stream = StreamRDFWriter.getWriterStream(output, format);
+				stream.start();
+				StreamRDFOps.sendDatasetToStream(dataset.asDatasetGraph(), stream, prefixes);
+				stream.finish();
+			}
+			else RDFDataMgr.write(output, dataset, format);
+		}
+		logger.debug("Dataset written to " + file.getPath() + " in format " + format);
+	}
+
+	/**
+	 * Writes a model to a file with the pretty Turtle writer and without compression, for small files meant to be read.
+	 *
+	 * @param model The model to write.
+	 * @param file The file to write to.
+	 * @throws IOException In case of problem writing the file.
+	 */
+	public static void writePretty(Model model, File file) throws IOException {
+
+		write(model, file, RDFFormat.TURTLE_PRETTY, Compression.NONE);
+	}
+
+	/**
+	 * Opens a streaming writer to a file with the configured language and compression.
+	 * The caller must call <code>start</code> and <code>finish</code> on the writer, then close the output stream.
+	 *
+	 * @param output The output stream, typically obtained by <code>openStream</code>.
+	 * @param quads If <code>true</code>, the format returned supports named graphs.
+	 * @return The writer as a <code>StreamRDF</code>.
+	 */
+	public static StreamRDF writerStream(OutputStream output, boolean quads) {
+
+		return StreamRDFWriter.getWriterStream(output, streamingFormat(OUTPUT_LANG, quads));
+	}
+
+	/**
+	 * Opens a buffered output stream on a file channel, with the requested compression.
+	 *
+	 * @param file The file to write to (parent directories are created if necessary).
+	 * @param compression The compression to apply.
+	 * @return The output stream.
+	 * @throws IOException In case of problem opening the file, or if the compression is not available.
+	 */
+	public static OutputStream openStream(File file, Compression compression) throws IOException {
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) parent.mkdirs();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+		try {
+			switch (compression) {
+			case GZIP:
+				return new GZIPOutputStream(output, BUFFER_SIZE);
+			case BZIP2:
+				return new CompressorStreamFactory().createCompressorOutputStream(CompressorStreamFactory.BZIP2, output);
+			case ZSTD:
+				// Requires the zstd-jni library on the class path
+				return new CompressorStreamFactory().createCompressorOutputStream(CompressorStreamFactory.ZSTANDARD, output);
+			default:
+				return output;
+			}
+		} catch (CompressorException | LinkageError e) {
+			output.close();
+			throw new IOException("Compression " + compression + " is not available - " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the file corresponding to a base name with the extension of the configured language and the suffix of the configured compression.
+	 *
+	 * @param directory The directory of the file.
+	 * @param baseName The name of the file without extension.
+	 * @param quads If <code>true</code>, the file will contain named graphs.
+	 * @return The output file.
+	 */
+	public static File outputFile(File directory, String baseName, boolean quads) {
+
+		Lang lang = streamingFormat(OUTPUT_LANG, quads).getLang();
+		return new File(directory, baseName + "." + lang.getFileExtensions().get(0) + COMPRESSION.getSuffix());
+	}
+
+	/**
+	 * Returns the streaming format for an output language, or for its counterpart supporting named graphs.
+	 *
+	 * @param lang The output language (Turtle, TriG, N-Triples, N-Quads or RDF Thrift).
+	 * @param quads If <code>true</code>, the format returned supports named graphs.
+	 * @return The streaming format.
+	 */
+	public static RDFFormat streamingFormat(Lang lang, boolean quads) {
+
+		if (RDFLanguages.sameLang(lang, Lang.TURTLE) || RDFLanguages.sameLang(lang, Lang.TRIG)) return quads ? RDFFormat.TRIG_BLOCKS : RDFFormat.TURTLE_BLOCKS;
+		if (RDFLanguages.sameLang(lang, Lang.NTRIPLES) || RDFLanguages.sameLang(lang, Lang.NQUADS)) return quads ? RDFFormat.NQUADS : RDFFormat.NTRIPLES;
+		if (RDFLanguages.sameLang(lang, Lang.RDFTHRIFT)) return RDFFormat.RDF_THRIFT;
+		throw new IllegalArgumentException("No streaming output format for language " + lang);
+	}
+
+	/**
+	 * Returns the pretty format for an output language, which is the streaming format if the language has no pretty writer.
+	 *
+	 * @param lang The output language.
+	 * @param quads If <code>true</code>, the format returned supports named graphs.
+	 * @return The pretty format.
+	 */
+	public static RDFFormat prettyFormat(Lang lang, boolean quads) {
+
+		if (RDFLanguages.sameLang(lang, Lang.TURTLE) || RDFLanguages.sameLang(lang, Lang.TRIG)) return quads ? RDFFormat.TRIG_PRETTY : RDFFormat.TURTLE_PRETTY;
+		return streamingFormat(lang, quads);
+	}
+}
@@ -0,0 +1,292 @@
+package fr.insee.semweb.utils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Asynchronous client for SPARQL endpoints, allowing to overlap the latency of many requests.
+ * The requests are run by a fixed pool of threads whose size is the maximum number of requests running at the same time: the pool is shared by the clients
+ * of an endpoint created with the same limit. Identical requests submitted while a first one is running share its result, and requests can be given a timeout,
+ * after which the query execution is aborted.
+ * Results (models, datasets) can be shared between callers and should be copied before being modified.
+ *
+ * @author Franck
+ */
+public class SPARQLClient implements AutoCloseable {
+
+	/** Log4J2 logger */
+	public static Logger logger = LogManager.getLogger(SPARQLClient.class);
+
+	/** Executors running the requests, by endpoint and concurrency limit */
+	private static final Map<String, ExecutorService> endpointExecutors = new ConcurrentHashMap<>();
+
+	/** Thread enforcing the timeouts */
+	private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("sparql-client-timeout"));
+
+	private final RDFConnection connection;
+	private final boolean ownsConnection;
+	private final String endpointName;
+	private final ExecutorService requestExecutor;
+	private final boolean ownsExecutor;
+	private final long timeout;
+
+	/** Requests currently running, by type and query string */
+	private final Map<String, CompletableFuture<?>> runningRequests = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a client using an existing connection, which will not be closed by the client.
+	 *
+	 * @param connection The connection to the endpoint, which must be usable from several threads.
+	 * @param endpointName The name identifying the endpoint for the concurrency limit, or <code>null</code> for a limit specific to this client.
+	 * The limit is shared with the other clients created with the same endpoint name and the same maximum concurrency.
+	 * @param maxConcurrency The maximum number of requests running at the same time on the endpoint.
+	 * @param timeout The timeout of the requests in milliseconds (0 or negative for no timeout).
+	 */
+	public SPARQLClient(RDFConnection connection, String endpointName, int maxConcurrency, long timeout) {
+
+		this(connection, false, endpointName, maxConcurrency, timeout);
+	}
+
+	private SPARQLClient(RDFConnection connection, boolean ownsConnection, String endpointName, int maxConcurrency, long timeout) {
+
+		this.connection = connection;
+		this.ownsConnection = ownsConnection;
+		this.endpointName = (endpointName == null) ? "connection " + connection : endpointName;
+		int poolSize = Math.max(1, maxConcurrency);
+		this.ownsExecutor = (endpointName == null);
+		if (ownsExecutor) this.requestExecutor = createRequestExecutor(poolSize);
+		else this.requestExecutor = endpointExecutors.computeIfAbsent(endpointName + " " + poolSize, key -> createRequestExecutor(poolSize));
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Creates a client for a remote SPARQL endpoint, whose connection will be closed with the client.
+	 *
+	 * @param endpointURL The URL of the SPARQL endpoint.
+	 * @param maxConcurrency The maximum number of requests running at the same time on the endpoint.
+	 * @param timeout The timeout of the requests in milliseconds (0 or negative for no timeout).
+	 * @return The client.
+	 */
+	public static SPARQLClient forEndpoint(String endpointURL, int maxConcurrency, long timeout) {
+
+		return new SPARQLClient(RDFConnectionFactory.connect(endpointURL), true, endpointURL, maxConcurrency, timeout);
+	}
+
+	/**
+	 * Fetches asynchronously the content of a named graph.
+	 *
+	 * @param graphURI The URI of the graph.
+	 * @return A future returning the model of the graph.
+	 */
+	public CompletableFuture<Model> fetch(String graphURI) {
+
+		return submit("FETCH " + graphURI, handle -> connection.fetch(graphURI));
+	}
+
+	/**
+	 * Executes asynchronously a CONSTRUCT query.
+	 *
+	 * @param queryString The query.
+	 * @return A future returning the model constructed.
+	 */
+	public CompletableFuture<Model> construct(String queryString) {
+
+		return query("CONSTRUCT " + queryString, QueryFactory.create(queryString), QueryExecution::execConstruct);
+	}
+
+	/**
+	 * Executes asynchronously a CONSTRUCT query with quad templates (ARQ syntax).
+	 *
+	 * @param queryString The query.
+	 * @return A future returning the dataset constructed.
+	 */
+	public CompletableFuture<Dataset> constructDataset(String queryString) {
+
+		return query("CONSTRUCT_DATASET " + queryString, QueryFactory.create(queryString, Syntax.syntaxARQ), QueryExecution::execConstructDataset);
+	}
+
+	/**
+	 * Executes asynchronously a DESCRIBE query.
+	 *
+	 * @param queryString The query.
+	 * @return A future returning the model describing the resources.
+	 */
+	public CompletableFuture<Model> describe(String queryString) {
+
+		return query("DESCRIBE " + queryString, QueryFactory.create(queryString), QueryExecution::execDescribe);
+	}
+
+	/**
+	 * Executes asynchronously a SELECT query.
+	 *
+	 * @param queryString The query.
+	 * @return A future returning the list of solutions.
+	 */
+	public CompletableFuture<List<QuerySolution>> select(String queryString) {
+
+		return query("SELECT " + queryString, QueryFactory.create(queryString), execution -> ResultSetFormatter.toList(execution.execSelect()));
+	}
+
+	/**
+	 * Waits for the result of a request and returns it, unwrapping the exceptions.
+	 *
+	 * @param request The future corresponding to the request.
+	 * @return The result of the request.
+	 * @throws RuntimeException If the request failed, timed out or was interrupted.
+	 */
+	public static <T> T await(CompletableFuture<T> request) {
+
+		try {
+			return request.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for SPARQL request", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Closes the connection if it was created by the client, and stops the threads of the client if its concurrency limit is not shared with other clients.
+	 */
+	@Override
+	public void close() {
+
+		if (ownsExecutor) requestExecutor.shutdown();
+		if (ownsConnection) connection.close();
+	}
+
+	/**
+	 * Executes a query with the connection, applying the timeout to the query execution.
+	 */
+	private <T> CompletableFuture<T> query(String requestKey, Query query, Function<QueryExecution, T> operation) {
+
+		return submit(requestKey, handle -> {
+			try (QueryExecution execution = connection.query(query)) {
+				handle.setExecution(execution);
+				if (timeout > 0) execution.setTimeout(timeout);
+				return operation.apply(execution);
+			}
+		});
+	}
+
+	/**
+	 * Submits a request, or returns the running request if an identical one was already submitted.
+	 * When the request times out or is cancelled, its task is cancelled and its query execution aborted, so that the thread is released.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> submit(String requestKey, Request<T> request) {
+
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CompletableFuture<?> runningRequest = runningRequests.putIfAbsent(requestKey, result);
+		if (runningRequest != null) {
+			logger.debug("Request coalesced with running request on " + endpointName);
+			return (CompletableFuture<T>) runningRequest;
+		}
+		RequestHandle handle = new RequestHandle();
+		Future<?> task = requestExecutor.submit(() -> {
+			if (result.isDone()) return; // Timed out or cancelled while waiting in the queue
+			try {
+				T value = request.execute(handle);
+				runningRequests.remove(requestKey, result);
+				result.complete(value);
+			} catch (Throwable e) {
+				runningRequests.remove(requestKey, result);
+				result.completeExceptionally((e instanceof CompletionException) ? e.getCause() : e);
+			}
+		});
+		ScheduledFuture<?> timeoutTask = (timeout > 0) ? timeoutScheduler.schedule(() -> {
+			result.completeExceptionally(new TimeoutException("SPARQL request on " + endpointName + " timed out after " + timeout + " ms"));
+		}, timeout, TimeUnit.MILLISECONDS) : null;
+		result.whenComplete((value, exception) -> {
+			if (timeoutTask != null) timeoutTask.cancel(false);
+			if (exception == null) return;
+			// Timeout or cancellation: the request is stopped
+			runningRequests.remove(requestKey, result);
+			task.cancel(true);
+			handle.abort();
+		});
+
+		return result;
+	}
+
+	/**
+	 * Creates a fixed pool of threads running the requests, whose idle threads are stopped after a while.
+	 */
+	private static ExecutorService createRequestExecutor(int poolSize) {
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreadFactory("sparql-client"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Creates a factory of daemon threads with a given name prefix.
+	 */
+	private static ThreadFactory daemonThreadFactory(String namePrefix) {
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * A request to the endpoint.
+	 */
+	@FunctionalInterface
+	private interface Request<T> {
+		T execute(RequestHandle handle) throws Exception;
+	}
+
+	/**
+	 * Gives access to the query execution of a running request, so that it can be aborted.
+	 */
+	private static class RequestHandle {
+
+		private QueryExecution execution = null;
+		private boolean aborted = false;
+
+		synchronized void setExecution(QueryExecution execution) {
+			this.execution = execution;
+			if (aborted) execution.abort();
+		}
+
+		synchronized void abort() {
+			aborted = true;
+			if (execution != null) execution.abort();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package eu.casd.semweb.psp.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.DCAT;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import eu.casd.semweb.psp.CASDConfiguration;
+import eu.casd.semweb.psp.OperationEntry;
+import eu.casd.semweb.psp.OperationModelMaker;
+import eu.casd.semweb.psp.PSPModelMaker;
+import fr.insee.semweb.sdmx.metadata.Configuration;
+
+/**
+ * Test and launch methods for classes <code>OperationModelMaker</code> and <code>PSPModelMaker</code>.
+ * 
+ * @author Franck
+ */
+public class OperationModelMakerTest {
+
+	/** Rows of the operation sheet: family, series, short name, DDS identifier, type, operation info, periodicity, CASD availability, CASD products */
+	static String[][] OPERATION_ROWS = {
+		{"Famille", "Série", "Nom court", "Identifiant DDS", "Type", "Opération", "Périodicité", "CASD", "Produits CASD"},
+		{"Emploi", "Enquête Emploi", "EEC", "", "Enquête", "", "Trimestrielle", "oui", "2014/2015"},
+		{"", "", "", "", "", "2014", "", "", ""},
+		{"", "Enquête Chômage", "", "", "Enquête", "", "Annuelle", "non", ""},
+		{"Entreprises", "Répertoire", "", "", "Source administrative", "", "En continu", "oui", "2016"},
+		{"", "", "", "", "", "", "", "", ""},
+		{"Logement", "Enquête Logement", "", "", "Enquête", "", "Ponctuelle", "", ""}
+	};
+
+	/**
+	 * Creates a sheet containing the given rows.
+	 */
+	static Sheet createSheet(Workbook workbook, String[][] values) {
+
+		Sheet sheet = workbook.createSheet();
+		for (int rowIndex = 0; rowIndex < values.length; rowIndex++) {
+			Row row = sheet.createRow(rowIndex);
+			for (int columnIndex = 0; columnIndex < values[rowIndex].length; columnIndex++) {
+				if (values[rowIndex][columnIndex].length() > 0) row.createCell(columnIndex).setCellValue(values[rowIndex][columnIndex]);
+			}
+		}
+		return sheet;
+	}
+
+	/**
+	 * Checks that the models produced in parallel are identical to the models produced family by family.
+	 */
+	@Test
+	public void testCreateModels() throws IOException {
+
+		try (Workbook workbook = new XSSFWorkbook()) {
+			Sheet sheet = createSheet(workbook, OPERATION_ROWS);
+			Model opeModel = ModelFactory.createDefaultModel();
+			Model productModel = ModelFactory.createDefaultModel();
+			OperationModelMaker.createModels(sheet.rowIterator(), opeModel, productModel);
+
+			// Sequential computation of the models
+			Model expectedOpeModel = ModelFactory.createDefaultModel();
+			Model expectedProductModel = ModelFactory.createDefaultModel();
+			List<OperationEntry> familyChunk = null;
+			Iterator<Row> rows = sheet.rowIterator();
+			rows.next();
+			while (rows.hasNext()) {
+				OperationEntry entry = OperationEntry.readFromRow(rows.next());
+				if (entry.isEmpty()) continue;
+				if (entry.getFamilyName() != null) {
+					if (familyChunk != null) expectedOpeModel.add(OperationModelMaker.getFamilyModel(familyChunk, expectedProductModel));
+					familyChunk = new ArrayList<>();
+				}
+				familyChunk.add(entry);
+			}
+			expectedOpeModel.add(OperationModelMaker.getFamilyModel(familyChunk, expectedProductModel));
+
+			assertTrue(opeModel.isIsomorphicWith(expectedOpeModel));
+			assertTrue(productModel.isIsomorphicWith(expectedProductModel));
+			assertEquals(3, opeModel.listSubjectsWithProperty(RDF.type, Configuration.STATISTICAL_OPERATION_FAMILY).toList().size());
+			assertEquals(4, opeModel.listSubjectsWithProperty(RDF.type, Configuration.STATISTICAL_OPERATION_SERIES).toList().size());
+			assertEquals(3, productModel.listSubjectsWithProperty(RDF.type, DCAT.Dataset).toList().size());
+		}
+	}
+
+	/**
+	 * Checks the creation of the program/source/product and DCAT models.
+	 */
+	@Test
+	public void testCreatePSPModels() throws IOException {
+
+		String[][] productRows = {
+			{"Emploi", "Thème emploi", "", "EEC", "Enquête Emploi", "", "", "2014 -> 2016"},
+			{"Entreprises", "Thème entreprises", "", "ESANE", "Statistiques annuelles d'entreprises", "", "", "2015_2016"},
+			{"Emploi", "Thème emploi bis", "", "DADS", "Déclarations sociales", "", "", ""}
+		};
+		try (Workbook workbook = new XSSFWorkbook()) {
+			Sheet sheet = createSheet(workbook, productRows);
+			Model pspModel = ModelFactory.createDefaultModel();
+			Model dcatModel = ModelFactory.createDefaultModel();
+			String catalogURI = CASDConfiguration.CASD_PRODUCTS_BASE_URI + "catalog";
+			PSPModelMaker.createModels(sheet.rowIterator(), pspModel, dcatModel, dcatModel.createResource(catalogURI, DCAT.Catalog));
+
+			assertEquals(2, pspModel.listSubjectsWithProperty(RDF.type, Configuration.STATISTICAL_OPERATION_FAMILY).toList().size());
+			// Family attributes are taken from the first row of the family
+			assertEquals("Thème emploi", pspModel.getResource(Configuration.statisticalOperationFamilyURI("Emploi")).getProperty(DCTerms.subject).getString());
+			assertEquals(3, pspModel.listSubjectsWithProperty(RDF.type, Configuration.STATISTICAL_OPERATION_SERIES).toList().size());
+			assertEquals(4, pspModel.listSubjectsWithProperty(RDF.type, DCAT.Dataset).toList().size());
+			assertEquals(4, dcatModel.listObjectsOfProperty(dcatModel.getResource(catalogURI), DCAT.dataset).toList().size());
+		}
+	}
+}
@@ -1,22 +1,80 @@
 package eu.casd.semweb.psp.test;
 
 import eu.casd.semweb.psp.SourceConverter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SourceConverterTest {
 
 	@Test
-	public void testSplitModel() throws IOException {
+	public void testSplitModel(@TempDir Path directory) throws IOException {
 
+		// The base model is not initialized: nothing is written
 		List<String> testOperations = Arrays.asList("IND-COUT-TRAVAIL-ICHT-TS", "IND-COMMANDES-INDUSTRIE");
-		SourceConverter.splitModel(testOperations);
+		File outputDirectory = new File(directory.toFile(), "models");
+		SourceConverter.splitModel(testOperations, outputDirectory);
+		assertFalse(outputDirectory.exists());
+	}
+
+	@Test
+	public void testPartitionModel() {
+
+		Map<String, Model> operationModels = SourceConverter.partitionModel(createDDSModel(), Arrays.asList("IND-COMMANDES-INDUSTRIE", "IND-COUT-TRAVAIL-ICHT-TS", "ABSENTE"));
+		assertEquals(3, operationModels.size());
+		assertEquals(3, operationModels.get("IND-COMMANDES-INDUSTRIE").size());
+		assertEquals(1, operationModels.get("IND-COUT-TRAVAIL-ICHT-TS").size());
+		assertTrue(operationModels.get("ABSENTE").isEmpty());
+		assertTrue(createDDSModel().containsAll(operationModels.get("IND-COMMANDES-INDUSTRIE")));
+	}
+
+	@Test
+	public void testSplitFile(@TempDir Path directory) throws IOException {
+
+		File rdfFile = new File(directory.toFile(), "dds.rdf");
+		try (OutputStream output = new FileOutputStream(rdfFile)) {
+			RDFDataMgr.write(output, createDDSModel(), Lang.RDFXML);
+		}
+		File outputDirectory = new File(directory.toFile(), "models");
+		Map<String, Long> sizes = SourceConverter.splitFile(rdfFile.getPath(), Arrays.asList("IND-COMMANDES-INDUSTRIE", "IND-COUT-TRAVAIL-ICHT-TS"), outputDirectory);
+		assertEquals(3L, sizes.get("IND-COMMANDES-INDUSTRIE").longValue());
+		assertEquals(1L, sizes.get("IND-COUT-TRAVAIL-ICHT-TS").longValue());
+		Model operationModel = RDFDataMgr.loadModel(new File(outputDirectory, "ind-commandes-industrie.ttl").getPath());
+		assertEquals(3, operationModel.size());
+	}
+
+	/**
+	 * Creates a small model in the format of the DDS export, with statements related to three operations.
+	 */
+	private static Model createDDSModel() {
+
+		Model ddsModel = ModelFactory.createDefaultModel();
+		Property values = ddsModel.createProperty("http://www.SDMX.org/resources/SDMXML/schemas/v2_0/message#values");
+		ddsModel.createResource("http://baseUri/FR-IND-COMMANDES-INDUSTRIE/REF_AREA").addProperty(values, "France");
+		ddsModel.createResource("http://baseUri/FR-IND-COMMANDES-INDUSTRIE/SOURCE_CODE").addProperty(values, "S1");
+		ddsModel.createResource("http://baseUri/EN-IND-COMMANDES-INDUSTRIE/REF_AREA").addProperty(values, "France");
+		ddsModel.createResource("http://baseUri/FR-IND-COUT-TRAVAIL-ICHT-TS/REF_AREA").addProperty(values, "France");
+		ddsModel.createResource("http://baseUri/FR-AUTRE/REF_AREA").addProperty(values, "France");
+		ddsModel.createResource().addProperty(values, "Anonyme");
+		return ddsModel;
 	}
 
 	@Test
@@ -0,0 +1,94 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.jupiter.api.Test;
+
+import fr.insee.semweb.sdmx.metadata.CodeLabelIndex;
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.SIMSExporter;
+
+/**
+ * Test and launch methods for class <code>CodeLabelIndex</code>.
+ *
+ * @author Franck
+ */
+public class CodeLabelIndexTest {
+
+	static String FREQUENCY_CODE_URI = Configuration.inseeCodeURI("A", "Frequence");
+
+	/**
+	 * Creates a dataset containing a small frequency code list in a 'codes' graph.
+	 */
+	static Dataset createCodelistDataset() {
+
+		Model codes = ModelFactory.createDefaultModel();
+		Resource scheme = codes.createResource(Configuration.codelistURI("Frequence"), SKOS.ConceptScheme);
+		scheme.addProperty(SKOS.prefLabel, "Fréquences", "fr").addProperty(SKOS.prefLabel, "Frequencies", "en");
+		codes.createResource(FREQUENCY_CODE_URI, SKOS.Concept).addProperty(SKOS.inScheme, scheme)
+			.addProperty(SKOS.prefLabel, "Annuelle", "fr").addProperty(SKOS.prefLabel, "Annual", "en");
+		Dataset dataset = DatasetFactory.create();
+		dataset.addNamedModel(Configuration.INSEE_BASE_GRAPH_URI + "codes", codes);
+		return dataset;
+	}
+
+	/**
+	 * Checks the creation of the index from a code list dataset.
+	 */
+	@Test
+	public void testFromDataset() {
+
+		CodeLabelIndex index = CodeLabelIndex.fromDataset(createCodelistDataset());
+		assertEquals(1, index.size()); // The concept scheme is not indexed
+		assertArrayEquals(new String[] {"Annuelle", "Annual"}, index.getLabels(FREQUENCY_CODE_URI));
+		assertNull(index.getLabels(Configuration.codelistURI("Frequence")));
+	}
+
+	/**
+	 * Checks that the labels of coded values are added to an expanded SIMS model.
+	 */
+	@Test
+	public void testExpandedModelWithCodeLabels() {
+
+		CodeLabelIndex index = CodeLabelIndex.fromDataset(createCodelistDataset());
+		Dataset simsDataset = SIMSExporterTest.createTestStore("1507");
+		Model simsModel = simsDataset.getNamedModel(Configuration.simsReportGraphURI("1507"));
+		simsModel.createResource(Configuration.simsReportedAttributeURI("1507", "S.7"))
+			.addProperty(simsModel.createProperty("http://ec.europa.eu/eurostat/simsv2/attribute/S.7"), simsModel.createResource(FREQUENCY_CODE_URI));
+
+		try (RDFConnection connection = RDFConnectionFactory.connect(simsDataset)) {
+			Model expandedModel = SIMSExporter.queryExpandedSIMSModel(connection, Configuration.simsReportURI("1507"), index);
+			Resource code = expandedModel.createResource(FREQUENCY_CODE_URI);
+			assertTrue(expandedModel.contains(code, SKOS.prefLabel, expandedModel.createLiteral("Annuelle", "fr")));
+			assertTrue(expandedModel.contains(code, SKOS.prefLabel, expandedModel.createLiteral("Annual", "en")));
+			assertEquals(0, index.addCodeLabels(expandedModel)); // Labels are not added twice
+		}
+	}
+
+	/**
+	 * Checks the creation of the index from the code list Excel file.
+	 */
+	@Test
+	public void testFromCodelistFile() {
+
+		CodeLabelIndex index = CodeLabelIndex.fromCodelistFile(new File(Configuration.CL_XLSX_FILE_NAME));
+		assertNotNull(index, "Code list file " + Configuration.CL_XLSX_FILE_NAME + " could not be read");
+		assertTrue(index.size() > 0);
+		// Only the codes are indexed, not the code lists
+		assertNull(index.getLabels(Configuration.codelistURI("Frequence")));
+	}
+}
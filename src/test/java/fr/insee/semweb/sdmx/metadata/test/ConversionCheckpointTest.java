@@ -0,0 +1,159 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.ConversionCheckpoint;
+
+/**
+ * Test and launch methods for class <code>ConversionCheckpoint</code>.
+ *
+ * @author Franck
+ */
+public class ConversionCheckpointTest {
+
+	@AfterEach
+	public void resetConfiguration() {
+		ConversionCheckpoint.BATCH_SIZE = 100;
+	}
+
+	/**
+	 * Checks that the reports of the complete batches survive an interruption, and that all the reports are replayed after the resumed run.
+	 */
+	@Test
+	public void testResume(@TempDir Path directory) throws IOException {
+
+		ConversionCheckpoint.BATCH_SIZE = 3;
+		File checkpointDirectory = directory.resolve("checkpoint").toFile();
+		ConversionCheckpoint checkpoint = new ConversionCheckpoint(checkpointDirectory, "inputs");
+		for (int reportId = 1; reportId <= 7; reportId++) checkpoint.add(reportId, reportGraph(reportId), createReport(reportId));
+		assertEquals(2, checkpoint.getBatchFiles().size());
+		// Interruption: the seventh report is not flushed
+
+		checkpoint = new ConversionCheckpoint(checkpointDirectory, "inputs");
+		assertEquals(6, checkpoint.getCompletedCount());
+		assertTrue(checkpoint.isCompleted(6));
+		assertFalse(checkpoint.isCompleted(7));
+		checkpoint.add(7, reportGraph(7), createReport(7));
+		checkpoint.flush();
+		assertEquals(Arrays.asList("batch-000001.trig", "batch-000002.trig", "batch-000003.trig"), checkpoint.getBatchFiles());
+
+		// The prefixes are sent only once
+		DatasetGraph replayed = DatasetGraphFactory.create();
+		AtomicInteger prefixCount = new AtomicInteger();
+		checkpoint.replay(new StreamRDFWrapper(StreamRDFLib.dataset(replayed)) {
+			@Override
+			public void prefix(String prefix, String iri) {
+				prefixCount.incrementAndGet();
+				super.prefix(prefix, iri);
+			}
+		});
+		assertEquals(2, prefixCount.get());
+		Dataset replayedDataset = DatasetFactory.wrap(replayed);
+		for (int reportId = 1; reportId <= 7; reportId++) {
+			assertTrue(replayedDataset.getNamedModel(reportGraph(reportId)).isIsomorphicWith(createReport(reportId)), "Different model for report " + reportId);
+		}
+
+		ConversionCheckpoint.delete(checkpointDirectory);
+		assertFalse(checkpointDirectory.exists());
+	}
+
+	/**
+	 * Checks that batches interrupted during their writing or before the end of their journal line are ignored.
+	 */
+	@Test
+	public void testInterruptedBatch(@TempDir Path directory) throws IOException {
+
+		ConversionCheckpoint.BATCH_SIZE = 2;
+		File checkpointDirectory = directory.toFile();
+		ConversionCheckpoint checkpoint = new ConversionCheckpoint(checkpointDirectory, "inputs");
+		for (int reportId = 1; reportId <= 4; reportId++) checkpoint.add(reportId, reportGraph(reportId), createReport(reportId));
+
+		// Batch written but journal line truncated, and batch interrupted before its renaming
+		File journalFile = new File(checkpointDirectory, ConversionCheckpoint.JOURNAL_FILE_NAME);
+		Files.write(journalFile.toPath(), "batch-000003.trig\t5,".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		Files.copy(new File(checkpointDirectory, "batch-000002.trig").toPath(), new File(checkpointDirectory, "batch-000003.trig").toPath());
+		Files.write(new File(checkpointDirectory, "batch-000004.trig.tmp").toPath(), "incomplete".getBytes(StandardCharsets.UTF_8));
+
+		checkpoint = new ConversionCheckpoint(checkpointDirectory, "inputs");
+		assertEquals(4, checkpoint.getCompletedCount());
+		assertFalse(checkpoint.isCompleted(5));
+		assertFalse(new File(checkpointDirectory, "batch-000003.trig").exists());
+		assertFalse(new File(checkpointDirectory, "batch-000004.trig.tmp").exists());
+
+		// The next batch takes the place of the interrupted one, and its journal line is readable
+		checkpoint.add(5, reportGraph(5), createReport(5));
+		checkpoint.flush();
+		checkpoint = new ConversionCheckpoint(checkpointDirectory, "inputs");
+		assertEquals(5, checkpoint.getCompletedCount());
+		assertEquals("batch-000003.trig", checkpoint.getBatchFiles().get(2));
+	}
+
+	/**
+	 * Checks that the checkpoint is discarded when the fingerprint of the inputs changes.
+	 */
+	@Test
+	public void testFingerprint(@TempDir Path directory) throws IOException {
+
+		File input = directory.resolve("input.trig").toFile();
+		Files.write(input.toPath(), "version 1".getBytes(StandardCharsets.UTF_8));
+		String fingerprint = ConversionCheckpoint.fingerprint(Arrays.asList(input), "references=false");
+		assertEquals(fingerprint, ConversionCheckpoint.fingerprint(Arrays.asList(input), "references=false"));
+		assertNotEquals(fingerprint, ConversionCheckpoint.fingerprint(Arrays.asList(input), "references=true"));
+
+		File checkpointDirectory = directory.resolve("checkpoint").toFile();
+		ConversionCheckpoint checkpoint = new ConversionCheckpoint(checkpointDirectory, fingerprint);
+		checkpoint.add(1, reportGraph(1), createReport(1));
+		checkpoint.flush();
+
+		// The content hashes are cached on the size and modification time, which must change with the content
+		long lastModified = input.lastModified();
+		Files.write(input.toPath(), "version 2".getBytes(StandardCharsets.UTF_8));
+		input.setLastModified(lastModified + 2000);
+		String newFingerprint = ConversionCheckpoint.fingerprint(Arrays.asList(input), "references=false");
+		assertNotEquals(fingerprint, newFingerprint);
+		checkpoint = new ConversionCheckpoint(checkpointDirectory, newFingerprint);
+		assertEquals(0, checkpoint.getCompletedCount());
+		assertFalse(new File(checkpointDirectory, "batch-000001.trig").exists());
+	}
+
+	private static String reportGraph(int reportId) {
+		return Configuration.simsReportGraphURI(Integer.toString(reportId));
+	}
+
+	private static Model createReport(int reportId) {
+
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefix("rdfs", RDFS.getURI());
+		model.setNsPrefix("skos", SKOS.getURI());
+		model.createResource("http://id.insee.fr/qualite/rapport/" + reportId).addProperty(RDFS.label, "Rapport " + reportId, "fr")
+			.addProperty(SKOS.note, model.createResource().addProperty(RDFS.label, "Note " + reportId));
+		return model;
+	}
+}
@@ -0,0 +1,115 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.ConversionMetrics;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test and launch methods for class <code>ConversionMetrics</code>.
+ *
+ * @author Franck
+ */
+public class ConversionMetricsTest {
+
+	/**
+	 * Checks the statistics of timers, counters and histograms.
+	 */
+	@Test
+	public void testMetrics() {
+
+		ConversionMetrics metrics = new ConversionMetrics();
+		for (long value = 1; value <= 100; value++) metrics.recordValue("values", value);
+		ConversionMetrics.Histogram histogram = metrics.getHistogram("values");
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getTotal());
+		assertEquals(1, histogram.getMin());
+		assertEquals(100, histogram.getMax());
+		// Percentiles are approximated within a factor 2
+		assertTrue((histogram.getPercentile(50) >= 50) && (histogram.getPercentile(50) < 100));
+		assertEquals(100, histogram.getPercentile(99));
+
+		try (ConversionMetrics.Timer timer = metrics.startTimer(ConversionMetrics.DATASET_LOAD)) {
+			metrics.increment("loaded", 2);
+		}
+		metrics.startTimer(ConversionMetrics.URI_MAPPINGS).stop(0);
+		assertEquals(1, metrics.getTimer(ConversionMetrics.DATASET_LOAD).getCount());
+		assertEquals(2, metrics.getCounter("loaded"));
+		assertEquals(0, metrics.getCounter("unknown"));
+		assertTrue(metrics.summary().contains(ConversionMetrics.URI_MAPPINGS));
+
+		metrics.reset();
+		assertNull(metrics.getTimer(ConversionMetrics.DATASET_LOAD));
+	}
+
+	/**
+	 * Checks the report timers and the JSON export.
+	 */
+	@Test
+	public void testJSON(@TempDir Path directory) throws Exception {
+
+		ConversionMetrics metrics = new ConversionMetrics();
+		for (int documentationId = 1; documentationId <= 3; documentationId++) metrics.startReportTimer(documentationId).stop(10 * documentationId);
+		Path jsonFile = directory.resolve("metrics.json");
+		metrics.writeJSON(jsonFile.toFile());
+
+		JsonObject json = JSON.parse(new String(Files.readAllBytes(jsonFile), "UTF-8"));
+		assertEquals(3, json.get("timers").getAsObject().get(ConversionMetrics.REPORT_CONVERSION).getAsObject().get("count").getAsNumber().value().intValue());
+		assertEquals(60, json.get("histograms").getAsObject().get("report.statements").getAsObject().get("total").getAsNumber().value().intValue());
+		assertEquals(3, json.get("counters").getAsObject().get("reports.converted").getAsNumber().value().intValue());
+	}
+
+	/**
+	 * Checks that a Flight Recorder event is recorded for each report conversion.
+	 */
+	@Test
+	public void testFlightRecorderEvents(@TempDir Path directory) throws Exception {
+
+		ConversionMetrics metrics = new ConversionMetrics();
+		Path recordingFile = directory.resolve("conversion.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("fr.insee.semweb.ReportConversion");
+			recording.start();
+			metrics.startReportTimer(1507).stop(42);
+			metrics.startReportTimer(1508).stop(12);
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+		assertEquals(2, events.size());
+		assertEquals(1507, events.get(0).getInt("documentationId"));
+		assertEquals(42, events.get(0).getLong("statementCount"));
+	}
+
+	/**
+	 * Checks that the time spent in a stream is recorded.
+	 */
+	@Test
+	public void testTimedStream() {
+
+		ConversionMetrics metrics = new ConversionMetrics();
+		StreamRDF stream = metrics.timedStream(StreamRDFLib.graph(GraphFactory.createDefaultGraph()), ConversionMetrics.WRITING);
+		stream.start();
+		stream.triple(new Triple(NodeFactory.createURI("http://example.org/s"), NodeFactory.createURI("http://example.org/p"), NodeFactory.createLiteral("o")));
+		stream.finish();
+		assertEquals(2, metrics.getTimer(ConversionMetrics.WRITING).getCount());
+	}
+}
@@ -0,0 +1,155 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.ConversionService;
+
+/**
+ * Test and launch methods for class <code>ConversionService</code>.
+ * The service is tested with a converter creating small models, since the conversion of M0 documentations requires the SIMSFr files.
+ *
+ * @author Franck
+ */
+public class ConversionServiceTest {
+
+	private ConversionService service = null;
+	private final AtomicInteger conversions = new AtomicInteger();
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@AfterEach
+	public void stopService() {
+
+		if (service != null) service.close();
+		ConversionService.CHECK_INTERVAL = 1000;
+	}
+
+	/**
+	 * Checks the responses of the service in different formats, and that the conversions are cached.
+	 */
+	@Test
+	public void testConversions(@TempDir Path directory) throws IOException {
+
+		startService(directory.resolve("source.txt").toFile());
+
+		HttpURLConnection connection = get("/report/12", null);
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith("text/turtle"));
+		assertTrue(readModel(connection, Lang.TURTLE).isIsomorphicWith(createModel("12")));
+		assertEquals(200, get("/report/12", "text/turtle;q=0.9, */*;q=0.1").getResponseCode());
+		assertEquals(1, conversions.get());
+
+		// Other formats are cached separately
+		connection = get("/report/12?format=nt", null);
+		assertTrue(connection.getContentType().startsWith("application/n-triples"));
+		assertTrue(readModel(connection, Lang.NTRIPLES).isIsomorphicWith(createModel("12")));
+		assertEquals(200, get("/report/12", "application/n-triples").getResponseCode());
+		assertEquals(2, conversions.get());
+
+		assertEquals(404, get("/report/unknown", null).getResponseCode());
+		assertEquals(404, get("/other/12", null).getResponseCode());
+		assertEquals(406, get("/report/12", "image/png").getResponseCode());
+		assertEquals(1L, service.getStatistics().get("loads"));
+		assertEquals(2, service.getStatistics().get("cached"));
+	}
+
+	/**
+	 * Checks that the state is reloaded and the cache emptied when a source file changes or when a reload is requested.
+	 */
+	@Test
+	public void testReload(@TempDir Path directory) throws IOException {
+
+		File source = directory.resolve("source.txt").toFile();
+		Files.write(source.toPath(), "version 1".getBytes(StandardCharsets.UTF_8));
+		ConversionService.CHECK_INTERVAL = 0;
+		startService(source);
+
+		get("/report/1", null).getResponseCode();
+		get("/report/1", null).getResponseCode();
+		assertEquals(1, loads.get());
+		assertEquals(1, conversions.get());
+
+		Files.write(source.toPath(), "version 2, longer".getBytes(StandardCharsets.UTF_8));
+		get("/report/1", null).getResponseCode();
+		assertEquals(2, loads.get());
+		assertEquals(2, conversions.get());
+
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + service.getPort() + "/reload").openConnection();
+		connection.setRequestMethod("POST");
+		assertEquals(204, connection.getResponseCode());
+		assertEquals(3, loads.get());
+		assertEquals(0, service.getStatistics().get("cached"));
+	}
+
+	/**
+	 * Checks that the default service watches all the files read by its loader.
+	 */
+	@Test
+	public void testDefaultService() throws IOException {
+
+		service = ConversionService.createDefaultService(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), false);
+		for (String fileName : Arrays.asList(Configuration.M0_FILE_NAME, Configuration.SIMS_XLSX_FILE_NAME, Configuration.GEO_REFERENCE_FILE_NAME,
+				Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME, Configuration.DDS_ID_TO_WEB4G_ID_FILE_NAME, Configuration.SSM_ORGANIZATIONS_FILE_NAME)) {
+			assertTrue(service.getSources().contains(new File(fileName)), "File not watched: " + fileName);
+		}
+	}
+
+	private void startService(File source) throws IOException {
+
+		service = new ConversionService(new InetSocketAddress("localhost", 0))
+			.watch(source)
+			.setLoader(loads::incrementAndGet)
+			.addConverter("report", id -> {
+				if (!id.matches("[0-9]+")) return null;
+				conversions.incrementAndGet();
+				return createModel(id);
+			});
+		service.start();
+	}
+
+	private HttpURLConnection get(String path, String accept) throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + service.getPort() + path).openConnection();
+		if (accept != null) connection.setRequestProperty("Accept", accept);
+		return connection;
+	}
+
+	private static Model readModel(HttpURLConnection connection, Lang lang) throws IOException {
+
+		Model model = ModelFactory.createDefaultModel();
+		try (InputStream input = connection.getInputStream()) {
+			RDFParser.source(input).lang(lang).parse(model);
+		}
+		return model;
+	}
+
+	private static Model createModel(String id) {
+
+		Model model = ModelFactory.createDefaultModel();
+		model.createResource("http://id.insee.fr/qualite/rapport/" + id).addProperty(RDFS.label, "Rapport " + id, "fr");
+		return model;
+	}
+}
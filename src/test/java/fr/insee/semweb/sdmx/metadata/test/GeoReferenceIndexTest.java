@@ -0,0 +1,129 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.GeoMapper;
+import fr.insee.semweb.sdmx.metadata.GeoReferenceIndex;
+import fr.insee.semweb.utils.SPARQLClient;
+
+/**
+ * Test and launch methods for class <code>GeoReferenceIndex</code>.
+ *
+ * @author Franck
+ */
+public class GeoReferenceIndexTest {
+
+	static String IGEO = "http://rdf.insee.fr/def/geo#";
+
+	/**
+	 * Creates a small geographic reference model with two regions, one department and one suppressed region.
+	 */
+	static Model createGeoModel() {
+
+		Model geoModel = ModelFactory.createDefaultModel();
+		Property name = geoModel.createProperty(IGEO + "nom");
+		Property code = geoModel.createProperty(IGEO + "codeINSEE");
+		Resource region = geoModel.createResource(IGEO + "Region");
+		Resource department = geoModel.createResource(IGEO + "Departement");
+		geoModel.createResource("http://id.insee.fr/geo/region/r11", region).addProperty(name, "Île-de-France").addProperty(code, "11");
+		geoModel.createResource("http://id.insee.fr/geo/region/r32", region).addProperty(name, "Hauts-de-France").addProperty(code, "32");
+		geoModel.createResource("http://id.insee.fr/geo/departement/d11", department).addProperty(name, "Aude").addProperty(code, "11");
+		geoModel.createResource("http://id.insee.fr/geo/region/r31", region).addProperty(name, "Nord-Pas-de-Calais").addProperty(code, "31")
+			.addProperty(geoModel.createProperty(IGEO + "suppression"), geoModel.createResource("http://id.insee.fr/geo/evenement/e1")
+				.addProperty(geoModel.createProperty(IGEO + "date"), "2016-01-01", XSDDatatype.XSDdate));
+		return geoModel;
+	}
+
+	/**
+	 * Checks code and name lookups on an index created from a model.
+	 */
+	@Test
+	public void testLookups() {
+
+		GeoReferenceIndex index = GeoReferenceIndex.fromModel(createGeoModel());
+		assertEquals(4, index.size());
+		assertEquals("http://id.insee.fr/geo/region/r11", index.lookupCode("Region", "11").getURI());
+		assertEquals("http://id.insee.fr/geo/departement/d11", index.lookupCode("Departement", "11").getURI());
+		assertNull(index.lookupCode("Region", "31"));
+		assertEquals("2016-01-01", index.lookupName("Nord-Pas-de-Calais").get(0).getSuppressionDate());
+		assertFalse(index.lookupName("Hauts-de-France").get(0).isSuppressed());
+		assertEquals("http://id.insee.fr/geo/region/r11", index.lookupName("ILE DE FRANCE").get(0).getURI());
+		assertTrue(index.lookupName("Ile").isEmpty());
+		assertEquals(1, index.lookupNamePrefix("hauts").size());
+		assertEquals(4, index.lookupNamePrefix("").size());
+	}
+
+	/**
+	 * Checks that a snapshot is created from an endpoint and then read back identically.
+	 */
+	@Test
+	public void testSnapshot(@TempDir Path directory) throws IOException {
+
+		File snapshotFile = new File(directory.toFile(), "geo.csv");
+		GeoReferenceIndex index;
+		try (SPARQLClient client = new SPARQLClient(RDFConnectionFactory.connect(DatasetFactory.create(createGeoModel())), null, 1, 0)) {
+			index = GeoReferenceIndex.load(snapshotFile, client, false);
+		}
+		assertEquals(4, index.size());
+		assertEquals("2016-01-01", index.lookupName("Nord-Pas-de-Calais").get(0).getSuppressionDate());
+		assertTrue(snapshotFile.exists());
+
+		GeoReferenceIndex snapshotIndex = GeoReferenceIndex.load(snapshotFile, null, false);
+		SortedMap<String, String> nameURIMappings = snapshotIndex.getNameURIMappings();
+		assertEquals(index.getNameURIMappings(), nameURIMappings);
+		assertEquals("http://id.insee.fr/geo/region/r32", nameURIMappings.get("Hauts-de-France"));
+		assertFalse(nameURIMappings.containsKey("Nord-Pas-de-Calais"));
+		assertEquals("2016-01-01", snapshotIndex.lookupName("Nord-Pas-de-Calais").get(0).getSuppressionDate());
+	}
+
+	/**
+	 * Checks the completion of the M0 code mappings with the index.
+	 */
+	@Test
+	public void testCreateM0CodeToURIMappings() {
+
+		Map<String, String> m0CodeNames = new HashMap<>();
+		m0CodeNames.put("FRY1", "Guadeloupe");
+		m0CodeNames.put("FR10", "Ile de France");
+		m0CodeNames.put("FRXX", "Inconnue");
+		SortedMap<String, Resource> mappings = GeoMapper.createM0CodeToURIMappings(GeoReferenceIndex.fromModel(createGeoModel()), m0CodeNames);
+		assertEquals("http://id.insee.fr/geo/region/r11", mappings.get("FR10").getURI());
+		assertEquals(GeoMapper.createM0CodeToURIMappings().get("FRY1"), mappings.get("FRY1"));
+		assertFalse(mappings.containsKey("FRXX"));
+	}
+
+	/**
+	 * Checks that the reference index is read from an existing snapshot without querying the endpoint.
+	 */
+	@Test
+	public void testLoadReferenceIndex(@TempDir Path directory) throws IOException {
+
+		File snapshotFile = new File(directory.toFile(), "geo-reference.csv");
+		try (SPARQLClient client = new SPARQLClient(RDFConnectionFactory.connect(DatasetFactory.create(createGeoModel())), null, 1, 0)) {
+			GeoReferenceIndex.load(snapshotFile, client, false);
+		}
+		GeoReferenceIndex index = GeoMapper.loadReferenceIndex(snapshotFile, false);
+		assertEquals(4, index.size());
+		assertEquals("http://id.insee.fr/geo/departement/d11", index.lookupCode("Departement", "11").getURI());
+	}
+}
@@ -0,0 +1,170 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.GraphPublisher;
+import fr.insee.semweb.sdmx.metadata.GraphPublisher.ChangeType;
+import fr.insee.semweb.sdmx.metadata.GraphPublisher.GraphDelta;
+
+/**
+ * Test and launch methods for class <code>GraphPublisher</code>.
+ * An in-memory dataset stands for the triple store.
+ *
+ * @author Franck
+ */
+public class GraphPublisherTest {
+
+	/**
+	 * Checks that only the changed graphs are published, and that the store has the content of the dataset after each publication.
+	 */
+	@Test
+	public void testPublish(@TempDir Path directory) throws IOException {
+
+		Dataset store = DatasetFactory.createTxnMem();
+		Dataset dataset = createDataset(1, 2, 3);
+
+		List<GraphDelta> deltas = publish(new GraphPublisher(directory.toFile()), dataset, store);
+		assertEquals(3, deltas.size());
+		assertTrue(deltas.stream().allMatch(delta -> delta.getType() == ChangeType.ADDED));
+		assertSameContent(dataset, store);
+
+		// Nothing changed: no delta, even with a new publisher
+		assertTrue(publish(new GraphPublisher(directory.toFile()), createDataset(1, 2, 3), store).isEmpty());
+
+		// Report 2 modified, report 3 removed, report 4 added
+		dataset = createDataset(1, 2, 4);
+		Resource report = dataset.getNamedModel(reportGraph(2)).getResource("http://id.insee.fr/qualite/rapport/2");
+		report.removeAll(RDFS.label).addProperty(RDFS.label, "Modified report 2");
+		deltas = publish(new GraphPublisher(directory.toFile()), dataset, store);
+		assertEquals(3, deltas.size());
+		assertEquals(ChangeType.MODIFIED, deltas.get(0).getType());
+		assertEquals(1, deltas.get(0).getRemoved().size());
+		assertEquals(1, deltas.get(0).getAdded().size());
+		assertEquals(ChangeType.ADDED, deltas.get(1).getType());
+		assertEquals(reportGraph(3), deltas.get(2).getGraphName());
+		assertEquals(ChangeType.REMOVED, deltas.get(2).getType());
+		assertSameContent(dataset, store);
+		assertFalse(store.containsNamedModel(reportGraph(3)));
+	}
+
+	/**
+	 * Checks that graphs in which statements with blank nodes are removed are replaced entirely.
+	 */
+	@Test
+	public void testBlankNodes(@TempDir Path directory) throws IOException {
+
+		Dataset store = DatasetFactory.createTxnMem();
+		publish(new GraphPublisher(directory.toFile()), createDataset(1, 2), store);
+
+		Dataset dataset = createDataset(1, 2);
+		Model model = dataset.getNamedModel(reportGraph(1));
+		Resource note = model.listSubjectsWithProperty(RDF.value).next();
+		note.removeAll(RDF.value).addProperty(RDF.value, "Modified note");
+		List<GraphDelta> deltas = publish(new GraphPublisher(directory.toFile()), dataset, store);
+		assertEquals(1, deltas.size());
+		assertTrue(GraphPublisher.toSPARQLUpdate(deltas).startsWith("CLEAR SILENT GRAPH <" + reportGraph(1) + ">"));
+		assertSameContent(dataset, store);
+		assertEquals(model.size(), store.getNamedModel(reportGraph(1)).size());
+	}
+
+	/**
+	 * Checks the RDF Patch written for a set of changes.
+	 */
+	@Test
+	public void testRDFPatch(@TempDir Path directory) throws IOException {
+
+		GraphPublisher publisher = new GraphPublisher(directory.toFile());
+		publisher.commit(publisher.computeDeltas(createDataset(1), true));
+
+		Dataset dataset = createDataset(1);
+		dataset.getNamedModel(reportGraph(1)).getResource("http://id.insee.fr/qualite/rapport/1").addProperty(DCTerms.created, "2021-03-04");
+		StringWriter writer = new StringWriter();
+		GraphPublisher.writeRDFPatch(new GraphPublisher(directory.toFile()).computeDeltas(dataset, true), writer);
+		String[] lines = writer.toString().split("\n");
+		assertEquals(4, lines.length);
+		assertTrue(lines[0].startsWith("H id <uuid:"));
+		assertEquals("TX .", lines[1]);
+		assertEquals("A <http://id.insee.fr/qualite/rapport/1> <" + DCTerms.created.getURI() + "> \"2021-03-04\" <" + reportGraph(1) + "> .", lines[2]);
+		assertEquals("TC .", lines[3]);
+	}
+
+	/**
+	 * Checks that the changes published to a file are SPARQL Update requests, and that a publication without changes writes an empty request.
+	 */
+	@Test
+	public void testPublishToFile(@TempDir Path directory) throws IOException {
+
+		File stateDirectory = directory.resolve("state").toFile();
+		String target = directory.resolve("update.ru").toString();
+		assertEquals(2, new GraphPublisher(stateDirectory).publish(createDataset(1, 2), true, target).size());
+		String request = new String(Files.readAllBytes(Paths.get(target)), StandardCharsets.UTF_8);
+		assertTrue(request.startsWith("INSERT DATA {\n  GRAPH <" + reportGraph(1) + ">"));
+
+		assertTrue(new GraphPublisher(stateDirectory).publish(createDataset(1, 2), true, target).isEmpty());
+		assertEquals(0, Files.size(Paths.get(target)));
+	}
+
+	private static List<GraphDelta> publish(GraphPublisher publisher, Dataset dataset, Dataset store) throws IOException {
+
+		try (RDFConnection connection = RDFConnectionFactory.connect(store)) {
+			return publisher.publish(dataset, true, connection);
+		}
+	}
+
+	private static void assertSameContent(Dataset expected, Dataset actual) {
+
+		List<String> expectedNames = new ArrayList<>();
+		expected.listNames().forEachRemaining(expectedNames::add);
+		List<String> actualNames = new ArrayList<>();
+		for (Iterator<String> names = actual.listNames(); names.hasNext(); ) {
+			String name = names.next();
+			if (!actual.getNamedModel(name).isEmpty()) actualNames.add(name);
+		}
+		assertEquals(expectedNames.size(), actualNames.size());
+		for (String name : expectedNames) assertTrue(expected.getNamedModel(name).isIsomorphicWith(actual.getNamedModel(name)), "Different content for " + name);
+	}
+
+	private static String reportGraph(int reportId) {
+		return Configuration.simsReportGraphURI(Integer.toString(reportId));
+	}
+
+	/**
+	 * Creates a dataset with a graph per report, each report having a note represented by a blank node (the same in all reports).
+	 */
+	private static Dataset createDataset(int... reportIds) {
+
+		Dataset dataset = DatasetFactory.create();
+		for (int reportId : reportIds) {
+			Model model = dataset.getNamedModel(reportGraph(reportId));
+			Resource report = model.createResource("http://id.insee.fr/qualite/rapport/" + reportId).addProperty(RDFS.label, "Report " + reportId);
+			report.addProperty(RDFS.comment, model.createResource().addProperty(RDF.value, "Note").addProperty(DCTerms.language, model.createResource("http://id.insee.fr/codes/langue/fr")));
+		}
+		return dataset;
+	}
+}
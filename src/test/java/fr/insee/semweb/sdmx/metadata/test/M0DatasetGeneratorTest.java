@@ -0,0 +1,108 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.M0DatasetGenerator;
+import fr.insee.semweb.sdmx.metadata.M0Extractor;
+import fr.insee.semweb.sdmx.metadata.M0SIMSConverter;
+
+/**
+ * Test and launch methods for class <code>M0DatasetGenerator</code>.
+ *
+ * @author Franck
+ */
+public class M0DatasetGeneratorTest {
+
+	/**
+	 * Checks that the generated dataset contains the eleven M0 graphs and can be read by the extraction methods.
+	 */
+	@Test
+	public void testCreateDataset() {
+
+		Dataset m0Dataset = new M0DatasetGenerator(42, 0.1).createDataset();
+		List<String> graphNames = new ArrayList<>();
+		m0Dataset.listNames().forEachRemaining(graphNames::add);
+		assertEquals(11, graphNames.size());
+		for (String graph : new String[] {"familles", "series", "operations", "indicateurs", "documentations", "codelists", "codes", "associations", "organismes", "liens", "documents"}) {
+			assertTrue(graphNames.contains(Configuration.M0_BASE_GRAPH_URI + graph), "Missing graph " + graph);
+		}
+
+		Model m0DocumentationModel = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "documentations");
+		SortedSet<Integer> documentationIds = M0Extractor.getM0DocumentationIds(m0DocumentationModel);
+		assertEquals(Math.round(M0DatasetGenerator.DOCUMENTATION_COUNT * 0.1), documentationIds.size());
+		assertTrue(M0Extractor.getMaxSequence(m0DocumentationModel) >= documentationIds.last());
+		// The model of documentation 1 must not contain the statements of documentations 10 to 19
+		Model firstDocumentationModel = M0Extractor.extractM0ResourceModel(m0DocumentationModel, "http://baseUri/documentations/documentation/" + documentationIds.first());
+		assertEquals(1, firstDocumentationModel.listSubjectsWithProperty(RDF.type, SKOS.Concept).toList().size());
+
+		Model m0AssociationModel = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "associations");
+		assertEquals(documentationIds.size(), M0Extractor.extractSIMSAttachments(m0AssociationModel, true).size());
+		assertEquals(Math.round(M0DatasetGenerator.SERIES_COUNT * 0.1) + Math.round(M0DatasetGenerator.OPERATION_COUNT * 0.1), M0Extractor.extractHierarchies(m0AssociationModel).size());
+		assertFalse(M0Extractor.extractProductionRelations(m0AssociationModel).isEmpty());
+		assertFalse(M0SIMSConverter.getAllAttributeReferences(m0AssociationModel).isEmpty());
+		assertEquals(Math.round(M0DatasetGenerator.ORGANIZATION_COUNT * 0.1), M0Extractor.extractOrganizationMappings(m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "organismes")).size());
+
+		SortedMap<String, String[]> unitMeasureMappings = M0Extractor.extractUnitMeasureMappings(m0Dataset, false);
+		assertTrue(unitMeasureMappings.containsKey("EUR"));
+		assertFalse(unitMeasureMappings.containsKey("O"));
+		assertEquals("Guadeloupe", M0Extractor.extractCodeListLabels(m0Dataset, "CL_AREA").get("FRY1")[0]);
+	}
+
+	/**
+	 * Checks that the generation is reproducible and that its size is proportional to the size factor.
+	 */
+	@Test
+	public void testReproducibility() {
+
+		ByteArrayOutputStream firstOutput = new ByteArrayOutputStream();
+		ByteArrayOutputStream secondOutput = new ByteArrayOutputStream();
+		long quadCount = new M0DatasetGenerator(7, 0.2).writeTriG(firstOutput);
+		assertEquals(quadCount, new M0DatasetGenerator(7, 0.2).writeTriG(secondOutput));
+		assertEquals(firstOutput.toString(), secondOutput.toString());
+
+		long largerQuadCount = new M0DatasetGenerator(7, 0.4).generate(new StreamRDFBase());
+		assertTrue((largerQuadCount > 1.8 * quadCount) && (largerQuadCount < 2.2 * quadCount), "Unexpected number of quads: " + largerQuadCount + " for " + quadCount);
+	}
+
+	/**
+	 * Checks that the TriG file written can be read back with the same content as the in-memory dataset.
+	 */
+	@Test
+	public void testWriteTriG(@TempDir Path directory) throws IOException {
+
+		File trigFile = new File(directory.toFile(), "m0.trig");
+		long quadCount = new M0DatasetGenerator(42, 0.1).writeTriG(trigFile);
+		Dataset readDataset = RDFDataMgr.loadDataset(trigFile.getAbsolutePath());
+		Dataset m0Dataset = new M0DatasetGenerator(42, 0.1).createDataset();
+
+		long readCount = 0;
+		for (Iterator<String> names = m0Dataset.listNames(); names.hasNext(); ) {
+			String graphName = names.next();
+			assertTrue(readDataset.getNamedModel(graphName).isIsomorphicWith(m0Dataset.getNamedModel(graphName)), "Different content for graph " + graphName);
+			readCount += readDataset.getNamedModel(graphName).size();
+		}
+		assertEquals(quadCount, readCount);
+	}
+}
@@ -1,5 +1,9 @@
 package fr.insee.semweb.sdmx.metadata.test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -16,6 +20,7 @@ import org.junit.jupiter.api.Test;
 
 import fr.insee.semweb.sdmx.metadata.Configuration;
 import fr.insee.semweb.sdmx.metadata.Configuration.OrganizationRole;
+import fr.insee.semweb.sdmx.metadata.M0DatasetGenerator;
 import fr.insee.semweb.sdmx.metadata.M0Extractor;
 
 /**
@@ -25,6 +30,36 @@ import fr.insee.semweb.sdmx.metadata.M0Extractor;
  */
 class M0ExtractorTest {
 
+	/**
+	 * Checks the extraction of the codes and labels of a code list from a small M0 dataset.
+	 */
+	@Test
+	public void testExtractCodeListLabels() {
+
+		Dataset m0Dataset = TerritoryNameMatcherTest.createM0AreaDataset();
+		SortedMap<String, String[]> areaLabels = M0Extractor.extractCodeListLabels(m0Dataset, "CL_AREA");
+		assertEquals(3, areaLabels.size());
+		assertArrayEquals(new String[] {"Île de France", "Ile de France"}, areaLabels.get("FR10"));
+		assertEquals("", areaLabels.get("FRE")[1]);
+		assertTrue(M0Extractor.extractCodeListLabels(m0Dataset, "CL_UNKNOWN").isEmpty());
+	}
+
+	/**
+	 * Checks that the partitions of the M0 documentation model are the same as the models extracted for each documentation.
+	 */
+	@Test
+	public void testPartitionM0DocumentationModel() {
+
+		Dataset m0Dataset = new M0DatasetGenerator(42, 0.1).createDataset();
+		Model m0DocumentationModel = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "documentations");
+		SortedMap<Integer, Model> partitions = M0Extractor.partitionM0DocumentationModel(m0DocumentationModel);
+		assertEquals(M0Extractor.getM0DocumentationIds(m0DocumentationModel), partitions.keySet());
+		for (Map.Entry<Integer, Model> partition : partitions.entrySet()) {
+			Model extractModel = M0Extractor.extractM0ResourceModel(m0DocumentationModel, "http://baseUri/documentations/documentation/" + partition.getKey());
+			assertTrue(extractModel.isIsomorphicWith(partition.getValue()), "Different models for documentation " + partition.getKey());
+		}
+	}
+
 	/**
 	 * Extracts from an M0 model the list of all values of a given attribute, and writes it to the console.
 	 */
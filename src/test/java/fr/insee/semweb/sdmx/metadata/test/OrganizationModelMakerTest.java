@@ -5,19 +5,33 @@ import fr.insee.semweb.sdmx.metadata.OrganizationModelMaker;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.ORG;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.SKOS;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
 
 import javax.naming.NamingException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test and launch methods for class <code>OrganizationModelMaker</code>.
@@ -77,6 +91,102 @@ public class OrganizationModelMakerTest {
 		inseeLDAPModel.close();
 	}
 
+	/**
+	 * Starts an in-memory LDAP directory containing a direction, two divisions (one in the direction) and the 'AUTRE' unit.
+	 */
+	static InMemoryDirectoryServer startTestDirectory() throws Exception {
+
+		InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("o=insee,c=fr");
+		InMemoryDirectoryServer server = new InMemoryDirectoryServer(config);
+		server.add("dn: o=insee,c=fr", "objectClass: top", "objectClass: organization", "o: insee");
+		server.add("dn: ou=DG75-L001,o=insee,c=fr", "objectClass: top", "objectClass: organizationalUnit", "ou: DG75-L001", "description: Direction des statistiques");
+		server.add("dn: ou=DG75-L101,o=insee,c=fr", "objectClass: top", "objectClass: organizationalUnit", "ou: DG75-L101", "description: Division des prix",
+				"seeAlso: ou=DG75-L001,o=insee,c=fr");
+		server.add("dn: ou=DG75-L102,o=insee,c=fr", "objectClass: top", "objectClass: organizationalUnit", "ou: DG75-L102", "description: Division des revenus");
+		server.add("dn: ou=AUTRE,o=insee,c=fr", "objectClass: top", "objectClass: organizationalUnit", "ou: AUTRE", "description: Autre");
+		server.startListening();
+
+		return server;
+	}
+
+	/**
+	 * Returns the LDAP properties for a test directory, with a page size smaller than the number of units.
+	 */
+	static Properties getTestLDAPProperties(InMemoryDirectoryServer server) {
+
+		Properties ldapProperties = new Properties();
+		ldapProperties.setProperty("ldap.hostname", "ldap://localhost:" + server.getListenPort());
+		ldapProperties.setProperty("ldap.base", "o=insee,c=fr");
+		ldapProperties.setProperty("ldap.filter", "(objectClass=organizationalUnit)");
+		ldapProperties.setProperty("ldap.attributes", "ou,description,seeAlso");
+		ldapProperties.setProperty("ldap.pagesize", "2");
+
+		return ldapProperties;
+	}
+
+	/**
+	 * Checks the creation of the Insee organization model from a LDAP directory read by pages.
+	 */
+	@Test
+	public void testCreateInseeModelFromTestLDAP() throws Exception {
+
+		InMemoryDirectoryServer server = startTestDirectory();
+		try {
+			Model ldapModel = OrganizationModelMaker.createInseeModelFromLDAP(getTestLDAPProperties(server));
+			Resource division = ldapModel.createResource(Configuration.inseeUnitURI("DG75-L101"));
+			assertTrue(ldapModel.contains(division, ORG.unitOf, ldapModel.createResource(Configuration.inseeUnitURI("DG75-L001"))));
+			assertTrue(ldapModel.contains(ldapModel.createResource(Configuration.inseeUnitURI("DG75-L102")), ORG.unitOf, ldapModel.createResource(Configuration.organizationURI("Insee"))));
+			assertFalse(ldapModel.contains(ldapModel.createResource(Configuration.inseeUnitURI("AUTRE")), null));
+			assertEquals(3, ldapModel.listSubjectsWithProperty(RDF.type, ORG.OrganizationalUnit).toList().size());
+		} finally {
+			server.shutDown(true);
+		}
+	}
+
+	/**
+	 * Checks that an incremental synchronization only reads the units modified since the previous one, including those modified at its timestamp.
+	 */
+	@Test
+	public void testSynchronizeInseeModelFromLDAP(@TempDir Path directory) throws Exception {
+
+		InMemoryDirectoryServer server = startTestDirectory();
+		try {
+			Properties ldapProperties = getTestLDAPProperties(server);
+			File modelFile = new File(directory.toFile(), "insee-ldap.ttl");
+			File syncStateFile = new File(directory.toFile(), "insee-ldap-sync.properties");
+			OrganizationModelMaker.synchronizeInseeModelFromLDAP(ldapProperties, modelFile, syncStateFile);
+			assertTrue(modelFile.exists() && syncStateFile.exists());
+
+			Thread.sleep(20);
+			server.modify("dn: ou=DG75-L102,o=insee,c=fr", "changetype: modify", "replace: description", "description: Division des salaires", "-",
+					"add: seeAlso", "seeAlso: ou=DG75-L001,o=insee,c=fr");
+			Model inseeModel = RDFDataMgr.loadModel(modelFile.getAbsolutePath());
+			Properties syncState = new Properties();
+			try (FileInputStream syncStateStream = new FileInputStream(syncStateFile)) {
+				syncState.load(syncStateStream);
+			}
+			assertEquals(1, OrganizationModelMaker.refreshInseeModelFromLDAP(inseeModel, ldapProperties, syncState));
+			// The unit modified at the last timestamp is read again without changing the model, and is not counted as a change
+			Model refreshedModel = ModelFactory.createDefaultModel().add(inseeModel);
+			assertEquals(0, OrganizationModelMaker.refreshInseeModelFromLDAP(inseeModel, ldapProperties, syncState));
+			assertTrue(inseeModel.isIsomorphicWith(refreshedModel));
+
+			Model syncModel = OrganizationModelMaker.synchronizeInseeModelFromLDAP(ldapProperties, modelFile, syncStateFile);
+			Resource division = syncModel.createResource(Configuration.inseeUnitURI("DG75-L102"));
+			assertEquals("Division des salaires", division.getProperty(SKOS.prefLabel).getString());
+			assertEquals(1, syncModel.listObjectsOfProperty(division, ORG.unitOf).toList().size());
+			assertFalse(syncModel.contains(syncModel.createResource(Configuration.organizationURI("Insee")), ORG.hasUnit, division));
+
+			// Without changes in the directory, the model file is not written again
+			assertTrue(modelFile.setLastModified(1000000));
+			OrganizationModelMaker.synchronizeInseeModelFromLDAP(ldapProperties, modelFile, syncStateFile);
+			assertEquals(1000000, modelFile.lastModified());
+			assertFalse(new File(directory.toFile(), "insee-ldap.ttl.tmp").exists());
+		} finally {
+			server.shutDown(true);
+		}
+	}
+
 	/**
 	 * Creates a RDF dataset containing all the information on organizations and writes it to a TriG file.
 	 * 
@@ -0,0 +1,99 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.ORG;
+import org.apache.jena.vocabulary.SKOS;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.OrganizationModelMaker;
+import fr.insee.semweb.sdmx.metadata.OrganizationResolver;
+
+/**
+ * Test and launch methods for class <code>OrganizationResolver</code>.
+ *
+ * @author Franck
+ */
+public class OrganizationResolverTest {
+
+	/**
+	 * Creates a small organization model with two organizations.
+	 */
+	static Model createOrganizationModel() {
+
+		Model orgModel = ModelFactory.createDefaultModel();
+		orgModel.createResource(Configuration.organizationURI("Drees"), ORG.Organization).addProperty(DCTerms.identifier, "Drees")
+			.addProperty(SKOS.prefLabel, orgModel.createLiteral("Direction de la recherche, des études, de l'évaluation et des statistiques", "fr"))
+			.addProperty(SKOS.altLabel, orgModel.createLiteral("Service statistique ministériel de la santé (SSM Santé)", "fr"));
+		orgModel.createResource(Configuration.organizationURI("Insee"), ORG.Organization).addProperty(DCTerms.identifier, "Insee")
+			.addProperty(SKOS.prefLabel, orgModel.createLiteral("Institut national de la statistique et des études économiques", "fr"));
+		return orgModel;
+	}
+
+	/**
+	 * Checks the resolution of identifiers, labels and acronyms.
+	 */
+	@Test
+	public void testResolve() {
+
+		OrganizationResolver resolver = OrganizationResolver.fromModel(createOrganizationModel());
+		String dreesURI = Configuration.organizationURI("Drees");
+		assertEquals(dreesURI, resolver.resolveIdentifier("DREES"));
+		assertEquals(dreesURI, resolver.resolveLabel("Direction de la recherche, des etudes, de l'evaluation et des statistiques (Drees)"));
+		assertEquals(dreesURI, resolver.resolveLabel("Service statistique ministériel de la santé"));
+		assertEquals(dreesURI, resolver.resolveAcronym("ssm santé"));
+		assertEquals(Configuration.organizationURI("Insee"), resolver.resolve("Institut national de la statistique et des études économiques"));
+		assertTrue(resolver.containsIdentifier("insee"));
+		assertFalse(resolver.containsIdentifier("Dares"));
+		assertNull(resolver.resolve("Dares"));
+	}
+
+	/**
+	 * Checks that the acronyms removed from the labels of the organization workbook are still resolved.
+	 */
+	@Test
+	public void testResolveSSMAcronym() {
+
+		Workbook orgWorkbook = new XSSFWorkbook();
+		Sheet orgSheet = orgWorkbook.createSheet();
+		Sheet detailSheet = orgWorkbook.createSheet();
+		orgSheet.createRow(0).createCell(0).setCellValue("Identifiant");
+		detailSheet.createRow(0).createCell(0).setCellValue("Organisme");
+		String[] orgValues = {"Drees", "Direction de la recherche, des études, de l'évaluation et des statistiques (DREES)",
+				"Directorate for Research, Studies, Evaluation and Statistics (DREES)", "", "", "", "", "https://drees.solidarites-sante.gouv.fr"};
+		Row orgRow = orgSheet.createRow(1);
+		for (int column = 0; column < orgValues.length; column++) orgRow.createCell(column).setCellValue(orgValues[column]);
+		Row detailRow = detailSheet.createRow(1);
+		detailRow.createCell(0).setCellValue("Ministère des solidarités et de la santé");
+		detailRow.createCell(4).setCellValue("Drees");
+
+		Model ssmModel = OrganizationModelMaker.createSSMModel(orgWorkbook);
+		OrganizationResolver resolver = OrganizationResolver.fromModel(ssmModel);
+		assertEquals(Configuration.organizationURI("Drees"), resolver.resolveAcronym("DREES"));
+		assertEquals(Configuration.organizationURI("Drees"), resolver.resolveLabel("Directorate for Research, Studies, Evaluation and Statistics"));
+	}
+
+	/**
+	 * Checks the processing of trailing parenthesis, including labels ending with a parenthesis which is not opened.
+	 */
+	@Test
+	public void testTrailingParenthesis() {
+
+		assertEquals("Name", OrganizationModelMaker.stripTrailingParenthesis("Name (ACRONYM)"));
+		assertEquals("ACRONYM", OrganizationModelMaker.getTrailingParenthesis("Name (ACRONYM)"));
+		assertEquals("Name :-)", OrganizationModelMaker.stripTrailingParenthesis("Name :-)"));
+		assertNull(OrganizationModelMaker.getTrailingParenthesis("Name :-)"));
+		assertNull(OrganizationModelMaker.getTrailingParenthesis("Name ()"));
+	}
+}
@@ -0,0 +1,234 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.Stage;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.StageStatus;
+
+/**
+ * Test and launch methods for class <code>PipelineOrchestrator</code>.
+ *
+ * @author Franck
+ */
+public class PipelineOrchestratorTest {
+
+	/**
+	 * Checks that the stages are run after their dependencies and that unchanged stages are skipped on the next run.
+	 */
+	@Test
+	public void testRunAndSkip(@TempDir Path directory) throws IOException {
+
+		File input = write(directory.resolve("input.txt"), "input");
+		File intermediate = directory.resolve("intermediate.txt").toFile();
+		File output = directory.resolve("output.txt").toFile();
+		List<String> executions = Collections.synchronizedList(new ArrayList<>());
+
+		PipelineOrchestrator orchestrator = new PipelineOrchestrator(directory.toFile());
+		orchestrator.addStage(new Stage("final", context -> {
+			executions.add("final");
+			write(output.toPath(), new String(Files.readAllBytes(intermediate.toPath()), StandardCharsets.UTF_8) + "+final");
+		}).dependsOn("first").outputs(output));
+		orchestrator.addStage(new Stage("first", context -> {
+			executions.add("first");
+			write(intermediate.toPath(), new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8).toUpperCase());
+		}).inputs(input).outputs(intermediate));
+
+		Map<String, StageStatus> results = orchestrator.run();
+		assertEquals(Arrays.asList("first", "final"), executions);
+		assertEquals(StageStatus.COMPLETED, results.get("final"));
+		assertEquals("INPUT+final", new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+
+		// Nothing changed: both stages are skipped, even by a new orchestrator
+		executions.clear();
+		PipelineOrchestrator secondOrchestrator = new PipelineOrchestrator(directory.toFile());
+		secondOrchestrator.addStage(new Stage("first", context -> executions.add("first")).inputs(input).outputs(intermediate));
+		secondOrchestrator.addStage(new Stage("final", context -> executions.add("final")).dependsOn("first").outputs(output));
+		results = secondOrchestrator.run();
+		assertTrue(executions.isEmpty());
+		assertEquals(StageStatus.SKIPPED, results.get("first"));
+		assertEquals(StageStatus.SKIPPED, results.get("final"));
+
+		// Input modified with the same result: the first stage is run again, but not the final one since its input is identical
+		write(input.toPath(), "INPUT");
+		results = orchestrator.run();
+		assertEquals(Arrays.asList("first"), executions);
+		assertEquals(StageStatus.SKIPPED, results.get("final"));
+
+		// Missing output: the stage is run again
+		executions.clear();
+		output.delete();
+		results = orchestrator.run(Arrays.asList("final"));
+		assertEquals(Arrays.asList("final"), executions);
+
+		// Forced run
+		executions.clear();
+		orchestrator.setForce(true).run();
+		assertEquals(Arrays.asList("first", "final"), executions);
+	}
+
+	/**
+	 * Checks that independent stages are run in parallel and that exclusive stages are not.
+	 */
+	@Test
+	public void testParallelism(@TempDir Path directory) throws IOException {
+
+		// The two stages wait for each other: the run can only succeed if they are executed concurrently
+		CountDownLatch latch = new CountDownLatch(2);
+		PipelineOrchestrator orchestrator = new PipelineOrchestrator(directory.toFile()).setThreads(2);
+		for (String name : new String[] {"left", "right"}) {
+			orchestrator.addStage(new Stage(name, context -> {
+				latch.countDown();
+				if (!latch.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("Stages not run in parallel");
+			}));
+		}
+		Map<String, StageStatus> results = orchestrator.run();
+		assertEquals(StageStatus.COMPLETED, results.get("left"));
+		assertEquals(StageStatus.COMPLETED, results.get("right"));
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		PipelineOrchestrator exclusiveOrchestrator = new PipelineOrchestrator(directory.resolve("exclusive").toFile()).setThreads(4);
+		for (int index = 0; index < 4; index++) {
+			exclusiveOrchestrator.addStage(new Stage("stage" + index, context -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(20);
+				running.decrementAndGet();
+			}).exclusiveGroup("group"));
+		}
+		exclusiveOrchestrator.run();
+		assertEquals(1, maxRunning.get());
+	}
+
+	/**
+	 * Checks that the shared inputs are loaded once, and loaded again when their source changes, the previous value being closed.
+	 */
+	@Test
+	public void testSharedInputs(@TempDir Path directory) throws Exception {
+
+		File source = write(directory.resolve("source.txt"), "source");
+		AtomicInteger loads = new AtomicInteger();
+		List<Object> values = Collections.synchronizedList(new ArrayList<>());
+
+		PipelineOrchestrator orchestrator = new PipelineOrchestrator(directory.toFile()).setForce(true);
+		for (String name : new String[] {"one", "two", "three"}) {
+			orchestrator.addStage(new Stage(name, context -> values.add(context.get("shared", source, () -> {
+				loads.incrementAndGet();
+				return new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8);
+			}))).inputs(source));
+		}
+		orchestrator.run();
+		assertEquals(1, loads.get());
+		assertEquals(3, values.size());
+		assertSame(values.get(0), values.get(2));
+
+		write(source.toPath(), "modified source");
+		assertEquals("modified source", orchestrator.getContext().get("shared", source, () -> {
+			loads.incrementAndGet();
+			return new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8);
+		}));
+		assertEquals(2, loads.get());
+
+		AtomicInteger closings = new AtomicInteger();
+		Callable<AutoCloseable> closeableLoader = () -> closings::incrementAndGet;
+		AutoCloseable first = orchestrator.getContext().get("closeable", source, closeableLoader);
+		assertSame(first, orchestrator.getContext().get("closeable", source, closeableLoader));
+		assertEquals(0, closings.get());
+		write(source.toPath(), "source modified again");
+		source.setLastModified(source.lastModified() + 2000);
+		orchestrator.getContext().get("closeable", source, closeableLoader);
+		assertEquals(1, closings.get());
+
+		// An input loaded from several files is loaded again when any of them changes
+		File otherSource = write(directory.resolve("other.txt"), "other");
+		List<File> sources = Arrays.asList(source, otherSource);
+		Callable<Integer> countingLoader = loads::incrementAndGet;
+		int multipleLoad = orchestrator.getContext().get("multiple", sources, countingLoader);
+		assertEquals(multipleLoad, orchestrator.getContext().get("multiple", sources, countingLoader).intValue());
+		write(otherSource.toPath(), "other modified");
+		otherSource.setLastModified(otherSource.lastModified() + 2000);
+		assertEquals(multipleLoad + 1, orchestrator.getContext().get("multiple", sources, countingLoader).intValue());
+	}
+
+	/**
+	 * Checks that a failure cancels the dependent stages but not the independent ones, and that invalid graphs are rejected.
+	 */
+	@Test
+	public void testFailures(@TempDir Path directory) throws IOException {
+
+		PipelineOrchestrator orchestrator = new PipelineOrchestrator(directory.toFile());
+		orchestrator.addStage(new Stage("failing", context -> { throw new IOException("Expected failure"); }));
+		orchestrator.addStage(new Stage("dependent", context -> {}).dependsOn("failing"));
+		orchestrator.addStage(new Stage("transitive", context -> {}).dependsOn("dependent"));
+		orchestrator.addStage(new Stage("independent", context -> {}));
+		Map<String, StageStatus> results = orchestrator.run();
+		assertEquals(StageStatus.FAILED, results.get("failing"));
+		assertEquals(StageStatus.CANCELLED, results.get("dependent"));
+		assertEquals(StageStatus.CANCELLED, results.get("transitive"));
+		assertEquals(StageStatus.COMPLETED, results.get("independent"));
+
+		orchestrator.addStage(new Stage("cycle1", context -> {}).dependsOn("cycle2"));
+		orchestrator.addStage(new Stage("cycle2", context -> {}).dependsOn("cycle1"));
+		assertThrows(IllegalArgumentException.class, () -> orchestrator.run(Arrays.asList("cycle1")));
+		assertThrows(IllegalArgumentException.class, () -> orchestrator.run(Arrays.asList("unknown")));
+	}
+
+	/**
+	 * Checks the declaration of the default pipeline.
+	 */
+	@Test
+	public void testDefaultPipeline(@TempDir Path directory) {
+
+		PipelineOrchestrator orchestrator = PipelineOrchestrator.createDefaultPipeline(directory.toFile());
+		// Running the default pipeline requires the data files: only check that the graph is valid
+		assertThrows(IllegalArgumentException.class, () -> orchestrator.run(Arrays.asList("no-such-stage")));
+		assertTrue(orchestrator.getStages().containsKey("sims-reports"));
+		assertTrue(orchestrator.getStages().get("sims-reports").getDependencies().contains("sims-models"));
+		assertTrue(orchestrator.getStages().get("m0-organizations").getDependencies().contains("ssm-organizations"));
+		assertTrue(orchestrator.affectedStages(Arrays.asList(new File(Configuration.ORGANIZATIONS_XLSX_FILE_NAME))).contains("m0-organizations"));
+
+		// A change in the SIMSFr workbook affects the SIMS models and the reports, a change in a CSV mapping the operations and the reports
+		assertEquals(new LinkedHashSet<>(Arrays.asList("sims-models", "sims-reports")), orchestrator.affectedStages(Arrays.asList(new File(Configuration.SIMS_XLSX_FILE_NAME))));
+		assertEquals(new LinkedHashSet<>(Arrays.asList("operations", "sims-reports")), orchestrator.affectedStages(Arrays.asList(new File(Configuration.M0_ID_TO_WEB4G_ID_FILE_NAME).getAbsoluteFile())));
+		// The operations and the reports use the SSM organizations produced by the pipeline
+		assertTrue(orchestrator.getStages().get("operations").getDependencies().contains("ssm-organizations"));
+		assertTrue(orchestrator.getStages().get("sims-reports").getDependencies().contains("ssm-organizations"));
+		assertTrue(orchestrator.affectedStages(Arrays.asList(directory.resolve("other.txt").toFile())).isEmpty());
+
+		// With a publication target, the changes of the operations and reports are published
+		assertFalse(orchestrator.getStages().containsKey("publication"));
+		PipelineOrchestrator publishing = PipelineOrchestrator.createDefaultPipeline(directory.toFile(), directory.resolve("update.ru").toString());
+		assertEquals(Arrays.asList("operations", "sims-reports"), publishing.getStages().get("publication").getDependencies());
+		assertTrue(publishing.affectedStages(Arrays.asList(new File(Configuration.SIMS_XLSX_FILE_NAME))).contains("publication"));
+	}
+
+	private static File write(Path path, String content) throws IOException {
+
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path.toFile();
+	}
+}
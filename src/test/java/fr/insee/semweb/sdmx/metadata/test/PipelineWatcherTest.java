@@ -0,0 +1,102 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.Stage;
+import fr.insee.semweb.sdmx.metadata.PipelineOrchestrator.StageStatus;
+import fr.insee.semweb.sdmx.metadata.PipelineWatcher;
+
+/**
+ * Test and launch methods for class <code>PipelineWatcher</code>.
+ *
+ * @author Franck
+ */
+public class PipelineWatcherTest {
+
+	/**
+	 * Checks that only the stages affected by a change are run, once for a burst of changes, and that touching a file without changing it has no effect.
+	 */
+	@Test
+	public void testWatch(@TempDir Path directory) throws Exception {
+
+		File firstInput = write(directory.resolve("first.txt"), "first");
+		File secondInput = write(directory.resolve("second.txt"), "second");
+		File firstOutput = directory.resolve("first.out").toFile();
+		PipelineOrchestrator orchestrator = new PipelineOrchestrator(directory.resolve("output").toFile());
+		orchestrator.addStage(new Stage("first", context -> copy(firstInput, firstOutput)).inputs(firstInput).outputs(firstOutput));
+		orchestrator.addStage(new Stage("second", context -> {}).inputs(secondInput));
+		orchestrator.addStage(new Stage("dependent", context -> {}).dependsOn("first"));
+
+		long debounceDelay = PipelineWatcher.DEBOUNCE_DELAY;
+		PipelineWatcher.DEBOUNCE_DELAY = 300;
+		BlockingQueue<Map<String, StageStatus>> runs = new LinkedBlockingQueue<>();
+		PipelineWatcher watcher = new PipelineWatcher(orchestrator).setListener(runs::add);
+		Thread watchThread = new Thread(() -> {
+			try {
+				watcher.watch();
+			} catch (InterruptedException ignored) { }
+		});
+		try {
+			watchThread.start();
+			// Initial run of all the stages
+			Map<String, StageStatus> results = runs.poll(10, TimeUnit.SECONDS);
+			assertNotNull(results);
+			assertEquals(3, results.size());
+
+			// Several writes in a short time: one run of the stage using the file and of the dependent stage
+			write(firstInput.toPath(), "first, modified");
+			Thread.sleep(50);
+			write(firstInput.toPath(), "first, modified again");
+			results = runs.poll(10, TimeUnit.SECONDS);
+			assertNotNull(results);
+			assertEquals(StageStatus.COMPLETED, results.get("first"));
+			assertEquals(StageStatus.COMPLETED, results.get("dependent"));
+			assertFalse(results.containsKey("second"));
+			assertEquals("first, modified again", new String(Files.readAllBytes(firstOutput.toPath()), StandardCharsets.UTF_8));
+			assertNull(runs.poll(1, TimeUnit.SECONDS));
+
+			// File rewritten with the same content: the stage is skipped
+			write(secondInput.toPath(), "second");
+			results = runs.poll(10, TimeUnit.SECONDS);
+			assertNotNull(results);
+			assertEquals(1, results.size());
+			assertEquals(StageStatus.SKIPPED, results.get("second"));
+
+			// Files that are not inputs are ignored
+			write(directory.resolve("other.txt"), "other");
+			assertNull(runs.poll(1, TimeUnit.SECONDS));
+		} finally {
+			watcher.close();
+			watchThread.join(10000);
+			PipelineWatcher.DEBOUNCE_DELAY = debounceDelay;
+		}
+		assertFalse(watchThread.isAlive());
+	}
+
+	private static void copy(File source, File target) throws IOException {
+		Files.write(target.toPath(), Files.readAllBytes(source.toPath()));
+	}
+
+	private static File write(Path path, String content) throws IOException {
+
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path.toFile();
+	}
+}
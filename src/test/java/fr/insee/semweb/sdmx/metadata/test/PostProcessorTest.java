@@ -8,6 +8,8 @@ import org.apache.jena.rdf.model.*;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
 import org.apache.jena.vocabulary.SKOS;
 import org.junit.jupiter.api.Test;
 
@@ -15,8 +17,13 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test and launch methods for class <code>PostProcessor</code>.
@@ -78,6 +85,64 @@ class PostProcessorTest {
 		modifiedResourceDataset.close();
 	}
 
+	/**
+	 * Checks the index-based enrichment of report labels on a dataset of small in-memory models.
+	 */
+	@Test
+	public void testEnrichGSIMLabelsIndexed() {
+
+		Model resourceModel = ModelFactory.createDefaultModel();
+		Resource series = resourceModel.createResource("http://id.insee.fr/operations/serie/s1");
+		series.addProperty(SKOS.prefLabel, "Enquête emploi", "fr").addProperty(SKOS.prefLabel, "Labour force survey", "en");
+
+		Dataset simsDataset = DatasetFactory.create();
+		for (String reportId : Arrays.asList("1", "2")) {
+			Model simsModel = ModelFactory.createDefaultModel();
+			Resource report = simsModel.createResource("http://id.insee.fr/qualite/rapport/" + reportId);
+			report.addProperty(RDF.type, simsModel.createResource("http://www.w3.org/ns/sdmx-mm#MetadataReport"));
+			report.addProperty(RDFS.label, "Rapport " + reportId, "fr").addProperty(RDFS.label, "Report " + reportId, "en");
+			String target = "1".equals(reportId) ? "http://id.insee.fr/operations/serie/s1" : "http://id.insee.fr/operations/serie/unknown";
+			report.addProperty(simsModel.createProperty("http://www.w3.org/ns/sdmx-mm#target"), simsModel.createResource(target));
+			simsDataset.addNamedModel("http://rdf.insee.fr/graphes/qualite/rapport/" + reportId, simsModel);
+		}
+
+		assertEquals(1, PostProcessor.enrichGSIMLabels(simsDataset, resourceModel));
+		Model enrichedModel = simsDataset.getNamedModel("http://rdf.insee.fr/graphes/qualite/rapport/1");
+		Resource enrichedReport = enrichedModel.createResource("http://id.insee.fr/qualite/rapport/1");
+		assertEquals(2, enrichedModel.listStatements(enrichedReport, RDFS.label, (RDFNode) null).toList().size());
+		assertTrue(enrichedModel.contains(enrichedReport, RDFS.label, enrichedModel.createLiteral("Rapport qualité : Enquête emploi", "fr")));
+		assertTrue(enrichedModel.contains(enrichedReport, RDFS.label, enrichedModel.createLiteral("Quality report: Labour force survey", "en")));
+		Model unchangedModel = simsDataset.getNamedModel("http://rdf.insee.fr/graphes/qualite/rapport/2");
+		assertTrue(unchangedModel.contains(null, RDFS.label, unchangedModel.createLiteral("Rapport 2", "fr")));
+	}
+
+	/**
+	 * Checks the batched addition of statements for several types on an in-memory model.
+	 */
+	@Test
+	public void testAddStatementsRules() {
+
+		Model model = ModelFactory.createDefaultModel();
+		model.createResource("http://example.org/scheme/1", SKOS.ConceptScheme);
+		model.createResource("http://example.org/scheme/2", SKOS.ConceptScheme).addProperty(DCTerms.license, model.createResource("https://creativecommons.org/licenses/by/4.0/"));
+		model.createResource("http://example.org/concept/1", SKOS.Concept);
+
+		Resource example = ResourceFactory.createResource("http://example.org");
+		Statement license = ResourceFactory.createStatement(example, DCTerms.license, ResourceFactory.createResource("https://creativecommons.org/licenses/by/4.0/"));
+		Statement state = ResourceFactory.createStatement(example, ResourceFactory.createProperty("http://rdf.insee.fr/def/base#validationState"), ResourceFactory.createPlainLiteral("Validated"));
+		Map<Resource, List<Statement>> rules = new HashMap<>();
+		rules.put(SKOS.ConceptScheme, Arrays.asList(license, state));
+		rules.put(SKOS.Concept, Arrays.asList(state));
+		rules.put(SKOS.Collection, Arrays.asList(state));
+
+		long initialSize = model.size();
+		Map<Resource, Integer> addedTriples = PostProcessor.addStatements(model, rules);
+		assertEquals(3, addedTriples.get(SKOS.ConceptScheme).intValue()); // License already present on second scheme
+		assertEquals(1, addedTriples.get(SKOS.Concept).intValue());
+		assertEquals(0, addedTriples.get(SKOS.Collection).intValue());
+		assertEquals(initialSize + 4, model.size());
+	}
+
 	@Test
 	public void testAddStatements() throws IOException {
 
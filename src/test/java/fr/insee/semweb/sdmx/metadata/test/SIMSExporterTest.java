@@ -1,24 +1,244 @@
 package fr.insee.semweb.sdmx.metadata.test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.DocumentBuilderFactory;
 
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.json.JsonString;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdfconnection.RDFConnection;
 import org.apache.jena.rdfconnection.RDFConnectionFactory;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.DCTypes;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import fr.insee.semweb.sdmx.metadata.Configuration;
 import fr.insee.semweb.sdmx.metadata.SIMSExporter;
+import fr.insee.semweb.sdmx.metadata.SIMSFrEntry;
+import fr.insee.semweb.sdmx.metadata.SIMSFrScheme;
 
+/**
+ * Test and launch methods for class <code>SIMSExporter</code>.
+ * 
+ * @author Franck
+ */
 class SIMSExporterTest {
 
+	static String SDMX_GENERIC_METADATA_NS = "http://www.sdmx.org/resources/sdmxml/schemas/v2_1/metadata/generic";
+
+	/**
+	 * Creates a small SIMSFr scheme with a hierarchy of three attributes.
+	 */
+	static SIMSFrScheme createTestScheme() {
+
+		SIMSFrScheme simsFrScheme = new SIMSFrScheme();
+		String[][] entries = {{"S.1", "CONTACT"}, {"S.1.1", "CONTACT_ORGANISATION"}, {"S.1.2", "CONTACT_NAME"}, {"S.2", "META_UPDATE"}, {"S.3", "STAT_PRES"}};
+		for (String[] entry : entries) {
+			SIMSFrEntry simsFrEntry = new SIMSFrEntry(entry[0]);
+			simsFrEntry.setCode(entry[1]);
+			simsFrScheme.addEntry(simsFrEntry);
+		}
+		return simsFrScheme;
+	}
+
+	/**
+	 * Creates a small SIMS report model using the test scheme.
+	 */
+	static Model createTestReportModel(String reportId) {
+
+		String attributeBaseURI = "http://ec.europa.eu/eurostat/simsv2/attribute/";
+		Model simsModel = ModelFactory.createDefaultModel();
+		Resource report = simsModel.createResource(Configuration.simsReportURI(reportId), simsModel.createResource("http://www.w3.org/ns/sdmx-mm#MetadataReport"));
+		report.addProperty(RDFS.label, "Rapport de métadonnées " + reportId, "fr");
+		report.addProperty(simsModel.createProperty("http://www.w3.org/ns/sdmx-mm#target"), simsModel.createResource("http://id.insee.fr/operations/serie/s" + reportId));
+		Resource contactName = simsModel.createResource(Configuration.simsReportedAttributeURI(reportId, "S.1.2"));
+		contactName.addProperty(simsModel.createProperty(attributeBaseURI + "S.1.2"), "Jean Dupont", "fr");
+		Resource metaUpdate = simsModel.createResource(Configuration.simsReportedAttributeURI(reportId, "S.2"));
+		metaUpdate.addProperty(simsModel.createProperty(attributeBaseURI + "S.2"), simsModel.createTypedLiteral("2020-01-01", org.apache.jena.datatypes.xsd.XSDDatatype.XSDdate));
+		Resource text = simsModel.createResource(Configuration.simsReportedAttributeURI(reportId, "S.3") + "/texte", DCTypes.Text);
+		text.addProperty(RDF.value, "Présentation", "fr");
+		simsModel.createResource(Configuration.simsReportedAttributeURI(reportId, "S.3")).addProperty(simsModel.createProperty(attributeBaseURI + "S.3"), text);
+		return simsModel;
+	}
+
+	/**
+	 * Parses with namespace awareness the XML content of a byte stream.
+	 */
+	static Document parse(ByteArrayOutputStream output) throws Exception {
+
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newDocumentBuilder().parse(new ByteArrayInputStream(output.toByteArray()));
+	}
+
+	/**
+	 * Creates an in-memory dataset containing test SIMS reports and the descriptions of their targets in the default graph.
+	 */
+	static Dataset createTestStore(String... reportIds) {
+
+		Dataset simsDataset = DatasetFactory.create();
+		for (String reportId : reportIds) {
+			simsDataset.addNamedModel(Configuration.simsReportGraphURI(reportId), createTestReportModel(reportId));
+			simsDataset.getDefaultModel().createResource("http://id.insee.fr/operations/serie/s" + reportId)
+				.addProperty(SKOS.prefLabel, "Série " + reportId, "fr").addProperty(SKOS.prefLabel, "Series " + reportId, "en");
+		}
+		return simsDataset;
+	}
+
+	/**
+	 * Checks that the batched expansion of SIMS models gives the same results as the unitary expansion.
+	 */
+	@Test
+	public void testQueryExpandedSIMSModels() {
+
+		List<String> reportIds = new ArrayList<>();
+		for (int index = 1; index <= 25; index++) reportIds.add(String.valueOf(index));
+		Dataset simsDataset = createTestStore(reportIds.toArray(new String[0]));
+		List<String> simsURIs = reportIds.stream().map(Configuration::simsReportURI).collect(Collectors.toList());
+		simsURIs.add(Configuration.simsReportURI("999")); // Does not exist
+		// Blank nodes reached from a target are part of its description
+		Model targetModel = simsDataset.getDefaultModel();
+		targetModel.createResource("http://id.insee.fr/operations/serie/s1")
+			.addProperty(RDFS.seeAlso, targetModel.createResource().addProperty(RDFS.seeAlso, targetModel.createResource().addProperty(RDFS.label, "Nested")));
+
+		try (RDFConnection connection = RDFConnectionFactory.connect(simsDataset)) {
+			Map<String, Model> expandedModels = SIMSExporter.queryExpandedSIMSModels(connection, simsURIs, 10, 2);
+			assertEquals(25, expandedModels.size());
+			assertEquals(Configuration.simsReportURI("1"), expandedModels.keySet().iterator().next());
+			for (String simsURI : expandedModels.keySet()) {
+				assertTrue(expandedModels.get(simsURI).isIsomorphicWith(SIMSExporter.queryExpandedSIMSModel(connection, simsURI)));
+			}
+			assertTrue(expandedModels.get(Configuration.simsReportURI("1")).contains(null, RDFS.label, "Nested"));
+		}
+	}
+
+	/**
+	 * Checks the SDMX-ML export of one report: attribute order, nesting and values.
+	 */
+	@Test
+	public void testExportAsSDMX() throws Exception {
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		SIMSExporter.exportAsSDMX(createTestReportModel("1507"), createTestScheme(), output);
+
+		Document document = parse(output);
+		NodeList attributes = document.getElementsByTagNameNS(SDMX_GENERIC_METADATA_NS, "ReportedAttribute");
+		// Document order: CONTACT, CONTACT_NAME (nested), META_UPDATE, STAT_PRES; CONTACT_ORGANISATION has no value
+		assertEquals(4, attributes.getLength());
+		assertEquals("CONTACT", ((Element) attributes.item(0)).getAttribute("id"));
+		assertEquals("CONTACT_NAME", ((Element) attributes.item(1)).getAttribute("id"));
+		assertEquals("CONTACT", ((Element) attributes.item(1).getParentNode().getParentNode()).getAttribute("id"));
+		assertEquals("2020-01-01", ((Element) attributes.item(2)).getAttribute("value"));
+		assertEquals("Présentation", attributes.item(3).getTextContent());
+		Element report = (Element) document.getElementsByTagNameNS(SDMX_GENERIC_METADATA_NS, "Report").item(0);
+		assertEquals("1507", report.getAttribute("id"));
+	}
+
+	/**
+	 * Checks the SDMX-ML export of a dataset of reports, as one message and as one file per report.
+	 */
+	@Test
+	public void testExportAsSDMXDataset(@TempDir Path outputDirectory) throws Exception {
+
+		Dataset simsDataset = DatasetFactory.create();
+		for (String reportId : new String[] {"12", "3", "1507"}) simsDataset.addNamedModel(Configuration.simsReportGraphURI(reportId), createTestReportModel(reportId));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		SIMSExporter.exportAsSDMX(simsDataset, createTestScheme(), output);
+		Document document = parse(output);
+		NodeList reports = document.getElementsByTagNameNS(SDMX_GENERIC_METADATA_NS, "Report");
+		assertEquals(3, reports.getLength());
+		assertEquals("3", ((Element) reports.item(0)).getAttribute("id"));
+		assertEquals("1507", ((Element) reports.item(2)).getAttribute("id"));
+
+		assertEquals(3, SIMSExporter.exportAsSDMX(simsDataset, createTestScheme(), outputDirectory.toFile()));
+		assertTrue(new File(outputDirectory.toFile(), "12.xml").exists());
+	}
+
+	/**
+	 * Checks the JSON export of one expanded report: attribute keys, values, texts and target labels.
+	 */
+	@Test
+	public void testExportAsJSON() throws Exception {
+
+		try (RDFConnection connection = RDFConnectionFactory.connect(createTestStore("1507"))) {
+			Model simsModel = SIMSExporter.queryExpandedSIMSModel(connection, Configuration.simsReportURI("1507"));
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			SIMSExporter.exportAsJSON(simsModel, Configuration.simsReportURI("1507"), createTestScheme(), output);
+
+			JsonObject report = JSON.parse(output.toString("UTF-8"));
+			assertEquals("1507", report.get("id").getAsString().value());
+			assertEquals("Series 1507", report.get("target").getAsObject().get("labels").getAsObject().get("en").getAsString().value());
+			JsonObject attributes = report.get("attributes").getAsObject();
+			assertEquals(Arrays.asList("S.1.2", "S.2", "S.3"), new ArrayList<>(attributes.keys()));
+			assertEquals("Jean Dupont", attributes.get("S.1.2").getAsObject().get("texts").getAsObject().get("fr").getAsString().value());
+			assertEquals("2020-01-01", attributes.get("S.2").getAsObject().get("values").getAsArray().get(0).getAsString().value());
+			assertEquals("Présentation", attributes.get("S.3").getAsObject().get("texts").getAsObject().get("fr").getAsString().value());
+		}
+	}
+
+	/**
+	 * Checks the JSON export of a dataset of reports as an array ordered on the graph names.
+	 */
+	@Test
+	public void testExportAsJSONDataset() throws Exception {
+
+		Dataset simsDataset = DatasetFactory.create();
+		for (String reportId : new String[] {"12", "3", "1507"}) simsDataset.addNamedModel(Configuration.simsReportGraphURI(reportId), createTestReportModel(reportId));
+		// Several texts in the same language are kept as separate values
+		Model simsModel = simsDataset.getNamedModel(Configuration.simsReportGraphURI("12"));
+		simsModel.createResource(Configuration.simsReportedAttributeURI("12", "S.1.2"))
+			.addProperty(simsModel.createProperty("http://ec.europa.eu/eurostat/simsv2/attribute/S.1.2"), "Marie Durand", "fr");
+
+		int groupSize = SIMSExporter.JSON_EXPORT_GROUP_SIZE;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			SIMSExporter.JSON_EXPORT_GROUP_SIZE = 2;
+			SIMSExporter.exportAsJSON(simsDataset, createTestScheme(), output);
+		} finally {
+			SIMSExporter.JSON_EXPORT_GROUP_SIZE = groupSize;
+		}
+		JsonArray reports = JSON.parseAny(output.toString("UTF-8")).getAsArray();
+		assertEquals(3, reports.size());
+		assertEquals("3", reports.get(0).getAsObject().get("id").getAsString().value());
+		assertEquals("1507", reports.get(2).getAsObject().get("id").getAsString().value());
+		JsonArray names = reports.get(1).getAsObject().get("attributes").getAsObject().get("S.1.2").getAsObject().get("texts").getAsObject().get("fr").getAsArray();
+		assertEquals(2, names.size());
+		assertTrue(names.contains(new JsonString("Marie Durand")));
+		assertTrue(names.contains(new JsonString("Jean Dupont")));
+	}
+
 	/**
 	 * Reads RDF data about all base resources and SIMS models and lists the named graphs to the console.
 	 * 
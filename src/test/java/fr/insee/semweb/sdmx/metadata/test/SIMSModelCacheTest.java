@@ -0,0 +1,140 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.SIMSExporter;
+import fr.insee.semweb.sdmx.metadata.SIMSModelCache;
+
+/**
+ * Test and launch methods for class <code>SIMSModelCache</code>.
+ *
+ * @author Franck
+ */
+public class SIMSModelCacheTest {
+
+	/**
+	 * Returns a loader creating models of a given number of statements and counting the loads.
+	 */
+	private static Function<String, Model> countingLoader(AtomicInteger loads, int statements) {
+
+		return simsURI -> {
+			loads.incrementAndGet();
+			Model model = ModelFactory.createDefaultModel();
+			for (int index = 0; index < statements; index++) model.createResource(simsURI).addProperty(RDFS.comment, "Value " + index);
+			return model;
+		};
+	}
+
+	/**
+	 * Checks hits, misses and eviction by number of entries and by weight.
+	 */
+	@Test
+	public void testEviction() {
+
+		AtomicInteger loads = new AtomicInteger();
+		SIMSModelCache cache = new SIMSModelCache(countingLoader(loads, 10), null, 3, 25, 0);
+
+		Model first = cache.get("http://id.insee.fr/qualite/rapport/1");
+		assertSame(first, cache.get("http://id.insee.fr/qualite/rapport/1"));
+		cache.get("http://id.insee.fr/qualite/rapport/2");
+		assertEquals(2, cache.size());
+		cache.get("http://id.insee.fr/qualite/rapport/1"); // Report 2 is now the least recently used
+		cache.get("http://id.insee.fr/qualite/rapport/3"); // Weight 30 > 25: report 2 is evicted
+		assertEquals(2, cache.size());
+		assertEquals(20, cache.getWeight());
+		assertEquals(1, cache.getEvictions());
+		cache.get("http://id.insee.fr/qualite/rapport/1");
+		assertEquals(3, loads.get());
+		assertEquals(3, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	/**
+	 * Checks the expiration and revalidation of entries against the version marker of the reports in an in-memory store, and that a changed report is served fresh.
+	 */
+	@Test
+	public void testRevalidation() throws InterruptedException {
+
+		String simsURI = Configuration.simsReportURI("1507");
+		Dataset simsDataset = SIMSExporterTest.createTestStore("1507");
+		Model simsModel = simsDataset.getNamedModel(Configuration.simsReportGraphURI("1507"));
+
+		try (RDFConnection connection = RDFConnectionFactory.connect(simsDataset)) {
+			String version = SIMSExporter.queryReportVersion(connection, simsURI);
+			assertNotNull(version);
+			assertEquals(version, SIMSExporter.queryReportVersion(connection, simsURI));
+			assertNull(SIMSExporter.queryReportVersion(connection, Configuration.simsReportURI("1")));
+
+			SIMSModelCache cache = SIMSExporter.enableModelCache(connection, 10, 10000, 1, true);
+			try {
+				Model cachedModel = SIMSExporter.queryExpandedSIMSModel(connection, simsURI);
+				Thread.sleep(5);
+				assertSame(cachedModel, SIMSExporter.queryExpandedSIMSModel(connection, simsURI)); // Expired but unchanged
+				assertEquals(1, cache.getRevalidations());
+
+				simsModel.createResource(simsURI).removeAll(RDFS.label).addProperty(RDFS.label, "Rapport modifié", "fr");
+				assertNotEquals(version, SIMSExporter.queryReportVersion(connection, simsURI));
+				Thread.sleep(5);
+				Model reloadedModel = SIMSExporter.queryExpandedSIMSModel(connection, simsURI);
+				assertEquals(2, cache.getMisses());
+				assertTrue(reloadedModel.contains(reloadedModel.createResource(simsURI), RDFS.label, reloadedModel.createLiteral("Rapport modifié", "fr")));
+				assertFalse(cachedModel.contains(cachedModel.createResource(simsURI), RDFS.label, cachedModel.createLiteral("Rapport modifié", "fr")));
+			} finally {
+				SIMSExporter.disableModelCache(connection);
+			}
+			assertNotSame(SIMSExporter.queryExpandedSIMSModel(connection, simsURI), SIMSExporter.queryExpandedSIMSModel(connection, simsURI));
+		}
+	}
+
+	/**
+	 * Checks that the version of an expired entry is read only once when it has changed.
+	 */
+	@Test
+	public void testVersionReadOnce() throws InterruptedException {
+
+		AtomicInteger versionReads = new AtomicInteger();
+		SIMSModelCache cache = new SIMSModelCache(countingLoader(new AtomicInteger(), 1), simsURI -> "v" + versionReads.incrementAndGet(), 10, 1000, 1);
+		String simsURI = "http://id.insee.fr/qualite/rapport/1";
+		cache.get(simsURI);
+		assertEquals(1, versionReads.get());
+		Thread.sleep(5);
+		cache.get(simsURI); // Expired and changed: the version read is stored with the new entry
+		assertEquals(2, versionReads.get());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getRevalidations());
+	}
+
+	/**
+	 * Checks that models which cannot be loaded are not cached.
+	 */
+	@Test
+	public void testMissingModel() {
+
+		Map<String, Model> models = new HashMap<>();
+		SIMSModelCache cache = new SIMSModelCache(models::get, null, 10, 1000, 0);
+		assertNull(cache.get("http://id.insee.fr/qualite/rapport/1"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getMisses());
+	}
+}
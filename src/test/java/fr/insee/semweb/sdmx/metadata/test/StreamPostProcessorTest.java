@@ -0,0 +1,108 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.jupiter.api.Test;
+
+import fr.insee.semweb.sdmx.metadata.StreamPostProcessor;
+
+/**
+ * Test and launch methods for class <code>StreamPostProcessor</code>.
+ *
+ * @author Franck
+ */
+public class StreamPostProcessorTest {
+
+	static String REPORT_GRAPH = "http://rdf.insee.fr/graphes/qualite/rapport/1";
+	static Resource REPORT_TYPE = ResourceFactory.createResource("http://www.w3.org/ns/sdmx-mm#MetadataReport");
+
+	/**
+	 * Creates a small SIMS report model attached to a series.
+	 */
+	private static Model createReportModel() {
+
+		Model simsModel = ModelFactory.createDefaultModel();
+		simsModel.setNsPrefix("rdfs", RDFS.getURI());
+		simsModel.setNsPrefix("terms", DCTerms.getURI());
+		Resource report = simsModel.createResource("http://id.insee.fr/qualite/rapport/1", REPORT_TYPE);
+		report.addProperty(RDFS.label, "Rapport de métadonnées 1", "fr").addProperty(RDFS.label, "Metadata report 1", "en");
+		report.addProperty(simsModel.createProperty("http://www.w3.org/ns/sdmx-mm#target"), simsModel.createResource("http://id.insee.fr/operations/serie/s1"));
+		return simsModel;
+	}
+
+	/**
+	 * Checks that the chained stages enrich labels, inject statements and normalize prefixes.
+	 */
+	@Test
+	public void testChainedStages() {
+
+		Map<String, String[]> labelIndex = new HashMap<>();
+		labelIndex.put("http://id.insee.fr/operations/serie/s1", new String[] {"Enquête emploi", "Labour force survey"});
+		Resource ccBy4 = ResourceFactory.createResource("https://creativecommons.org/licenses/by/4.0/");
+		Statement licenseStatement = ResourceFactory.createStatement(ccBy4, DCTerms.license, ccBy4);
+		Map<Resource, List<Statement>> rules = Collections.singletonMap(REPORT_TYPE, Arrays.asList(licenseStatement));
+		PrefixMapping canonicalPrefixes = PrefixMapping.Factory.create().setNsPrefix("dcterms", DCTerms.getURI());
+
+		Dataset result = DatasetFactory.create();
+		StreamRDF sink = StreamRDFLib.dataset(result.asDatasetGraph());
+		StreamRDF chain = StreamPostProcessor.prefixNormalization(sink, canonicalPrefixes);
+		chain = StreamPostProcessor.statementInjection(chain, rules);
+		chain = StreamPostProcessor.labelEnrichment(chain, labelIndex);
+
+		Model simsModel = createReportModel();
+		chain.start();
+		simsModel.getNsPrefixMap().forEach(chain::prefix);
+		StreamPostProcessor.sendToStream(simsModel, NodeFactory.createURI(REPORT_GRAPH), chain);
+		chain.finish();
+
+		Model resultModel = result.getNamedModel(REPORT_GRAPH);
+		assertEquals(simsModel.size() + 1, resultModel.size());
+		assertTrue(resultModel.contains(null, RDFS.label, resultModel.createLiteral("Rapport qualité : Enquête emploi", "fr")));
+		assertTrue(resultModel.contains(null, RDFS.label, resultModel.createLiteral("Quality report: Labour force survey", "en")));
+		assertTrue(resultModel.contains(null, DCTerms.license, ccBy4));
+		assertEquals("dcterms", result.asDatasetGraph().getDefaultGraph().getPrefixMapping().getNsURIPrefix(DCTerms.getURI()));
+	}
+
+	/**
+	 * Checks that the filtering stage drops the quads that do not satisfy the predicate.
+	 */
+	@Test
+	public void testFilter() {
+
+		Model simsModel = createReportModel();
+		simsModel.createResource("http://id.insee.fr/operations/serie/s1").addProperty(SKOS.prefLabel, "Enquête emploi", "fr");
+
+		Dataset result = DatasetFactory.create();
+		StreamRDF chain = StreamPostProcessor.filter(StreamRDFLib.dataset(result.asDatasetGraph()), quad -> !quad.getPredicate().equals(SKOS.prefLabel.asNode()));
+		chain.start();
+		StreamPostProcessor.sendToStream(simsModel, null, chain);
+		chain.finish();
+
+		assertEquals(simsModel.size() - 1, result.getDefaultModel().size());
+		assertFalse(result.getDefaultModel().contains(null, SKOS.prefLabel));
+		assertTrue(result.getDefaultModel().contains(null, RDF.type, REPORT_TYPE));
+	}
+}
@@ -0,0 +1,129 @@
+package fr.insee.semweb.sdmx.metadata.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.jupiter.api.Test;
+
+import fr.insee.semweb.sdmx.metadata.Configuration;
+import fr.insee.semweb.sdmx.metadata.GeoMapper;
+import fr.insee.semweb.sdmx.metadata.GeoReferenceIndex;
+import fr.insee.semweb.sdmx.metadata.TerritoryNameMatcher;
+import fr.insee.semweb.sdmx.metadata.TerritoryNameMatcher.Match;
+
+/**
+ * Test and launch methods for class <code>TerritoryNameMatcher</code>.
+ *
+ * @author Franck
+ */
+public class TerritoryNameMatcherTest {
+
+	/**
+	 * Creates a M0 dataset containing a CL_AREA code list (number 5) with three codes, and another code list.
+	 */
+	static Dataset createM0AreaDataset() {
+
+		String m0Namespace = "http://www.SDMX.org/resources/SDMXML/schemas/v2_0/message#";
+		Dataset m0Dataset = DatasetFactory.create();
+		Model codelists = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "codelists");
+		Model associations = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "associations");
+		Model codes = m0Dataset.getNamedModel(Configuration.M0_BASE_GRAPH_URI + "codes");
+		Property values = codelists.createProperty(m0Namespace + "values");
+		Property valuesEn = codelists.createProperty(m0Namespace + "valuesGb");
+		Property relatedTo = codelists.createProperty(m0Namespace + "relatedTo");
+		codelists.createResource("http://baseUri/codelists/codelist/5/CODE_VALUE").addProperty(values, "CL_AREA");
+		codelists.createResource("http://baseUri/codelists/codelist/2/CODE_VALUE").addProperty(values, "CL_UNIT_MEASURE");
+		String[][] areaCodes = {{"40", "FR10", "Île de France", "Ile de France"}, {"41", "FRE", "Région Hauts de France", ""}, {"42", "FRXX", "Territoire inconnu", ""}};
+		for (String[] areaCode : areaCodes) {
+			String codeURI = "http://baseUri/codes/code/" + areaCode[0];
+			associations.createResource("http://baseUri/codelists/codelist/5/RELATED_TO").addProperty(relatedTo, associations.createResource(codeURI + "/RELATED_TO"));
+			codes.createResource(codeURI + "/CODE_VALUE").addProperty(values, areaCode[1]);
+			codes.createResource(codeURI + "/TITLE").addProperty(values, areaCode[2]);
+			if (!areaCode[3].isEmpty()) codes.createResource(codeURI + "/TITLE").addProperty(valuesEn, areaCode[3]);
+		}
+		associations.createResource("http://baseUri/codelists/codelist/2/RELATED_TO").addProperty(relatedTo, associations.createResource("http://baseUri/codes/code/1/RELATED_TO"));
+		return m0Dataset;
+	}
+
+	/**
+	 * Checks exact, approximate and missing matches.
+	 */
+	@Test
+	public void testMatch() {
+
+		TerritoryNameMatcher matcher = new TerritoryNameMatcher(GeoReferenceIndex.fromModel(GeoReferenceIndexTest.createGeoModel()));
+		Match exactMatch = matcher.match("ILE-DE-FRANCE", TerritoryNameMatcher.DEFAULT_THRESHOLD);
+		assertEquals("http://id.insee.fr/geo/region/r11", exactMatch.getTerritory().getURI());
+		assertEquals(1.0, exactMatch.getScore());
+		assertTrue(exactMatch.isExact());
+		Match approximateMatch = matcher.match("Région Hauts de France", TerritoryNameMatcher.DEFAULT_THRESHOLD);
+		assertEquals("http://id.insee.fr/geo/region/r32", approximateMatch.getTerritory().getURI());
+		assertTrue(approximateMatch.getScore() < 1.0);
+		assertFalse(approximateMatch.isExact());
+		assertNull(matcher.matchExact("Région Hauts de France"));
+		assertNull(matcher.match("Territoire inconnu", TerritoryNameMatcher.DEFAULT_THRESHOLD));
+		assertNull(matcher.match("", TerritoryNameMatcher.DEFAULT_THRESHOLD));
+	}
+
+	/**
+	 * Checks that only the exact matches are used in the mappings between M0 territory names and target URIs.
+	 */
+	@Test
+	public void testCreateGeoURIMappings() {
+
+		SortedMap<String, String> geoURIMappings = GeoMapper.createGeoURIMappings(createM0AreaDataset(), GeoReferenceIndex.fromModel(GeoReferenceIndexTest.createGeoModel()));
+		assertEquals(1, geoURIMappings.size());
+		assertEquals("http://id.insee.fr/geo/region/r11", geoURIMappings.get("Île de France"));
+		assertFalse(geoURIMappings.containsKey("Région Hauts de France"));
+	}
+
+	/**
+	 * Checks that former regions are mapped to the suppressed regions and not to similar current territories, and that approximate matches are only candidates.
+	 */
+	@Test
+	public void testFormerRegions() {
+
+		Model geoModel = ModelFactory.createDefaultModel();
+		Property name = geoModel.createProperty(GeoReferenceIndexTest.IGEO + "nom");
+		Property suppression = geoModel.createProperty(GeoReferenceIndexTest.IGEO + "suppression");
+		Resource region = geoModel.createResource(GeoReferenceIndexTest.IGEO + "Region");
+		Resource merger = geoModel.createResource("http://id.insee.fr/geo/evenement/fusion2016")
+				.addProperty(geoModel.createProperty(GeoReferenceIndexTest.IGEO + "date"), "2016-01-01", XSDDatatype.XSDdate);
+		geoModel.createResource("http://id.insee.fr/geo/region/r28", region).addProperty(name, "Normandie");
+		geoModel.createResource("http://id.insee.fr/geo/region/r76", region).addProperty(name, "Occitanie");
+		geoModel.createResource("http://id.insee.fr/geo/departement/d62", geoModel.createResource(GeoReferenceIndexTest.IGEO + "Departement")).addProperty(name, "Pas-de-Calais");
+		geoModel.createResource("http://id.insee.fr/geo/region/r25", region).addProperty(name, "Basse-Normandie").addProperty(suppression, merger);
+		geoModel.createResource("http://id.insee.fr/geo/region/r23", region).addProperty(name, "Haute-Normandie").addProperty(suppression, merger);
+		geoModel.createResource("http://id.insee.fr/geo/region/r31", region).addProperty(name, "Nord-Pas-de-Calais").addProperty(suppression, merger);
+		geoModel.createResource("http://id.insee.fr/geo/region/r91", region).addProperty(name, "Languedoc-Roussillon").addProperty(suppression, merger);
+
+		Map<String, String> m0CodeNames = new HashMap<>();
+		m0CodeNames.put("FR25", "Basse-Normandie");
+		m0CodeNames.put("FR23", "Haute Normandie");
+		m0CodeNames.put("FR30", "Nord - Pas-de-Calais");
+		m0CodeNames.put("FR91", "Languedoc-Roussillon");
+		m0CodeNames.put("FR99", "Région Languedoc Rousillon");
+		Map<String, Match> candidates = new HashMap<>();
+		SortedMap<String, Resource> mappings = GeoMapper.createM0CodeToURIMappings(GeoReferenceIndex.fromModel(geoModel), m0CodeNames, candidates);
+		assertEquals("http://id.insee.fr/geo/region/r25", mappings.get("FR25").getURI());
+		assertEquals("http://id.insee.fr/geo/region/r23", mappings.get("FR23").getURI());
+		assertEquals("http://id.insee.fr/geo/region/r31", mappings.get("FR30").getURI());
+		assertEquals("http://id.insee.fr/geo/region/r91", mappings.get("FR91").getURI());
+		assertFalse(mappings.containsKey("FR99"));
+		assertEquals(1, candidates.size());
+		assertEquals("http://id.insee.fr/geo/region/r91", candidates.get("FR99").getTerritory().getURI());
+	}
+}
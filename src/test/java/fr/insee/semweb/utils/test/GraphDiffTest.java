@@ -0,0 +1,174 @@
+package fr.insee.semweb.utils.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.utils.GraphDiff;
+import fr.insee.semweb.utils.GraphDiff.DiffResult;
+
+/**
+ * Test and launch methods for class <code>GraphDiff</code>.
+ *
+ * @author Franck
+ */
+public class GraphDiffTest {
+
+	static final String GRAPH_1 = "http://example.org/graph/1";
+	static final String GRAPH_2 = "http://example.org/graph/2";
+
+	/**
+	 * Checks that the same dataset written in different syntaxes, with different blank node identifiers, has no differences.
+	 */
+	@Test
+	public void testIdenticalDatasets(@TempDir Path directory) throws IOException {
+
+		File trigFile = directory.resolve("old.trig").toFile();
+		try (OutputStream output = Files.newOutputStream(trigFile.toPath())) {
+			RDFDataMgr.write(output, createDataset(50), RDFFormat.TRIG_PRETTY);
+		}
+		// Blank nodes are created again, so that their internal identifiers are different
+		File nquadsFile = directory.resolve("new.nq").toFile();
+		try (OutputStream output = Files.newOutputStream(nquadsFile.toPath())) {
+			RDFDataMgr.write(output, createDataset(50), RDFFormat.NQUADS);
+		}
+
+		File diffFile = directory.resolve("diff.txt").toFile();
+		DiffResult result = GraphDiff.compare(trigFile, nquadsFile, diffFile);
+		assertTrue(result.isEmpty(), "Unexpected differences:\n" + result);
+		assertEquals(Iter.count(createDataset(50).asDatasetGraph().find()), result.getUnchanged());
+		assertEquals(0, diffFile.length());
+	}
+
+	/**
+	 * Checks that the differences are counted per graph, including those on blank nodes.
+	 */
+	@Test
+	public void testDifferences(@TempDir Path directory) throws IOException {
+
+		Dataset oldDataset = createDataset(50);
+		Dataset newDataset = createDataset(50);
+		Model firstModel = newDataset.getNamedModel(GRAPH_1);
+		firstModel.remove(firstModel.createResource("http://example.org/concept/7"), SKOS.prefLabel, firstModel.createLiteral("Concept 7", "fr"));
+		firstModel.createResource("http://example.org/concept/new").addProperty(SKOS.prefLabel, "New concept", "fr");
+		// Modification of a literal in a blank node: one removed and one added statement
+		Model secondModel = newDataset.getNamedModel(GRAPH_2);
+		Resource note = secondModel.listSubjectsWithProperty(RDFS.label, "Note 3").next();
+		note.removeAll(RDFS.label).addProperty(RDFS.label, "Modified note 3");
+
+		File oldFile = directory.resolve("old.txt").toFile();
+		File newFile = directory.resolve("new.txt").toFile();
+		GraphDiff.canonicalize(oldDataset, oldFile);
+		GraphDiff.canonicalize(newDataset, newFile);
+		File diffFile = directory.resolve("diff.txt").toFile();
+		DiffResult result = GraphDiff.diff(oldFile, newFile, diffFile);
+
+		assertEquals(1, result.getRemoved(GRAPH_1));
+		assertEquals(1, result.getAdded(GRAPH_1));
+		// The label of the blank node changes with its content: all its statements are different
+		assertEquals(result.getRemoved(GRAPH_2), result.getAdded(GRAPH_2));
+		assertTrue(result.getAdded(GRAPH_2) >= 1);
+		assertEquals(0, result.getAdded(""));
+
+		List<String> diffLines = Files.readAllLines(diffFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(result.getTotalAdded() + result.getTotalRemoved(), diffLines.size());
+		assertTrue(diffLines.contains("+" + GRAPH_1 + "\t<http://example.org/concept/new> <" + SKOS.prefLabel.getURI() + "> \"New concept\"@fr ."));
+	}
+
+	/**
+	 * Checks that the external sort gives the same result as the sort in memory.
+	 */
+	@Test
+	public void testExternalSort(@TempDir Path directory) throws IOException {
+
+		File inMemoryFile = directory.resolve("memory.txt").toFile();
+		long lineCount = GraphDiff.canonicalize(createDataset(200), inMemoryFile);
+
+		int chunkSize = GraphDiff.CHUNK_SIZE;
+		GraphDiff.CHUNK_SIZE = 37;
+		File externalFile = directory.resolve("external.txt").toFile();
+		try {
+			assertEquals(lineCount, GraphDiff.canonicalize(createDataset(200), externalFile));
+		} finally {
+			GraphDiff.CHUNK_SIZE = chunkSize;
+		}
+		List<String> lines = Files.readAllLines(externalFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(Files.readAllLines(inMemoryFile.toPath(), StandardCharsets.UTF_8), lines);
+		List<String> sortedLines = new ArrayList<>(lines);
+		sortedLines.sort(null);
+		assertEquals(sortedLines, lines);
+		// Only the canonical files remain in the directory
+		assertEquals(2, directory.toFile().list().length);
+	}
+
+	/**
+	 * Checks that blank nodes which cannot be distinguished by their neighbourhood get distinct labels, so that their statements are not merged.
+	 */
+	@Test
+	public void testIndistinguishableBlankNodes() {
+
+		Model twoNotes = ModelFactory.createDefaultModel();
+		Resource concept = twoNotes.createResource("http://example.org/concept/1");
+		concept.addProperty(SKOS.note, twoNotes.createResource().addProperty(RDFS.label, "Note"));
+		concept.addProperty(SKOS.note, twoNotes.createResource().addProperty(RDFS.label, "Note"));
+		Model oneNote = ModelFactory.createDefaultModel();
+		oneNote.createResource("http://example.org/concept/1").addProperty(SKOS.note, oneNote.createResource().addProperty(RDFS.label, "Note"));
+
+		List<String> statements = GraphDiff.canonicalStatements(twoNotes.getGraph());
+		assertEquals(4, statements.size());
+		assertNotEquals(GraphDiff.canonicalStatements(oneNote.getGraph()), statements);
+		// An isomorphic copy with other blank nodes gives the same statements
+		Model copy = ModelFactory.createDefaultModel();
+		Resource copyConcept = copy.createResource("http://example.org/concept/1");
+		copyConcept.addProperty(SKOS.note, copy.createResource().addProperty(RDFS.label, "Note"));
+		copyConcept.addProperty(SKOS.note, copy.createResource().addProperty(RDFS.label, "Note"));
+		assertEquals(statements, GraphDiff.canonicalStatements(copy.getGraph()));
+
+		// Blank nodes in a cycle are also individualized
+		Model cycle = ModelFactory.createDefaultModel();
+		Resource first = cycle.createResource();
+		Resource second = cycle.createResource();
+		first.addProperty(RDFS.seeAlso, second);
+		second.addProperty(RDFS.seeAlso, first);
+		assertEquals(2, GraphDiff.canonicalStatements(cycle.getGraph()).size());
+	}
+
+	private static Dataset createDataset(int size) {
+
+		Dataset dataset = DatasetFactory.create();
+		Model firstModel = dataset.getNamedModel(GRAPH_1);
+		Model secondModel = dataset.getNamedModel(GRAPH_2);
+		for (int index = 0; index < size; index++) {
+			Resource concept = firstModel.createResource("http://example.org/concept/" + index).addProperty(SKOS.prefLabel, "Concept " + index, "fr");
+			if (index > 0) concept.addProperty(SKOS.broader, firstModel.createResource("http://example.org/concept/" + (index / 2)));
+			if (index % 5 == 3) {
+				secondModel.createResource("http://example.org/concept/" + index).addProperty(SKOS.note, secondModel.createResource()
+						.addProperty(RDFS.label, "Note " + index).addProperty(RDFS.comment, secondModel.createResource().addProperty(RDFS.label, "Nested")));
+			}
+		}
+		dataset.getDefaultModel().createResource("http://example.org/dataset").addProperty(RDFS.label, "Dataset");
+		return dataset;
+	}
+}
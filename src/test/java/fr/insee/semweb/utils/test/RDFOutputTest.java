@@ -0,0 +1,125 @@
+package fr.insee.semweb.utils.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.insee.semweb.utils.RDFOutput;
+import fr.insee.semweb.utils.RDFOutput.Compression;
+
+/**
+ * Test and launch methods for class <code>RDFOutput</code>.
+ *
+ * @author Franck
+ */
+public class RDFOutputTest {
+
+	@AfterEach
+	public void resetConfiguration() {
+		RDFOutput.OUTPUT_LANG = Lang.TURTLE;
+		RDFOutput.COMPRESSION = Compression.NONE;
+		RDFOutput.PRETTY = false;
+	}
+
+	/**
+	 * Checks that the models written in each language and compression can be read back.
+	 */
+	@Test
+	public void testWriteModel(@TempDir Path directory) throws IOException {
+
+		Model model = createModel();
+		for (Lang lang : new Lang[] {Lang.TURTLE, Lang.NTRIPLES, Lang.RDFTHRIFT}) {
+			for (Compression compression : new Compression[] {Compression.NONE, Compression.GZIP, Compression.BZIP2}) {
+				RDFOutput.OUTPUT_LANG = lang;
+				RDFOutput.COMPRESSION = compression;
+				File file = RDFOutput.outputFile(directory.toFile(), "model", false);
+				assertTrue(file.getName().endsWith(lang.getFileExtensions().get(0) + compression.getSuffix()));
+				RDFOutput.write(model, file);
+				Model readModel = RDFDataMgr.loadModel(file.getAbsolutePath());
+				assertTrue(readModel.isIsomorphicWith(model), "Different model for " + lang + " " + compression);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the pretty writer is only used on request.
+	 */
+	@Test
+	public void testPretty(@TempDir Path directory) throws IOException {
+
+		Model model = createModel();
+		File streamingFile = new File(directory.toFile(), "streaming.ttl");
+		RDFOutput.write(model, streamingFile);
+		File prettyFile = new File(directory.toFile(), "pretty.ttl");
+		RDFOutput.writePretty(model, prettyFile);
+
+		// The pretty writer groups the statements of a subject with semicolons and writes the lists in parentheses
+		String prettyContent = new String(Files.readAllBytes(prettyFile.toPath()), StandardCharsets.UTF_8);
+		assertTrue(prettyContent.contains("("));
+		assertFalse(new String(Files.readAllBytes(streamingFile.toPath()), StandardCharsets.UTF_8).contains("("));
+		assertTrue(RDFDataMgr.loadModel(prettyFile.getAbsolutePath()).isIsomorphicWith(RDFDataMgr.loadModel(streamingFile.getAbsolutePath())));
+
+		RDFOutput.PRETTY = true;
+		RDFOutput.write(model, streamingFile);
+		assertEquals(prettyContent, new String(Files.readAllBytes(streamingFile.toPath()), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Checks that datasets are written in the counterpart of the configured language that supports named graphs, with the prefixes of the named models.
+	 */
+	@Test
+	public void testWriteDataset(@TempDir Path directory) throws IOException {
+
+		Dataset dataset = DatasetFactory.create();
+		dataset.addNamedModel("http://example.org/graph/1", createModel());
+		Model secondModel = ModelFactory.createDefaultModel();
+		secondModel.setNsPrefix("ex", "http://example.org/");
+		secondModel.createResource("http://example.org/other").addProperty(RDFS.label, "Other");
+		dataset.addNamedModel("http://example.org/graph/2", secondModel);
+
+		File trigFile = RDFOutput.outputFile(directory.toFile(), "dataset", true);
+		assertEquals("dataset.trig", trigFile.getName());
+		RDFOutput.write(dataset, trigFile);
+		assertTrue(new String(Files.readAllBytes(trigFile.toPath()), StandardCharsets.UTF_8).contains("ex:other"));
+		Dataset readDataset = RDFDataMgr.loadDataset(trigFile.getAbsolutePath());
+		assertTrue(readDataset.getNamedModel("http://example.org/graph/2").isIsomorphicWith(secondModel));
+
+		RDFOutput.OUTPUT_LANG = Lang.NTRIPLES;
+		RDFOutput.COMPRESSION = Compression.GZIP;
+		File nquadsFile = RDFOutput.outputFile(directory.toFile(), "dataset", true);
+		assertEquals("dataset.nq.gz", nquadsFile.getName());
+		RDFOutput.write(dataset, nquadsFile);
+		readDataset = RDFDataMgr.loadDataset(nquadsFile.getAbsolutePath());
+		assertTrue(readDataset.getNamedModel("http://example.org/graph/1").isIsomorphicWith(createModel()));
+		assertEquals(RDFFormat.TRIG_BLOCKS, RDFOutput.streamingFormat(Lang.TURTLE, true));
+	}
+
+	private static Model createModel() {
+
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefix("skos", SKOS.getURI());
+		model.createResource("http://example.org/concept/1").addProperty(SKOS.prefLabel, "Concept 1", "fr").addProperty(SKOS.notation, "C1");
+		model.createResource("http://example.org/concept/2").addProperty(SKOS.broader, model.createResource("http://example.org/concept/1"))
+				.addProperty(RDFS.seeAlso, model.createList(model.createResource("http://example.org/a"), model.createResource("http://example.org/b")));
+		return model;
+	}
+}
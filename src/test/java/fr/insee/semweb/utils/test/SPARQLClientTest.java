@@ -0,0 +1,158 @@
+package fr.insee.semweb.utils.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import fr.insee.semweb.utils.SPARQLClient;
+
+/**
+ * Test and launch methods for class <code>SPARQLClient</code>.
+ *
+ * @author Franck
+ */
+public class SPARQLClientTest {
+
+	static String GRAPH_URI = "http://rdf.insee.fr/graphes/test/";
+
+	/**
+	 * Creates a dataset containing three named graphs with one statement each.
+	 */
+	static Dataset createTestDataset() {
+
+		Dataset dataset = DatasetFactory.create();
+		for (int index = 1; index <= 3; index++) {
+			Model model = ModelFactory.createDefaultModel();
+			model.createResource("http://id.insee.fr/test/" + index).addProperty(RDFS.label, "Test " + index);
+			dataset.addNamedModel(GRAPH_URI + index, model);
+		}
+		return dataset;
+	}
+
+	/**
+	 * Returns a connection to a dataset whose <code>fetch</code> operations wait for a latch, recording the maximum number of operations running at the same time.
+	 */
+	static RDFConnection blockingConnection(Dataset dataset, CountDownLatch latch, AtomicInteger running, AtomicInteger maxRunning) {
+
+		RDFConnection connection = RDFConnectionFactory.connect(dataset);
+		return (RDFConnection) Proxy.newProxyInstance(RDFConnection.class.getClassLoader(), new Class<?>[] {RDFConnection.class}, (proxy, method, args) -> {
+			if (!method.getName().equals("fetch")) {
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				latch.await();
+				return method.invoke(connection, args);
+			} finally {
+				running.decrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Checks the different types of requests against an in-memory dataset.
+	 */
+	@Test
+	public void testRequests() {
+
+		try (SPARQLClient client = new SPARQLClient(RDFConnectionFactory.connect(createTestDataset()), null, 2, 0)) {
+			CompletableFuture<Model> fetch = client.fetch(GRAPH_URI + "1");
+			CompletableFuture<List<QuerySolution>> select = client.select("SELECT ?g WHERE {GRAPH ?g {?s ?p ?o}}");
+			CompletableFuture<Dataset> construct = client.constructDataset("CONSTRUCT {GRAPH ?g {?s ?p ?o}} WHERE {GRAPH ?g {?s ?p ?o}}");
+			assertEquals(1, SPARQLClient.await(fetch).size());
+			assertEquals(3, SPARQLClient.await(select).size());
+			assertTrue(SPARQLClient.await(construct).containsNamedModel(GRAPH_URI + "3"));
+		}
+	}
+
+	/**
+	 * Checks that identical requests are coalesced and that the number of requests running at the same time is limited.
+	 */
+	@Test
+	public void testCoalescingAndConcurrency() {
+
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		try (SPARQLClient client = new SPARQLClient(blockingConnection(createTestDataset(), latch, running, maxRunning), null, 2, 0)) {
+			CompletableFuture<Model> first = client.fetch(GRAPH_URI + "1");
+			assertSame(first, client.fetch(GRAPH_URI + "1"));
+			List<CompletableFuture<Model>> requests = new ArrayList<>();
+			requests.add(first);
+			for (int index = 2; index <= 3; index++) requests.add(client.fetch(GRAPH_URI + index));
+			latch.countDown();
+			for (CompletableFuture<Model> request : requests) assertEquals(1, SPARQLClient.await(request).size());
+			assertTrue(maxRunning.get() <= 2);
+			// Once completed, a request is not coalesced anymore
+			assertNotSame(first, client.fetch(GRAPH_URI + "1"));
+		}
+	}
+
+	/**
+	 * Checks that a request which does not complete in time fails with a timeout.
+	 */
+	@Test
+	public void testTimeout() {
+
+		CountDownLatch latch = new CountDownLatch(1);
+		try (SPARQLClient client = new SPARQLClient(blockingConnection(createTestDataset(), latch, new AtomicInteger(), new AtomicInteger()), null, 1, 50)) {
+			CompletableFuture<Model> request = client.fetch(GRAPH_URI + "1");
+			ExecutionException exception = assertThrows(ExecutionException.class, request::get);
+			assertTrue(exception.getCause() instanceof TimeoutException);
+			// The request timed out is stopped, so that the only thread of the client can run the next one
+			assertEquals(3, SPARQLClient.await(client.select("SELECT ?g WHERE {GRAPH ?g {?s ?p ?o}}")).size());
+		} finally {
+			latch.countDown();
+		}
+	}
+
+	/**
+	 * Checks that the concurrency limit of an endpoint depends on the limit given to the client, and not on the limit of the first client created.
+	 */
+	@Test
+	public void testEndpointLimits() throws InterruptedException {
+
+		try (SPARQLClient client = new SPARQLClient(RDFConnectionFactory.connect(createTestDataset()), "test-endpoint", 1, 0)) {
+			assertEquals(1, SPARQLClient.await(client.fetch(GRAPH_URI + "1")).size());
+		}
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicInteger running = new AtomicInteger();
+		try (SPARQLClient client = new SPARQLClient(blockingConnection(createTestDataset(), latch, running, new AtomicInteger()), "test-endpoint", 3, 0)) {
+			List<CompletableFuture<Model>> requests = new ArrayList<>();
+			for (int index = 1; index <= 3; index++) requests.add(client.fetch(GRAPH_URI + index));
+			long deadline = System.currentTimeMillis() + 10000;
+			while ((running.get() < 3) && (System.currentTimeMillis() < deadline)) Thread.sleep(10);
+			assertEquals(3, running.get());
+			latch.countDown();
+			for (CompletableFuture<Model> request : requests) assertEquals(1, SPARQLClient.await(request).size());
+		} finally {
+			latch.countDown();
+		}
+	}
+}